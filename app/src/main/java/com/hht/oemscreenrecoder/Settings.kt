@@ -22,6 +22,8 @@ class Settings(context: Context?) {
         private const val AUDIO_SET= "audio_set"
         private const val SERVICE_RUNNING = "service_running"
         private const val SP_KEY_FILE_SERIAL_NUMBER = "sp_key_file_serial_number"
+        private const val SEGMENT_MINUTES = "segment_minutes"
+        private const val SEGMENT_SIZE_MB = "segment_size_mb"
 
         private val DEFAULT_SAVE_PATH = PathUtils.getExternalStoragePath()+"/Screen Record"
         private var instance : Settings? = null
@@ -140,6 +142,39 @@ class Settings(context: Context?) {
         return settings.getBoolean(AUDIO_SET,false)
     }
 
+    /**
+     * 分段录制：每个文件的时长上限（分钟），0 表示不按时长分段
+     */
+    fun getSegmentMinutes(): Int {
+        return settings.getInt(SEGMENT_MINUTES, 0)
+    }
+
+    fun setSegmentMinutes(minutes: Int) {
+        settings.edit()
+            .putInt(SEGMENT_MINUTES, minutes)
+            .apply()
+    }
+
+    /**
+     * 分段录制：每个文件的大小上限（MB），0 表示不按大小分段
+     */
+    fun getSegmentSizeMb(): Int {
+        return settings.getInt(SEGMENT_SIZE_MB, 0)
+    }
+
+    fun setSegmentSizeMb(mb: Int) {
+        settings.edit()
+            .putInt(SEGMENT_SIZE_MB, mb)
+            .apply()
+    }
+
+    /**
+     * 是否分段录制（分段录制不受最大录制时长限制）
+     */
+    fun isSegmentedRecording(): Boolean {
+        return getSegmentMinutes() > 0 || getSegmentSizeMb() > 0
+    }
+
     //return unit is MB
     fun getRemainSpace(): Long {
 //        val external: File = Environment.getExternalStorageDirectory()
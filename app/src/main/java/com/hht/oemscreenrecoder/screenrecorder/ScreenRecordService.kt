@@ -21,6 +21,7 @@ import androidx.constraintlayout.widget.ConstraintLayout
 import androidx.recyclerview.widget.GridLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.blankj.utilcode.util.ColorUtils
+import com.blankj.utilcode.util.PathUtils
 import com.hht.oemscreenrecoder.MainActivity
 import com.hht.oemscreenrecoder.R
 import com.hht.oemscreenrecoder.Settings
@@ -36,8 +37,12 @@ import com.hht.oemscreenrecoder.utils.OpsTouchRect
 import com.hht.oemscreenrecoder.widgets.FloatingLayout
 import com.hht.oemscreenrecoder.widgets.StorageUtils
 import com.hht.oemscreenrecoder.widgets.UsbFlashUtil
+import com.hht.oemscreenrecoder.yorm.RecordingRecovery
 import com.hht.oemscreenrecoder.yorm.Utils
+import java.io.File
+import java.io.FileDescriptor
 import java.io.IOException
+import java.io.PrintWriter
 import java.text.SimpleDateFormat
 import java.util.*
 
@@ -99,6 +104,8 @@ class ScreenRecordService : Service() {
         const val SHOW_STOP_RECORD_DIALOG = 3
         const val STOP_RECORD_TIME_LIMIT = 4      // 达到1小时时长限制
         const val STOP_RECORD_SPACE_LIMIT = 5     // 存储空间不足500MB
+        // 录制结束后等旧编码器释放完再预热下一次录制
+        const val WARM_UP_DELAY_MS = 1000L
         const val TAG = "ScreenRecordService"
         const val SCREEN_RECORDER = "tw.com.newline.screenrecoder"
         val USER_ID_ACTION = "com.hht.alauncher.logout"
@@ -156,6 +163,8 @@ class ScreenRecordService : Service() {
     private var diffYM = 0
     private var isNeedToShowLowSpace = false
     private var isNeedToUpdateDurationTime = false
+    // 录制时在时长下方显示帧率/码率/编码延迟（debug.screenrecord.stats_overlay，默认关闭）
+    private var isStatsOverlayEnabled = false
     private var screenRecordStatus = RecordStatus.Idle.ordinal
 
     private var fileName: String? = null
@@ -295,6 +304,22 @@ class ScreenRecordService : Service() {
 
         // 注册用户切换广播接收器
         registerUserSwitchReceiver()
+
+        // 修复上次因崩溃或断电没有正常结束的录制（断电恢复模式）
+        recoverUnfinishedRecordings()
+    }
+
+    /**
+     * 在后台线程中按索引日志修复录制目录下未完成的录制文件
+     */
+    private fun recoverUnfinishedRecordings() {
+        val dir = File(PathUtils.getExternalStoragePath() + "/Screen Record")
+        Thread({
+            val recovered = RecordingRecovery.recoverAll(dir)
+            if (recovered.isNotEmpty()) {
+                Log.i(TAG, "recoverUnfinishedRecordings: recovered $recovered")
+            }
+        }, "RecordingRecovery").start()
     }
 
     /**
@@ -335,7 +360,7 @@ class ScreenRecordService : Service() {
     @SuppressLint("InflateParams")
     override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
         createNotificationChannel()
-        Utils.init()
+        Utils.init(noBackupFilesDir)
         fileName = getFormatTime(System.currentTimeMillis())
         val mResultCode = intent?.extras?.getInt("code")
         if (permissionData == null && mResultCode == AppCompatActivity.RESULT_OK) {
@@ -872,12 +897,14 @@ class ScreenRecordService : Service() {
                         continueView.visibility = View.GONE
                         screenRecordStatus = RecordStatus.Idle.ordinal
                     }
+                    scheduleWarmUp(WARM_UP_DELAY_MS)
                 }
 
                 override fun onEndRecord() {
                     Log.d(TAG, "onEndRecord")
                     isNeedToUpdateDurationTime = false
                     reSetDurationTime()
+                    scheduleWarmUp(WARM_UP_DELAY_MS)
                 }
 
                 override fun onInternalAudioNotAvailable(audioType: Int) {
@@ -900,6 +927,34 @@ class ScreenRecordService : Service() {
             },
             mediaProjection
         )
+        // 工具栏已显示，预热编码器缩短点击录制到第一帧的延迟
+        scheduleWarmUp(0)
+    }
+
+    private val warmUpRunnable = Runnable {
+        if (::screenRecordHelper.isInitialized && screenRecordStatus == RecordStatus.Idle.ordinal) {
+            screenRecordHelper.warmUp(currentAudioSource())
+        }
+    }
+
+    /**
+     * 空闲时预热下一次录制（按当前的麦克风/系统声音设置）
+     */
+    private fun scheduleWarmUp(delayMs: Long) {
+        handler.removeCallbacks(warmUpRunnable)
+        handler.postDelayed(warmUpRunnable, delayMs)
+    }
+
+    private fun currentAudioSource(): ScreenRecordingAudioSource {
+        return if (settings.getMic() && settings.getSystemAudio()) {
+            ScreenRecordingAudioSource.MIC_AND_INTERNAL
+        } else if (settings.getMic()) {
+            ScreenRecordingAudioSource.MIC
+        } else if (settings.getSystemAudio()) {
+            ScreenRecordingAudioSource.INTERNAL
+        } else {
+            ScreenRecordingAudioSource.NONE
+        }
     }
 
     private fun stopTimer() {
@@ -947,6 +1002,7 @@ class ScreenRecordService : Service() {
      * 初始化录制时间TimerTask
      */
     private fun initTimer() {
+        isStatsOverlayEnabled = getSystemProperty("debug.screenrecord.stats_overlay", "0") == "1"
         val timerTask: TimerTask = object : TimerTask() {
             override fun run() {
                 if (isNeedToUpdateDurationTime) {
@@ -965,8 +1021,8 @@ class ScreenRecordService : Service() {
                     // 计算当前录制总秒数
                     val totalSeconds = hour * 3600 + minute * 60 + second
 
-                    // 检查是否达到1小时时长限制
-                    if (totalSeconds >= Settings.MAX_RECORD_DURATION_SECONDS) {
+                    // 检查是否达到1小时时长限制（分段录制按分段切换文件，不受此限制）
+                    if (!settings.isSegmentedRecording() && totalSeconds >= Settings.MAX_RECORD_DURATION_SECONDS) {
                         Log.w(TAG, "达到最大录制时长限制（1小时），自动停止录制")
                         handler.sendEmptyMessage(STOP_RECORD_TIME_LIMIT)
                         return
@@ -1087,11 +1143,29 @@ class ScreenRecordService : Service() {
      */
     private fun updateTextDuration() {
         val stringMaxCount: String = this.resources.getString(R.string.record_minute_time)
-        val textMaxCount = String.format(stringMaxCount, hour, minute, second)
+        var textMaxCount = String.format(stringMaxCount, hour, minute, second)
+        if (isStatsOverlayEnabled && isNeedToUpdateDurationTime && ::screenRecordHelper.isInitialized) {
+            screenRecordHelper.getMetricsSnapshot()?.let {
+                textMaxCount += "\n" + it.toOverlayText()
+            }
+        }
         recordTime?.text = textMaxCount
         recordTimeTwo?.text = textMaxCount
     }
 
+    /**
+     * adb shell dumpsys activity service ScreenRecordService 输出当前录制的健康指标
+     */
+    override fun dump(fd: FileDescriptor?, writer: PrintWriter, args: Array<out String>?) {
+        writer.println("ScreenRecordService state=$screenRecordStatus")
+        val snapshot = if (::screenRecordHelper.isInitialized) screenRecordHelper.getMetricsSnapshot() else null
+        if (snapshot == null) {
+            writer.println("  not recording")
+            return
+        }
+        snapshot.dump(writer, "  ")
+    }
+
     override fun onDestroy() {
         Log.d(TAG, "onDestroy: 服务销毁开始，isuserSwitch=$isuserSwitch")
 
@@ -1114,6 +1188,7 @@ class ScreenRecordService : Service() {
         stopForeground(true)
 
         // 5. 清理录制相关资源
+        handler.removeCallbacks(warmUpRunnable)
         if (::screenRecordHelper.isInitialized) {
             screenRecordHelper.clearAll()
             screenRecordHelper.stopRecorder()
@@ -8,11 +8,10 @@ import android.graphics.Point
 import android.hardware.display.DisplayManager
 import android.hardware.display.VirtualDisplay
 import android.media.MediaCodecInfo
-import android.media.MediaCodecInfo.CodecCapabilities
-import android.media.MediaCodecInfo.CodecProfileLevel
 import android.media.projection.MediaProjection
 import android.media.projection.MediaProjectionManager
 import android.os.Build
+import android.os.SystemClock
 import android.util.Log
 import android.view.*
 import android.widget.TextView
@@ -26,9 +25,10 @@ import com.hht.oemscreenrecoder.Settings
 import com.hht.oemscreenrecoder.widgets.SaveActivity
 import com.hht.oemscreenrecoder.yorm.AudioEncodeConfig
 import com.hht.oemscreenrecoder.yorm.AudioSilentFillConfig
+import com.hht.oemscreenrecoder.yorm.EncoderInfo
+import com.hht.oemscreenrecoder.yorm.MetricsRegistry
 import com.hht.oemscreenrecoder.yorm.ScreenRecorder
-import com.hht.oemscreenrecoder.yorm.ScreenRecorder.AUDIO_AAC
-import com.hht.oemscreenrecoder.yorm.ScreenRecorder.VIDEO_AVC
+import com.hht.oemscreenrecoder.yorm.SegmentPlaylist
 import com.hht.oemscreenrecoder.yorm.Utils
 import com.hht.oemscreenrecoder.yorm.VideoEncodeConfig
 import java.io.File
@@ -47,19 +47,36 @@ class ScreenRecordHelper constructor(
     private var source: ScreenRecordingAudioSource? = null
     private var mRecorder: ScreenRecorder? = null
     private var file: File? = null
+    // 录制结果路径：分段录制时为播放列表
+    private var savedPath: String? = null
     private var isAgan: Boolean? = false
     // 用户切换标记：用户切换时跳过保存弹窗，直接保留默认路径的文件
     private var isUserSwitching: Boolean = false
     // 录制停止原因：0-正常停止，1-时长限制，2-空间不足
     private var stopReason: Int = Settings.STOP_REASON_NORMAL
+    // 预热待机的录制器：工具栏显示期间提前创建好 VirtualDisplay 和视频编码器
+    private var warmRecorder: WarmRecorder? = null
+
+    private class WarmRecorder(
+        val recorder: ScreenRecorder,
+        val key: String,
+        val video: VideoEncodeConfig,
+        val audio: AudioEncodeConfig?
+    )
+
     init {
         Log.d(TAG, "init: ScreenRecordHelper")
+        if (isCodecBenchmarkEnabled()) {
+            Utils.benchmarkVideoEncodersAsync(getVideoCodecType(), getVideoSizeWidth(), getVideoSizeHeight())
+        }
 //        mediaProjectionManager =
 //            context.getSystemService(Context.MEDIA_PROJECTION_SERVICE) as? MediaProjectionManager
 //        mediaProjection = mediaProjectionManager?.getMediaProjection(RESULT_OK, data!!)
     }
 
     fun startRecord(source: ScreenRecordingAudioSource) {
+        // 点击录制的时刻，作为点击到第一帧耗时追踪的起点
+        val tapNanos = SystemClock.elapsedRealtimeNanos()
         this.source = source
         try {
 //            if (mediaProjectionManager == null) {
@@ -68,7 +85,7 @@ class ScreenRecordHelper constructor(
 //                return
 //            }
             Log.d(TAG, "startRecord: ScreenRecordingAudioSource-->$source")
-            startCapturing(mediaProjection!!, source)
+            startCapturing(mediaProjection!!, source, tapNanos)
             // 移除立即调用 onStartRecord，改为在录制真正开始后调用
             // listener?.onStartRecord() 现在在 ScreenRecorder 的回调中调用
         } catch (e: Exception) {
@@ -95,6 +112,7 @@ class ScreenRecordHelper constructor(
      * 退出应用释放资源
      */
     fun clearAll() {
+        cancelWarmUp()
         virtualDisplay?.release()
         virtualDisplay = null
         mediaProjection?.stop()
@@ -113,6 +131,13 @@ class ScreenRecordHelper constructor(
         listener?.onPauseRecord()
     }
 
+    /**
+     * 当前录制的健康指标快照，未在录制时返回 null
+     */
+    fun getMetricsSnapshot(): MetricsRegistry.Snapshot? {
+        return mRecorder?.getMetricsSnapshot()
+    }
+
     private fun getVideoSizeWidth(): Int {
         if (settings.getResolutionData() == Settings.RESOLUTION_1920_1080) {
             return VIDEO_SIZE_MAX_WIDTH_1920
@@ -148,19 +173,50 @@ class ScreenRecordHelper constructor(
             val silentFillConfig = loadAudioSilentFillConfig()
             r.setAudioSilentFillConfig(silentFillConfig)
             Log.i(TAG, "★★★ AUDIO SILENT FILL CONFIG SET ★★★ $silentFillConfig")
+
+            // ===== 采样数时钟 PTS 模式（按采样数推算 + 漂移校正，启用时优先于墙钟模式）=====
+            r.setUseSampleClockPTS(isSampleClockPtsEnabled())
+            r.setUseAsyncAudioCodec(isAsyncAudioCodecEnabled())
         }
 
+        // ===== muxer 写入队列容量（独立写线程，存储变慢时吸收抖动）=====
+        r.setMuxerQueueConfig(getMuxerQueueDepth(), getMuxerQueueBytes())
+        // ===== 音视频按时间戳交织写入（一路停顿时另一路最多领先 maxSkew）=====
+        r.setInterleaveConfig(getInterleaveMaxSkewMs(), getInterleaveReorderWindowMs())
+        // ===== 封装后端（分片 MP4 崩溃/断电时已写出的分片仍可播放）=====
+        r.setUseFragmentedMp4(isFragmentedMp4Enabled(), getFragmentDurationMs())
+        // ===== 断电恢复模式（普通 MP4 + 样本索引日志，服务下次启动时补写 moov）=====
+        r.setUseCrashSafeMp4(isCrashSafeMp4Enabled(), getCrashSafeSyncIntervalMs())
+        // ===== 运行时码率控制（按编码输出、写入耗时和剩余空间调整，剩余空间至少够录满时长上限或当前分段）=====
+        if (isBitrateControlEnabled()) {
+            val floorBps = getBitrateFloorKbps() * 1000
+            val ceilingBps = getBitrateCeilingKbps().takeIf { it > 0 }?.times(1000) ?: video.bitrate
+            r.setBitrateControl(
+                floorBps, ceilingBps,
+                Settings.STOP_RECORD_SPACE_THRESHOLD * 1_000_000L,
+                getBitrateMinRemainingSeconds()
+            ) { settings.getRemainSpace() * 1_000_000L }
+            Log.i(TAG, "★★★ BITRATE CONTROL ★★★ floor=$floorBps, ceiling=$ceilingBps, initial=${video.bitrate}, " +
+                    "minRemainingSec=${getBitrateMinRemainingSeconds()}")
+        }
+        // ===== 分段录制（按时长/大小在关键帧处切换文件，生成 .m3u 播放列表）=====
+        val segmentMinutes = settings.getSegmentMinutes()
+        val segmentSizeMb = settings.getSegmentSizeMb()
+        r.setSegmentConfig(segmentMinutes * 60_000L, segmentSizeMb * 1024L * 1024L)
+        Log.i(TAG, "★★★ SEGMENTED RECORDING ★★★ minutes=$segmentMinutes, sizeMb=$segmentSizeMb")
+
         r.setCallback(object : ScreenRecorder.Callback {
             override fun onStop(message: Any?) {
                 if (message != null && message is Throwable) {
                     message.printStackTrace()
-                    output.mkdir()
+                    // 预热的录制器在点击时才确定文件名
+                    (file ?: output).mkdir()
                     // 录制过程中出现错误，通知上层
                     listener?.onCancelRecord()
                 } else if (message != null && message is String) {
                     if (isUserSwitching) {
                         // 用户切换场景：跳过保存弹窗，文件已保存在默认路径
-                        Log.d(TAG, "onStop: 用户切换中，跳过保存弹窗，文件已保存: ${output.absolutePath}")
+                        Log.d(TAG, "onStop: 用户切换中，跳过保存弹窗，文件已保存: $message")
                         listener?.onEndRecord()
                         // 重置标记
                         isUserSwitching = false
@@ -169,7 +225,7 @@ class ScreenRecordHelper constructor(
                         // 正常停止录制：显示保存选择界面
                         val intent = Intent(context, SaveActivity::class.java)
                         intent.flags = Intent.FLAG_ACTIVITY_NEW_TASK
-                        intent.putExtra("filePath", output.absolutePath)
+                        intent.putExtra("filePath", message)
                         // 传递停止原因给 SaveActivity
                         intent.putExtra("stopReason", stopReason)
                         Log.d(TAG, "onStop: 启动SaveActivity，stopReason=$stopReason")
@@ -225,22 +281,83 @@ class ScreenRecordHelper constructor(
 //    }
 
 
-    private fun startCapturing(
-        mediaProjection: MediaProjection,
-        source: ScreenRecordingAudioSource
-    ) {
-        val video = createVideoConfig()
-        val audio = createAudioConfig(source) // audio can be null
+    /**
+     * 预热待机（工具栏显示期间调用）：提前创建 VirtualDisplay 并在录制线程中创建、启动视频编码器，
+     * 点击录制时只需创建文件、准备音频并挂上 Surface。已有相同配置的预热录制器或正在录制时不重复创建
+     */
+    fun warmUp(source: ScreenRecordingAudioSource) {
+        if (!isWarmStandbyEnabled() || mRecorder != null) {
+            return
+        }
+        val projection = mediaProjection ?: return
+        val key = warmUpKey(source)
+        if (warmRecorder?.key == key) {
+            return
+        }
+        cancelWarmUp()
+        try {
+            val video = createVideoConfig()
+            val audio = createAudioConfig(source)
+            val r = newRecorder(projection, video, audio, newOutputFile(video))
+            r.warmUp()
+            warmRecorder = WarmRecorder(r, key, video, audio)
+            Log.i(TAG, "★★★ WARM STANDBY ★★★ key=$key, video=$video")
+        } catch (e: Exception) {
+            Log.w(TAG, "warmUp: failed, recording will start cold", e)
+        }
+    }
+
+    /**
+     * 释放预热的录制器（工具栏关闭或退出时）
+     */
+    fun cancelWarmUp() {
+        warmRecorder?.let {
+            Log.d(TAG, "cancelWarmUp: key=${it.key}")
+            it.recorder.quit()
+        }
+        warmRecorder = null
+    }
+
+    /**
+     * 取出与当前设置一致的预热录制器；设置（音源、分辨率、编码格式）已变化时释放它
+     */
+    private fun takeWarmRecorder(source: ScreenRecordingAudioSource): WarmRecorder? {
+        val warm = warmRecorder ?: return null
+        warmRecorder = null
+        if (warm.key != warmUpKey(source)) {
+            Log.i(TAG, "takeWarmRecorder: settings changed (${warm.key}), starting cold")
+            warm.recorder.quit()
+            return null
+        }
+        return warm
+    }
+
+    private fun warmUpKey(source: ScreenRecordingAudioSource): String {
+        return "$source/${getVideoSizeWidth()}x${getVideoSizeHeight()}/${getVideoCodecType()}"
+    }
+
+    private fun newOutputFile(video: VideoEncodeConfig): File {
         val format = SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US)
         val fileDirectory = File(PathUtils.getExternalStoragePath() + "/Screen Record")
         if (!fileDirectory.exists()) {
             fileDirectory.mkdir()
         }
-        file = File(
+        return File(
             fileDirectory.absolutePath,
             "ScreenRecord_" + format.format(Date())
                     + "_" + video.width + "x" + video.height + ".mp4"
         )
+    }
+
+    private fun startCapturing(
+        mediaProjection: MediaProjection,
+        source: ScreenRecordingAudioSource,
+        tapNanos: Long
+    ) {
+        val warm = takeWarmRecorder(source)
+        val video = warm?.video ?: createVideoConfig()
+        val audio = if (warm != null) warm.audio else createAudioConfig(source) // audio can be null
+        file = newOutputFile(video)
 
         Log.i(TAG, "╔═══════════════════════════════════════════════════════════════")
         Log.i(TAG, "║ 🎬 STARTING SCREEN RECORDING")
@@ -248,6 +365,7 @@ class ScreenRecordHelper constructor(
         Log.i(TAG, "║ Output file:      ${file!!.absolutePath}")
         Log.i(TAG, "║ Video config:     ${video.width}x${video.height} @ ${video.framerate}fps, ${video.bitrate/1000}kbps")
         Log.i(TAG, "║ Audio source:     $source")
+        Log.i(TAG, "║ Warm standby:     ${warm != null}")
         if (audio != null) {
             Log.i(TAG, "║ Audio config:     $audio")
         } else {
@@ -256,8 +374,12 @@ class ScreenRecordHelper constructor(
         Log.i(TAG, "╚═══════════════════════════════════════════════════════════════")
 
 //        fileName = getFormatTime(System.currentTimeMillis()) +"_"+ settings.getResolutionData()
-        mRecorder = newRecorder(mediaProjection, video, audio, file!!)
-        mRecorder!!.start()
+        val r = warm?.recorder ?: newRecorder(mediaProjection, video, audio, file!!)
+        r.setDstPath(file!!.absolutePath)
+        savedPath = r.savedPath
+        r.setStartRequestedNanos(tapNanos)
+        mRecorder = r
+        r.start()
     }
 
     private fun getFormatTime(time: Long): String? {
@@ -268,7 +390,11 @@ class ScreenRecordHelper constructor(
 
 
     fun deleteFile() {
-        file?.delete()
+        val path = savedPath ?: file?.absolutePath ?: return
+        // 分段录制时删除所有分段和播放列表
+        for (f in SegmentPlaylist.filesOf(File(path))) {
+            f.delete()
+        }
     }
 //只能调用一次，多次会异常
 //您的应用必须在每个媒体投影会话之前请求用户同意。答 是对 createVirtualDisplay() 的单次调用。一个 MediaProjection 令牌 只能使用一次进行调用。
@@ -343,35 +469,27 @@ class ScreenRecordHelper constructor(
                 ScreenRecordingAudioSource.NONE -> return null
                 else -> {
                     // 增强音频编码器配置的错误处理
-                    if (Utils.mAacCodecInfos.isEmpty()) {
+                    val aacEncoders = Utils.getAacEncoders()
+                    if (aacEncoders.isEmpty()) {
                         Log.w(TAG, "No AAC codec available, falling back to video-only recording")
                         return null
                     }
 
                     // ===== 智能编解码器选择 - 修复硬编码索引[1]的致命问题 =====
-                    var selectedCodec: MediaCodecInfo? = null
-                    var selectedCapabilities: CodecCapabilities? = null
+                    var selectedCodec: EncoderInfo? = null
                     var selectedProfile = MediaCodecInfo.CodecProfileLevel.AACObjectLC // 默认使用最兼容的AAC-LC
                     var selectedSampleRate = 44100 // 默认采样率
                     var selectedChannelCount = 1 // 默认单声道
 
                     // 遍历所有可用的AAC编解码器，寻找最兼容的
-                    for (codecInfo in Utils.mAacCodecInfos) {
+                    for (codecInfo in aacEncoders) {
                         try {
-                            val caps = codecInfo.getCapabilitiesForType(AUDIO_AAC)
-                            val audioCaps = caps.audioCapabilities
-
-                            if (audioCaps == null) {
-                                Log.d(TAG, "Codec ${codecInfo.name} has no audio capabilities, skipping")
-                                continue
-                            }
-
                             // 验证采样率支持
-                            val supportedSampleRates = audioCaps.supportedSampleRates
+                            val supportedSampleRates = codecInfo.sampleRates
                             var sampleRateSupported = false
                             var fallbackSampleRate = -1
 
-                            if (supportedSampleRates != null && supportedSampleRates.isNotEmpty()) {
+                            if (supportedSampleRates.isNotEmpty()) {
                                 for (rate in supportedSampleRates) {
                                     if (rate == 44100) {
                                         sampleRateSupported = true
@@ -384,8 +502,8 @@ class ScreenRecordHelper constructor(
                                 }
                             } else {
                                 // 没有明确列表时，尝试验证44100
-                                sampleRateSupported = audioCaps.isSampleRateSupported(44100)
-                                if (!sampleRateSupported && audioCaps.isSampleRateSupported(48000)) {
+                                sampleRateSupported = codecInfo.isSampleRateSupported(44100)
+                                if (!sampleRateSupported && codecInfo.isSampleRateSupported(48000)) {
                                     fallbackSampleRate = 48000
                                 }
                             }
@@ -396,28 +514,25 @@ class ScreenRecordHelper constructor(
                             }
 
                             // 验证通道数支持
-                            val maxChannels = audioCaps.maxInputChannelCount
+                            val maxChannels = codecInfo.maxChannels
                             if (maxChannels < 1) {
                                 Log.d(TAG, "Codec ${codecInfo.name} does not support mono audio (maxChannels=$maxChannels), skipping")
                                 continue
                             }
 
                             // 查找支持的Profile (优先AAC-LC，最兼容)
-                            val profileLevels = caps.profileLevels
+                            val profiles = codecInfo.profiles
                             var supportedProfile = -1
 
-                            if (profileLevels != null && profileLevels.isNotEmpty()) {
+                            if (profiles.isNotEmpty()) {
                                 // 优先选择AAC-LC (Low Complexity) - 硬件编解码器通常只支持这个
-                                for (pl in profileLevels) {
-                                    if (pl.profile == MediaCodecInfo.CodecProfileLevel.AACObjectLC) {
-                                        supportedProfile = MediaCodecInfo.CodecProfileLevel.AACObjectLC
-                                        break
-                                    }
+                                if (codecInfo.hasProfile(MediaCodecInfo.CodecProfileLevel.AACObjectLC)) {
+                                    supportedProfile = MediaCodecInfo.CodecProfileLevel.AACObjectLC
                                 }
 
                                 // 如果没有AAC-LC，尝试其他Profile
                                 if (supportedProfile == -1) {
-                                    supportedProfile = profileLevels[0].profile
+                                    supportedProfile = profiles[0]
                                     Log.d(TAG, "Codec ${codecInfo.name} does not support AAC-LC, using profile ${supportedProfile}")
                                 }
                             } else {
@@ -440,7 +555,6 @@ class ScreenRecordHelper constructor(
                             // 优先选择硬件编解码器（性能更好）
                             if (isHardwareCodec && selectedCodec == null) {
                                 selectedCodec = codecInfo
-                                selectedCapabilities = caps
                                 selectedProfile = supportedProfile
                                 selectedSampleRate = if (sampleRateSupported) 44100 else fallbackSampleRate
                                 selectedChannelCount = Math.min(maxChannels, 1)
@@ -451,7 +565,6 @@ class ScreenRecordHelper constructor(
                             // 如果没找到硬件编解码器，降级到软件编解码器
                             if (isSoftwareCodec && selectedCodec == null) {
                                 selectedCodec = codecInfo
-                                selectedCapabilities = caps
                                 selectedProfile = supportedProfile
                                 selectedSampleRate = if (sampleRateSupported) 44100 else fallbackSampleRate
                                 selectedChannelCount = Math.min(maxChannels, 1)
@@ -461,7 +574,6 @@ class ScreenRecordHelper constructor(
                             // 如果既不是硬件也不是软件（未知类型），但是第一个可用的编解码器
                             if (selectedCodec == null) {
                                 selectedCodec = codecInfo
-                                selectedCapabilities = caps
                                 selectedProfile = supportedProfile
                                 selectedSampleRate = if (sampleRateSupported) 44100 else fallbackSampleRate
                                 selectedChannelCount = Math.min(maxChannels, 1)
@@ -475,13 +587,13 @@ class ScreenRecordHelper constructor(
                     }
 
                     // 如果没有找到任何兼容的编解码器，降级为纯视频录制
-                    if (selectedCodec == null || selectedCapabilities == null) {
+                    if (selectedCodec == null) {
                         Log.e(TAG, "No compatible AAC codec found! Falling back to video-only recording")
                         return null
                     }
 
                     val codec: String = selectedCodec.name
-                    val bitrate: Int = Utils.resetAudioBitrateAdapter(selectedCapabilities, -1) * 1000
+                    val bitrate: Int = Utils.resetAudioBitrateAdapter(selectedCodec, -1) * 1000
 
                     Log.i(TAG, "Final audio config: codec=$codec, profile=$selectedProfile, sampleRate=$selectedSampleRate, channels=$selectedChannelCount, bitrate=$bitrate")
 
@@ -524,14 +636,37 @@ class ScreenRecordHelper constructor(
     }
 
     private fun createVideoConfig(): VideoEncodeConfig {
-        val codec: String = Utils.mAvcCodecInfos[0].getName()//选择编码器
-        val capabilities: CodecCapabilities = Utils.mAvcCodecInfos[0].getCapabilitiesForType(VIDEO_AVC)
-        val profile: String = Utils.resetAvcProfileLevelAdapter(capabilities,1)
-        val profileLevel: CodecProfileLevel =Utils.toProfileLevel(profile)
+        val width = getVideoSizeWidth()
+        val height = getVideoSizeHeight()
+        val avc = buildVideoConfig(ScreenRecorder.VIDEO_AVC, width, height)
+            ?: throw IllegalStateException("No AVC encoder available")
+        // ===== 输出编码格式：HEVC / AV1 体积更小，configure 失败时回退到 AVC =====
+        val mimeType = getVideoCodecType()
+        var config = avc
+        if (mimeType != ScreenRecorder.VIDEO_AVC) {
+            val preferred = buildVideoConfig(mimeType, width, height)
+            if (preferred != null) {
+                preferred.fallback = avc
+                config = preferred
+            } else {
+                Log.w(TAG, "No $mimeType encoder available, recording AVC")
+            }
+        }
+        // ===== 静态画面模式（白板/幻灯片：画面不变时不编码新帧，可变帧率封装）=====
+        for (c in listOf(config, avc)) {
+            c.staticContentMode = isStaticContentModeEnabled()
+            c.repeatFrameAfterUs = getStaticRepeatFrameMs() * 1000L
+        }
+        return config
+    }
+
+    private fun buildVideoConfig(mimeType: String, width: Int, height: Int): VideoEncodeConfig? {
+        // 按硬件加速、可达帧率和实测吞吐为当前分辨率选择编码器
+        val encoder: EncoderInfo = Utils.selectVideoEncoder(mimeType, width, height, 30) ?: return null
         return VideoEncodeConfig(
-            getVideoSizeWidth(), getVideoSizeHeight(), 5*getVideoSizeWidth()*getVideoSizeHeight(),
-            30, 1, codec, ScreenRecorder.VIDEO_AVC,
-            profileLevel
+            width, height, VideoEncodeConfig.scaleBitrate(mimeType, 5 * width * height),
+            30, 1, encoder.name, mimeType,
+            Utils.selectProfileLevel(encoder)
         )
     }
 
@@ -638,6 +773,182 @@ class ScreenRecordHelper constructor(
         return config
     }
 
+    /**
+     * 读取采样数时钟 PTS 开关（debug.screenrecord.sample_clock_pts，默认关闭）
+     */
+    private fun isSampleClockPtsEnabled(): Boolean {
+        val useSampleClockStr = getSystemProperty("debug.screenrecord.sample_clock_pts", "0")
+        val useSampleClock = useSampleClockStr == "1" || useSampleClockStr.equals("true", ignoreCase = true)
+        Log.i(TAG, "★★★ SAMPLE CLOCK PTS MODE ★★★ enabled=$useSampleClock")
+        return useSampleClock
+    }
+
+    /**
+     * 读取音频编码器异步回调模式开关（debug.screenrecord.audio_async，默认开启，设为 0 时使用轮询模式）
+     */
+    private fun isAsyncAudioCodecEnabled(): Boolean {
+        val asyncStr = getSystemProperty("debug.screenrecord.audio_async", "1")
+        val async = asyncStr == "1" || asyncStr.equals("true", ignoreCase = true)
+        Log.i(TAG, "★★★ ASYNC AUDIO CODEC ★★★ enabled=$async")
+        return async
+    }
+
+    /**
+     * 读取 muxer 写入队列最多排队的样本数（debug.screenrecord.mux_queue_depth，默认 120）
+     */
+    private fun getMuxerQueueDepth(): Int {
+        val depth = getSystemProperty("debug.screenrecord.mux_queue_depth", "120").toIntOrNull()
+            ?.takeIf { it > 0 } ?: 120
+        Log.i(TAG, "★★★ MUXER QUEUE DEPTH ★★★ $depth")
+        return depth
+    }
+
+    /**
+     * 读取 muxer 写入队列的内存上限（debug.screenrecord.mux_queue_mb，单位 MB，默认 16）
+     */
+    private fun getMuxerQueueBytes(): Int {
+        val mb = getSystemProperty("debug.screenrecord.mux_queue_mb", "16").toIntOrNull()
+            ?.takeIf { it in 1..256 } ?: 16
+        Log.i(TAG, "★★★ MUXER QUEUE MEMORY ★★★ ${mb}MB")
+        return mb * 1024 * 1024
+    }
+
+    /**
+     * 读取音视频交织的最大领先时长（debug.screenrecord.interleave_skew_ms，默认 500，0 关闭交织）
+     */
+    private fun getInterleaveMaxSkewMs(): Long {
+        val skewMs = getSystemProperty("debug.screenrecord.interleave_skew_ms", "500").toLongOrNull()
+            ?.takeIf { it in 0..5000 } ?: 500L
+        Log.i(TAG, "★★★ MUXER INTERLEAVE MAX SKEW ★★★ ${skewMs}ms")
+        return skewMs
+    }
+
+    /**
+     * 读取音频样本按时间戳重排的窗口（debug.screenrecord.interleave_reorder_ms，默认 40）
+     */
+    private fun getInterleaveReorderWindowMs(): Long {
+        return getSystemProperty("debug.screenrecord.interleave_reorder_ms", "40").toLongOrNull()
+            ?.takeIf { it in 0..500 } ?: 40L
+    }
+
+    /**
+     * 读取分片 MP4 封装开关（debug.screenrecord.fmp4，默认关闭，使用 MediaMuxer）
+     */
+    private fun isFragmentedMp4Enabled(): Boolean {
+        val fmp4Str = getSystemProperty("debug.screenrecord.fmp4", "0")
+        val fmp4 = fmp4Str == "1" || fmp4Str.equals("true", ignoreCase = true)
+        Log.i(TAG, "★★★ FRAGMENTED MP4 ★★★ enabled=$fmp4")
+        return fmp4
+    }
+
+    /**
+     * 读取分片 MP4 的分片时长（debug.screenrecord.fmp4_fragment_ms，默认 2000）
+     */
+    private fun getFragmentDurationMs(): Long {
+        return getSystemProperty("debug.screenrecord.fmp4_fragment_ms", "2000").toLongOrNull()
+            ?.takeIf { it > 0 } ?: 2000L
+    }
+
+    /**
+     * 读取断电恢复模式开关（debug.screenrecord.crash_safe，默认关闭）
+     */
+    private fun isCrashSafeMp4Enabled(): Boolean {
+        val crashSafeStr = getSystemProperty("debug.screenrecord.crash_safe", "0")
+        val crashSafe = crashSafeStr == "1" || crashSafeStr.equals("true", ignoreCase = true)
+        Log.i(TAG, "★★★ CRASH SAFE MP4 ★★★ enabled=$crashSafe")
+        return crashSafe
+    }
+
+    /**
+     * 读取断电恢复模式的落盘间隔（debug.screenrecord.crash_safe_sync_ms，默认 2000）
+     */
+    private fun getCrashSafeSyncIntervalMs(): Long {
+        return getSystemProperty("debug.screenrecord.crash_safe_sync_ms", "2000").toLongOrNull()
+            ?.takeIf { it > 0 } ?: 2000L
+    }
+
+    /**
+     * 读取静态画面模式开关（debug.screenrecord.static_content，默认关闭）
+     */
+    private fun isStaticContentModeEnabled(): Boolean {
+        val str = getSystemProperty("debug.screenrecord.static_content", "0")
+        val enabled = str == "1" || str.equals("true", ignoreCase = true)
+        Log.i(TAG, "★★★ STATIC CONTENT MODE ★★★ enabled=$enabled")
+        return enabled
+    }
+
+    /**
+     * 读取静态画面模式下空闲时重复上一帧的间隔（debug.screenrecord.static_repeat_ms，默认 1000，0 表示不重复）
+     */
+    private fun getStaticRepeatFrameMs(): Long {
+        return getSystemProperty("debug.screenrecord.static_repeat_ms", "1000").toLongOrNull()
+            ?.takeIf { it >= 0 } ?: 1000L
+    }
+
+    /**
+     * 码率控制按剩余空间限制码率时，剩余空间至少要够录制的时长（秒）：
+     * 普通录制为最大录制时长；分段录制不受该上限约束，改为保证当前分段能按时长录完，
+     * 只按大小分段时返回 0（不按剩余空间限制码率，空间不足时仍由服务按 STOP_RECORD_SPACE_THRESHOLD 停止录制）
+     */
+    private fun getBitrateMinRemainingSeconds(): Long {
+        if (!settings.isSegmentedRecording()) {
+            return Settings.MAX_RECORD_DURATION_SECONDS.toLong()
+        }
+        return settings.getSegmentMinutes() * 60L
+    }
+
+    /**
+     * 读取运行时码率控制开关（debug.screenrecord.bitrate_control，默认开启，设为 0 时码率固定）
+     */
+    private fun isBitrateControlEnabled(): Boolean {
+        val str = getSystemProperty("debug.screenrecord.bitrate_control", "1")
+        return str == "1" || str.equals("true", ignoreCase = true)
+    }
+
+    /**
+     * 读取码率下限（debug.screenrecord.bitrate_floor_kbps，默认 2000）
+     */
+    private fun getBitrateFloorKbps(): Int {
+        return getSystemProperty("debug.screenrecord.bitrate_floor_kbps", "2000").toIntOrNull()
+            ?.takeIf { it > 0 } ?: 2000
+    }
+
+    /**
+     * 读取码率上限（debug.screenrecord.bitrate_ceiling_kbps，默认 0 表示使用配置的初始码率）
+     */
+    private fun getBitrateCeilingKbps(): Int {
+        return getSystemProperty("debug.screenrecord.bitrate_ceiling_kbps", "0").toIntOrNull() ?: 0
+    }
+
+    /**
+     * 读取编码器基准测试开关（debug.screenrecord.codec_benchmark，默认关闭，
+     * 开启后在后台实测各编码器在当前分辨率下的吞吐，结果持久化后参与编码器选择）
+     */
+    private fun isCodecBenchmarkEnabled(): Boolean {
+        val str = getSystemProperty("debug.screenrecord.codec_benchmark", "0")
+        return str == "1" || str.equals("true", ignoreCase = true)
+    }
+
+    /**
+     * 读取预热待机开关（debug.screenrecord.warm_standby，默认开启，
+     * 工具栏显示期间保持一个已启动的视频编码器，缩短点击录制到第一帧的延迟）
+     */
+    private fun isWarmStandbyEnabled(): Boolean {
+        val str = getSystemProperty("debug.screenrecord.warm_standby", "1")
+        return str == "1" || str.equals("true", ignoreCase = true)
+    }
+
+    /**
+     * 读取输出视频编码格式（debug.screenrecord.video_codec，avc / hevc / av1，默认 avc）
+     */
+    private fun getVideoCodecType(): String {
+        return when (getSystemProperty("debug.screenrecord.video_codec", "avc").lowercase(Locale.ROOT)) {
+            "hevc", "h265" -> ScreenRecorder.VIDEO_HEVC
+            "av1" -> ScreenRecorder.VIDEO_AV1
+            else -> ScreenRecorder.VIDEO_AVC
+        }
+    }
+
     /**
      * 使用反射获取系统属性
      */
@@ -25,6 +25,7 @@ import com.hht.oemscreenrecoder.MainActivity;
 import com.hht.oemscreenrecoder.R;
 import com.hht.oemscreenrecoder.adapter.RecycleAdapter;
 import com.hht.oemscreenrecoder.adapter.RecycleGridBean;
+import com.hht.oemscreenrecoder.yorm.SegmentPlaylist;
 
 import org.greenrobot.eventbus.EventBus;
 
@@ -199,7 +200,10 @@ public class SaveActivity extends AppCompatActivity {
                         usbFile.mkdirs();
                     }
                     try {
-                        moveFile(sourceFile,usbFile);
+                        // 分段录制时移动所有分段和播放列表
+                        for (File file : SegmentPlaylist.filesOf(sourceFile)) {
+                            moveFile(file, usbFile);
+                        }
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
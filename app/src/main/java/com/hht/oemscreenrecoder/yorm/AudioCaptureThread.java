@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import android.media.AudioRecord;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 单个 AudioRecord 的采集线程（MIC + INTERNAL 混合模式）
+ *
+ * 每个源在自己的线程里阻塞读取，读到的数据立即写入 {@link AudioMixer} 中该源的 FIFO，
+ * 编码线程只从 mixer 取已经到达的数据，一个源读取变慢不会再拖住另一个源和编码器输入。
+ * 读取出错或返回 0 时不退出（与原先同线程读取时的处理一致，下次读取可能恢复），退避 {@link #ERROR_RETRY_MS}
+ * 后重试，期间 mixer 用静音补齐该源；由编码线程根据
+ * {@link #isFailing()} 判断是否两路都已失效。
+ */
+final class AudioCaptureThread extends Thread {
+    private static final String TAG = "AudioCaptureThread";
+    private static final long ERROR_RETRY_MS = 10;
+
+    /**
+     * 每次写入 mixer 后回调（在采集线程中），用于唤醒编码线程
+     */
+    interface Listener {
+        void onCaptured(AudioCaptureThread thread);
+    }
+
+    private final String mSource;
+    private final AudioRecord mRecord;
+    private final short[] mBuffer;
+    private final AudioMixer mMixer;
+    private final int mMixerSource;
+    private final Listener mListener;
+
+    private volatile boolean mStopRequested = false;
+    private volatile boolean mFailing = false;
+    private volatile int mLastError = 0;
+
+    // 统计信息（只由采集线程写入）
+    private volatile long mReadCount = 0;
+    private volatile long mErrorCount = 0;
+    private volatile long mEmptyReadCount = 0;
+    private final LatencyHistogram mReadTime = new LatencyHistogram();
+    private final LatencyHistogram mSharedReadTime;     // 所有音频源共用（暂停恢复重建线程后继续累计）
+
+    AudioCaptureThread(String source, AudioRecord record, short[] buffer,
+                       AudioMixer mixer, int mixerSource, LatencyHistogram sharedReadTime, Listener listener) {
+        super("AudioCapture-" + source);
+        mSource = source;
+        mRecord = record;
+        mBuffer = buffer;
+        mMixer = mixer;
+        mMixerSource = mixerSource;
+        mSharedReadTime = sharedReadTime;
+        mListener = listener;
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        Log.d(TAG, "[" + mSource + "] capture thread started, buffer=" + mBuffer.length);
+        while (!mStopRequested) {
+            final long startNs = SystemClock.elapsedRealtimeNanos();
+            final int read = mRecord.read(mBuffer, 0, mBuffer.length);
+            final long readDoneNs = SystemClock.elapsedRealtimeNanos();
+            if (mStopRequested) break;
+
+            if (read > 0) {
+                mReadTime.record(readDoneNs - startNs);
+                mSharedReadTime.record(readDoneNs - startNs);
+                mReadCount++;
+                mFailing = false;
+                mMixer.write(mMixerSource, mBuffer, read, readDoneNs);
+                if (mListener != null) {
+                    mListener.onCaptured(this);
+                }
+            } else {
+                // read == 0：AudioRecord 被系统停止或失去播放捕获权限时立即返回，同样退避，否则会以最高优先级空转
+                if (!mFailing || read != mLastError) {
+                    if (read == 0) {
+                        Log.w(TAG, "[" + mSource + "] READ RETURNED 0 (record stopped or capture revoked)");
+                    } else {
+                        Log.e(TAG, "[" + mSource + "] READ ERROR code=" + read +
+                                " (-1=ERROR, -2=BAD_VALUE, -3=INVALID_OPERATION, -6=DEAD_OBJECT)");
+                    }
+                }
+                if (read == 0) {
+                    mEmptyReadCount++;
+                } else {
+                    mErrorCount++;
+                }
+                mLastError = read;
+                mFailing = true;
+                if (mListener != null) {
+                    mListener.onCaptured(this);
+                }
+                SystemClock.sleep(ERROR_RETRY_MS);
+            }
+        }
+        Log.d(TAG, "[" + mSource + "] capture thread exit, " + this);
+    }
+
+    /**
+     * 请求停止，之后需要 stop AudioRecord 让阻塞中的 read 返回
+     */
+    void requestStop() {
+        mStopRequested = true;
+    }
+
+    /**
+     * 请求停止并等待线程退出
+     */
+    void stopAndJoin(long timeoutMs) {
+        requestStop();
+        try {
+            join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (isAlive()) {
+            Log.w(TAG, "[" + mSource + "] capture thread did not exit in " + timeoutMs + "ms");
+        }
+    }
+
+    String getSource() {
+        return mSource;
+    }
+
+    /** 最近一次读取失败（且之后没有成功读取） */
+    boolean isFailing() {
+        return mFailing;
+    }
+
+    int getLastError() {
+        return mLastError;
+    }
+
+    long getErrorCount() {
+        return mErrorCount;
+    }
+
+    /** 单次阻塞读取耗时分布 */
+    LatencyHistogram getReadTime() {
+        return mReadTime;
+    }
+
+    @Override
+    public String toString() {
+        return mSource + "{reads=" + mReadCount
+                + ", errors=" + mErrorCount
+                + ", emptyReads=" + mEmptyReadCount
+                + ", readTime[" + mReadTime + "]"
+                + ", queueLatency[" + mMixer.getQueueLatency(mMixerSource) + "]}";
+    }
+}
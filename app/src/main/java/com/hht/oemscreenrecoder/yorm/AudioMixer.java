@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多路音频源的对齐缓冲（抖动缓冲）
+ *
+ * 每个输入源可以有自己的采样率和声道数，写入时先做声道转换和重采样，统一成输出格式后放入该源的 FIFO。
+ * 输出时按"时间线"对齐：每个源按采集时间戳计算自己在时间线上的位置，首次写入晚于时间线零点、
+ * 或中途出现超过 {@link #GAP_THRESHOLD_MS} 的空洞（AudioRecord 溢出丢数据）时补静音；
+ * {@link #pull} 只输出所有源都已到达的部分，不再按两路中较短的一路截断。
+ * 某一路落后超过 maxLatencyMs 时不再等待，落后的部分用静音输出，之后迟到的数据按时间线丢弃相应帧数，
+ * 保证各路始终对齐。
+ *
+ * 线程约束：每个源的 write 只能由一个线程调用（不同源可以在不同线程），pull 只能由一个线程调用。
+ * 纯 Java 实现
+ */
+final class AudioMixer {
+
+    /** 相邻两次写入的时间戳与预期位置相差超过该值时视为丢数据，补静音 */
+    static final int GAP_THRESHOLD_MS = 100;
+    /** 每个源的 FIFO 容量 */
+    private static final int FIFO_MS = 1000;
+
+    private static final int PAD_CHUNK_FRAMES = 1024;
+    private static final long NO_ORIGIN = Long.MIN_VALUE;
+
+    private final int mOutRate;
+    private final int mOutChannels;
+    private final int mMaxLatencyFrames;
+    private final int mGapThresholdFrames;
+    private final List<Source> mSources = new ArrayList<>();
+    // 时间线零点（第一个写入的源的第一帧采集时间），多个写线程竞争设置
+    private final AtomicLong mOriginNs = new AtomicLong(NO_ORIGIN);
+
+    private static final class Source {
+        final int channels;
+        final PolyphaseResampler resampler;
+        // 先下混再重采样（声道变少时），否则先重采样再上混，减少计算量
+        final boolean downmixFirst;
+        final PcmRingBuffer fifo;
+
+        // ===== 写线程 =====
+        short[] stage;
+        short[] converted;
+        // 已放到时间线上的帧数（数据 + 补的静音）
+        long timelineFrames = 0;
+        boolean started = false;
+
+        // ===== 读线程 =====
+        // 已输出为静音、尚未被实际数据抵消的帧数
+        long debtFrames = 0;
+
+        // ===== 统计 =====
+        volatile long writtenFrames = 0;
+        volatile long paddedFrames = 0;
+        volatile long gapCount = 0;
+        volatile long underrunFrames = 0;
+        volatile long droppedFrames = 0;
+        // 最近一次写入的读取完成时刻，用于估算采集到送出的延迟
+        volatile long lastReadDoneNs = 0;
+        final LatencyHistogram queueLatency = new LatencyHistogram();
+        // 补静音时 FIFO 放不下的帧数，由读线程直接抵消欠账（都是静音，先后顺序无关）
+        final AtomicLong padCredit = new AtomicLong();
+
+        Source(int sampleRate, int channels, int outRate, int outChannels) {
+            this.channels = channels;
+            this.downmixFirst = channels > outChannels;
+            this.resampler = new PolyphaseResampler(sampleRate, outRate, Math.min(channels, outChannels));
+            this.fifo = PcmRingBuffer.forDuration(outRate, outChannels, FIFO_MS);
+        }
+    }
+
+    /**
+     * @param outRate 输出采样率
+     * @param outChannels 输出声道数
+     * @param maxLatencyMs 等待落后源的最长时间，超过后落后部分以静音输出
+     */
+    AudioMixer(int outRate, int outChannels, int maxLatencyMs) {
+        if (outRate <= 0 || outChannels <= 0 || maxLatencyMs < 0 || maxLatencyMs >= FIFO_MS) {
+            throw new IllegalArgumentException("outRate=" + outRate + ", outChannels=" + outChannels
+                    + ", maxLatencyMs=" + maxLatencyMs);
+        }
+        mOutRate = outRate;
+        mOutChannels = outChannels;
+        mMaxLatencyFrames = (int) ((long) outRate * maxLatencyMs / 1000);
+        mGapThresholdFrames = (int) ((long) outRate * GAP_THRESHOLD_MS / 1000);
+    }
+
+    /**
+     * 添加一个输入源，必须在开始写入之前调用
+     *
+     * @return 源编号，即 {@link #pull} 输出数组的下标
+     */
+    int addSource(int sampleRate, int channelCount) {
+        if (channelCount <= 0) {
+            throw new IllegalArgumentException("channelCount=" + channelCount);
+        }
+        mSources.add(new Source(sampleRate, channelCount, mOutRate, mOutChannels));
+        return mSources.size() - 1;
+    }
+
+    int getSourceCount() {
+        return mSources.size();
+    }
+
+    /**
+     * 写入一块 PCM
+     *
+     * @param source 源编号
+     * @param pcm 交错 PCM（源的声道数）
+     * @param samples 采样数（所有声道合计）
+     * @param readDoneNs 读取完成的时刻（elapsedRealtimeNanos），≤0 表示未知，直接追加不做时间对齐
+     */
+    void write(int source, short[] pcm, int samples, long readDoneNs) {
+        final Source s = mSources.get(source);
+        final int inFrames = samples / s.channels;
+        if (inFrames <= 0) return;
+
+        final int ch = mOutChannels;
+        final int outFrames = convert(s, pcm, inFrames);
+        int skip = 0;
+        if (readDoneNs > 0) {
+            // 本块第一帧的采集时间
+            long captureNs = readDoneNs - (long) inFrames * 1_000_000_000L / s.resampler.getInRate();
+            skip = alignTimeline(s, captureNs, outFrames);
+        }
+        s.started = true;
+        s.lastReadDoneNs = readDoneNs;
+
+        final int frames = outFrames - skip;
+        if (frames <= 0) return;
+        int written = s.fifo.write(s.converted, skip * ch, frames * ch) / ch;
+        s.timelineFrames += frames;
+        s.writtenFrames += written;
+        if (written < frames) {
+            // FIFO 溢出（读线程长时间未取数据），这部分数据丢失
+            s.droppedFrames += frames - written;
+        }
+    }
+
+    /**
+     * 取出所有源对齐后的数据
+     *
+     * @param dst 每个源一个输出数组（输出格式），长度至少 maxFrames * 输出声道数
+     * @param maxFrames 最多取出的帧数
+     * @return 取出的帧数，各源相同；0 表示还需要等待
+     */
+    int pull(short[][] dst, int maxFrames) {
+        return pull(dst, maxFrames, 0);
+    }
+
+    /**
+     * 取出所有源对齐后的数据，并按 nowNs 统计各源的采集到送出延迟（{@link #getQueueLatency}）
+     *
+     * @param nowNs 当前时刻（与 write 的 readDoneNs 同一时基），≤0 表示不统计
+     */
+    int pull(short[][] dst, int maxFrames, long nowNs) {
+        final int count = mSources.size();
+        if (count == 0) return 0;
+        final int ch = mOutChannels;
+
+        int minAvail = Integer.MAX_VALUE;
+        int maxAvail = 0;
+        for (int i = 0; i < count; i++) {
+            Source s = mSources.get(i);
+            int avail = settleDebt(s);
+            minAvail = Math.min(minAvail, avail);
+            maxAvail = Math.max(maxAvail, avail);
+        }
+
+        // 所有源都到达的部分直接输出；最快的源领先超过最大延迟时，落后的源用静音补足
+        int n = Math.max(minAvail, maxAvail - mMaxLatencyFrames);
+        n = Math.min(n, maxFrames);
+        if (n <= 0) return 0;
+
+        for (int i = 0; i < count; i++) {
+            Source s = mSources.get(i);
+            short[] out = dst[i];
+            int got = s.fifo.read(out, 0, n * ch) / ch;
+            if (got < n) {
+                Arrays.fill(out, got * ch, n * ch, (short) 0);
+                s.debtFrames += n - got;
+                s.underrunFrames += n - got;
+            } else if (nowNs > 0) {
+                long readDoneNs = s.lastReadDoneNs;
+                if (readDoneNs > 0) {
+                    // 本次取出的最后一帧之后还剩 remaining 帧，最新一块在 readDoneNs 读完
+                    long remaining = s.fifo.available() / 2 / ch;
+                    s.queueLatency.record(nowNs - readDoneNs + remaining * 1_000_000_000L / mOutRate);
+                }
+            }
+        }
+        return n;
+    }
+
+    /** 某个源当前可输出的帧数 */
+    int available(int source) {
+        Source s = mSources.get(source);
+        return (int) Math.max(0, s.fifo.available() / 2 / mOutChannels - s.debtFrames);
+    }
+
+    /**
+     * 清空所有源的缓冲和时间线（暂停恢复后重新对齐）
+     * 只能在写线程和读线程都停止时调用
+     */
+    void reset() {
+        mOriginNs.set(NO_ORIGIN);
+        for (Source s : mSources) {
+            s.fifo.clear();
+            s.resampler.reset();
+            s.timelineFrames = 0;
+            s.started = false;
+            s.debtFrames = 0;
+            s.padCredit.set(0);
+        }
+    }
+
+    long getUnderrunFrames(int source) {
+        return mSources.get(source).underrunFrames;
+    }
+
+    long getPaddedFrames(int source) {
+        return mSources.get(source).paddedFrames;
+    }
+
+    long getGapCount(int source) {
+        return mSources.get(source).gapCount;
+    }
+
+    long getDroppedFrames(int source) {
+        return mSources.get(source).droppedFrames;
+    }
+
+    /** 某个源从读取完成到被取出送往编码器的延迟分布 */
+    LatencyHistogram getQueueLatency(int source) {
+        return mSources.get(source).queueLatency;
+    }
+
+    /**
+     * 声道转换 + 重采样，结果放在 s.converted
+     *
+     * @return 输出帧数
+     */
+    private int convert(Source s, short[] pcm, int inFrames) {
+        final int midChannels = Math.min(s.channels, mOutChannels);
+        final int maxOut = s.resampler.maxOutputFrames(inFrames);
+        s.stage = ensureCapacity(s.stage, Math.max(inFrames, maxOut) * Math.max(s.channels, mOutChannels));
+        s.converted = ensureCapacity(s.converted, maxOut * mOutChannels);
+
+        if (s.downmixFirst) {
+            PcmUtils.convertChannels(pcm, inFrames, s.channels, s.stage, midChannels);
+            return s.resampler.process(s.stage, inFrames, s.converted);
+        }
+        if (s.channels == mOutChannels) {
+            return s.resampler.process(pcm, inFrames, s.converted);
+        }
+        int frames = s.resampler.process(pcm, inFrames, s.stage);
+        PcmUtils.convertChannels(s.stage, frames, s.channels, s.converted, mOutChannels);
+        return frames;
+    }
+
+    /**
+     * 按采集时间把本块放到时间线上：晚到（前面有空洞）补静音，早到（采集时间早于零点）丢弃开头
+     *
+     * @return 需要丢弃的开头帧数
+     */
+    private int alignTimeline(Source s, long captureNs, int outFrames) {
+        mOriginNs.compareAndSet(NO_ORIGIN, captureNs);
+        final long expected = (captureNs - mOriginNs.get()) * mOutRate / 1_000_000_000L;
+        final long diff = expected - s.timelineFrames;
+
+        if (!s.started) {
+            if (diff > 0) {
+                pad(s, diff);
+            } else if (diff < 0) {
+                // 采集时间早于时间线零点的部分不输出
+                int drop = (int) Math.min(-diff, outFrames);
+                s.droppedFrames += drop;
+                return drop;
+            }
+        } else if (diff > mGapThresholdFrames) {
+            // 中途丢数据：补上丢失的时长，保持与其他源对齐
+            pad(s, diff);
+            s.gapCount++;
+        }
+        return 0;
+    }
+
+    private void pad(Source s, long frames) {
+        final int ch = mOutChannels;
+        // s.converted 保存着本块数据，静音借用 s.stage
+        s.stage = ensureCapacity(s.stage, PAD_CHUNK_FRAMES * ch);
+        final short[] zeros = s.stage;
+        Arrays.fill(zeros, 0, PAD_CHUNK_FRAMES * ch, (short) 0);
+        long remaining = frames;
+        int free;
+        while (remaining > 0 && (free = s.fifo.free() / 2 / ch) > 0) {
+            int chunk = (int) Math.min(remaining, Math.min(PAD_CHUNK_FRAMES, free));
+            s.fifo.write(zeros, 0, chunk * ch);
+            remaining -= chunk;
+        }
+        if (remaining > 0) {
+            // 空洞比 FIFO 还长：这期间读线程早已按最大延迟用静音输出了该源，剩余部分直接抵消欠账
+            s.padCredit.addAndGet(remaining);
+        }
+        s.timelineFrames += frames;
+        s.paddedFrames += frames;
+    }
+
+    /**
+     * 读线程：用新到达的数据抵消之前以静音输出的帧
+     *
+     * @return 抵消后可输出的帧数
+     */
+    private int settleDebt(Source s) {
+        final int ch = mOutChannels;
+        // 超出 FIFO 的补静音只用于抵消欠账，没有欠账时丢弃
+        long credit = s.padCredit.getAndSet(0);
+        if (credit > 0 && s.debtFrames > 0) {
+            s.debtFrames -= Math.min(credit, s.debtFrames);
+        }
+        int avail = s.fifo.available() / 2 / ch;
+        if (s.debtFrames > 0 && avail > 0) {
+            int skip = (int) Math.min(s.debtFrames, avail);
+            s.fifo.skip(skip * ch * 2);
+            s.debtFrames -= skip;
+            avail -= skip;
+        }
+        return avail;
+    }
+
+    private static short[] ensureCapacity(short[] buf, int size) {
+        return buf != null && buf.length >= size ? buf : new short[size];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("AudioMixer{");
+        for (int i = 0; i < mSources.size(); i++) {
+            Source s = mSources.get(i);
+            if (i > 0) sb.append(", ");
+            sb.append('#').append(i)
+                    .append("(fill=").append(available(i))
+                    .append(", padded=").append(s.paddedFrames)
+                    .append(", gaps=").append(s.gapCount)
+                    .append(", underrun=").append(s.underrunFrames)
+                    .append(", dropped=").append(s.droppedFrames)
+                    .append(", latency[").append(s.queueLatency).append(']')
+                    .append(')');
+        }
+        return sb.append('}').toString();
+    }
+}
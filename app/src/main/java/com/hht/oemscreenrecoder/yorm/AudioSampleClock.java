@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+/**
+ * 基于采样数的音频 PTS 时钟（带漂移校正）
+ *
+ * PTS 由累计采样数推算，相邻两帧的间隔严格等于帧时长（再加上一个很小的校正量），
+ * 因此不会像墙钟模式那样随读取时刻抖动。参考时间优先取 AudioRecord.getTimestamp() 给出的
+ * (framePosition, nanoTime) 锚点，没有锚点时退化为"读取完成时刻 - 帧时长"。
+ *
+ * 校正方式类似软件 PLL：每帧比较预测 PTS 与参考时间的误差，用比例项微调下一帧的步长、
+ * 用积分项跟踪采样率的长期偏差。单帧校正量不超过帧时长的 {@link #MAX_SLEW_RATIO}，
+ * 所以 PTS 始终单调递增、没有跳变；误差超过 {@link #DEFAULT_RESYNC_THRESHOLD_NS}
+ * （例如读取线程被长时间阻塞、AudioRecord 溢出丢数据）时直接重新对齐。
+ *
+ * 所有时间均为 elapsedRealtimeNanos 时基（纳秒），由调用者传入，便于单元测试。纯 Java 实现
+ */
+final class AudioSampleClock {
+
+    /** 比例增益：每帧消除误差的比例 */
+    static final double KP = 0.05;
+    /** 积分增益：用于跟踪采样率偏差 */
+    static final double KI = 0.002;
+    /** 单帧最大校正量（相对帧时长） */
+    static final double MAX_SLEW_RATIO = 0.05;
+    /** 采样率偏差估计上限（±0.5%） */
+    static final double MAX_FREQ_OFFSET = 0.005;
+    /** 误差超过该值时重新对齐（200ms） */
+    static final long DEFAULT_RESYNC_THRESHOLD_NS = 200_000_000L;
+
+    private final int mSampleRate;
+    private final long mOriginNs;
+    private final long mResyncThresholdNs;
+
+    private boolean mStarted = false;
+    private boolean mNeedResync = false;
+    private boolean mPaused = false;
+
+    // 下一帧的预测起始时间（纳秒，double 以免长时间累积截断误差）
+    private double mNextPtsNs;
+    private long mLastPtsNs = Long.MIN_VALUE;
+    // 采样率偏差估计（无量纲，正值表示实际采样时钟偏慢）
+    private double mFreqOffset = 0;
+    // 从 AudioRecord 读取（或跳过）的累计帧数
+    private long mFramesRead = 0;
+
+    // AudioRecord.getTimestamp() 锚点
+    private boolean mAnchored = false;
+    private long mAnchorFrame;
+    private long mAnchorNs;
+    // 已采集但没有计入 mFramesRead 的帧数（锚点帧位置 - 送入帧数），恢复录制后按当前预测重新确定
+    private long mAnchorOffsetFrames = 0;
+    private boolean mRebaseAnchor = false;
+
+    // 统计信息
+    private long mResyncCount = 0;
+    private long mLastErrorNs = 0;
+    private long mMaxAbsErrorNs = 0;
+
+    /**
+     * @param sampleRate 采样率（每声道）
+     * @param originNs PTS 零点对应的时间（录制开始的 elapsedRealtimeNanos）
+     */
+    AudioSampleClock(int sampleRate, long originNs) {
+        this(sampleRate, originNs, DEFAULT_RESYNC_THRESHOLD_NS);
+    }
+
+    AudioSampleClock(int sampleRate, long originNs, long resyncThresholdNs) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("sampleRate=" + sampleRate);
+        }
+        mSampleRate = sampleRate;
+        mOriginNs = originNs;
+        mResyncThresholdNs = resyncThresholdNs;
+    }
+
+    /**
+     * 更新锚点（来自 AudioRecord.getTimestamp，TIMEBASE_BOOTTIME）
+     *
+     * @param framePosition 锚点对应的帧位置（从 AudioRecord 开始录制算起）
+     * @param nanoTime 该帧被采集的时间
+     */
+    void updateAnchor(long framePosition, long nanoTime) {
+        mAnchorFrame = framePosition;
+        mAnchorNs = nanoTime;
+        mAnchored = true;
+    }
+
+    /**
+     * 计算下一帧（frames 帧）的 PTS 并推进时钟
+     *
+     * @param frames 本帧包含的帧数（每声道采样数），0 表示只取当前 PTS（如 EOS）
+     * @param nowNs 读取完成的时刻
+     * @return PTS（微秒，相对 originNs）
+     */
+    long nextPtsUs(int frames, long nowNs) {
+        final double frameNs = 1e9 / mSampleRate;
+        final double chunkNs = frames * frameNs;
+        final double referenceNs = referenceStartNs(nowNs, chunkNs, frameNs);
+
+        double errorNs = 0;
+        if (!mStarted || mNeedResync) {
+            resyncTo(referenceNs);
+            mStarted = true;
+            mNeedResync = false;
+        } else {
+            errorNs = referenceNs - mNextPtsNs;
+            if (Math.abs(errorNs) > mResyncThresholdNs) {
+                resyncTo(referenceNs);
+                mResyncCount++;
+                errorNs = 0;
+            }
+        }
+        mLastErrorNs = (long) errorNs;
+        mMaxAbsErrorNs = Math.max(mMaxAbsErrorNs, Math.abs(mLastErrorNs));
+
+        long ptsNs = (long) mNextPtsNs;
+        if (ptsNs <= mLastPtsNs) {
+            // 重新对齐后仍保证严格单调
+            ptsNs = mLastPtsNs + 1000;
+        }
+        mLastPtsNs = ptsNs;
+
+        if (frames > 0) {
+            advance(frames, chunkNs, errorNs);
+        }
+        return (ptsNs - mOriginNs) / 1000;
+    }
+
+    /**
+     * 跳过 frames 帧（已采集但不送编码器，如降采样静音模式丢弃的帧、积压缓冲区溢出丢弃的帧），PTS 相应前移；
+     * 锚点的帧位置包含这些帧，不上报会被当作时钟误差慢慢校正成固定的音画偏移
+     */
+    void skip(int frames) {
+        if (frames <= 0 || !mStarted) {
+            mFramesRead += Math.max(frames, 0);
+            return;
+        }
+        final double chunkNs = frames * 1e9 / mSampleRate;
+        mNextPtsNs += chunkNs * (1 + mFreqOffset);
+        mFramesRead += frames;
+    }
+
+    /**
+     * 暂停：暂停期间读取的数据不再计入，恢复后重新对齐到参考时间
+     */
+    void pause() {
+        mPaused = true;
+    }
+
+    /**
+     * 恢复：下一帧重新对齐，旧锚点失效（AudioRecord 可能已停止过）；
+     * 暂停期间采集、清空的帧没有计入，新锚点到来时按当前预测重新确定锚点偏移
+     */
+    void resume() {
+        if (!mPaused) return;
+        mPaused = false;
+        mNeedResync = true;
+        mAnchored = false;
+        mRebaseAnchor = true;
+    }
+
+    boolean isPaused() {
+        return mPaused;
+    }
+
+    long getResyncCount() {
+        return mResyncCount;
+    }
+
+    long getLastErrorNs() {
+        return mLastErrorNs;
+    }
+
+    long getMaxAbsErrorNs() {
+        return mMaxAbsErrorNs;
+    }
+
+    /** 采样率偏差估计（ppm） */
+    double getFreqOffsetPpm() {
+        return mFreqOffset * 1e6;
+    }
+
+    long getFramesRead() {
+        return mFramesRead;
+    }
+
+    private double referenceStartNs(long nowNs, double chunkNs, double frameNs) {
+        if (mAnchored && !mNeedResync) {
+            if (mRebaseAnchor) {
+                // 恢复后的第一个锚点：让锚点推算的参考时间与当前预测一致，此后只跟踪采样率偏差
+                mAnchorOffsetFrames = mAnchorFrame - mFramesRead
+                        + Math.round((mNextPtsNs - mAnchorNs) / frameNs);
+                mRebaseAnchor = false;
+            }
+            // 本帧第一个采样的采集时间 = 锚点时间 + (累计帧数 + 未计入帧数 - 锚点帧位置) * 帧时长
+            return mAnchorNs + (mFramesRead + mAnchorOffsetFrames - mAnchorFrame) * frameNs;
+        }
+        // 没有锚点：本帧刚读完，认为第一个采样在一个帧时长之前被采集
+        return nowNs - chunkNs;
+    }
+
+    private void resyncTo(double referenceNs) {
+        mNextPtsNs = referenceNs;
+        mFreqOffset = 0;
+    }
+
+    private void advance(int frames, double chunkNs, double errorNs) {
+        // 积分项：误差按帧时长归一化后累积为采样率偏差
+        mFreqOffset += KI * errorNs / chunkNs;
+        if (mFreqOffset > MAX_FREQ_OFFSET) {
+            mFreqOffset = MAX_FREQ_OFFSET;
+        } else if (mFreqOffset < -MAX_FREQ_OFFSET) {
+            mFreqOffset = -MAX_FREQ_OFFSET;
+        }
+        // 比例项：限制单帧校正量，保证步长始终为正、没有可感知的跳变
+        double slew = KP * errorNs;
+        double maxSlew = MAX_SLEW_RATIO * chunkNs;
+        if (slew > maxSlew) {
+            slew = maxSlew;
+        } else if (slew < -maxSlew) {
+            slew = -maxSlew;
+        }
+        mNextPtsNs += chunkNs * (1 + mFreqOffset) + slew;
+        mFramesRead += frames;
+    }
+
+    @Override
+    public String toString() {
+        return "AudioSampleClock{framesRead=" + mFramesRead
+                + ", anchored=" + mAnchored
+                + ", anchorOffset=" + mAnchorOffsetFrames
+                + ", lastErrorUs=" + mLastErrorNs / 1000
+                + ", maxAbsErrorUs=" + mMaxAbsErrorNs / 1000
+                + ", freqOffsetPpm=" + (long) getFreqOffsetPpm()
+                + ", resyncs=" + mResyncCount + '}';
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 音频源信号探测：判断刚启动的 AudioRecord 能否读到有效（非静音）数据，信号足够时提前结束，
+ * 探测期间读到的采样保留下来，作为录制的第一段音频送入编码器，不再丢弃
+ *
+ * 判定规则：峰值 >= {@link #PEAK_THRESHOLD}，或非零采样占比 >= {@link #ACTIVE_PERCENT_THRESHOLD}%
+ * 且非零采样的平均幅度 >= {@link #ACTIVE_AVERAGE_THRESHOLD}。峰值条件一旦满足立即通过；
+ * 占比/均值条件至少积累 minSamples 个采样后才判定，避免被开头几个采样左右；累计 maxSamples 个采样仍不满足则失败。
+ * 纯 Java 实现，非线程安全
+ */
+final class AudioSignalProbe {
+    static final int PENDING = 0;
+    static final int PASSED = 1;
+    static final int FAILED = 2;
+
+    // 正常语音信号幅度在几百到几千（16 位 PCM），低于该峰值视为极弱噪声或静音
+    static final int PEAK_THRESHOLD = 200;
+    // 持续的低音量背景音：非零采样占比和平均幅度
+    static final int ACTIVE_PERCENT_THRESHOLD = 30;
+    static final int ACTIVE_AVERAGE_THRESHOLD = 50;
+
+    private final int mMinSamples;
+    private final short[] mSamples;
+    private int mCount = 0;
+    private int mState = PENDING;
+
+    private int mPeak = 0;
+    private int mNonZero = 0;
+    private long mSumAbs = 0;
+
+    /**
+     * @param minSamples 按占比/均值判定前至少需要的采样数（所有声道合计）
+     * @param maxSamples 最多探测的采样数，也是保留的采样上限
+     */
+    AudioSignalProbe(int minSamples, int maxSamples) {
+        if (maxSamples <= 0 || minSamples > maxSamples) {
+            throw new IllegalArgumentException("minSamples=" + minSamples + ", maxSamples=" + maxSamples);
+        }
+        mMinSamples = Math.max(1, minSamples);
+        mSamples = new short[maxSamples];
+    }
+
+    /**
+     * 追加一次读取的数据（超出 maxSamples 的部分忽略）并更新判定
+     *
+     * @return 判定结果 {@link #PENDING} / {@link #PASSED} / {@link #FAILED}
+     */
+    int offer(short[] pcm, int count) {
+        if (mState != PENDING) {
+            return mState;
+        }
+        int n = Math.min(Math.max(count, 0), mSamples.length - mCount);
+        for (int i = 0; i < n; i++) {
+            short v = pcm[i];
+            if (v != 0) {
+                int abs = Math.abs((int) v);
+                mNonZero++;
+                mSumAbs += abs;
+                if (abs > mPeak) mPeak = abs;
+            }
+        }
+        System.arraycopy(pcm, 0, mSamples, mCount, n);
+        mCount += n;
+
+        if (mPeak >= PEAK_THRESHOLD || (mCount >= mMinSamples && isActive())) {
+            mState = PASSED;
+        } else if (mCount >= mSamples.length) {
+            mState = FAILED;
+        }
+        return mState;
+    }
+
+    /**
+     * 读取结束（出错或达到读取次数上限）时按已有的采样给出最终判定
+     */
+    int finish() {
+        if (mState == PENDING) {
+            mState = mCount > 0 && (mPeak >= PEAK_THRESHOLD || isActive()) ? PASSED : FAILED;
+        }
+        return mState;
+    }
+
+    private boolean isActive() {
+        return getNonZeroPercent() >= ACTIVE_PERCENT_THRESHOLD && getAverage() >= ACTIVE_AVERAGE_THRESHOLD;
+    }
+
+    int getState() {
+        return mState;
+    }
+
+    /**
+     * @return 探测期间读到的采样（副本）
+     */
+    short[] getSamples() {
+        return Arrays.copyOf(mSamples, mCount);
+    }
+
+    int getSampleCount() {
+        return mCount;
+    }
+
+    int getPeak() {
+        return mPeak;
+    }
+
+    int getNonZeroPercent() {
+        return mCount == 0 ? 0 : (int) (mNonZero * 100L / mCount);
+    }
+
+    /**
+     * @return 非零采样的平均幅度
+     */
+    int getAverage() {
+        return mNonZero == 0 ? 0 : (int) (mSumAbs / mNonZero);
+    }
+
+    @Override
+    public String toString() {
+        String state = mState == PASSED ? "PASSED" : mState == FAILED ? "FAILED" : "PENDING";
+        return String.format(Locale.US, "%s samples=%d, peak=%d, nonZero=%d%%, avg=%d",
+                state, mCount, mPeak, getNonZeroPercent(), getAverage());
+    }
+}
@@ -66,13 +66,7 @@ abstract class BaseEncoder implements Encoder {
      */
     @Override
     public void prepare() throws IOException {
-        if (Looper.myLooper() == null
-                || Looper.myLooper() == Looper.getMainLooper()) {
-            throw new IllegalStateException("should run in a HandlerThread");
-        }
-        if (mEncoder != null) {
-            throw new IllegalStateException("prepared!");
-        }
+        checkCanPrepare();
         MediaFormat format = createMediaFormat();
         Log.d("Encoder", "Create media format: " + format);
 
@@ -86,13 +80,39 @@ abstract class BaseEncoder implements Encoder {
             encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
             onEncoderConfigured(encoder);
             encoder.start();
-        } catch (MediaCodec.CodecException e) {
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // CodecException 是 IllegalStateException 的子类；不支持的格式会抛 IllegalArgumentException
             Log.e("Encoder", "Configure codec failure!\n  with format" + format, e);
+            // 释放失败的实例，调用者可能换一种方式（如轮询模式）重新 prepare
+            encoder.release();
             throw e;
         }
         mEncoder = encoder;
     }
 
+    /**
+     * prepare 的调用前提：必须在 HandlerThread 中调用，且尚未 prepare
+     *
+     * @throws IllegalStateException 不满足前提时
+     */
+    protected final void checkCanPrepare() {
+        if (Looper.myLooper() == null
+                || Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("should run in a HandlerThread");
+        }
+        if (mEncoder != null) {
+            throw new IllegalStateException("prepared!");
+        }
+    }
+
+    /**
+     * 更换编码器名称（如回退到另一种编码格式时），需在 prepare 之前调用
+     */
+    void setCodecName(String codecName) {
+        if (mEncoder != null) throw new IllegalStateException("prepared!");
+        this.mCodecName = codecName;
+    }
+
     /**
      * call immediately after {@link #getEncoder() MediaCodec}
      * configure with {@link #createMediaFormat() MediaFormat} success
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.Locale;
+
+/**
+ * 视频码率的运行时控制策略（AIMD）
+ *
+ * 每个控制周期根据编码输出、muxer 写入情况和剩余空间给出新的目标码率：
+ * <ul>
+ *     <li>存储跟不上（写队列积压、生产者被阻塞或单次写入过慢）时按 {@link #DECREASE_FACTOR} 乘性下降，
+ *     之后 {@link #COOLDOWN_TICKS} 个周期内不上调；</li>
+ *     <li>编码器用满目标码率（输出 ≥ {@link #HIGH_UTILIZATION}）时按上限的 {@link #INCREASE_STEP_RATIO} 加性上调；</li>
+ *     <li>连续 {@link #LOW_UTILIZATION_TICKS} 个周期输出不到目标的 {@link #LOW_UTILIZATION}（静止画面）时
+ *     降到实际输出的 {@link #HEADROOM} 倍；画面变化后编码器再次用满目标码率时直接恢复到下降前的目标码率，
+ *     避免按加性步长爬升期间（4K 下约 20 秒）画面严重失真；</li>
+ *     <li>剩余空间不足以按当前码率再录 minRemainingSeconds 时，按剩余空间限制码率。</li>
+ * </ul>
+ * 结果限制在 [floor, ceiling]，变化小于 {@link #MIN_CHANGE_RATIO} 时不调整。纯 Java 实现，非线程安全
+ */
+final class BitrateController {
+    static final double DECREASE_FACTOR = 0.7;
+    static final double INCREASE_STEP_RATIO = 0.05;
+    static final double HIGH_UTILIZATION = 0.9;
+    static final double LOW_UTILIZATION = 0.5;
+    static final int LOW_UTILIZATION_TICKS = 3;
+    static final double HEADROOM = 2.0;
+    static final int COOLDOWN_TICKS = 3;
+    static final double MIN_CHANGE_RATIO = 0.05;
+    /** 写队列占用超过该比例视为存储跟不上 */
+    static final double QUEUE_HIGH = 0.5;
+    /** 平均单次写入耗时超过该值视为存储跟不上（30fps 下每帧约 33ms） */
+    static final long WRITE_TIME_HIGH_NS = 20_000_000L;
+
+    /**
+     * 一个控制周期的反馈，由调用者填写后传给 {@link #update}，可以复用
+     */
+    static final class Feedback {
+        /** 周期时长（毫秒） */
+        long intervalMs;
+        /** 周期内视频编码输出的字节数 */
+        long encodedBytes;
+        /** 周期内平均单次写入耗时（纳秒），未知时为 0 */
+        long meanWriteTimeNs;
+        /** 写队列占用比例（0~1） */
+        double queueFill;
+        /** 周期内生产者因队列满被阻塞的次数 */
+        long stalls;
+        /** 剩余存储空间（字节），<0 表示未知 */
+        long freeBytes = -1;
+    }
+
+    private final int mFloorBps;
+    private final int mCeilingBps;
+    private final long mReserveBytes;
+    private final long mMinRemainingSeconds;
+
+    private int mTargetBps;
+    private int mCooldown = 0;
+    private int mLowUtilizationTicks = 0;
+    // 静止画面降码率前的目标码率，画面变化后恢复到该值，0 表示没有待恢复的值
+    private int mRestoreBps = 0;
+
+    // 统计信息
+    private long mDecreaseCount = 0;
+    private long mIncreaseCount = 0;
+    private long mSpaceLimitedCount = 0;
+    private int mLastOutputBps = 0;
+
+    /**
+     * @param initialBps 初始目标码率
+     * @param floorBps 下限
+     * @param ceilingBps 上限
+     * @param reserveBytes 剩余空间中不能使用的部分（达到后录制会被停止）
+     * @param minRemainingSeconds 剩余空间至少要够录制的时长，<=0 表示不按剩余空间限制
+     */
+    BitrateController(int initialBps, int floorBps, int ceilingBps, long reserveBytes, long minRemainingSeconds) {
+        if (floorBps <= 0 || ceilingBps < floorBps) {
+            throw new IllegalArgumentException("floor=" + floorBps + ", ceiling=" + ceilingBps);
+        }
+        mFloorBps = floorBps;
+        mCeilingBps = ceilingBps;
+        mReserveBytes = reserveBytes;
+        mMinRemainingSeconds = minRemainingSeconds;
+        mTargetBps = clamp(initialBps);
+    }
+
+    int getTargetBps() {
+        return mTargetBps;
+    }
+
+    /**
+     * 运行一个控制周期
+     *
+     * @return 新的目标码率，与 {@link #getTargetBps()} 之前的值相同时表示不需要调整
+     */
+    int update(Feedback feedback) {
+        if (feedback.intervalMs <= 0) {
+            return mTargetBps;
+        }
+        final int outputBps = (int) Math.min(Integer.MAX_VALUE, feedback.encodedBytes * 8_000L / feedback.intervalMs);
+        mLastOutputBps = outputBps;
+        final double utilization = (double) outputBps / mTargetBps;
+
+        double next = mTargetBps;
+        if (isStoragePressured(feedback)) {
+            next = mTargetBps * DECREASE_FACTOR;
+            mCooldown = COOLDOWN_TICKS;
+            mLowUtilizationTicks = 0;
+            // 存储跟不上时不再恢复到静止前的码率
+            mRestoreBps = 0;
+            mDecreaseCount++;
+        } else if (utilization >= HIGH_UTILIZATION) {
+            mLowUtilizationTicks = 0;
+            if (mCooldown > 0) {
+                mCooldown--;
+            } else {
+                next = Math.max(mTargetBps + mCeilingBps * INCREASE_STEP_RATIO, mRestoreBps);
+                mRestoreBps = 0;
+                mIncreaseCount++;
+            }
+        } else {
+            if (mCooldown > 0) mCooldown--;
+            if (utilization < LOW_UTILIZATION && ++mLowUtilizationTicks >= LOW_UTILIZATION_TICKS) {
+                next = Math.min(next, outputBps * HEADROOM);
+                if (next < mTargetBps) {
+                    mRestoreBps = Math.max(mRestoreBps, mTargetBps);
+                }
+            } else if (utilization >= LOW_UTILIZATION) {
+                mLowUtilizationTicks = 0;
+            }
+        }
+
+        final long spaceLimit = spaceLimitedBps(feedback.freeBytes);
+        if (next > spaceLimit) {
+            next = spaceLimit;
+            mSpaceLimitedCount++;
+        }
+
+        final int clamped = clamp((long) next);
+        if (clamped != mTargetBps && (Math.abs(clamped - mTargetBps) >= mTargetBps * MIN_CHANGE_RATIO
+                || clamped == mFloorBps || clamped == mCeilingBps)) {
+            mTargetBps = clamped;
+        }
+        return mTargetBps;
+    }
+
+    private boolean isStoragePressured(Feedback feedback) {
+        return feedback.stalls > 0
+                || feedback.queueFill >= QUEUE_HIGH
+                || feedback.meanWriteTimeNs >= WRITE_TIME_HIGH_NS;
+    }
+
+    private long spaceLimitedBps(long freeBytes) {
+        if (freeBytes < 0 || mMinRemainingSeconds <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, freeBytes - mReserveBytes) * 8 / mMinRemainingSeconds;
+    }
+
+    private int clamp(long bps) {
+        return (int) Math.max(mFloorBps, Math.min(mCeilingBps, bps));
+    }
+
+    long getDecreaseCount() {
+        return mDecreaseCount;
+    }
+
+    long getIncreaseCount() {
+        return mIncreaseCount;
+    }
+
+    long getSpaceLimitedCount() {
+        return mSpaceLimitedCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "target=%dkbps, output=%dkbps, range=[%d, %d]kbps, decreases=%d, increases=%d, spaceLimited=%d",
+                mTargetBps / 1000, mLastOutputBps / 1000, mFloorBps / 1000, mCeilingBps / 1000,
+                mDecreaseCount, mIncreaseCount, mSpaceLimitedCount);
+    }
+}
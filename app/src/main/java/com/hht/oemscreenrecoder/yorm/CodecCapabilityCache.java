@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 编码器能力的磁盘缓存
+ *
+ * 枚举 MediaCodecList 并逐个查询 getCapabilitiesForType 需要几十到几百毫秒，而结果只随系统版本变化。
+ * 缓存以 Build.FINGERPRINT 为键写成紧凑的二进制文件，指纹不同（系统升级）或文件损坏时视为没有缓存。
+ * 写入先写临时文件再 rename，内容没有变化时不重写。纯 Java 实现
+ *
+ * 格式：magic "SCC1"、版本、指纹、编码器数，之后每个编码器依次为名称、MIME、标志、
+ * profile/level 对、颜色格式、码率范围、视频尺寸/对齐/帧率范围、各探测尺寸的最高帧率、
+ * 音频采样率列表/范围、最大声道数
+ */
+public final class CodecCapabilityCache {
+    public static final String FILE_NAME = "encoder_capabilities.bin";
+
+    private static final int MAGIC = 0x53434331; // "SCC1"
+    private static final int VERSION = 2;
+    private static final int MAX_ENCODERS = 256;
+    private static final int MAX_ARRAY = 4096;
+
+    private static final int FLAG_HARDWARE = 1;
+    private static final int FLAG_SOFTWARE_ONLY = 2;
+
+    private CodecCapabilityCache() {
+    }
+
+    /**
+     * @return 缓存的编码器（所有 MIME 类型），文件不存在、指纹不同或内容损坏时返回 null
+     */
+    static List<EncoderInfo> read(File file, String fingerprint) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return decode(readFully(file), fingerprint);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存，内容与现有文件相同时不写
+     *
+     * @return 是否写入了文件
+     */
+    static boolean write(File file, String fingerprint, List<EncoderInfo> encoders) throws IOException {
+        byte[] data = encode(fingerprint, encoders);
+        if (file.isFile()) {
+            try {
+                if (Arrays.equals(data, readFully(file))) {
+                    return false;
+                }
+            } catch (IOException ignored) {
+                // 重新写入
+            }
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("rename " + tmp + " failed");
+        }
+        return true;
+    }
+
+    static byte[] encode(String fingerprint, List<EncoderInfo> encoders) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(fingerprint);
+        out.writeShort(encoders.size());
+        for (EncoderInfo e : encoders) {
+            out.writeUTF(e.name);
+            out.writeUTF(e.mimeType);
+            out.writeByte((e.hardwareAccelerated ? FLAG_HARDWARE : 0) | (e.softwareOnly ? FLAG_SOFTWARE_ONLY : 0));
+            out.writeShort(e.profiles.length);
+            for (int i = 0; i < e.profiles.length; i++) {
+                out.writeInt(e.profiles[i]);
+                out.writeInt(e.levels[i]);
+            }
+            writeInts(out, e.colorFormats);
+            out.writeInt(e.bitrateMin);
+            out.writeInt(e.bitrateMax);
+            out.writeInt(e.widthMin);
+            out.writeInt(e.widthMax);
+            out.writeInt(e.heightMin);
+            out.writeInt(e.heightMax);
+            out.writeInt(e.widthAlignment);
+            out.writeInt(e.heightAlignment);
+            out.writeInt(e.frameRateMin);
+            out.writeInt(e.frameRateMax);
+            writeInts(out, e.probeSizes);
+            writeInts(out, e.maxFrameRates);
+            writeInts(out, e.performanceFrameRates);
+            writeInts(out, e.sampleRates);
+            out.writeInt(e.sampleRateMin);
+            out.writeInt(e.sampleRateMax);
+            out.writeInt(e.maxChannels);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return 指纹不同时返回 null
+     * @throws IOException 内容损坏
+     */
+    static List<EncoderInfo> decode(byte[] data, String fingerprint) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("bad header");
+            }
+            if (!fingerprint.equals(in.readUTF())) {
+                return null;
+            }
+            int count = checkCount(in.readUnsignedShort(), MAX_ENCODERS);
+            List<EncoderInfo> encoders = new ArrayList<>(count);
+            for (int n = 0; n < count; n++) {
+                EncoderInfo e = new EncoderInfo();
+                e.name = in.readUTF();
+                e.mimeType = in.readUTF();
+                int flags = in.readUnsignedByte();
+                e.hardwareAccelerated = (flags & FLAG_HARDWARE) != 0;
+                e.softwareOnly = (flags & FLAG_SOFTWARE_ONLY) != 0;
+                int levels = checkCount(in.readUnsignedShort(), MAX_ARRAY);
+                e.profiles = new int[levels];
+                e.levels = new int[levels];
+                for (int i = 0; i < levels; i++) {
+                    e.profiles[i] = in.readInt();
+                    e.levels[i] = in.readInt();
+                }
+                e.colorFormats = readInts(in);
+                e.bitrateMin = in.readInt();
+                e.bitrateMax = in.readInt();
+                e.widthMin = in.readInt();
+                e.widthMax = in.readInt();
+                e.heightMin = in.readInt();
+                e.heightMax = in.readInt();
+                e.widthAlignment = in.readInt();
+                e.heightAlignment = in.readInt();
+                e.frameRateMin = in.readInt();
+                e.frameRateMax = in.readInt();
+                e.probeSizes = readInts(in);
+                e.maxFrameRates = readInts(in);
+                e.performanceFrameRates = readInts(in);
+                e.sampleRates = readInts(in);
+                e.sampleRateMin = in.readInt();
+                e.sampleRateMax = in.readInt();
+                e.maxChannels = in.readInt();
+                encoders.add(e);
+            }
+            if (in.read() != -1) {
+                throw new IOException("trailing data");
+            }
+            return encoders;
+        } catch (EOFException e) {
+            throw new IOException("truncated", e);
+        }
+    }
+
+    /**
+     * 按 MIME 类型筛选，保持原有顺序
+     */
+    static EncoderInfo[] filter(List<EncoderInfo> encoders, String mimeType) {
+        List<EncoderInfo> result = new ArrayList<>();
+        for (EncoderInfo e : encoders) {
+            if (e.mimeType.equals(mimeType)) {
+                result.add(e);
+            }
+        }
+        return result.toArray(new EncoderInfo[0]);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeShort(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[checkCount(in.readUnsignedShort(), MAX_ARRAY)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static int checkCount(int count, int max) throws IOException {
+        if (count > max) {
+            throw new IOException("count " + count + " > " + max);
+        }
+        return count;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("file too large");
+        }
+        byte[] data = new byte[(int) length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(data);
+        }
+        return data;
+    }
+}
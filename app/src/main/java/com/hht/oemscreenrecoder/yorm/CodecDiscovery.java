@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 编码器查询服务：每种 MIME 类型一个查询任务，在有界线程池上并行执行，结果以 future 返回
+ *
+ * 同一类型只查询一次，重复请求返回同一个 future；查询失败后下一次请求会重新查询。
+ * 调用方用 {@link #await} 等待结果并设置超时，不再依赖“先 init 后读静态数组”的时序。
+ * 具体查询由 {@link Lookup} 完成，本类不依赖 android，可以在 JVM 上测试。线程安全
+ */
+final class CodecDiscovery {
+
+    interface Lookup {
+        EncoderInfo[] find(String mimeType);
+    }
+
+    private final Lookup mLookup;
+    private final ThreadPoolExecutor mExecutor;
+    private final ConcurrentHashMap<String, CompletableFuture<EncoderInfo[]>> mQueries = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads 最大并行查询数，空闲线程 30 秒后退出
+     */
+    CodecDiscovery(Lookup lookup, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads " + threads);
+        }
+        mLookup = lookup;
+        final AtomicInteger count = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "CodecDiscovery-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 开始（或复用已开始的）查询
+     */
+    CompletableFuture<EncoderInfo[]> discover(final String mimeType) {
+        CompletableFuture<EncoderInfo[]> previous = mQueries.get(mimeType);
+        if (previous != null && previous.isCompletedExceptionally()) {
+            // 上一次查询失败，重新查询
+            mQueries.remove(mimeType, previous);
+        }
+        return mQueries.computeIfAbsent(mimeType,
+                type -> CompletableFuture.supplyAsync(() -> mLookup.find(type), mExecutor));
+    }
+
+    /**
+     * 并行查询多种类型，全部完成（无论成败）后返回的 future 完成
+     */
+    CompletableFuture<Void> discoverAll(String... mimeTypes) {
+        CompletableFuture<?>[] queries = new CompletableFuture<?>[mimeTypes.length];
+        for (int i = 0; i < mimeTypes.length; i++) {
+            queries[i] = discover(mimeTypes[i]).handle((encoders, error) -> null);
+        }
+        return CompletableFuture.allOf(queries);
+    }
+
+    /**
+     * 等待查询结果，必要时开始查询
+     *
+     * @throws TimeoutException 超时仍未完成，查询继续在后台进行
+     * @throws ExecutionException 查询抛出异常
+     */
+    EncoderInfo[] await(String mimeType, long timeoutMs)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return discover(mimeType).get(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    boolean isDone(String mimeType) {
+        CompletableFuture<EncoderInfo[]> query = mQueries.get(mimeType);
+        return query != null && query.isDone() && !query.isCompletedExceptionally();
+    }
+
+    /**
+     * 查询线程池，供依赖查询结果的后续任务（如编码器基准测试）使用
+     */
+    Executor executor() {
+        return mExecutor;
+    }
+
+    void shutdown() {
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 视频编码器打分排序
+ *
+ * 平台列出的第一个编码器在部分板型上是软件编码器，录 4K 时掉帧严重。打分规则：
+ * 硬件加速 +{@link #SCORE_HARDWARE}，纯软件 -{@link #PENALTY_SOFTWARE_ONLY}；
+ * 预计可达帧率按请求帧率的比例给 0 ~ {@link #SCORE_FRAME_RATE} 分。预计帧率依次取
+ * 实测结果（{@link EncoderBenchmark}）、厂商性能点、areSizeAndRateSupported，
+ * 来源越可靠额外加分越多。不支持请求尺寸的编码器不参与排序，同分时保持平台顺序。
+ * 纯 Java 实现，可以用假的能力表测试。非线程安全
+ */
+final class CodecRanker {
+    static final int SCORE_HARDWARE = 1000;
+    static final int PENALTY_SOFTWARE_ONLY = 500;
+    static final int SCORE_FRAME_RATE = 300;
+    static final int BONUS_MEASURED = 100;
+    static final int BONUS_PERFORMANCE_POINT = 50;
+
+    static final String SOURCE_MEASURED = "measured";
+    static final String SOURCE_PERFORMANCE_POINT = "performance-point";
+    static final String SOURCE_CAPABILITIES = "capabilities";
+    static final String SOURCE_UNKNOWN = "unknown";
+
+    static final class Candidate {
+        final EncoderInfo encoder;
+        final int score;
+        /** 预计可达帧率，来源未知时为 -1 */
+        final float estimatedFps;
+        final String fpsSource;
+
+        Candidate(EncoderInfo encoder, int score, float estimatedFps, String fpsSource) {
+            this.encoder = encoder;
+            this.score = score;
+            this.estimatedFps = estimatedFps;
+            this.fpsSource = fpsSource;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s score=%d fps=%.1f (%s)%s%s", encoder.name, score,
+                    estimatedFps, fpsSource, encoder.hardwareAccelerated ? " hw" : "",
+                    encoder.softwareOnly ? " sw" : "");
+        }
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFrameRate;
+    private final Map<String, Float> mMeasuredFps = new HashMap<>();
+
+    CodecRanker(int width, int height, int frameRate) {
+        if (width <= 0 || height <= 0 || frameRate <= 0) {
+            throw new IllegalArgumentException(width + "x" + height + "@" + frameRate);
+        }
+        mWidth = width;
+        mHeight = height;
+        mFrameRate = frameRate;
+    }
+
+    /**
+     * 基准测试结果的键：编码器名称与尺寸
+     */
+    static String benchmarkKey(String codecName, int width, int height) {
+        return codecName + '@' + width + 'x' + height;
+    }
+
+    /**
+     * 设置编码器在请求尺寸上的实测帧率
+     */
+    void setMeasuredFps(String codecName, float fps) {
+        mMeasuredFps.put(codecName, fps);
+    }
+
+    /**
+     * @return 支持请求尺寸的编码器，按分数从高到低排列
+     */
+    List<Candidate> rank(EncoderInfo[] encoders) {
+        List<Candidate> candidates = new ArrayList<>(encoders.length);
+        for (EncoderInfo encoder : encoders) {
+            if (encoder.isSizeSupported(mWidth, mHeight)) {
+                candidates.add(score(encoder));
+            }
+        }
+        // Collections.sort 是稳定排序，同分时保持平台顺序
+        Collections.sort(candidates, (a, b) -> Integer.compare(b.score, a.score));
+        return candidates;
+    }
+
+    /**
+     * @return 得分最高的编码器；都不支持请求尺寸时退回平台列出的第一个，没有编码器时返回 null
+     */
+    EncoderInfo select(EncoderInfo[] encoders) {
+        List<Candidate> candidates = rank(encoders);
+        if (!candidates.isEmpty()) {
+            return candidates.get(0).encoder;
+        }
+        return encoders.length > 0 ? encoders[0] : null;
+    }
+
+    private Candidate score(EncoderInfo encoder) {
+        int score = 0;
+        if (encoder.hardwareAccelerated) {
+            score += SCORE_HARDWARE;
+        } else if (encoder.softwareOnly) {
+            score -= PENALTY_SOFTWARE_ONLY;
+        }
+
+        float fps;
+        String source;
+        int probe = encoder.probeIndex(mWidth, mHeight);
+        Float measured = mMeasuredFps.get(encoder.name);
+        if (measured != null) {
+            fps = measured;
+            source = SOURCE_MEASURED;
+            score += BONUS_MEASURED;
+        } else if (probe >= 0 && encoder.performanceFrameRates.length > probe) {
+            fps = encoder.performanceFrameRates[probe];
+            source = SOURCE_PERFORMANCE_POINT;
+            score += BONUS_PERFORMANCE_POINT;
+        } else if (probe >= 0 && encoder.maxFrameRates.length > probe) {
+            fps = encoder.maxFrameRates[probe];
+            source = SOURCE_CAPABILITIES;
+        } else {
+            fps = -1;
+            source = SOURCE_UNKNOWN;
+        }
+
+        if (fps < 0) {
+            score += SCORE_FRAME_RATE / 2;
+        } else {
+            score += Math.round(SCORE_FRAME_RATE * Math.min(1f, fps / mFrameRate));
+        }
+        return new Candidate(encoder, score, fps, source);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * 直接内存缓冲区池（编码输出拷贝用）
+ *
+ * 按 2 的幂分级（最小 {@link #MIN_BUFFER_SIZE}），释放的缓冲区留在对应级别的空闲链表中复用，
+ * 稳定录制时不再分配。总内存（使用中 + 空闲）不超过上限：空间不足时先回收其他级别的空闲缓冲区，
+ * 仍不够则 acquire 返回 null，由调用方等待。没有缓冲区在使用时允许单个超出上限的分配，避免大关键帧永远拿不到内存。
+ *
+ * 非线程安全，由调用方加锁。纯 Java 实现
+ */
+final class DirectBufferPool {
+
+    static final int MIN_BUFFER_SIZE = 4 * 1024;
+    private static final int MIN_SHIFT = 12;
+    private static final int CLASS_COUNT = 31 - MIN_SHIFT;
+
+    private final long mMaxBytes;
+    private final ArrayDeque<ByteBuffer>[] mFree;
+
+    private long mAllocatedBytes = 0;  // 池持有的全部直接内存（使用中 + 空闲）
+    private long mInUseBytes = 0;
+
+    // 统计信息
+    private long mAllocations = 0;
+    private long mReuses = 0;
+    private long mEvictions = 0;
+    private long mPeakInUseBytes = 0;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    DirectBufferPool(long maxBytes) {
+        if (maxBytes < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("maxBytes too small: " + maxBytes);
+        }
+        mMaxBytes = maxBytes;
+        mFree = new ArrayDeque[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            mFree[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * 取得容量不小于 size 的缓冲区（position=0, limit=capacity）
+     *
+     * @return 超出内存上限时返回 null
+     */
+    ByteBuffer acquire(int size) {
+        final int cls = classOf(size);
+        final int capacity = capacityOf(cls);
+        ByteBuffer buffer = mFree[cls].pollLast();
+        if (buffer != null) {
+            mReuses++;
+        } else {
+            if (mInUseBytes > 0 && mInUseBytes + capacity > mMaxBytes) {
+                return null;
+            }
+            // 回收其他级别的空闲缓冲区，给新分配腾出空间
+            for (int i = CLASS_COUNT - 1; i >= 0 && mAllocatedBytes + capacity > mMaxBytes; i--) {
+                while (!mFree[i].isEmpty() && mAllocatedBytes + capacity > mMaxBytes) {
+                    mFree[i].pollFirst();
+                    mAllocatedBytes -= capacityOf(i);
+                    mEvictions++;
+                }
+            }
+            buffer = ByteBuffer.allocateDirect(capacity);
+            mAllocatedBytes += capacity;
+            mAllocations++;
+        }
+        buffer.clear();
+        mInUseBytes += capacity;
+        if (mInUseBytes > mPeakInUseBytes) mPeakInUseBytes = mInUseBytes;
+        return buffer;
+    }
+
+    /**
+     * 归还 {@link #acquire(int)} 取得的缓冲区
+     */
+    void release(ByteBuffer buffer) {
+        final int cls = classOf(buffer.capacity());
+        mInUseBytes -= buffer.capacity();
+        mFree[cls].addLast(buffer);
+    }
+
+    long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    long getInUseBytes() {
+        return mInUseBytes;
+    }
+
+    long getAllocatedBytes() {
+        return mAllocatedBytes;
+    }
+
+    long getPeakInUseBytes() {
+        return mPeakInUseBytes;
+    }
+
+    long getAllocations() {
+        return mAllocations;
+    }
+
+    long getReuses() {
+        return mReuses;
+    }
+
+    long getEvictions() {
+        return mEvictions;
+    }
+
+    static int classOf(int size) {
+        if (size <= MIN_BUFFER_SIZE) return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static int capacityOf(int cls) {
+        return 1 << (cls + MIN_SHIFT);
+    }
+
+    @Override
+    public String toString() {
+        return "DirectBufferPool{inUse=" + mInUseBytes / 1024 + "KB"
+                + ", allocated=" + mAllocatedBytes / 1024 + "KB"
+                + ", peakInUse=" + mPeakInUseBytes / 1024 + "KB"
+                + ", max=" + mMaxBytes / 1024 + "KB"
+                + ", allocations=" + mAllocations
+                + ", reuses=" + mReuses
+                + ", evictions=" + mEvictions + '}';
+    }
+}
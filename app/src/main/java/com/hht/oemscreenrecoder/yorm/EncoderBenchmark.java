@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import android.graphics.Canvas;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.view.Surface;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 编码器吞吐量微基准：通过输入 Surface 尽快送入合成帧，统计每秒输出的帧数。
+ * 只衡量吞吐，不衡量画质。结果按 Build.FINGERPRINT 保存在 properties 文件里，
+ * 同一编码器与尺寸只需测一次
+ */
+final class EncoderBenchmark {
+    static final String FILE_NAME = "encoder_benchmark.properties";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final long TIMEOUT_US = 10_000;
+    private static final long DRAIN_TIMEOUT_NS = 2_000_000_000L;
+
+    private EncoderBenchmark() {
+    }
+
+    /**
+     * 编码 frameCount 帧合成画面
+     *
+     * @return 每秒输出帧数
+     */
+    static float measure(String codecName, String mimeType, int width, int height, int frameCount)
+            throws IOException {
+        MediaFormat format = MediaFormat.createVideoFormat(mimeType, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, 5 * width * height);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, 60);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, 1);
+        MediaCodec codec = MediaCodec.createByCodecName(codecName);
+        Surface surface = null;
+        try {
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            surface = codec.createInputSurface();
+            codec.start();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            int encoded = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < frameCount; i++) {
+                Canvas canvas = surface.lockHardwareCanvas();
+                try {
+                    // 每帧换一种颜色，避免编码器把重复帧跳过
+                    canvas.drawColor(0xFF000000 | (i * 0x050B13 & 0xFFFFFF));
+                } finally {
+                    surface.unlockCanvasAndPost(canvas);
+                }
+                encoded += drain(codec, info, 0);
+            }
+            codec.signalEndOfInputStream();
+            long deadline = System.nanoTime() + DRAIN_TIMEOUT_NS;
+            while ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0 && System.nanoTime() < deadline) {
+                encoded += drain(codec, info, TIMEOUT_US);
+            }
+            long elapsedNs = System.nanoTime() - start;
+            return encoded * 1_000_000_000f / elapsedNs;
+        } finally {
+            try {
+                codec.stop();
+            } catch (IllegalStateException ignored) {
+                // 未成功 start
+            }
+            codec.release();
+            if (surface != null) {
+                surface.release();
+            }
+        }
+    }
+
+    /**
+     * 取出当前可用的所有输出
+     *
+     * @return 输出的视频帧数（不含 codec config 和 EOS）
+     */
+    private static int drain(MediaCodec codec, MediaCodec.BufferInfo info, long timeoutUs) {
+        int frames = 0;
+        while (true) {
+            int index = codec.dequeueOutputBuffer(info, timeoutUs);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                return frames;
+            }
+            if (index < 0) {
+                continue;
+            }
+            if (info.size > 0 && (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                frames++;
+            }
+            codec.releaseOutputBuffer(index, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                return frames;
+            }
+            timeoutUs = 0;
+        }
+    }
+
+    /**
+     * @return 键为 {@link CodecRanker#benchmarkKey} 的实测帧率；文件不存在或指纹不同时为空
+     */
+    static Map<String, Float> loadResults(File file, String fingerprint) {
+        Map<String, Float> results = new HashMap<>();
+        if (!file.isFile()) {
+            return results;
+        }
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            return results;
+        }
+        if (!fingerprint.equals(properties.getProperty(KEY_FINGERPRINT))) {
+            return results;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (KEY_FINGERPRINT.equals(key)) {
+                continue;
+            }
+            try {
+                results.put(key, Float.parseFloat(properties.getProperty(key)));
+            } catch (NumberFormatException ignored) {
+                // 跳过损坏的条目
+            }
+        }
+        return results;
+    }
+
+    static void saveResults(File file, String fingerprint, Map<String, Float> results) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_FINGERPRINT, fingerprint);
+        for (Map.Entry<String, Float> e : results.entrySet()) {
+            properties.setProperty(e.getKey(), String.valueOf(e.getValue()));
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            properties.store(out, "encoder throughput, frames per second");
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("rename " + tmp + " failed");
+        }
+    }
+}
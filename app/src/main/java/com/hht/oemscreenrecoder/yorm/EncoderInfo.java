@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.Arrays;
+
+/**
+ * 编码器能力的快照（名称、profile/level、尺寸/帧率/码率范围、颜色格式、音频采样率与声道数），
+ * 不依赖 MediaCodecInfo，可以写入 {@link CodecCapabilityCache} 并在下次启动时直接读取。纯 Java 实现
+ */
+public final class EncoderInfo {
+    public String name;
+    public String mimeType;
+    public boolean hardwareAccelerated;
+    public boolean softwareOnly;
+    /** profileLevels 展开为两个等长数组 */
+    public int[] profiles = new int[0];
+    public int[] levels = new int[0];
+    public int[] colorFormats = new int[0];
+    public int bitrateMin;
+    public int bitrateMax;
+
+    // ===== 视频 =====
+    public int widthMin;
+    public int widthMax;
+    public int heightMin;
+    public int heightMax;
+    public int widthAlignment = 1;
+    public int heightAlignment = 1;
+    public int frameRateMin;
+    public int frameRateMax;
+    /** 探测尺寸（宽、高交替排列），与 maxFrameRates / performanceFrameRates 一一对应 */
+    public int[] probeSizes = new int[0];
+    /** areSizeAndRateSupported 在各探测尺寸上支持的最高帧率，尺寸不支持时为 0 */
+    public int[] maxFrameRates = new int[0];
+    /** 厂商性能点（PerformancePoint）在各探测尺寸上覆盖的最高帧率；没有发布性能点时为空数组 */
+    public int[] performanceFrameRates = new int[0];
+
+    // ===== 音频 =====
+    /** 离散的采样率列表，为空时使用 sampleRateMin ~ sampleRateMax */
+    public int[] sampleRates = new int[0];
+    public int sampleRateMin;
+    public int sampleRateMax;
+    public int maxChannels;
+
+    public boolean isVideo() {
+        return mimeType != null && mimeType.startsWith("video/");
+    }
+
+    public boolean isSizeSupported(int width, int height) {
+        return width >= widthMin && width <= widthMax && height >= heightMin && height <= heightMax
+                && width % Math.max(1, widthAlignment) == 0 && height % Math.max(1, heightAlignment) == 0;
+    }
+
+    /**
+     * @return 能容纳 width x height 的最小探测尺寸下标，没有时返回 -1
+     */
+    public int probeIndex(int width, int height) {
+        int best = -1;
+        for (int i = 0; i + 1 < probeSizes.length; i += 2) {
+            if (probeSizes[i] >= width && probeSizes[i + 1] >= height
+                    && (best < 0 || (long) probeSizes[i] * probeSizes[i + 1]
+                    < (long) probeSizes[best * 2] * probeSizes[best * 2 + 1])) {
+                best = i / 2;
+            }
+        }
+        return best;
+    }
+
+    public boolean isSampleRateSupported(int sampleRate) {
+        if (sampleRates.length > 0) {
+            for (int rate : sampleRates) {
+                if (rate == sampleRate) return true;
+            }
+            return false;
+        }
+        return sampleRate >= sampleRateMin && sampleRate <= sampleRateMax;
+    }
+
+    public boolean isBitrateSupported(int bitrate) {
+        return bitrate >= bitrateMin && bitrate <= bitrateMax;
+    }
+
+    public boolean hasProfile(int profile) {
+        for (int p : profiles) {
+            if (p == profile) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EncoderInfo)) return false;
+        EncoderInfo that = (EncoderInfo) o;
+        return hardwareAccelerated == that.hardwareAccelerated && softwareOnly == that.softwareOnly
+                && bitrateMin == that.bitrateMin && bitrateMax == that.bitrateMax
+                && widthMin == that.widthMin && widthMax == that.widthMax
+                && heightMin == that.heightMin && heightMax == that.heightMax
+                && widthAlignment == that.widthAlignment && heightAlignment == that.heightAlignment
+                && frameRateMin == that.frameRateMin && frameRateMax == that.frameRateMax
+                && sampleRateMin == that.sampleRateMin && sampleRateMax == that.sampleRateMax
+                && maxChannels == that.maxChannels
+                && name.equals(that.name) && mimeType.equals(that.mimeType)
+                && Arrays.equals(profiles, that.profiles) && Arrays.equals(levels, that.levels)
+                && Arrays.equals(colorFormats, that.colorFormats) && Arrays.equals(sampleRates, that.sampleRates)
+                && Arrays.equals(probeSizes, that.probeSizes) && Arrays.equals(maxFrameRates, that.maxFrameRates)
+                && Arrays.equals(performanceFrameRates, that.performanceFrameRates);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode() * 31 + mimeType.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("EncoderInfo{'").append(name).append("', ").append(mimeType)
+                .append(hardwareAccelerated ? ", hw" : "").append(softwareOnly ? ", sw" : "")
+                .append(", bitrate=[").append(bitrateMin).append(", ").append(bitrateMax).append(']');
+        if (isVideo()) {
+            sb.append(", size=[").append(widthMin).append('x').append(heightMin).append(", ")
+                    .append(widthMax).append('x').append(heightMax).append(']')
+                    .append(", fps=[").append(frameRateMin).append(", ").append(frameRateMax).append(']')
+                    .append(", maxFps=").append(Arrays.toString(maxFrameRates))
+                    .append(", performanceFps=").append(Arrays.toString(performanceFrameRates))
+                    .append(", colorFormats=").append(colorFormats.length);
+        } else {
+            sb.append(", sampleRates=").append(sampleRates.length > 0 ? Arrays.toString(sampleRates)
+                    : "[" + sampleRateMin + ", " + sampleRateMax + "]")
+                    .append(", maxChannels=").append(maxChannels);
+        }
+        return sb.append(", profileLevels=").append(profiles.length).append('}').toString();
+    }
+}
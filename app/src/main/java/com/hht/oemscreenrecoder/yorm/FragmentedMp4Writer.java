@@ -0,0 +1,511 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分片 MP4（fMP4 / CMAF 风格）写入器，H.264 / HEVC / AV1 + AAC（见 {@link Mp4Boxes#checkTrack}）
+ *
+ * 开始时写 ftyp + moov（只有轨道描述和 mvex，不含样本表），之后每隔约 {@code fragmentDurationUs}
+ * 在视频关键帧处写出一个 moof + mdat 分片并 force 到存储。进程崩溃或断电时最多丢失最后一个未写出的分片，
+ * 之前的分片都能正常播放；不像 MediaMuxer 那样要到 stop() 才写 moov。
+ *
+ * 视频样本从 Annex-B（起始码）转换为 4 字节长度前缀；样本时长由相邻样本的 PTS 之差得到，
+ * 因此每个轨道最后一个样本会暂存到下一个样本到达（或 {@link #finish()}）时才写入分片。
+ * 不支持 B 帧（解码时间取 PTS）。
+ *
+ * 非线程安全，由调用方保证在同一线程（muxer 写入线程）中调用。纯 Java 实现
+ */
+final class FragmentedMp4Writer implements Mp4Writer {
+
+    static final long DEFAULT_FRAGMENT_DURATION_US = 2_000_000;
+
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+    // data-offset + sample-duration + sample-size + sample-flags
+    private static final int TRUN_FLAGS = 0x000001 | 0x000100 | 0x000200 | 0x000400;
+    private static final int SAMPLE_FLAGS_SYNC = 0x02000000;       // sample_depends_on=2
+    private static final int SAMPLE_FLAGS_NON_SYNC = 0x01010000;   // sample_depends_on=1, is_non_sync
+
+    private static final class Track {
+        final int id;
+        final TrackSpec spec;
+        final int timescale;
+        final boolean annexB;
+
+        // 当前分片的数据：[0, committedBytes) 为已确定时长的样本，其后为暂存的最后一个样本
+        ByteBuffer payload = ByteBuffer.allocate(64 * 1024);
+        int committedBytes = 0;
+        int[] sizes = new int[64];
+        int[] durations = new int[64];
+        int[] flags = new int[64];
+        int count = 0;
+        long fragmentDecodeTime = 0;
+
+        boolean hasPending = false;
+        int pendingFlags;
+        long pendingDecodeTime;
+        long nextDecodeTime = -1;
+        int lastDuration = 0;
+
+        Track(int id, TrackSpec spec) {
+            this.id = id;
+            this.spec = spec;
+            this.timescale = Mp4Boxes.timescaleOf(spec);
+            this.annexB = spec.isAnnexB();
+        }
+
+        long ticks(long us) {
+            return us * timescale / 1_000_000L;
+        }
+
+    }
+
+    private final FileChannel mChannel;
+    private final long mFragmentDurationUs;
+    private final List<Track> mTracks = new ArrayList<>();
+    private final Mp4Boxes.Buffer mBox = new Mp4Boxes.Buffer(4096);
+    private final ByteBuffer mMdatHeader = ByteBuffer.allocate(8);
+
+    private boolean mStarted = false;
+    private boolean mFinished = false;
+    private Track mClockTrack;   // 决定分片边界的轨道：有视频时为视频
+    private long mFragmentStartUs = -1;
+    private int mSequence = 0;
+
+    // 统计信息
+    private long mBytesWritten = 0;
+    private final LatencyHistogram mFlushTime = new LatencyHistogram();
+
+    /**
+     * @param channel 可写的文件通道，从当前位置开始写
+     * @param fragmentDurationUs 分片目标时长，视频在此之后的第一个关键帧处切分（超过两倍时长时强制切分）
+     */
+    FragmentedMp4Writer(FileChannel channel, long fragmentDurationUs) {
+        if (fragmentDurationUs <= 0) {
+            throw new IllegalArgumentException("fragmentDurationUs=" + fragmentDurationUs);
+        }
+        mChannel = channel;
+        mFragmentDurationUs = fragmentDurationUs;
+    }
+
+    @Override
+    public int addTrack(TrackSpec spec) {
+        if (mStarted) {
+            throw new IllegalStateException("addTrack after start");
+        }
+        Mp4Boxes.checkTrack(spec);
+        mTracks.add(new Track(mTracks.size() + 1, spec));
+        return mTracks.size() - 1;
+    }
+
+    /**
+     * 写出 ftyp + moov
+     */
+    @Override
+    public void start() throws IOException {
+        if (mStarted) {
+            throw new IllegalStateException("already started");
+        }
+        if (mTracks.isEmpty()) {
+            throw new IllegalStateException("no track");
+        }
+        for (Track t : mTracks) {
+            if (t.spec.isVideo()) {
+                mClockTrack = t;
+                break;
+            }
+        }
+        if (mClockTrack == null) {
+            mClockTrack = mTracks.get(0);
+        }
+        mBox.clear();
+        final String codecBrand = Mp4Boxes.codecBrand(mClockTrack.spec);
+        if (codecBrand != null) {
+            Mp4Boxes.writeFtyp(mBox, "iso6", "iso6", "isom", "mp41", codecBrand);
+        } else {
+            Mp4Boxes.writeFtyp(mBox, "iso6", "iso6", "isom", "mp41");
+        }
+        writeMoov();
+        writeFully(mBox.flip());
+        mStarted = true;
+    }
+
+    @Override
+    public void writeSample(int track, ByteBuffer data, long presentationTimeUs, int flags) throws IOException {
+        if (!mStarted || mFinished) {
+            throw new IllegalStateException("not started or already finished");
+        }
+        final Track t = mTracks.get(track);
+        if (!data.hasRemaining()) {
+            return;
+        }
+        if (t.hasPending) {
+            commitPending(t, t.ticks(presentationTimeUs));
+        }
+        if (t == mClockTrack) {
+            if (mFragmentStartUs < 0) {
+                mFragmentStartUs = presentationTimeUs;
+            }
+            final long elapsed = presentationTimeUs - mFragmentStartUs;
+            final boolean boundary = !t.spec.isVideo() || (flags & FLAG_KEY_FRAME) != 0;
+            if ((boundary && elapsed >= mFragmentDurationUs) || elapsed >= 2 * mFragmentDurationUs) {
+                flushFragment();
+                mFragmentStartUs = presentationTimeUs;
+            }
+        }
+        appendPending(t, data, presentationTimeUs, flags);
+    }
+
+    /**
+     * 写出所有暂存样本（最后一个样本沿用前一个样本的时长）并 force 到存储，之后不能再写入
+     */
+    @Override
+    public void finish() throws IOException {
+        if (!mStarted || mFinished) {
+            return;
+        }
+        for (Track t : mTracks) {
+            if (t.hasPending) {
+                int duration = t.lastDuration > 0 ? t.lastDuration : Mp4Boxes.defaultSampleDuration(t.spec);
+                commitPending(t, t.pendingDecodeTime + duration);
+            }
+        }
+        flushFragment();
+        mChannel.force(true);
+        mFinished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            mChannel.close();
+        }
+    }
+
+    int getFragmentCount() {
+        return mSequence;
+    }
+
+    long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    /** 单个分片写出 + force 的耗时分布 */
+    LatencyHistogram getFlushTime() {
+        return mFlushTime;
+    }
+
+    // ===== 样本 =====
+
+    private void appendPending(Track t, ByteBuffer data, long presentationTimeUs, int flags) {
+        final int size = data.remaining();
+        // 3 字节起始码换成 4 字节长度时每个 NAL 多 1 字节
+        ensurePayload(t, t.annexB ? size + size / 3 + 4 : size);
+        final int position = data.position();
+        if (t.annexB) {
+            annexBToLengthPrefixed(data, t.payload);
+        } else {
+            t.payload.put(data);
+        }
+        data.position(position);
+        t.pendingFlags = flags;
+        t.pendingDecodeTime = t.nextDecodeTime < 0 ? Math.max(0, t.ticks(presentationTimeUs)) : t.nextDecodeTime;
+        t.hasPending = true;
+    }
+
+    private void commitPending(Track t, long nextDecodeTime) {
+        final int duration = (int) Math.min(Integer.MAX_VALUE, Math.max(1, nextDecodeTime - t.pendingDecodeTime));
+        if (t.count == t.sizes.length) {
+            int n = t.count * 2;
+            t.sizes = Arrays.copyOf(t.sizes, n);
+            t.durations = Arrays.copyOf(t.durations, n);
+            t.flags = Arrays.copyOf(t.flags, n);
+        }
+        if (t.count == 0) {
+            t.fragmentDecodeTime = t.pendingDecodeTime;
+        }
+        final boolean sync = !t.spec.isVideo() || (t.pendingFlags & FLAG_KEY_FRAME) != 0;
+        t.sizes[t.count] = t.payload.position() - t.committedBytes;
+        t.durations[t.count] = duration;
+        t.flags[t.count] = sync ? SAMPLE_FLAGS_SYNC : SAMPLE_FLAGS_NON_SYNC;
+        t.count++;
+        t.committedBytes = t.payload.position();
+        t.nextDecodeTime = t.pendingDecodeTime + duration;
+        t.lastDuration = duration;
+        t.hasPending = false;
+    }
+
+    private static void ensurePayload(Track t, int extra) {
+        if (t.payload.remaining() >= extra) {
+            return;
+        }
+        int capacity = t.payload.capacity();
+        while (capacity - t.payload.position() < extra) {
+            capacity *= 2;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        t.payload.flip();
+        bigger.put(t.payload);
+        t.payload = bigger;
+    }
+
+    /**
+     * 写出当前分片（各轨道已确定时长的样本），暂存样本移到下一个分片
+     */
+    private void flushFragment() throws IOException {
+        int tracksWithSamples = 0;
+        long payloadBytes = 0;
+        for (Track t : mTracks) {
+            if (t.count > 0) {
+                tracksWithSamples++;
+                payloadBytes += t.committedBytes;
+            }
+        }
+        if (tracksWithSamples == 0) {
+            return;
+        }
+        final long startNs = System.nanoTime();
+        mSequence++;
+
+        final Mp4Boxes.Buffer b = mBox;
+        b.clear();
+        final long[] dataOffsetPos = new long[mTracks.size()];
+        final long moof = b.begin("moof");
+        final long mfhd = b.beginFull("mfhd", 0, 0);
+        b.u32(mSequence);
+        b.end(mfhd);
+        for (int i = 0; i < mTracks.size(); i++) {
+            final Track t = mTracks.get(i);
+            if (t.count == 0) continue;
+            final long traf = b.begin("traf");
+            final long tfhd = b.beginFull("tfhd", 0, TFHD_DEFAULT_BASE_IS_MOOF);
+            b.u32(t.id);
+            b.end(tfhd);
+            final long tfdt = b.beginFull("tfdt", 1, 0);
+            b.u64(t.fragmentDecodeTime);
+            b.end(tfdt);
+            final long trun = b.beginFull("trun", 0, TRUN_FLAGS);
+            b.u32(t.count);
+            dataOffsetPos[i] = b.position();
+            b.u32(0);
+            for (int s = 0; s < t.count; s++) {
+                b.u32(t.durations[s]);
+                b.u32(t.sizes[s]);
+                b.u32(t.flags[s]);
+            }
+            b.end(trun);
+            b.end(traf);
+        }
+        b.end(moof);
+
+        // data_offset 相对 moof 起点（default-base-is-moof），各轨道数据在 mdat 中依次排列
+        long offset = b.position() + 8;
+        for (int i = 0; i < mTracks.size(); i++) {
+            final Track t = mTracks.get(i);
+            if (t.count == 0) continue;
+            b.patchU32(dataOffsetPos[i], (int) offset);
+            offset += t.committedBytes;
+        }
+
+        final ByteBuffer[] buffers = new ByteBuffer[2 + tracksWithSamples];
+        buffers[0] = b.flip();
+        mMdatHeader.clear();
+        mMdatHeader.putInt((int) (8 + payloadBytes));
+        mMdatHeader.put(Mp4Boxes.fourcc("mdat"));
+        mMdatHeader.flip();
+        buffers[1] = mMdatHeader;
+        int n = 2;
+        for (Track t : mTracks) {
+            if (t.count == 0) continue;
+            ByteBuffer view = t.payload.duplicate();
+            view.position(0).limit(t.committedBytes);
+            buffers[n++] = view;
+        }
+        writeFully(buffers);
+        mChannel.force(false);
+
+        for (Track t : mTracks) {
+            // 暂存样本移到缓冲区开头
+            t.payload.limit(t.payload.position()).position(t.committedBytes);
+            t.payload.compact();
+            t.committedBytes = 0;
+            t.count = 0;
+        }
+        mFlushTime.record(System.nanoTime() - startNs);
+    }
+
+    private void writeFully(ByteBuffer... buffers) throws IOException {
+        long total = 0;
+        for (ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        long written = 0;
+        while (written < total) {
+            written += mChannel.write(buffers);
+        }
+        mBytesWritten += total;
+    }
+
+    // ===== 头部 =====
+
+    private void writeMoov() throws IOException {
+        final Mp4Boxes.Buffer b = mBox;
+        final long moov = b.begin("moov");
+        // 时长未知（由分片决定）
+        Mp4Boxes.writeMvhd(b, 0, mTracks.size() + 1);
+        for (Track t : mTracks) {
+            writeTrak(t);
+        }
+
+        final long mvex = b.begin("mvex");
+        for (Track t : mTracks) {
+            final long trex = b.beginFull("trex", 0, 0);
+            b.u32(t.id);
+            b.u32(1);             // default_sample_description_index
+            b.u32(0);
+            b.u32(0);
+            b.u32(0);
+            b.end(trex);
+        }
+        b.end(mvex);
+        b.end(moov);
+    }
+
+    private void writeTrak(Track t) throws IOException {
+        final Mp4Boxes.Buffer b = mBox;
+        final boolean video = t.spec.isVideo();
+        final long trak = b.begin("trak");
+        Mp4Boxes.writeTkhd(b, t.id, t.spec, 0);
+        final long mdia = b.begin("mdia");
+        Mp4Boxes.writeMdhd(b, t.timescale, 0);
+        Mp4Boxes.writeHdlr(b, video);
+        final long minf = b.begin("minf");
+        Mp4Boxes.writeMediaHeader(b, video);
+
+        final long stbl = b.begin("stbl");
+        Mp4Boxes.writeStsd(b, t.id, t.spec);
+        // 样本表为空，样本都在分片中
+        for (String type : new String[]{"stts", "stsc", "stco"}) {
+            final long box = b.beginFull(type, 0, 0);
+            b.u32(0);
+            b.end(box);
+        }
+        final long stsz = b.beginFull("stsz", 0, 0);
+        b.u32(0);
+        b.u32(0);
+        b.end(stsz);
+        b.end(stbl);
+
+        b.end(minf);
+        b.end(mdia);
+        b.end(trak);
+    }
+
+    // ===== NAL 工具 =====
+
+    /**
+     * Annex-B（00 00 01 / 00 00 00 01 起始码）转为 4 字节长度前缀写入 dst，不是 Annex-B 时原样拷贝。
+     * 调用后 src.position 到达 limit
+     */
+    static void annexBToLengthPrefixed(ByteBuffer src, ByteBuffer dst) {
+        final int limit = src.limit();
+        final int first = firstStartCode(src);
+        if (first < 0) {
+            dst.put(src);
+            return;
+        }
+        int nalStart = first + 3;
+        while (true) {
+            final int next = nextStartCode(src, nalStart, limit);
+            int nalEnd = next < 0 ? limit : next;
+            // 4 字节起始码的前导 0 与 trailing_zero_8bits 不属于 NAL
+            while (nalEnd > nalStart && src.get(nalEnd - 1) == 0) {
+                nalEnd--;
+            }
+            if (nalEnd > nalStart) {
+                dst.putInt(nalEnd - nalStart);
+                src.limit(nalEnd).position(nalStart);
+                dst.put(src);
+                src.limit(limit);
+            }
+            if (next < 0) break;
+            nalStart = next + 3;
+        }
+        src.position(limit);
+    }
+
+    /**
+     * 拆分 Annex-B 数据中的 NAL 单元（不含起始码），没有起始码时整体作为一个 NAL
+     */
+    static List<byte[]> splitNalUnits(byte[] data) {
+        final List<byte[]> nals = new ArrayList<>();
+        final ByteBuffer src = ByteBuffer.wrap(data);
+        if (firstStartCode(src) < 0) {
+            if (data.length > 0) nals.add(data.clone());
+            return nals;
+        }
+        final ByteBuffer dst = ByteBuffer.allocate(data.length + data.length / 3 + 4);
+        annexBToLengthPrefixed(src, dst);
+        dst.flip();
+        while (dst.remaining() >= 4) {
+            final byte[] nal = new byte[dst.getInt()];
+            dst.get(nal);
+            nals.add(nal);
+        }
+        return nals;
+    }
+
+    private static int nextStartCode(ByteBuffer b, int from, int limit) {
+        for (int i = from; i + 2 < limit; i++) {
+            final int third = b.get(i + 2) & 0xff;
+            if (third > 1) {
+                i += 2;
+            } else if (third == 1 && b.get(i) == 0 && b.get(i + 1) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 第一个起始码的位置，之前只允许有 0；不是 Annex-B 时返回 -1
+     */
+    private static int firstStartCode(ByteBuffer b) {
+        final int first = nextStartCode(b, b.position(), b.limit());
+        if (first < 0) return -1;
+        for (int i = b.position(); i < first; i++) {
+            if (b.get(i) != 0) return -1;
+        }
+        return first;
+    }
+
+    @Override
+    public String toString() {
+        return "FragmentedMp4Writer{fragments=" + mSequence
+                + ", bytes=" + mBytesWritten
+                + ", tracks=" + mTracks.size()
+                + ", flushTime[" + mFlushTime + "]}";
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.Locale;
+
+/**
+ * 可变帧率（静态画面模式）下的视频帧统计，用于评估相对固定帧率节省的编码量和文件大小
+ *
+ * 按写入的视频帧 PTS 计算实际帧率与空闲时长（相邻两帧间隔超过两倍标称帧间隔的部分），
+ * 相对标称帧率少编码的帧数 = 时长 × 标称帧率 - 实际帧数。
+ * 固定帧率下这些帧是与上一帧相同的 P 帧，其大小按"空闲后第一个非关键帧"的平均大小估算，
+ * 由此得到节省的字节数。纯 Java 实现，线程安全
+ */
+final class FrameRateStats {
+    private final int mNominalFps;
+    private final long mNominalIntervalUs;
+
+    private long mFrames = 0;
+    private long mBytes = 0;
+    private long mFirstPtsUs = Long.MIN_VALUE;
+    private long mLastPtsUs = Long.MIN_VALUE;
+    private long mIdleUs = 0;
+    private long mIdleGaps = 0;
+    // 空闲后第一个非关键帧（近似于重复帧）的大小
+    private long mStaticFrames = 0;
+    private long mStaticFrameBytes = 0;
+
+    FrameRateStats(int nominalFps) {
+        if (nominalFps <= 0) {
+            throw new IllegalArgumentException("nominalFps=" + nominalFps);
+        }
+        mNominalFps = nominalFps;
+        mNominalIntervalUs = 1_000_000L / nominalFps;
+    }
+
+    synchronized void onFrame(long presentationTimeUs, int size, boolean keyFrame) {
+        mFrames++;
+        mBytes += size;
+        if (mFirstPtsUs == Long.MIN_VALUE) {
+            mFirstPtsUs = presentationTimeUs;
+        } else if (presentationTimeUs > mLastPtsUs) {
+            long gapUs = presentationTimeUs - mLastPtsUs;
+            if (gapUs > mNominalIntervalUs * 2) {
+                mIdleUs += gapUs - mNominalIntervalUs;
+                mIdleGaps++;
+                if (!keyFrame) {
+                    mStaticFrames++;
+                    mStaticFrameBytes += size;
+                }
+            }
+        }
+        mLastPtsUs = Math.max(mLastPtsUs, presentationTimeUs);
+    }
+
+    synchronized long getFrames() {
+        return mFrames;
+    }
+
+    synchronized long getDurationUs() {
+        return mFrames == 0 ? 0 : mLastPtsUs - mFirstPtsUs + mNominalIntervalUs;
+    }
+
+    synchronized long getIdleUs() {
+        return mIdleUs;
+    }
+
+    synchronized double getEffectiveFps() {
+        long durationUs = getDurationUs();
+        return durationUs > 0 ? mFrames * 1e6 / durationUs : 0;
+    }
+
+    /** 固定标称帧率下应编码的帧数 */
+    synchronized long getNominalFrames() {
+        return getDurationUs() * mNominalFps / 1_000_000L;
+    }
+
+    /** 相对固定帧率少编码的帧数 */
+    synchronized long getSkippedFrames() {
+        return Math.max(0, getNominalFrames() - mFrames);
+    }
+
+    /** 相对固定帧率估算节省的字节数，没有观察到重复帧时为 0 */
+    synchronized long getEstimatedSavedBytes() {
+        return mStaticFrames == 0 ? 0 : getSkippedFrames() * mStaticFrameBytes / mStaticFrames;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long nominal = getNominalFrames();
+        return String.format(Locale.US,
+                "frames=%d/%d (%.1f/%dfps, encoder work saved %.0f%%), idle=%dms in %d gaps, "
+                        + "bytes=%dKB, est. saved=%dKB",
+                mFrames, nominal, getEffectiveFps(), mNominalFps,
+                nominal > 0 ? getSkippedFrames() * 100.0 / nominal : 0.0,
+                mIdleUs / 1000, mIdleGaps, mBytes / 1024, getEstimatedSavedBytes() / 1024);
+    }
+}
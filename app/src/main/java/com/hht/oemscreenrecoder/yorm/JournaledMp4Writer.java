@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可断电恢复的普通 MP4 写入器，H.264 / HEVC / AV1 + AAC（见 {@link Mp4Boxes#checkTrack}）
+ *
+ * 开始时写 ftyp 和一个 64 位长度待定的 mdat 头，样本数据按到达顺序追加到 mdat，
+ * 同时在并列的 {@link SampleJournal} 中记录每个样本的位置、大小、PTS 和关键帧标记。
+ * 每隔约 {@code syncIntervalUs} 先 force 样本数据再 force 日志，因此断电时最多丢失最后一个间隔。
+ *
+ * {@link #finish()} 与断电后的恢复走同一条路径：由 {@link RecordingRecovery} 按日志在文件末尾补写
+ * moov 并回填 mdat 长度，最后删除日志。输出是普通（非分片）MP4，播放器兼容性与 MediaMuxer 相同。
+ *
+ * 非线程安全，由调用方保证在同一线程（muxer 写入线程）中调用。纯 Java 实现
+ */
+final class JournaledMp4Writer implements Mp4Writer {
+
+    static final long DEFAULT_SYNC_INTERVAL_US = 2_000_000;
+    /** size=1 + "mdat" + 64 位 largesize */
+    static final int MDAT_HEADER_SIZE = 16;
+
+    private final File mFile;
+    private final File mJournalFile;
+    private final long mSyncIntervalUs;
+    private final List<TrackSpec> mTracks = new ArrayList<>();
+    private boolean[] mAnnexB;
+
+    private RandomAccessFile mRaf;
+    private FileChannel mChannel;
+    private SampleJournal.Writer mJournal;
+    private ByteBuffer mScratch = ByteBuffer.allocate(256 * 1024);
+    private long mPosition;
+    private long mLastSyncUs = -1;
+
+    private boolean mStarted = false;
+    private boolean mFinished = false;
+
+    // 统计信息
+    private long mSamples = 0;
+    private long mBytesWritten = 0;
+    private final LatencyHistogram mSyncTime = new LatencyHistogram();
+
+    /**
+     * @param file 输出文件，日志写在同目录下的 {@link SampleJournal#journalFileOf(File)}
+     * @param syncIntervalUs 样本数据与日志落盘的间隔（按 PTS 计）
+     */
+    JournaledMp4Writer(File file, long syncIntervalUs) {
+        if (syncIntervalUs <= 0) {
+            throw new IllegalArgumentException("syncIntervalUs=" + syncIntervalUs);
+        }
+        mFile = file;
+        mJournalFile = SampleJournal.journalFileOf(file);
+        mSyncIntervalUs = syncIntervalUs;
+    }
+
+    @Override
+    public int addTrack(TrackSpec spec) {
+        if (mStarted) {
+            throw new IllegalStateException("addTrack after start");
+        }
+        Mp4Boxes.checkTrack(spec);
+        mTracks.add(spec);
+        return mTracks.size() - 1;
+    }
+
+    /**
+     * 写出 ftyp + mdat 头，创建日志
+     */
+    @Override
+    public void start() throws IOException {
+        if (mStarted) {
+            throw new IllegalStateException("already started");
+        }
+        if (mTracks.isEmpty()) {
+            throw new IllegalStateException("no track");
+        }
+        mAnnexB = new boolean[mTracks.size()];
+        for (int i = 0; i < mTracks.size(); i++) {
+            mAnnexB[i] = mTracks.get(i).isAnnexB();
+        }
+        mRaf = new RandomAccessFile(mFile, "rw");
+        mChannel = mRaf.getChannel();
+        mChannel.truncate(0);
+
+        final Mp4Boxes.Buffer b = new Mp4Boxes.Buffer(64);
+        String codecBrand = null;
+        for (TrackSpec spec : mTracks) {
+            if (codecBrand == null) {
+                codecBrand = Mp4Boxes.codecBrand(spec);
+            }
+        }
+        if (codecBrand != null) {
+            Mp4Boxes.writeFtyp(b, "isom", "isom", "iso2", codecBrand, "mp41");
+        } else {
+            Mp4Boxes.writeFtyp(b, "isom", "isom", "iso2", "mp41");
+        }
+        b.u32(1);                 // 使用 64 位 largesize
+        b.fourcc("mdat");
+        b.u64(0);                 // 长度在 finish / 恢复时回填
+        writeFully(b.flip());
+        mPosition = mBytesWritten;
+        mChannel.force(true);
+
+        mJournal = new SampleJournal.Writer(mJournalFile, mPosition, mTracks);
+        mStarted = true;
+    }
+
+    @Override
+    public void writeSample(int track, ByteBuffer data, long presentationTimeUs, int flags) throws IOException {
+        if (!mStarted || mFinished) {
+            throw new IllegalStateException("not started or already finished");
+        }
+        if (track < 0 || track >= mTracks.size()) {
+            throw new IllegalArgumentException("track=" + track);
+        }
+        if (!data.hasRemaining()) {
+            return;
+        }
+        final ByteBuffer sample;
+        if (mAnnexB[track]) {
+            final int size = data.remaining();
+            // 3 字节起始码换成 4 字节长度时每个 NAL 多 1 字节
+            ensureScratch(size + size / 3 + 4);
+            mScratch.clear();
+            FragmentedMp4Writer.annexBToLengthPrefixed(data.duplicate(), mScratch);
+            mScratch.flip();
+            sample = mScratch;
+        } else {
+            sample = data.duplicate();
+        }
+        final int size = sample.remaining();
+        writeFully(sample);
+        mJournal.append(track, flags & FLAG_KEY_FRAME, size, mPosition, presentationTimeUs);
+        mPosition += size;
+        mSamples++;
+
+        if (mLastSyncUs < 0) {
+            mLastSyncUs = presentationTimeUs;
+        } else if (presentationTimeUs - mLastSyncUs >= mSyncIntervalUs) {
+            sync();
+            mLastSyncUs = presentationTimeUs;
+        }
+    }
+
+    /**
+     * 落盘剩余样本，按日志补写 moov，成功后删除日志
+     *
+     * @throws IOException 写入失败，或没有任何样本（文件和日志已删除）
+     */
+    @Override
+    public void finish() throws IOException {
+        if (!mStarted || mFinished) {
+            return;
+        }
+        mFinished = true;
+        try {
+            sync();
+        } finally {
+            closeFiles();
+        }
+        if (!RecordingRecovery.recover(mFile)) {
+            throw new IOException("no sample written to " + mFile);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            closeFiles();
+        }
+    }
+
+    long getSampleCount() {
+        return mSamples;
+    }
+
+    long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    /** 一次样本数据 + 日志落盘的耗时分布 */
+    LatencyHistogram getSyncTime() {
+        return mSyncTime;
+    }
+
+    /**
+     * 先 force 样本数据，再追加并 force 日志
+     */
+    private void sync() throws IOException {
+        final long startNs = System.nanoTime();
+        mChannel.force(false);
+        mJournal.sync();
+        mSyncTime.record(System.nanoTime() - startNs);
+    }
+
+    private void closeFiles() throws IOException {
+        try {
+            if (mJournal != null) {
+                mJournal.close();
+                mJournal = null;
+            }
+        } finally {
+            if (mRaf != null) {
+                mRaf.close();
+                mRaf = null;
+                mChannel = null;
+            }
+        }
+    }
+
+    private void ensureScratch(int capacity) {
+        if (mScratch.capacity() < capacity) {
+            mScratch = ByteBuffer.allocate(Math.max(capacity, mScratch.capacity() * 2));
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        final int total = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+        mBytesWritten += total;
+    }
+
+    @Override
+    public String toString() {
+        return "JournaledMp4Writer{samples=" + mSamples
+                + ", bytes=" + mBytesWritten
+                + ", tracks=" + mTracks.size()
+                + ", syncTime[" + mSyncTime + "]}";
+    }
+}
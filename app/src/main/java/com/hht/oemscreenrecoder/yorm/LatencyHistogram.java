@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁延迟直方图（纳秒）
+ *
+ * 对数-线性分桶（类似 HdrHistogram）：每个 2 的幂区间再均分为 {@link #SUB_BUCKETS} 个桶，
+ * 相对误差约 1/SUB_BUCKETS，覆盖 0 ~ 2^{@link #MAX_MAGNITUDE} 纳秒（约 18 分钟），超出范围的值计入最后一个桶。
+ * record 可在任意线程并发调用，不分配内存；读取统计时不加锁，结果是近似一致的快照。纯 Java 实现
+ */
+final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAX_MAGNITUDE = 40;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMax = new AtomicLong(0);
+
+    /**
+     * 记录一个延迟值（纳秒），负值按 0 处理
+     */
+    void record(long valueNs) {
+        final long v = Math.max(0, valueNs);
+        mBuckets.incrementAndGet(indexOf(v));
+        mCount.incrementAndGet();
+        mSum.addAndGet(v);
+        long cur;
+        while (v < (cur = mMin.get()) && !mMin.compareAndSet(cur, v)) {
+            // retry
+        }
+        while (v > (cur = mMax.get()) && !mMax.compareAndSet(cur, v)) {
+            // retry
+        }
+    }
+
+    long getCount() {
+        return mCount.get();
+    }
+
+    long getMin() {
+        return mCount.get() == 0 ? 0 : mMin.get();
+    }
+
+    long getMax() {
+        return mMax.get();
+    }
+
+    double getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : (double) mSum.get() / count;
+    }
+
+    /**
+     * 百分位数（纳秒），返回所在桶的中值，不超过记录到的最大值
+     *
+     * @param percentile 0 ~ 100
+     */
+    long getPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0) return 0;
+        if (percentile >= 100) return getMax();
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= target) {
+                long mid = lowerBound(i) + (bucketWidth(i) >> 1);
+                return Math.min(mid, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMin.set(Long.MAX_VALUE);
+        mMax.set(0);
+    }
+
+    static int indexOf(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int magnitude = 63 - Long.numberOfLeadingZeros(v);
+        if (magnitude >= MAX_MAGNITUDE) return BUCKET_COUNT - 1;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) (v >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        int sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << shift;
+    }
+
+    private static long bucketWidth(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << (index / SUB_BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "count=%d, mean=%.2fms, p50=%.2fms, p99=%.2fms, max=%.2fms",
+                getCount(), getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(99) / 1e6, getMax() / 1e6);
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 录制健康指标注册表
+ *
+ * 三类指标：
+ * <ul>
+ *     <li>计数器：无锁累加，同时按秒分桶统计最近 {@link #RATE_WINDOW_SECONDS} 个完整秒的速率（帧率、字节率），
+ *     不再用累计值除以上一个日志间隔</li>
+ *     <li>状态值：快照时才调用 {@link LongSupplier} 读取（队列深度、积压时长），热路径没有开销</li>
+ *     <li>延迟直方图：{@link LatencyHistogram}（对数-线性分桶，类似 HdrHistogram），可以注册已有的实例</li>
+ * </ul>
+ * 指标在录制开始前注册，热路径只持有 {@link Counter} / {@link LatencyHistogram} 引用；{@link #snapshot()} 生成不可变快照，
+ * 供录制悬浮窗和 dumpsys 文本输出使用。速率分桶在跨秒的瞬间可能丢失极少量并发累加，只影响速率不影响总数。
+ *
+ * 时钟通过 {@link LongSupplier}（纳秒）注入，便于单元测试。线程安全，纯 Java 实现
+ */
+public final class MetricsRegistry {
+
+    /** 速率统计窗口（完整秒数） */
+    static final int RATE_WINDOW_SECONDS = 5;
+
+    // ===== 指标名称 =====
+    public static final String VIDEO_FRAMES = "video.frames";
+    public static final String VIDEO_BYTES = "video.bytes";
+    public static final String VIDEO_DROPPED = "video.dropped";
+    public static final String VIDEO_CODEC_LATENCY = "video.codec_latency";
+    public static final String AUDIO_FRAMES = "audio.frames";
+    public static final String AUDIO_BYTES = "audio.bytes";
+    public static final String AUDIO_DROPPED = "audio.dropped";
+    public static final String AUDIO_CODEC_LATENCY = "audio.codec_latency";
+    public static final String AUDIO_INPUT_FRAMES = "audio.input_frames";
+    public static final String AUDIO_INPUT_BYTES = "audio.input_bytes";
+    public static final String AUDIO_READ_TIME = "audio.read_time";
+    public static final String AUDIO_PENDING_MS = "audio.pending_ms";
+    public static final String AUDIO_OVERFLOW_BYTES = "audio.overflow_bytes";
+    public static final String MUXER_WRITE_TIME = "muxer.write_time";
+    public static final String MUXER_QUEUE_DELAY = "muxer.queue_delay";
+    public static final String MUXER_ENQUEUE_STALL = "muxer.enqueue_stall";
+    public static final String MUXER_QUEUE_DEPTH = "muxer.queue_depth";
+    public static final String MUXER_QUEUE_BYTES = "muxer.queue_bytes";
+    public static final String MUXER_DROPPED = "muxer.dropped";
+
+    /**
+     * 无锁计数器，附带按秒分桶的速率统计
+     */
+    static final class Counter {
+        private static final int SLOTS = RATE_WINDOW_SECONDS + 1;
+
+        private final LongSupplier mTicker;
+        private final AtomicLong mTotal = new AtomicLong();
+        private final AtomicLongArray mSlotValues = new AtomicLongArray(SLOTS);
+        private final AtomicLongArray mSlotSeconds = new AtomicLongArray(SLOTS);
+        private final AtomicLong mFirstSecond = new AtomicLong(-1);
+
+        Counter(LongSupplier ticker) {
+            mTicker = ticker;
+            for (int i = 0; i < SLOTS; i++) {
+                mSlotSeconds.set(i, -1);
+            }
+        }
+
+        void increment() {
+            add(1);
+        }
+
+        void add(long delta) {
+            mTotal.addAndGet(delta);
+            final long second = mTicker.getAsLong() / 1_000_000_000L;
+            mFirstSecond.compareAndSet(-1, second);
+            final int slot = (int) (second % SLOTS);
+            final long stamp = mSlotSeconds.get(slot);
+            if (stamp != second && mSlotSeconds.compareAndSet(slot, stamp, second)) {
+                mSlotValues.set(slot, delta);
+                return;
+            }
+            mSlotValues.addAndGet(slot, delta);
+        }
+
+        long get() {
+            return mTotal.get();
+        }
+
+        /**
+         * 最近完整秒（最多 {@link #RATE_WINDOW_SECONDS} 秒）的平均速率，第一个完整秒结束前为 0
+         */
+        double ratePerSecond() {
+            final long second = mTicker.getAsLong() / 1_000_000_000L;
+            final long first = mFirstSecond.get();
+            if (first < 0) {
+                return 0;
+            }
+            final long window = Math.min(RATE_WINDOW_SECONDS, second - first);
+            if (window <= 0) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                final long stamp = mSlotSeconds.get(i);
+                if (stamp >= second - window && stamp < second) {
+                    sum += mSlotValues.get(i);
+                }
+            }
+            return (double) sum / window;
+        }
+    }
+
+    /**
+     * 直方图摘要（纳秒）
+     */
+    public static final class HistogramSummary {
+        public final long count;
+        public final double mean;
+        public final long p50;
+        public final long p90;
+        public final long p99;
+        public final long max;
+
+        HistogramSummary(LatencyHistogram histogram) {
+            count = histogram.getCount();
+            mean = histogram.getMean();
+            p50 = histogram.getPercentile(50);
+            p90 = histogram.getPercentile(90);
+            p99 = histogram.getPercentile(99);
+            max = histogram.getMax();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "count=%d, mean=%.2fms, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms",
+                    count, mean / 1e6, p50 / 1e6, p90 / 1e6, p99 / 1e6, max / 1e6);
+        }
+    }
+
+    /**
+     * 某一时刻的指标快照（不可变）
+     */
+    public static final class Snapshot {
+        private final long mUptimeMs;
+        private final Map<String, Long> mCounts;
+        private final Map<String, Double> mRates;
+        private final Map<String, Long> mGauges;
+        private final Map<String, HistogramSummary> mHistograms;
+
+        Snapshot(long uptimeMs, Map<String, Long> counts, Map<String, Double> rates,
+                 Map<String, Long> gauges, Map<String, HistogramSummary> histograms) {
+            mUptimeMs = uptimeMs;
+            mCounts = Collections.unmodifiableMap(counts);
+            mRates = Collections.unmodifiableMap(rates);
+            mGauges = Collections.unmodifiableMap(gauges);
+            mHistograms = Collections.unmodifiableMap(histograms);
+        }
+
+        /** 注册表创建以来的时长（毫秒） */
+        public long getUptimeMs() {
+            return mUptimeMs;
+        }
+
+        /** 计数器总数，没有该指标时为 0 */
+        public long getCount(String name) {
+            Long value = mCounts.get(name);
+            return value == null ? 0 : value;
+        }
+
+        /** 计数器最近几秒的每秒速率，没有该指标时为 0 */
+        public double getRate(String name) {
+            Double value = mRates.get(name);
+            return value == null ? 0 : value;
+        }
+
+        /** 状态值，没有该指标时为 0 */
+        public long getGauge(String name) {
+            Long value = mGauges.get(name);
+            return value == null ? 0 : value;
+        }
+
+        /** 直方图摘要，没有该指标时为 null */
+        public HistogramSummary getHistogram(String name) {
+            return mHistograms.get(name);
+        }
+
+        /**
+         * 悬浮窗显示用的单行摘要：帧率、码率、编码延迟 p99、写入耗时 p99、队列深度、丢帧数
+         */
+        public String toOverlayText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "%.1ffps %.2fMbps",
+                    getRate(VIDEO_FRAMES), getRate(VIDEO_BYTES) * 8 / 1e6));
+            if (mRates.containsKey(AUDIO_BYTES)) {
+                sb.append(String.format(Locale.US, " A%.0fkbps", getRate(AUDIO_BYTES) * 8 / 1e3));
+            }
+            appendP99(sb, " enc", VIDEO_CODEC_LATENCY);
+            appendP99(sb, " wr", MUXER_WRITE_TIME);
+            sb.append(" q").append(getGauge(MUXER_QUEUE_DEPTH));
+            sb.append(" drop").append(getCount(VIDEO_DROPPED) + getCount(AUDIO_DROPPED) + getGauge(MUXER_DROPPED));
+            return sb.toString();
+        }
+
+        private void appendP99(StringBuilder sb, String label, String name) {
+            HistogramSummary summary = mHistograms.get(name);
+            if (summary != null && summary.count > 0) {
+                sb.append(label).append(String.format(Locale.US, "%.1fms", summary.p99 / 1e6));
+            }
+        }
+
+        /**
+         * dumpsys 风格的完整文本输出
+         */
+        public void dump(PrintWriter pw, String prefix) {
+            pw.print(prefix);
+            pw.println("Recorder metrics (uptime " + mUptimeMs + "ms, rates over last "
+                    + RATE_WINDOW_SECONDS + "s):");
+            pw.print(prefix);
+            pw.println("  Counters:");
+            for (Map.Entry<String, Long> e : mCounts.entrySet()) {
+                pw.print(prefix);
+                pw.println(String.format(Locale.US, "    %s: total=%d, rate=%.1f/s",
+                        e.getKey(), e.getValue(), getRate(e.getKey())));
+            }
+            pw.print(prefix);
+            pw.println("  Gauges:");
+            for (Map.Entry<String, Long> e : mGauges.entrySet()) {
+                pw.print(prefix);
+                pw.println("    " + e.getKey() + ": " + e.getValue());
+            }
+            pw.print(prefix);
+            pw.println("  Histograms:");
+            for (Map.Entry<String, HistogramSummary> e : mHistograms.entrySet()) {
+                pw.print(prefix);
+                pw.println("    " + e.getKey() + ": " + e.getValue());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return toOverlayText();
+        }
+    }
+
+    private final LongSupplier mTicker;
+    private final long mCreatedNs;
+    private final ConcurrentHashMap<String, Counter> mCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongSupplier> mGauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> mHistograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param ticker 单调时钟（纳秒）
+     */
+    MetricsRegistry(LongSupplier ticker) {
+        mTicker = ticker;
+        mCreatedNs = ticker.getAsLong();
+    }
+
+    /** 获取或创建计数器 */
+    Counter counter(String name) {
+        Counter counter = mCounters.get(name);
+        if (counter == null) {
+            Counter created = new Counter(mTicker);
+            counter = mCounters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /** 获取或创建直方图 */
+    LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = mHistograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /** 注册已有的直方图（替换同名指标，如重新创建的写线程） */
+    void register(String name, LatencyHistogram histogram) {
+        mHistograms.put(name, histogram);
+    }
+
+    /** 注册状态值，快照时读取（替换同名指标） */
+    void gauge(String name, LongSupplier supplier) {
+        mGauges.put(name, supplier);
+    }
+
+    /**
+     * 生成快照，状态值读取失败时跳过该指标
+     */
+    public Snapshot snapshot() {
+        final Map<String, Long> counts = new TreeMap<>();
+        final Map<String, Double> rates = new TreeMap<>();
+        for (Map.Entry<String, Counter> e : mCounters.entrySet()) {
+            counts.put(e.getKey(), e.getValue().get());
+            rates.put(e.getKey(), e.getValue().ratePerSecond());
+        }
+        final Map<String, Long> gauges = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> e : mGauges.entrySet()) {
+            try {
+                gauges.put(e.getKey(), e.getValue().getAsLong());
+            } catch (RuntimeException ignored) {
+                // 状态值来源已释放
+            }
+        }
+        final Map<String, HistogramSummary> histograms = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> e : mHistograms.entrySet()) {
+            histograms.put(e.getKey(), new HistogramSummary(e.getValue()));
+        }
+        return new Snapshot((mTicker.getAsLong() - mCreatedNs) / 1_000_000, counts, rates, gauges, histograms);
+    }
+}
@@ -22,6 +22,7 @@ import android.media.AudioFormat;
 
 import android.media.AudioPlaybackCaptureConfiguration;
 import android.media.AudioRecord;
+import android.media.AudioTimestamp;
 import android.media.MediaCodec;
 import android.media.MediaFormat;
 import android.media.MediaRecorder;
@@ -37,10 +38,16 @@ import android.util.SparseLongArray;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static android.media.MediaCodec.BUFFER_FLAG_END_OF_STREAM;
@@ -70,6 +77,7 @@ class MicRecorder implements Encoder {
     private BaseEncoder.Callback mCallback;
     private CallbackDelegate mCallbackDelegate;
     private int mChannelsSampleRate;
+    private int mChannelCount;
 
     // ===== 运行时静音检测 =====
     // 连续静音帧计数器（用于检测录制过程中的静音问题）
@@ -77,6 +85,8 @@ class MicRecorder implements Encoder {
     private static final int SILENT_FRAMES_WARNING_THRESHOLD = 10;  // 连续10帧静音则警告
     private static final int SILENT_FRAME_MAX_VALUE_THRESHOLD = 50; // 最大值<50视为静音帧
     private boolean mSilenceWarningLogged = false; // 避免重复警告刷屏
+    // 单遍帧分析器（峰值/RMS/零值/削波/静音判定 + 增益混音），每帧复用
+    private final PcmFrameAnalyzer mFrameAnalyzer = new PcmFrameAnalyzer(SILENT_FRAME_MAX_VALUE_THRESHOLD);
 
     // ===== 音频数据统计（用于诊断） =====
     private long mTotalFramesProcessed = 0;      // 总共处理的音频帧数
@@ -101,32 +111,71 @@ class MicRecorder implements Encoder {
     // ===== 墙钟时间戳（主时钟）=====
     // 核心策略：PTS 只跟真实时间走，不依赖音频采样数
     // 优先保证画面时间准确，允许音频丢失
-    private long mRecordingStartTimeNanos = 0;  // 录制开始的纳秒时间戳（单调时钟）
+    private volatile RecordingTimeline mTimeline; // 与 ScreenRecorder 共用的录制时间线（起点、时钟）
     private boolean mUseWallClockPTS = true;    // 是否使用墙钟作为 PTS（默认启用）
 
-    // ===== 缓冲队列机制（解决编码器 buffer 不足导致数据丢弃问题） =====
-    private static class AudioFrame {
-        byte[] data;
-        int length;
-        long timestamp;
-
-        AudioFrame(byte[] data, int length, long timestamp) {
-            this.data = data;
-            this.length = length;
-            this.timestamp = timestamp;
-        }
-    }
+    // ===== 采样数时钟（可选，优先级高于墙钟模式）=====
+    // PTS 由累计采样数推算，锚定 AudioRecord.getTimestamp()，以小步长校正跟随真实时间
+    private boolean mUseSampleClockPTS = false;
+    private AudioSampleClock mSampleClock;                       // 录制线程内使用
+    private final AudioTimestamp mAudioTimestamp = new AudioTimestamp();
+    private long mLastAnchorUpdateNs = 0;
+    private static final long ANCHOR_UPDATE_INTERVAL_NS = 1_000_000_000L;  // 每秒刷新一次锚点
 
-    private final LinkedList<AudioFrame> mPendingFramesQueue = new LinkedList<>();
-    private static final int MAX_PENDING_FRAMES = 10;  // 队列上限（10帧）
+    // ===== 缓冲队列机制（解决编码器 buffer 不足导致数据丢弃问题） =====
+    // 预分配的 SPSC 环形缓冲区，按时长定容，溢出时只丢弃放不下的部分并计数
+    private final PcmRingBuffer mPendingRing;
+    // 积压缓冲区溢出丢弃、尚未上报给采样数时钟的采样数，等丢弃点之前的积压数据送完后再跳过（录制线程内使用）
+    private int mDroppedPendingSamples = 0;
+    private long mDroppedPendingAtByte;
+
+    // ===== 健康指标（默认使用独立的注册表，ScreenRecorder 在 prepare 之前换成共用的注册表）=====
+    private final LatencyHistogram mReadTime = new LatencyHistogram();   // 所有音频源的单次阻塞读取耗时
+    private MetricsRegistry.Counter mInputFramesCounter;
+    private MetricsRegistry.Counter mInputBytesCounter;
+    private static final int PENDING_BUFFER_MS = 500;  // 积压缓冲区容量（500ms 音频）
     private static final int ENCODER_BUFFER_TIMEOUT_MS = 50;  // 编码器 buffer 超时时间（50ms）
 
     // 统计信息
     private long mTotalBufferNotAvailableCount = 0;  // buffer 不足次数
-    private long mTotalFramesQueued = 0;             // 放入队列的帧数
-    private long mTotalFramesDropped = 0;            // 丢弃的帧数（队列满时）
-    private long mMaxQueueDepth = 0;                 // 最大队列深度
-    private long mTotalDroppedBytes = 0;             // 总共丢弃的字节数
+
+    // ===== 采集线程 + 对齐混音（录制线程内使用） =====
+    // MIC + INTERNAL 两路由各自的采集线程读取并重采样/转换声道到编码格式，按采集时间对齐后再混音，不再按较短的一路截断；
+    // 异步编码模式下单源也由采集线程读取（混音器只有一路）
+    private static final int MIX_SOURCE_INTERNAL = 0;   // 两路都存在时 INTERNAL 先加入
+    private static final int MIX_SOURCE_MIC = 1;
+    private static final int MIX_MAX_LATENCY_MS = 200;  // 等待较慢一路的最长时间，超过后该路以静音输出
+    private static final long CAPTURE_THREAD_JOIN_TIMEOUT_MS = 500;
+    private AudioMixer mMixer;
+    private short[][] mMixBuffers;
+    private AudioCaptureThread mInternalCapture;
+    private AudioCaptureThread mMicCapture;
+
+    // ===== 音频源探测（prepare 时） =====
+    // MIC 读到有效信号即结束探测，探测期间读到的采样作为录制的第一段音频；MIC + INTERNAL 时 INTERNAL 的创建与 MIC 探测并行
+    private static final int PROBE_MIN_MS = 50;         // 按占比/均值判定前至少积累的时长
+    private static final int PROBE_MAX_MS = 150;        // 最长探测时长，仍没有有效信号则换下一个音频源
+    private static final int PROBE_READ_SAMPLES = 1024;
+    private short[] mProbedMicPcm;                      // 送入编码器（或混音器）后置空，录制线程内使用
+    private long mProbedMicReadDoneNs = 0;
+    private String mMicProbeSummary = "";
+    // 各音频源从开始创建到可以读取的耗时（毫秒），-1 表示未使用
+    private long mMicStartupMs = -1;
+    private volatile long mInternalStartupMs = -1;
+
+    // ===== 编码器驱动方式 =====
+    // 异步模式：MediaCodec 回调驱动，onInputBufferAvailable 从采集缓冲取数据，onOutputBufferAvailable 直接交给 muxer，
+    // 不再轮询 dequeueInputBuffer/dequeueOutputBuffer；轮询模式保留作为兜底（注册回调失败时自动回退）
+    private volatile boolean mUseAsyncCodec = false;
+    // 已取得但尚未填充的编码器输入缓冲区：异步模式下由回调放入，两种模式下等待采集数据时也暂存在这里（录制线程内使用）
+    private final ArrayDeque<Integer> mFreeInputIndices = new ArrayDeque<>();
+    // 正在等待采集线程的数据，由采集线程写入后唤醒，期间不主动调度 MSG_FEED_INPUT
+    private boolean mWaitingForCapture = false;
+
+    // ===== 暂停（录制线程内使用） =====
+    // 暂停期间停止 AudioRecord 和采集线程，不再向编码器送数据；恢复时重新开始采集，对齐缓冲重新建立
+    private boolean mPaused = false;
+    private boolean mResumeCaptureThreads = false;
 
     MicRecorder(AudioEncodeConfig config) {
         mEncoder = new AudioEncoder(config);
@@ -134,9 +183,23 @@ class MicRecorder implements Encoder {
         audioType = config.audioType;
         mSampleRate = config.sampleRate;
         mChannelsSampleRate = mSampleRate * config.channelCount;
+        mChannelCount = config.channelCount;
         if (VERBOSE) Log.i(TAG, "in bitrate " + mChannelsSampleRate * 16 /* PCM_16BIT*/);
         mChannelConfig = config.channelCount == 2 ? AudioFormat.CHANNEL_IN_STEREO : AudioFormat.CHANNEL_IN_MONO;
         mRecordThread = new HandlerThread(TAG);
+        mPendingRing = PcmRingBuffer.forDuration(mSampleRate, config.channelCount, PENDING_BUFFER_MS);
+        setMetrics(new MetricsRegistry(System::nanoTime));
+    }
+
+    /**
+     * 把音频输入指标（送编码器的帧数/字节数、读取耗时、积压与溢出）注册到共用的注册表，需在 prepare 之前调用
+     */
+    void setMetrics(MetricsRegistry metrics) {
+        mInputFramesCounter = metrics.counter(MetricsRegistry.AUDIO_INPUT_FRAMES);
+        mInputBytesCounter = metrics.counter(MetricsRegistry.AUDIO_INPUT_BYTES);
+        metrics.register(MetricsRegistry.AUDIO_READ_TIME, mReadTime);
+        metrics.gauge(MetricsRegistry.AUDIO_PENDING_MS, mPendingRing::availableMs);
+        metrics.gauge(MetricsRegistry.AUDIO_OVERFLOW_BYTES, mPendingRing::getOverflowBytes);
     }
 
     @Override
@@ -198,6 +261,8 @@ class MicRecorder implements Encoder {
                     try {
                         // 直接在这里释放资源，而不是通过 MSG_RELEASE
                         Log.d(TAG, "release: Releasing AudioRecord resources...");
+                        // 采集线程必须在 AudioRecord 释放前退出
+                        stopCaptureThreads();
 
                         if (mMic != null) {
                             Log.d(TAG, "release: Releasing mMic");
@@ -292,7 +357,9 @@ class MicRecorder implements Encoder {
 
 
     private static class CallbackDelegate extends Handler {
+        private static final int MSG_OUTPUT_AVAILABLE = 1;
         private BaseEncoder.Callback mCallback;
+        private volatile BaseEncoder mEncoder;
 
         CallbackDelegate(Looper l, BaseEncoder.Callback callback) {
             super(l);
@@ -316,12 +383,19 @@ class MicRecorder implements Encoder {
             }).sendToTarget();
         }
 
+        /**
+         * 每个编码输出都会经过这里，用 what/arg1/obj 传参，不为每个样本创建 Runnable
+         */
         void onOutputBufferAvailable(BaseEncoder encoder, int index, MediaCodec.BufferInfo info) {
-            Message.obtain(this, () -> {
-                if (mCallback != null) {
-                    mCallback.onOutputBufferAvailable(encoder, index, info);
-                }
-            }).sendToTarget();
+            mEncoder = encoder;
+            Message.obtain(this, MSG_OUTPUT_AVAILABLE, index, 0, info).sendToTarget();
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            if (msg.what == MSG_OUTPUT_AVAILABLE && mCallback != null) {
+                mCallback.onOutputBufferAvailable(mEncoder, msg.arg1, (MediaCodec.BufferInfo) msg.obj);
+            }
         }
 
         void onInternalAudioNotAvailable(int audioType) {
@@ -402,23 +476,44 @@ class MicRecorder implements Encoder {
 
                         // ===== startNs 已在 ScreenRecorder.record() 中初始化并传递过来 =====
                         // 不再在这里重复初始化，避免 startNs 定得太晚
-                        if (mRecordingStartTimeNanos == 0) {
-                            Log.w(TAG, "★★★ WARNING ★★★ startNs not set from ScreenRecorder, using fallback");
-                            mRecordingStartTimeNanos = SystemClock.elapsedRealtimeNanos();
+                        if (mTimeline == null || !mTimeline.isStarted()) {
+                            Log.w(TAG, "★★★ WARNING ★★★ timeline not set from ScreenRecorder, using fallback");
+                            RecordingTimeline timeline = new RecordingTimeline(ScreenRecorder.SYSTEM_CLOCK);
+                            timeline.start();
+                            mTimeline = timeline;
                         }
                     }
                     try {
-                        mEncoder.prepare();
+                        prepareEncoder();
                     } catch (Exception e) {
                         Log.e(TAG, "MSG_PREPARE: Encoder prepare failed", e);
                         mCallbackDelegate.onError(MicRecorder.this, e);
                         break;
                     }
+                    // 混合模式两路各自采集；异步模式下编码器回调不能阻塞在 AudioRecord.read 上，单源也由采集线程读取
+                    if ((mAudioRecord != null && mAudioRecordMic != null) || mUseAsyncCodec) {
+                        startCaptureThreads();
+                    }
                 case MSG_FEED_INPUT:
+                    if (mPaused) {
+                        // 异步模式下回调给出的输入缓冲区留在 mFreeInputIndices 中，恢复后使用
+                        break;
+                    }
                     if (!mForceStop.get()) {
+                        mWaitingForCapture = false;
                         int index = pollInput();
                         if (VERBOSE)
                             Log.d(TAG, "audio encoder returned input buffer index=" + index);
+                        if (mUseAsyncCodec) {
+                            // 异步模式：输出由回调送出，没有可用输入缓冲区时等待 onInputBufferAvailable
+                            if (index >= 0) {
+                                feedAudioEncoder(index);
+                            }
+                            if (!mWaitingForCapture && !mFreeInputIndices.isEmpty() && !mForceStop.get()) {
+                                sendEmptyMessage(MSG_FEED_INPUT);
+                            }
+                            break;
+                        }
                         if (index >= 0) {
                             feedAudioEncoder(index);
                         } else {
@@ -436,6 +531,7 @@ class MicRecorder implements Encoder {
                     }
                     break;
                 case MSG_DRAIN_OUTPUT:
+                    if (mUseAsyncCodec) break;  // 异步模式下输出由 onOutputBufferAvailable 送出
                     Log.d(TAG, "handleMessage: ★★★ MSG_DRAIN_OUTPUT received ★★★");
                     offerOutput();
                     pollInputIfNeed();
@@ -449,6 +545,8 @@ class MicRecorder implements Encoder {
                     pollInputIfNeed();
                     break;
                 case MSG_STOP:
+                    stopCaptureThreads();
+                    mFreeInputIndices.clear();
                     if (mMic != null) {
                         mMic.stop();
                     }
@@ -513,12 +611,40 @@ class MicRecorder implements Encoder {
         }
 
         private int pollInput() {
-            return mEncoder.getEncoder().dequeueInputBuffer(0);
+            return nextInputBuffer(0);
+        }
+
+        /**
+         * 异步模式：编码器给出一个空闲输入缓冲区，不在等待采集数据时立即填充
+         */
+        private void onCodecInputAvailable(int index) {
+            mFreeInputIndices.offerLast(index);
+            if (!mWaitingForCapture && !mForceStop.get() && !hasMessages(MSG_FEED_INPUT)) {
+                sendEmptyMessage(MSG_FEED_INPUT);
+            }
+        }
+
+        /**
+         * 异步模式：编码输出直接交给 muxer（经 CallbackDelegate 切到调用者线程）
+         */
+        private void onCodecOutputAvailable(int index, MediaCodec.BufferInfo info) {
+            if (mForceStop.get()) {
+                mEncoder.releaseOutputBuffer(index);
+                return;
+            }
+            if (VERBOSE) Log.i(TAG, "onCodecOutputAvailable: index=" + index + ", size=" + info.size +
+                    ", flags=" + info.flags + ", pts=" + info.presentationTimeUs);
+            mMuxingOutputBufferIndices.offer(index);
+            mCallbackDelegate.onOutputBufferAvailable(mEncoder, index, info);
         }
 
         private void pollInputIfNeed() {
             Log.d(TAG, "pollInputIfNeed: mMuxingOutputBufferIndices.size()=" + mMuxingOutputBufferIndices.size() +
                     ", mForceStop=" + mForceStop.get());
+            if (mWaitingForCapture) {
+                // 正在等待采集线程的数据，由采集线程唤醒，避免空转
+                return;
+            }
             if (mMuxingOutputBufferIndices.size() <= 1 && !mForceStop.get()) {
                 // need fresh data, right now!
                 removeMessages(MSG_FEED_INPUT);
@@ -532,269 +658,259 @@ class MicRecorder implements Encoder {
      * NOTE: Should waiting all output buffer disappear queue input buffer
      */
 
-    private short[] scaleValues(short[] buff, int len, float scale) {
-        for (int i = 0; i < len; i++) {
-            int oldValue = buff[i];
-            int newValue = (int) (buff[i] * scale);
-            if (newValue > Short.MAX_VALUE) {
-                newValue = Short.MAX_VALUE;
-            } else if (newValue < Short.MIN_VALUE) {
-                newValue = Short.MIN_VALUE;
-            }
-            buff[i] = (short) (newValue);
-        }
-        return buff;
-    }
     /**
-     * 添加和转换缓冲区 - 参考 SystemUI 的实现
-     * 将两个 short[] 音频缓冲区混合并转换为 byte[]
+     * 单音频源处理辅助方法
+     * 直接读入可复用的 short[]，增益与峰值分析原地完成，再按本机字节序直接写入编码器输入缓冲区，
+     * 整个过程不产生每帧垃圾
+     *
+     * @param index 编码器缓冲区索引
+     * @param record AudioRecord 实例
+     * @param shortBuffer short[] 缓冲区
+     * @param source 音频源标识（用于日志）
+     * @param gain 音量增益（麦克风为 MIC_VOLUME_SCALE，其余为 1）
      */
-    private byte[] addAndConvertBuffers(short[] src1, int size1, short[] src2, int size2) {
-        int sizeShorts = Math.min(size1, size2);
-        if (sizeShorts <= 0) return new byte[0];
+    private void feedSingleSourceAudio(int index, AudioRecord record, short[] shortBuffer, String source, float gain) {
+        if (queueEosIfStopped(index, record, source)) return;
 
-        if (buffer == null || buffer.length < sizeShorts * 2) {
-            buffer = new byte[sizeShorts * 2];
+        short[] probed = takeProbedSamples(record);
+        if (probed != null) {
+            // 第一帧使用探测时已经读到的采样
+            processSingleSourceFrame(index, probed, probed.length, source, gain);
+            return;
         }
+        final long readStartNs = System.nanoTime();
+        int readShorts = record.read(shortBuffer, 0, shortBuffer.length);
+        mReadTime.record(System.nanoTime() - readStartNs);
+        if (VERBOSE) Log.d(TAG, "feedSingleSourceAudio [" + source + "]: readShorts=" + readShorts);
 
-        for (int i = 0; i < sizeShorts; i++) {
-            // 混合两个音频源，使用钳位防止溢出
-            int sum = (int) src1[i] + (int) src2[i];
-            if (sum > Short.MAX_VALUE) sum = Short.MAX_VALUE;
-            if (sum < Short.MIN_VALUE) sum = Short.MIN_VALUE;
-
-            int byteIndex = i * 2;
-            buffer[byteIndex] = (byte) (sum & 0xff);
-            buffer[byteIndex + 1] = (byte) ((sum >> 8) & 0xff);
+        if (readShorts > 0) {
+            processSingleSourceFrame(index, shortBuffer, readShorts, source, gain);
+        } else if (readShorts < 0) {
+            Log.e(TAG, "feedSingleSourceAudio [" + source + "]: READ ERROR code=" + readShorts +
+                    " (-1=ERROR, -2=BAD_VALUE, -3=INVALID_OPERATION, -6=DEAD_OBJECT)");
+        } else {
+            Log.w(TAG, "feedSingleSourceAudio [" + source + "]: READ 0 shorts - no data!");
         }
-        return buffer;
     }
 
     /**
-     * 将 short[] 转换为 byte[]（用于单音频源）
+     * 单音频源（由采集线程读取）处理：只取采集线程已经写入的数据，不阻塞录制线程
+     *
+     * @param index 编码器缓冲区索引
      */
-    private byte[] convertToBytes(short[] src, int size) {
-        if (size <= 0) return new byte[0];
-
-        if (buffer == null || buffer.length < size * 2) {
-            buffer = new byte[size * 2];
-        }
-
-        for (int i = 0; i < size; i++) {
-            int byteIndex = i * 2;
-            buffer[byteIndex] = (byte) (src[i] & 0xff);
-            buffer[byteIndex + 1] = (byte) ((src[i] >> 8) & 0xff);
+    private void feedCapturedSingleSource(int index) {
+        final boolean internal = mInternalCapture != null;
+        final AudioRecord record = internal ? mAudioRecord : mAudioRecordMic;
+        final String source = internal ? "INTERNAL" : "MIC";
+        if (queueEosIfStopped(index, record, source)) return;
+
+        final int frames = mMixer.pull(mMixBuffers, mMixBuffers[0].length / mChannelCount,
+                SystemClock.elapsedRealtimeNanos());
+        if (frames == 0) {
+            holdInputBuffer(index);
+            return;
         }
-        return buffer;
+        // 混合模式降级为只剩 MIC 时沿用混音时的麦克风增益
+        final float gain = !internal && audioType == 2 ? MIC_VOLUME_SCALE : 1f;
+        processSingleSourceFrame(index, mMixBuffers[0], frames * mChannelCount, source, gain);
     }
 
     /**
-     * 单音频源处理辅助方法
-     * @param index 编码器缓冲区索引
-     * @param record AudioRecord 实例
-     * @param shortBuffer short[] 缓冲区
-     * @param isMic 是否是麦克风源（用于音量缩放）
+     * AudioRecord 已停止时送出 EOS
+     *
+     * @return 是否已送出 EOS
      */
-    private void feedSingleSourceAudio(int index, AudioRecord record, short[] shortBuffer, boolean isMic) {
-        final boolean eos = record.getRecordingState() == AudioRecord.RECORDSTATE_STOPPED;
-        if (eos) {
-            Log.w(TAG, "feedSingleSourceAudio: EOS detected");
-            final ByteBuffer frame = mEncoder.getInputBuffer(index);
-            int offset = frame.position();
-            long pstTs = calculateFrameTimestamp(0);
-            mEncoder.queueInputBuffer(index, offset, 0, pstTs, BUFFER_FLAG_END_OF_STREAM);
-            return;
+    private boolean queueEosIfStopped(int index, AudioRecord record, String source) {
+        if (record.getRecordingState() != AudioRecord.RECORDSTATE_STOPPED) {
+            return false;
         }
+        Log.w(TAG, "feedSingleSourceAudio [" + source + "]: EOS detected");
+        final ByteBuffer frame = mEncoder.getInputBuffer(index);
+        int offset = frame.position();
+        long pstTs = calculateFrameTimestamp(0);
+        mEncoder.queueInputBuffer(index, offset, 0, pstTs, BUFFER_FLAG_END_OF_STREAM);
+        return true;
+    }
 
-        int readShorts = record.read(shortBuffer, 0, shortBuffer.length);
-        Log.d(TAG, "feedSingleSourceAudio: readShorts=" + readShorts + ", isMic=" + isMic);
-
-        if (readShorts > 0) {
-            // 如果是麦克风，应用音量缩放
-            if (isMic) {
-                scaleValues(shortBuffer, readShorts, MIC_VOLUME_SCALE);
+    /**
+     * 单音频源一帧数据的增益、静音检测/填充和编码
+     */
+    private void processSingleSourceFrame(int index, short[] shortBuffer, int readShorts, String source, float gain) {
+        // 增益与峰值/RMS/静音判定在同一遍扫描中完成
+        int maxValue = mFrameAnalyzer.analyze(shortBuffer, readShorts, gain);
+
+        if (mSilentFillConfig.isEnabled()) {
+            // ===== 启用智能静音填充 =====
+            mFrameCount++;
+            boolean isSilent = trackSilentFrame(mFrameAnalyzer.output.silent);
+
+            // 详细日志（每10帧打印一次）
+            if (VERBOSE_SILENT_FILL && mFrameCount % 10 == 0) {
+                Log.d(TAG_SILENT_FILL, String.format(Locale.US,
+                    "[FRAME_%d] %s: maxValue=%d, isSilent=%b, consecutiveSilent=%d, mode=%s",
+                    mFrameCount, source, maxValue, isSilent, mConsecutiveSilentFrames, mSilentFillConfig.getMode()));
             }
 
-            // 将 short[] 转换为 byte[]
-            int readBytes = readShorts * 2;
-            byte[] tempBuffer = new byte[readBytes];
-            for (int i = 0; i < readShorts; i++) {
-                short value = shortBuffer[i];
-                tempBuffer[i * 2] = (byte) (value & 0xff);
-                tempBuffer[i * 2 + 1] = (byte) ((value >> 8) & 0xff);
+            if (isSilent) {
+                // 静音帧，原地应用智能填充策略
+                if (!applySilentFillStrategy(shortBuffer, readShorts)) {
+                    // 跳帧模式，跳过这一帧
+                    skipFrameTimestamp(readShorts);
+                    // 输入缓冲区没有用上，留给下一帧
+                    returnInputBuffer(index);
+                    if (VERBOSE_SILENT_FILL) {
+                        Log.d(TAG_SILENT_FILL, "[SKIP_FRAME] Skipped silent frame in REDUCED_SAMPLE_RATE mode");
+                    }
+                    return;
+                }
+            } else {
+                // 有声音，正常编码
+                if (mConsecutiveSilentFrames > 0) {
+                    Log.i(TAG_SILENT_FILL, String.format(Locale.US,
+                        "★★★ AUDIO RESUMED ★★★ After %d silent frames", mConsecutiveSilentFrames));
+                }
+                checkAndWarnSilentFrame(maxValue, source);
             }
-            encode(index, tempBuffer, readBytes);
-        } else if (readShorts < 0) {
-            Log.e(TAG, "feedSingleSourceAudio: READ ERROR code=" + readShorts +
-                    " (-1=ERROR, -2=BAD_VALUE, -3=INVALID_OPERATION, -6=DEAD_OBJECT)");
         } else {
-            Log.w(TAG, "feedSingleSourceAudio: READ 0 shorts - no data!");
+            // ===== 未启用智能填充，正常处理（包括feed全0静音数据） =====
+            checkAndWarnSilentFrame(maxValue, source);
         }
+
+        // Feed到编码器
+        encode(index, shortBuffer, readShorts);
     }
 
     short[] bufferInternal = null;
     short[] bufferMic = null;
-    byte[] buffer = null;
     private static final int TIMEOUT = 500;
 
-    private void encode(int bufferIndex, byte[] buffer, int readBytes) {
-        int offset = 0;
-        while (readBytes > 0) {
-            int totalBytesRead = 0;
+    /**
+     * 将 PCM 采样直接写入编码器输入缓冲区
+     * 一个输入缓冲区放不下时继续申请下一个，申请不到才把剩余部分放入积压队列
+     */
+    private void encode(int bufferIndex, short[] samples, int sampleCount) {
+        if (!mPendingRing.isEmpty()) {
+            // 积压数据还没清空，新数据追加到队尾，保证送入编码器的顺序与采集顺序一致
+            queuePendingSamples(samples, 0, sampleCount);
+            drainPendingSamples(bufferIndex);
+            printAudioStatsIfNeeded();
+            return;
+        }
 
+        int offset = 0;
+        while (sampleCount > 0) {
             ByteBuffer buff = mEncoder.getInputBuffer(bufferIndex);
+            buff.clear();
 
-            int bufferSize = buff.capacity();
-            int bytesToRead = readBytes > bufferSize ? bufferSize : readBytes;
-            totalBytesRead += bytesToRead;
-
-            readBytes -= bytesToRead;
-            buff.put(buffer, offset, bytesToRead);
-            offset += bytesToRead;
+            int written = PcmUtils.writeSamples(samples, offset, sampleCount, buff);
+            if (written <= 0) {
+                Log.e(TAG, "encode: input buffer too small, capacity=" + buff.capacity());
+                break;
+            }
+            sampleCount -= written;
+            offset += written;
+            int bytesToRead = written << 1;
 
             long pstTs = calculateFrameTimestamp(bytesToRead << 3);
-     /*       mEncoder.queueInputBuffer(bufferIndex, 0, bytesToRead, mPresentationTime, 0);
-
-
-            long pstTs = calculateFrameTimestamp(bytesToRead << 3);*/
             int flags = BUFFER_FLAG_KEY_FRAME;
 
             // ===== 音频编码统计日志 =====
             mTotalBytesEncoded += bytesToRead;
             mTotalFramesProcessed++;
+            mInputBytesCounter.add(bytesToRead);
+            mInputFramesCounter.increment();
 
             mEncoder.queueInputBuffer(bufferIndex, 0, bytesToRead, pstTs, flags);
-            Log.d(TAG, "encode: Queued audio frame #" + mTotalFramesProcessed +
+            if (VERBOSE) Log.d(TAG, "encode: Queued audio frame #" + mTotalFramesProcessed +
                     ", bytesToRead=" + bytesToRead + ", pstTs=" + pstTs + ", flags=" + flags);
 
-            if (readBytes>0){
+            if (sampleCount > 0) {
                 // ===== 使用更长的超时时间，给编码器更多处理时间 =====
-                bufferIndex = mEncoder.getEncoder().dequeueInputBuffer(ENCODER_BUFFER_TIMEOUT_MS);
-                Log.d(TAG, "encode: Requested next buffer, index=" + bufferIndex + ", remainingBytes=" + readBytes);
+                bufferIndex = nextInputBuffer(ENCODER_BUFFER_TIMEOUT_MS);
+                Log.d(TAG, "encode: Requested next buffer, index=" + bufferIndex + ", remainingSamples=" + sampleCount);
 
-                if (bufferIndex<0){
+                if (bufferIndex < 0) {
                     // ===== buffer 不足，将剩余数据放入队列而不是丢弃 =====
                     mTotalBufferNotAvailableCount++;
-                    Log.w(TAG, String.format(Locale.US,
-                        "encode: ★★★ BUFFER NOT AVAILABLE ★★★ Queueing %d bytes (count=%d, queueSize=%d)",
-                        readBytes, mTotalBufferNotAvailableCount, mPendingFramesQueue.size()));
-
-                    // 将剩余数据放入队列
-                    byte[] remainingData = new byte[readBytes];
-                    System.arraycopy(buffer, offset, remainingData, 0, readBytes);
-                    AudioFrame frame = new AudioFrame(remainingData, readBytes, System.currentTimeMillis());
-
-                    synchronized (mPendingFramesQueue) {
-                        if (mPendingFramesQueue.size() < MAX_PENDING_FRAMES) {
-                            mPendingFramesQueue.offer(frame);
-                            mTotalFramesQueued++;
-                            mMaxQueueDepth = Math.max(mMaxQueueDepth, mPendingFramesQueue.size());
-                            Log.i(TAG, String.format(Locale.US,
-                                "encode: Frame queued successfully (queueSize=%d, maxDepth=%d)",
-                                mPendingFramesQueue.size(), mMaxQueueDepth));
-                        } else {
-                            // 队列已满，记录丢弃
-                            mTotalFramesDropped++;
-                            mTotalDroppedBytes += readBytes;
-                            Log.e(TAG, String.format(Locale.US,
-                                "encode: ★★★ QUEUE FULL ★★★ Dropping frame! (dropped=%d, droppedBytes=%d)",
-                                mTotalFramesDropped, mTotalDroppedBytes));
-                        }
-                    }
+                    queuePendingSamples(samples, offset, sampleCount);
                     break;
                 }
             }
-  /*          mTotalBytes += totalBytesRead;
-            mPresentationTime = 1000000L * (mTotalBytes / 2) / mConfig.sampleRate;
-
-            writeOutput();*/
         }
 
         // ===== 定期打印统计信息 =====
         printAudioStatsIfNeeded();
     }
 
+    /**
+     * 编码器 buffer 不足时，把剩余采样写入积压环形缓冲区
+     * 缓冲区已满时只写入能放下的部分，其余计入溢出统计
+     */
+    private void queuePendingSamples(short[] samples, int offset, int sampleCount) {
+        int written = mPendingRing.write(samples, offset, sampleCount);
+        if (written < sampleCount) {
+            if (mDroppedPendingSamples == 0) {
+                mDroppedPendingAtByte = mPendingRing.getTotalWritten();
+            }
+            mDroppedPendingSamples += sampleCount - written;
+            Log.e(TAG, String.format(Locale.US,
+                "encode: ★★★ PENDING BUFFER FULL ★★★ Dropped %d bytes (%s)",
+                (sampleCount - written) << 1, mPendingRing));
+        } else if (VERBOSE) {
+            Log.d(TAG, String.format(Locale.US,
+                "encode: Queued %d bytes to pending buffer (pending=%dms)",
+                written << 1, mPendingRing.availableMs()));
+        }
+    }
+
     private static final float MIC_VOLUME_SCALE = 1.4f;
 
     /**
-     * 处理队列中的积压音频帧
+     * 处理队列中的积压音频数据
      * 在处理新数据前，优先处理队列中的积压数据
-     * 关键修复：大帧分片处理，不截断
      */
     private void processPendingFrames() {
-        synchronized (mPendingFramesQueue) {
-            while (!mPendingFramesQueue.isEmpty()) {
-                // 从队列取出一帧（但不移除，先处理）
-                AudioFrame frame = mPendingFramesQueue.peek();
-                if (frame == null) break;
-
-                Log.i(TAG, String.format(Locale.US,
-                    "processPendingFrames: Processing queued frame (bytes=%d, age=%dms, remainingQueue=%d)",
-                    frame.length, System.currentTimeMillis() - frame.timestamp, mPendingFramesQueue.size()));
-
-                // ===== 分片处理大帧，不截断 =====
-                int offset = 0;
-                while (offset < frame.length) {
-                    // 尝试获取 buffer
-                    int bufferIndex = mEncoder.getEncoder().dequeueInputBuffer(ENCODER_BUFFER_TIMEOUT_MS);
-                    if (bufferIndex < 0) {
-                        // 没有 buffer，停止处理
-                        Log.d(TAG, String.format(Locale.US,
-                            "processPendingFrames: No buffer available, processed %d/%d bytes, queue size=%d",
-                            offset, frame.length, mPendingFramesQueue.size()));
-
-                        // 如果已经处理了部分数据，更新 frame
-                        if (offset > 0) {
-                            // 创建新 frame 包含剩余数据
-                            byte[] remainingData = new byte[frame.length - offset];
-                            System.arraycopy(frame.data, offset, remainingData, 0, remainingData.length);
-                            AudioFrame newFrame = new AudioFrame(remainingData, remainingData.length, frame.timestamp);
-
-                            // 移除旧 frame，添加新 frame
-                            mPendingFramesQueue.poll();
-                            mPendingFramesQueue.addFirst(newFrame);
-
-                            Log.i(TAG, String.format(Locale.US,
-                                "processPendingFrames: Partial processed, remaining %d bytes re-queued",
-                                remainingData.length));
-                        }
-                        return;
-                    }
-
-                    // 获取 buffer 容量
-                    ByteBuffer buff = mEncoder.getInputBuffer(bufferIndex);
-                    int bufferCapacity = buff.capacity();
-
-                    // 计算本次写入的字节数
-                    int bytesToWrite = Math.min(frame.length - offset, bufferCapacity);
-
-                    // 写入数据
-                    buff.put(frame.data, offset, bytesToWrite);
-                    long pstTs = calculateFrameTimestamp(bytesToWrite << 3);
-                    mEncoder.queueInputBuffer(bufferIndex, 0, bytesToWrite, pstTs, BUFFER_FLAG_KEY_FRAME);
-
-                    mTotalBytesEncoded += bytesToWrite;
-                    mTotalFramesProcessed++;
-                    offset += bytesToWrite;
+        if (!mPendingRing.isEmpty()) {
+            drainPendingSamples(-1);
+        }
+    }
 
-                    Log.d(TAG, String.format(Locale.US,
-                        "processPendingFrames: Wrote %d bytes (offset=%d/%d)",
-                        bytesToWrite, offset, frame.length));
+    /**
+     * 将积压数据分片写入编码器，编码器 buffer 小于积压数据时只读取一部分，不截断
+     * 积压量超过高水位时阻塞等待编码器 buffer（背压），否则只做非阻塞尝试，避免拖慢采集线程
+     *
+     * @param bufferIndex 已取得的编码器 buffer，没有则传 -1
+     */
+    private void drainPendingSamples(int bufferIndex) {
+        while (!mPendingRing.isEmpty()) {
+            if (bufferIndex < 0) {
+                long timeout = mPendingRing.isAboveHighWatermark() ? ENCODER_BUFFER_TIMEOUT_MS : 0;
+                bufferIndex = nextInputBuffer(timeout);
+                if (bufferIndex < 0) {
+                    if (VERBOSE) Log.d(TAG, "drainPendingSamples: No buffer available, pending=" +
+                            mPendingRing.availableMs() + "ms");
+                    return;
                 }
-
-                // 整个 frame 处理完毕，从队列移除
-                mPendingFramesQueue.poll();
-                Log.i(TAG, String.format(Locale.US,
-                    "processPendingFrames: Frame fully processed (%d bytes), remaining queue=%d",
-                    frame.length, mPendingFramesQueue.size()));
             }
 
-            // 队列处理完毕
-            if (mPendingFramesQueue.isEmpty() && mTotalFramesQueued > 0) {
-                Log.i(TAG, String.format(Locale.US,
-                    "processPendingFrames: ★★★ QUEUE CLEARED ★★★ (totalQueued=%d, totalDropped=%d)",
-                    mTotalFramesQueued, mTotalFramesDropped));
+            ByteBuffer buff = mEncoder.getInputBuffer(bufferIndex);
+            buff.clear();
+            int bytesToWrite = mPendingRing.read(buff);
+            long pstTs = calculateFrameTimestamp(bytesToWrite << 3);
+            mEncoder.queueInputBuffer(bufferIndex, 0, bytesToWrite, pstTs, BUFFER_FLAG_KEY_FRAME);
+            if (mDroppedPendingSamples > 0 && mPendingRing.getTotalRead() >= mDroppedPendingAtByte) {
+                // 丢弃点之前的数据已送完，之后的数据在时间上位于被丢弃的采样之后
+                skipFrameTimestamp(mDroppedPendingSamples);
+                mDroppedPendingSamples = 0;
             }
+            bufferIndex = -1;
+
+            mTotalBytesEncoded += bytesToWrite;
+            mTotalFramesProcessed++;
+            mInputBytesCounter.add(bytesToWrite);
+            mInputFramesCounter.increment();
+            if (VERBOSE) Log.d(TAG, String.format(Locale.US,
+                "drainPendingSamples: Wrote %d bytes, remaining %d bytes", bytesToWrite, mPendingRing.available()));
         }
     }
 
@@ -807,18 +923,13 @@ class MicRecorder implements Encoder {
             // MIC + INTERNAL 混合模式
             Log.d(TAG, "════════════════════════════════════════════════════════");
             Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: START - index=" + index);
-            int readShortsInternal = 0;
-            int readShortsMic = 0;
-
-            readShortsInternal = mAudioRecord.read(bufferInternal, 0, bufferInternal.length);
-            readShortsMic = mAudioRecordMic.read(bufferMic, 0, bufferMic.length);
-            Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: Read results - internal=" + readShortsInternal + ", mic=" + readShortsMic);
-
+            // 两路由各自的采集线程读取，这里只取已经到达的数据，不再阻塞在任何一路的 read 上
             // ★★★ 关键修复：参考 SystemUI 的错误处理策略 ★★★
-            // 如果两个都失败，结束录制
-            if (readShortsInternal < 0 && readShortsMic < 0) {
+            // 如果两个都失败，结束录制；只有一个失败时，对齐缓冲会在超过最大等待时间后为它补静音
+            if (mInternalCapture.isFailing() && mMicCapture.isFailing()) {
                 Log.e(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: ★★★ BOTH SOURCES FAILED ★★★");
-                Log.e(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: internal=" + readShortsInternal + ", mic=" + readShortsMic);
+                Log.e(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: internal=" + mInternalCapture.getLastError() +
+                        ", mic=" + mMicCapture.getLastError());
                 final ByteBuffer frame = mEncoder.getInputBuffer(index);
                 int offset = frame.position();
                 long pstTs = calculateFrameTimestamp(0);
@@ -826,128 +937,94 @@ class MicRecorder implements Encoder {
                 return;
             }
 
-            // 如果一个失败，用静音填充并继续（参考 SystemUI 的做法）
-            if (readShortsInternal < 0) {
-                Log.w(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: INTERNAL FAILED (" + readShortsInternal +
-                        "), filling with SILENCE");
-                readShortsInternal = readShortsMic;
-                java.util.Arrays.fill(bufferInternal, (short) 0);
-            }
-            if (readShortsMic < 0) {
-                Log.w(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: MIC FAILED (" + readShortsMic +
-                        "), filling with SILENCE");
-                readShortsMic = readShortsInternal;
-                java.util.Arrays.fill(bufferMic, (short) 0);
-            }
-
-            // ===== 诊断日志：分析每个源的数据 =====
-            int internalMaxValue = 0;
-            int micMaxValue = 0;
-            boolean internalAllZeros = true;
-            boolean micAllZeros = true;
-
-            for (int i = 0; i < Math.min(readShortsInternal, bufferInternal.length); i++) {
-                int absVal = Math.abs(bufferInternal[i]);
-                if (bufferInternal[i] != 0) internalAllZeros = false;
-                internalMaxValue = Math.max(internalMaxValue, absVal);
+            // 取出两路都已到达（或较慢一路已超时）的部分
+            final int mixFrames = mMixer.pull(mMixBuffers, mMixBuffers[MIX_SOURCE_INTERNAL].length / mChannelCount,
+                    SystemClock.elapsedRealtimeNanos());
+            if (mixFrames == 0) {
+                // 还在等待数据，输入缓冲区留给下一次，由采集线程写入后唤醒
+                holdInputBuffer(index);
+                if (VERBOSE) Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: waiting for alignment, " + mMixer);
+                return;
             }
-
-            for (int i = 0; i < Math.min(readShortsMic, bufferMic.length); i++) {
-                int absVal = Math.abs(bufferMic[i]);
-                if (bufferMic[i] != 0) micAllZeros = false;
-                micMaxValue = Math.max(micMaxValue, absVal);
+            final int minShorts = mixFrames * mChannelCount;
+            final short[] mixed = mMixBuffers[MIX_SOURCE_INTERNAL];
+
+            // ===== 单遍分析 + 混音：峰值/RMS/零值/削波统计与增益混音在同一个循环内完成 =====
+            // 混音结果直接写回 INTERNAL 的对齐缓冲，两个源的统计基于增益前的原始数据
+            int mixedMaxValue = mFrameAnalyzer.mix(mixed, mMixBuffers[MIX_SOURCE_MIC], minShorts, MIC_VOLUME_SCALE);
+            final PcmFrameAnalyzer.FrameStats internalStats = mFrameAnalyzer.first;
+            final PcmFrameAnalyzer.FrameStats micStats = mFrameAnalyzer.second;
+
+            if (VERBOSE) {
+                Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: INTERNAL " + internalStats +
+                        " | MIC " + micStats + " | OUT " + mFrameAnalyzer.output);
             }
 
-            Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: ┌─ INTERNAL DATA ─────────────");
-            Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: │  allZeros=" + internalAllZeros + ", maxValue=" + internalMaxValue);
-            Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: └─────────────────────────────");
-            Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: ┌─ MIC DATA ──────────────────");
-            Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: │  allZeros=" + micAllZeros + ", maxValue=" + micMaxValue);
-            Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: └─────────────────────────────");
-
             // ★★★ 根据开关状态选择策略 ★★★
-            byte[] finalBuffer;
-            int readBytes;
-
             if (mSilentFillConfig.isEnabled()) {
                 // ===== 启用智能静音填充 =====
                 mFrameCount++;
-                boolean internalIsSilent = isSilentFrame(bufferInternal, readShortsInternal);
-                boolean micIsSilent = isSilentFrame(bufferMic, readShortsMic);
+                boolean bothSilent = trackSilentFrame(internalStats.silent && micStats.silent);
 
                 // 详细日志（每10帧打印一次）
                 if (VERBOSE_SILENT_FILL && mFrameCount % 10 == 0) {
                     Log.d(TAG_SILENT_FILL, String.format(Locale.US,
                         "[FRAME_%d] INTERNAL: maxValue=%d, isSilent=%b | MIC: maxValue=%d, isSilent=%b | consecutiveSilent=%d, mode=%s",
-                        mFrameCount, internalMaxValue, internalIsSilent, micMaxValue, micIsSilent,
+                        mFrameCount, internalStats.peak, internalStats.silent, micStats.peak, micStats.silent,
                         mConsecutiveSilentFrames, mSilentFillConfig.getMode()));
                 }
 
-                boolean bothSilent = internalIsSilent && micIsSilent;
-
                 if (bothSilent) {
-                    // 两个源都静音，应用智能填充策略
-                    finalBuffer = applySilentFillStrategy(bufferInternal, Math.min(readShortsInternal, readShortsMic));
-
-                    if (finalBuffer == null) {
-                        // 跳帧模式返回null，跳过这一帧
+                    // 两个源都静音，用智能填充策略覆盖混音结果
+                    if (!applySilentFillStrategy(mixed, minShorts)) {
+                        // 跳帧模式，跳过这一帧
+                        skipFrameTimestamp(minShorts);
+                        returnInputBuffer(index);
                         if (VERBOSE_SILENT_FILL) {
                             Log.d(TAG_SILENT_FILL, "[SKIP_FRAME] Skipped silent frame in REDUCED_SAMPLE_RATE mode");
                         }
                         return;
                     }
 
-                    readBytes = finalBuffer.length;
-
                     if (VERBOSE_SILENT_FILL && mFrameCount % 10 == 0) {
                         Log.d(TAG_SILENT_FILL, String.format(Locale.US,
                             "[SILENT_FILL] Applied mode=%s, consecutiveSilent=%d, bytes=%d",
-                            mSilentFillConfig.getMode(), mConsecutiveSilentFrames, readBytes));
+                            mSilentFillConfig.getMode(), mConsecutiveSilentFrames, minShorts * 2));
                     }
                 } else {
-                    // 至少有一个源有声音，正常混合
+                    // 至少有一个源有声音，使用混音结果
                     if (mConsecutiveSilentFrames > 0) {
                         Log.i(TAG_SILENT_FILL, String.format(Locale.US,
                             "★★★ AUDIO RESUMED ★★★ After %d silent frames", mConsecutiveSilentFrames));
                     }
-
-                    int minShorts = Math.min(readShortsInternal, readShortsMic);
-                    scaleValues(bufferMic, minShorts, MIC_VOLUME_SCALE);
-                    finalBuffer = addAndConvertBuffers(bufferInternal, minShorts, bufferMic, minShorts);
-                    readBytes = minShorts * 2;
-
-                    int combinedMaxValue = Math.max(internalMaxValue, (int)(micMaxValue * MIC_VOLUME_SCALE));
-                    checkAndWarnSilentFrame(combinedMaxValue, "MIC_AND_INTERNAL");
+                    checkAndWarnSilentFrame(mixedMaxValue, "MIC_AND_INTERNAL");
                 }
             } else {
                 // ===== 未启用智能填充，正常处理（包括feed全0静音数据） =====
-                Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: Silent fill DISABLED, normal processing");
-
-                int combinedMaxValue = Math.max(internalMaxValue, (int)(micMaxValue * MIC_VOLUME_SCALE));
-                checkAndWarnSilentFrame(combinedMaxValue, "MIC_AND_INTERNAL");
-
-                int minShorts = Math.min(readShortsInternal, readShortsMic);
-                scaleValues(bufferMic, minShorts, MIC_VOLUME_SCALE);
-                finalBuffer = addAndConvertBuffers(bufferInternal, minShorts, bufferMic, minShorts);
-                readBytes = minShorts * 2;
+                checkAndWarnSilentFrame(mixedMaxValue, "MIC_AND_INTERNAL");
             }
 
             // Feed到编码器
             final boolean eos = (mAudioRecord.getRecordingState() == AudioRecord.RECORDSTATE_STOPPED &&
                     mAudioRecordMic.getRecordingState() == AudioRecord.RECORDSTATE_STOPPED);
-            if (!eos && readBytes > 0) {
-                encode(index, finalBuffer, readBytes);
+            if (!eos && minShorts > 0) {
+                encode(index, mixed, minShorts);
             } else {
                 return;
             }
             Log.d(TAG, "feedAudioEncoder [MIC_AND_INTERNAL]: END");
             Log.d(TAG, "════════════════════════════════════════════════════════");
+        } else if (mMixer != null && (mInternalCapture != null || mMicCapture != null)) {
+            // 单源由采集线程读取（异步编码模式）
+            feedCapturedSingleSource(index);
         } else if (audioType == 2 && (mAudioRecordMic != null || mAudioRecord != null)) {
             // 混合模式但只有一个源可用 - 降级处理
             Log.w(TAG, "feedAudioEncoder [MIC_AND_INTERNAL_DEGRADED]: Only one source available");
             AudioRecord availableRecord = mAudioRecordMic != null ? mAudioRecordMic : mAudioRecord;
             short[] availableBuffer = mAudioRecordMic != null ? bufferMic : bufferInternal;
-            feedSingleSourceAudio(index, availableRecord, availableBuffer, mAudioRecordMic != null);
+            feedSingleSourceAudio(index, availableRecord, availableBuffer,
+                    mAudioRecordMic != null ? "MIC" : "INTERNAL",
+                    mAudioRecordMic != null ? MIC_VOLUME_SCALE : 1f);
         } else {
             Log.d(TAG, "feedAudioEncoder [SINGLE]: Entering single-source mode, audioType=" + audioType);
             final AudioRecord r = Objects.requireNonNull(mMic, "maybe release");
@@ -958,204 +1035,11 @@ class MicRecorder implements Encoder {
 
             // 关键修复：对于INTERNAL模式(audioType=1)，使用与MIC_AND_INTERNAL相同的read(short[])方式
             // 因为某些设备对AudioPlaybackCaptureConfiguration的read(ByteBuffer)支持有问题
+            // MIC单独模式也使用read(short[])方式，两者共用同一条零分配路径
             if (audioType == 1 && bufferInternal != null) {
-                Log.d(TAG, "feedAudioEncoder [INTERNAL]: Using read(short[]) method for better compatibility");
-                if (!eos) {
-                    int readShorts = r.read(bufferInternal, 0, bufferInternal.length);
-                    Log.d(TAG, "feedAudioEncoder [INTERNAL]: readShorts=" + readShorts);
-                    if (readShorts > 0) {
-                        // 诊断日志：检查数据是否为静音
-                        boolean allZeros = true;
-                        int maxValue = 0;
-                        for (int i = 0; i < readShorts; i++) {
-                            if (bufferInternal[i] != 0) allZeros = false;
-                            maxValue = Math.max(maxValue, Math.abs(bufferInternal[i]));
-                        }
-                        Log.d(TAG, "feedAudioEncoder [INTERNAL]: AUDIO_DATA_CHECK allZeros=" + allZeros
-                                + " maxValue=" + maxValue);
-
-                        // ★★★ 根据开关状态选择策略 ★★★
-                        byte[] finalBuffer;
-                        int readBytes;
-
-                        if (mSilentFillConfig.isEnabled()) {
-                            // ===== 启用智能静音填充 =====
-                            mFrameCount++;
-                            boolean isSilent = isSilentFrame(bufferInternal, readShorts);
-
-                            // 详细日志（每10帧打印一次）
-                            if (VERBOSE_SILENT_FILL && mFrameCount % 10 == 0) {
-                                Log.d(TAG_SILENT_FILL, String.format(Locale.US,
-                                    "[FRAME_%d] INTERNAL: maxValue=%d, isSilent=%b, consecutiveSilent=%d, mode=%s",
-                                    mFrameCount, maxValue, isSilent, mConsecutiveSilentFrames, mSilentFillConfig.getMode()));
-                            }
-
-                            if (isSilent) {
-                                // 静音帧，应用智能填充策略
-                                finalBuffer = applySilentFillStrategy(bufferInternal, readShorts);
-
-                                if (finalBuffer == null) {
-                                    // 跳帧模式返回null，跳过这一帧
-                                    if (VERBOSE_SILENT_FILL) {
-                                        Log.d(TAG_SILENT_FILL, "[SKIP_FRAME] Skipped silent frame in REDUCED_SAMPLE_RATE mode");
-                                    }
-                                    return;
-                                }
-
-                                readBytes = finalBuffer.length;
-
-                                if (VERBOSE_SILENT_FILL && mFrameCount % 10 == 0) {
-                                    Log.d(TAG_SILENT_FILL, String.format(Locale.US,
-                                        "[SILENT_FILL] Applied mode=%s, consecutiveSilent=%d, bytes=%d",
-                                        mSilentFillConfig.getMode(), mConsecutiveSilentFrames, readBytes));
-                                }
-                            } else {
-                                // 有声音，正常编码
-                                if (mConsecutiveSilentFrames > 0) {
-                                    Log.i(TAG_SILENT_FILL, String.format(Locale.US,
-                                        "★★★ AUDIO RESUMED ★★★ After %d silent frames", mConsecutiveSilentFrames));
-                                }
-
-                                checkAndWarnSilentFrame(maxValue, "INTERNAL");
-
-                                // 将short[]转换为byte[]
-                                readBytes = readShorts * 2;
-                                finalBuffer = new byte[readBytes];
-                                for (int i = 0; i < readShorts; i++) {
-                                    short value = bufferInternal[i];
-                                    finalBuffer[i * 2] = (byte) (value & 0xff);
-                                    finalBuffer[i * 2 + 1] = (byte) ((value >> 8) & 0xff);
-                                }
-                            }
-                        } else {
-                            // ===== 未启用智能填充，正常处理（包括feed全0静音数据） =====
-                            Log.d(TAG, "feedAudioEncoder [INTERNAL]: Silent fill DISABLED, normal processing");
-                            checkAndWarnSilentFrame(maxValue, "INTERNAL");
-
-                            // 将short[]转换为byte[]
-                            readBytes = readShorts * 2;
-                            finalBuffer = new byte[readBytes];
-                            for (int i = 0; i < readShorts; i++) {
-                                short value = bufferInternal[i];
-                                finalBuffer[i * 2] = (byte) (value & 0xff);
-                                finalBuffer[i * 2 + 1] = (byte) ((value >> 8) & 0xff);
-                            }
-                        }
-
-                        // Feed到编码器
-                        encode(index, finalBuffer, readBytes);
-                    } else if (readShorts < 0) {
-                        Log.e(TAG, "feedAudioEncoder [INTERNAL]: READ ERROR code=" + readShorts);
-                    } else {
-                        Log.w(TAG, "feedAudioEncoder [INTERNAL]: READ 0 shorts - no data!");
-                    }
-                } else {
-                    Log.w(TAG, "feedAudioEncoder [INTERNAL]: EOS detected");
-                    final ByteBuffer frame = mEncoder.getInputBuffer(index);
-                    int offset = frame.position();
-                    long pstTs = calculateFrameTimestamp(0);
-                    mEncoder.queueInputBuffer(index, offset, 0, pstTs, BUFFER_FLAG_END_OF_STREAM);
-                }
+                feedSingleSourceAudio(index, r, bufferInternal, "INTERNAL", 1f);
             } else if (audioType == 0 && bufferMic != null) {
-                // ★★★ 关键修复：MIC单独模式也使用read(short[])方式，与MIC_AND_INTERNAL保持一致 ★★★
-                Log.d(TAG, "feedAudioEncoder [MIC]: Using read(short[]) method for better compatibility");
-                if (!eos) {
-                    int readShorts = r.read(bufferMic, 0, bufferMic.length);
-                    Log.d(TAG, "feedAudioEncoder [MIC]: readShorts=" + readShorts);
-                    if (readShorts > 0) {
-                        // 诊断日志：检查数据是否为静音
-                        boolean allZeros = true;
-                        int maxValue = 0;
-                        for (int i = 0; i < readShorts; i++) {
-                            if (bufferMic[i] != 0) allZeros = false;
-                            maxValue = Math.max(maxValue, Math.abs(bufferMic[i]));
-                        }
-                        Log.d(TAG, "feedAudioEncoder [MIC]: AUDIO_DATA_CHECK allZeros=" + allZeros
-                                + " maxValue=" + maxValue);
-
-                        // ★★★ 根据开关状态选择策略 ★★★
-                        byte[] finalBuffer;
-                        int readBytes;
-
-                        if (mSilentFillConfig.isEnabled()) {
-                            // ===== 启用智能静音填充 =====
-                            mFrameCount++;
-                            boolean isSilent = isSilentFrame(bufferMic, readShorts);
-
-                            // 详细日志（每10帧打印一次）
-                            if (VERBOSE_SILENT_FILL && mFrameCount % 10 == 0) {
-                                Log.d(TAG_SILENT_FILL, String.format(Locale.US,
-                                    "[FRAME_%d] MIC: maxValue=%d, isSilent=%b, consecutiveSilent=%d, mode=%s",
-                                    mFrameCount, maxValue, isSilent, mConsecutiveSilentFrames, mSilentFillConfig.getMode()));
-                            }
-
-                            if (isSilent) {
-                                // 静音帧，应用智能填充策略
-                                finalBuffer = applySilentFillStrategy(bufferMic, readShorts);
-
-                                if (finalBuffer == null) {
-                                    // 跳帧模式返回null，跳过这一帧
-                                    if (VERBOSE_SILENT_FILL) {
-                                        Log.d(TAG_SILENT_FILL, "[SKIP_FRAME] Skipped silent frame in REDUCED_SAMPLE_RATE mode");
-                                    }
-                                    return;
-                                }
-
-                                readBytes = finalBuffer.length;
-
-                                if (VERBOSE_SILENT_FILL && mFrameCount % 10 == 0) {
-                                    Log.d(TAG_SILENT_FILL, String.format(Locale.US,
-                                        "[SILENT_FILL] Applied mode=%s, consecutiveSilent=%d, bytes=%d",
-                                        mSilentFillConfig.getMode(), mConsecutiveSilentFrames, readBytes));
-                                }
-                            } else {
-                                // 有声音，正常编码
-                                if (mConsecutiveSilentFrames > 0) {
-                                    Log.i(TAG_SILENT_FILL, String.format(Locale.US,
-                                        "★★★ AUDIO RESUMED ★★★ After %d silent frames", mConsecutiveSilentFrames));
-                                }
-
-                                checkAndWarnSilentFrame(maxValue, "MIC");
-
-                                // 将short[]转换为byte[]
-                                readBytes = readShorts * 2;
-                                finalBuffer = new byte[readBytes];
-                                for (int i = 0; i < readShorts; i++) {
-                                    short value = bufferMic[i];
-                                    finalBuffer[i * 2] = (byte) (value & 0xff);
-                                    finalBuffer[i * 2 + 1] = (byte) ((value >> 8) & 0xff);
-                                }
-                            }
-                        } else {
-                            // ===== 未启用智能填充，正常处理（包括feed全0静音数据） =====
-                            Log.d(TAG, "feedAudioEncoder [MIC]: Silent fill DISABLED, normal processing");
-                            checkAndWarnSilentFrame(maxValue, "MIC");
-
-                            // 将short[]转换为byte[]
-                            readBytes = readShorts * 2;
-                            finalBuffer = new byte[readBytes];
-                            for (int i = 0; i < readShorts; i++) {
-                                short value = bufferMic[i];
-                                finalBuffer[i * 2] = (byte) (value & 0xff);
-                                finalBuffer[i * 2 + 1] = (byte) ((value >> 8) & 0xff);
-                            }
-                        }
-
-                        // Feed到编码器
-                        encode(index, finalBuffer, readBytes);
-                    } else if (readShorts < 0) {
-                        Log.e(TAG, "feedAudioEncoder [MIC]: READ ERROR code=" + readShorts +
-                                " (-1=ERROR, -2=BAD_VALUE, -3=INVALID_OPERATION, -6=DEAD_OBJECT)");
-                    } else {
-                        Log.w(TAG, "feedAudioEncoder [MIC]: READ 0 shorts - no data available!");
-                    }
-                } else {
-                    Log.w(TAG, "feedAudioEncoder [MIC]: EOS detected, AudioRecord is STOPPED");
-                    final ByteBuffer frame = mEncoder.getInputBuffer(index);
-                    int offset = frame.position();
-                    long pstTs = calculateFrameTimestamp(0);
-                    mEncoder.queueInputBuffer(index, offset, 0, pstTs, BUFFER_FLAG_END_OF_STREAM);
-                }
+                feedSingleSourceAudio(index, r, bufferMic, "MIC", 1f);
             } else {
                 // 兜底逻辑：使用原有的read(ByteBuffer)方式
                 Log.w(TAG, "feedAudioEncoder [FALLBACK]: Using read(ByteBuffer) method, audioType=" + audioType);
@@ -1191,6 +1075,50 @@ class MicRecorder implements Encoder {
         }
     }
 
+    /**
+     * 采样数时钟模式下的 PTS 计算
+     */
+    private long calculateSampleClockTimestamp(int totalBits) {
+        long nowNs = mTimeline.nowNanos();
+        if (mSampleClock == null) {
+            mSampleClock = new AudioSampleClock(mSampleRate, mTimeline.getStartNanos());
+            Log.i(TAG, "★★★ SAMPLE CLOCK PTS MODE ★★★ sampleRate=" + mSampleRate + ", channels=" + mChannelCount);
+        }
+        updateSampleClockAnchorIfNeeded(nowNs);
+        int frames = (totalBits >> 4) / mChannelCount;
+        long ptsUs = mSampleClock.nextPtsUs(frames, nowNs);
+
+        if (VERBOSE && mFrameCount % 100 == 0) {
+            Log.d(TAG, "[SAMPLE_CLOCK_PTS] frame=" + mFrameCount + ", ptsUs=" + ptsUs + ", " + mSampleClock);
+        }
+        return ptsUs;
+    }
+
+    /**
+     * 定期用 AudioRecord.getTimestamp() 刷新采样数时钟的锚点
+     * 混音模式下送编码器的采样数与单个 AudioRecord 的读取位置不一致，不使用锚点
+     */
+    private void updateSampleClockAnchorIfNeeded(long nowNs) {
+        if (nowNs - mLastAnchorUpdateNs < ANCHOR_UPDATE_INTERVAL_NS) return;
+        mLastAnchorUpdateNs = nowNs;
+        if (mAudioRecord != null && mAudioRecordMic != null) return;
+
+        AudioRecord r = mAudioRecord != null ? mAudioRecord : (mAudioRecordMic != null ? mAudioRecordMic : mMic);
+        if (r == null) return;
+        if (r.getTimestamp(mAudioTimestamp, AudioTimestamp.TIMEBASE_BOOTTIME) == AudioRecord.SUCCESS) {
+            mSampleClock.updateAnchor(mAudioTimestamp.framePosition, mAudioTimestamp.nanoTime);
+        }
+    }
+
+    /**
+     * 跳过不送编码器的帧（降采样静音模式），采样数时钟需要同步前移
+     */
+    private void skipFrameTimestamp(int samples) {
+        if (mUseSampleClockPTS && mSampleClock != null) {
+            mSampleClock.skip(samples / mChannelCount);
+        }
+    }
+
     private static final int LAST_FRAME_ID = -1;
     private SparseLongArray mFramesUsCache = new SparseLongArray(2);
 
@@ -1199,17 +1127,20 @@ class MicRecorder implements Encoder {
      * 1 sample = 16 bit
      */
     private long calculateFrameTimestamp(int totalBits) {
+        // ===== 采样数时钟模式：PTS 间隔严格等于帧时长，缓慢跟随真实时间 =====
+        final RecordingTimeline timeline = mTimeline;
+        if (mUseSampleClockPTS && timeline != null && timeline.isStarted()) {
+            return calculateSampleClockTimestamp(totalBits);
+        }
+
         // ===== 墙钟模式：PTS 只跟真实时间走，不依赖音频采样数 =====
-        if (mUseWallClockPTS && mRecordingStartTimeNanos > 0) {
-            // 计算从录制开始到现在经过的真实时间（微秒）
-            long currentTimeNanos = SystemClock.elapsedRealtimeNanos();
-            long elapsedNanos = currentTimeNanos - mRecordingStartTimeNanos;
-            long ptsUs = elapsedNanos / 1000;  // 转换为微秒
+        if (mUseWallClockPTS && timeline != null && timeline.isStarted()) {
+            // 从录制开始到现在经过的真实时间（微秒）
+            long ptsUs = timeline.elapsedUs();
 
             if (VERBOSE && mFrameCount % 100 == 0) {
                 Log.d(TAG, String.format(Locale.US,
-                    "[WALL_CLOCK_PTS] frame=%d, elapsedMs=%.2f, ptsUs=%d",
-                    mFrameCount, elapsedNanos / 1_000_000.0, ptsUs));
+                    "[WALL_CLOCK_PTS] frame=%d, ptsUs=%d", mFrameCount, ptsUs));
             }
 
             return ptsUs;
@@ -1244,6 +1175,187 @@ class MicRecorder implements Encoder {
         return currentUs;
     }
 
+    /**
+     * 创建对齐混音器并为每个 AudioRecord 启动采集线程（INTERNAL 先加入），
+     * 按 AudioRecord 实际生效的采样率和声道数转换到编码格式
+     */
+    private void startCaptureThreads() {
+        if ((mAudioRecord != null && bufferInternal == null) || (mAudioRecordMic != null && bufferMic == null)
+                || (mAudioRecord == null && mAudioRecordMic == null)) {
+            // 兜底的 read(ByteBuffer) 路径没有 short[] 缓冲区，保持在录制线程中直接读取
+            Log.w(TAG, "startCaptureThreads: no capture buffer for audioType=" + audioType + ", reading inline");
+            return;
+        }
+        mMixer = new AudioMixer(mSampleRate, mChannelCount, MIX_MAX_LATENCY_MS);
+        mFreeInputIndices.clear();
+        mWaitingForCapture = false;
+
+        int capacity = 0;
+        if (mAudioRecord != null) {
+            addMixerSource(mAudioRecord, "INTERNAL");
+            capacity = Math.max(capacity, bufferInternal.length);
+        }
+        if (mAudioRecordMic != null) {
+            int micSource = addMixerSource(mAudioRecordMic, "MIC");
+            capacity = Math.max(capacity, bufferMic.length);
+            short[] probed = takeProbedSamples(mAudioRecordMic);
+            if (probed != null) {
+                // 探测时读到的采样按其采集时间放到时间线开头
+                mMixer.write(micSource, probed, probed.length, mProbedMicReadDoneNs);
+            }
+        }
+        // 一次最多取出两倍读取块的数据，剩余的留在对齐缓冲中下次再取
+        mMixBuffers = new short[mMixer.getSourceCount()][capacity * 2];
+
+        launchCaptureThreads();
+        Log.i(TAG, "startCaptureThreads: sources=" + mMixer.getSourceCount() + ", async=" + mUseAsyncCodec);
+    }
+
+    /**
+     * 为已加入混音器的每个 AudioRecord 创建并启动采集线程（INTERNAL 为第一个源）
+     */
+    private void launchCaptureThreads() {
+        // 有新数据时唤醒编码线程（已有待处理的消息时不重复发送）
+        final AudioCaptureThread.Listener wakeUp = thread -> {
+            RecordHandler handler = mRecordHandler;
+            if (handler != null && !mForceStop.get() && !handler.hasMessages(MSG_FEED_INPUT)) {
+                handler.sendEmptyMessage(MSG_FEED_INPUT);
+            }
+        };
+        int source = 0;
+        if (mAudioRecord != null) {
+            mInternalCapture = new AudioCaptureThread("INTERNAL", mAudioRecord, bufferInternal, mMixer, source++,
+                    mReadTime, wakeUp);
+            mInternalCapture.start();
+        }
+        if (mAudioRecordMic != null) {
+            mMicCapture = new AudioCaptureThread("MIC", mAudioRecordMic, bufferMic, mMixer, source, mReadTime, wakeUp);
+            mMicCapture.start();
+        }
+    }
+
+    /**
+     * 停止采集线程：先停止 AudioRecord 让阻塞中的 read 返回，再等待线程退出
+     */
+    private void stopCaptureThreads() {
+        if (mInternalCapture == null && mMicCapture == null) return;
+        AudioCaptureThread[] threads = {mInternalCapture, mMicCapture};
+        AudioRecord[] records = {mAudioRecord, mAudioRecordMic};
+        for (int i = 0; i < threads.length; i++) {
+            if (threads[i] == null) continue;
+            threads[i].requestStop();
+            if (records[i] != null) {
+                try {
+                    records[i].stop();
+                } catch (Exception e) {
+                    Log.w(TAG, "stopCaptureThreads: Error stopping " + threads[i].getSource(), e);
+                }
+            }
+        }
+        for (AudioCaptureThread thread : threads) {
+            if (thread != null) {
+                thread.stopAndJoin(CAPTURE_THREAD_JOIN_TIMEOUT_MS);
+                Log.i(TAG, "stopCaptureThreads: " + thread);
+            }
+        }
+        mInternalCapture = null;
+        mMicCapture = null;
+    }
+
+    private int addMixerSource(AudioRecord record, String source) {
+        int rate = record.getSampleRate() > 0 ? record.getSampleRate() : mSampleRate;
+        int channels = record.getChannelCount() > 0 ? record.getChannelCount() : mChannelCount;
+        if (rate != mSampleRate || channels != mChannelCount) {
+            Log.w(TAG, String.format(Locale.US, "startCaptureThreads [%s]: format mismatch %dHz/%dch -> %dHz/%dch, resampling",
+                    source, rate, channels, mSampleRate, mChannelCount));
+        }
+        return mMixer.addSource(rate, channels);
+    }
+
+    /**
+     * 准备编码器：异步模式下注册 MediaCodec 回调（回调在创建编码器的录制线程中执行），
+     * 部分设备注册回调后 configure/start 失败，此时回退到轮询模式
+     */
+    private void prepareEncoder() throws IOException {
+        if (mUseAsyncCodec) {
+            mEncoder.setCallback(mCodecCallback);
+            try {
+                mEncoder.prepare();
+                Log.i(TAG, "prepareEncoder: audio encoder running in ASYNC callback mode");
+                return;
+            } catch (Exception e) {
+                Log.w(TAG, "prepareEncoder: async callback mode failed, falling back to polling", e);
+                mUseAsyncCodec = false;
+                mEncoder.setCallback((BaseEncoder.Callback) null);
+            }
+        }
+        mEncoder.prepare();
+        Log.i(TAG, "prepareEncoder: audio encoder running in POLLING mode");
+    }
+
+    /**
+     * 取一个编码器输入缓冲区：优先使用已暂存的，轮询模式下再向编码器申请（最多等待 timeout），
+     * 异步模式下只能使用回调已经给出的
+     */
+    private int nextInputBuffer(long timeout) {
+        Integer free = mFreeInputIndices.pollFirst();
+        if (free != null) return free;
+        return mUseAsyncCodec ? -1 : mEncoder.getEncoder().dequeueInputBuffer(timeout);
+    }
+
+    /**
+     * 归还一个没有用上的输入缓冲区（如跳过的静音帧），下次 feed 时优先使用
+     */
+    private void returnInputBuffer(int index) {
+        mFreeInputIndices.offerFirst(index);
+    }
+
+    /**
+     * 暂存一个还没有数据可填的输入缓冲区，等待采集线程唤醒
+     */
+    private void holdInputBuffer(int index) {
+        mFreeInputIndices.offerFirst(index);
+        mWaitingForCapture = true;
+    }
+
+    /**
+     * 异步模式下的 MediaCodec 回调，转发到 RecordHandler（同在录制线程）
+     */
+    private final BaseEncoder.Callback mCodecCallback = new BaseEncoder.Callback() {
+        @Override
+        void onInputBufferAvailable(BaseEncoder encoder, int index) {
+            RecordHandler handler = mRecordHandler;
+            if (handler != null) handler.onCodecInputAvailable(index);
+        }
+
+        @Override
+        void onOutputBufferAvailable(BaseEncoder encoder, int index, MediaCodec.BufferInfo info) {
+            RecordHandler handler = mRecordHandler;
+            if (handler != null) handler.onCodecOutputAvailable(index, info);
+        }
+
+        @Override
+        void onOutputFormatChanged(BaseEncoder encoder, MediaFormat format) {
+            Log.i(TAG, "onOutputFormatChanged: ★★★ ASYNC OUTPUT FORMAT ★★★ format=" + format);
+            mCallbackDelegate.onOutputFormatChanged(mEncoder, format);
+        }
+
+        @Override
+        public void onError(Encoder encoder, Exception exception) {
+            Log.e(TAG, "Audio codec error in async mode", exception);
+            mCallbackDelegate.onError(MicRecorder.this, exception);
+        }
+    };
+
+    /**
+     * 设置编码器是否使用异步回调模式，需在 prepare 之前调用
+     * @param async true=MediaCodec 回调驱动，false=轮询 dequeueInputBuffer/dequeueOutputBuffer
+     */
+    public void setUseAsyncCodec(boolean async) {
+        this.mUseAsyncCodec = async;
+        Log.i(TAG, String.format("★★★ ASYNC AUDIO CODEC ★★★ enabled=%b", async));
+    }
+
     @TargetApi(Build.VERSION_CODES.M)
     private AudioRecord createAudioRecord(int sampleRateInHz, int channelConfig, int audioFormat) {
         int minBytes = AudioRecord.getMinBufferSize(sampleRateInHz, channelConfig, audioFormat);
@@ -1263,7 +1375,7 @@ class MicRecorder implements Encoder {
 
             // 关键修复1: 使用 VOICE_COMMUNICATION 替代 CAMCORDER，与 SystemUI 保持一致
             // VOICE_COMMUNICATION 对麦克风录音更可靠，有更好的降噪处理
-            record = createMicAudioRecord(sampleRateInHz, channelConfig, audioFormat, bufferSize);
+            record = timedMicAudioRecord(sampleRateInHz, channelConfig, audioFormat, bufferSize);
             if (record != null) {
                 mAudioRecordMic = record;
             }
@@ -1274,7 +1386,7 @@ class MicRecorder implements Encoder {
             bufferInternal = new short[bufferSize / 2];
             Log.d(TAG, "createAudioRecord: bufferInternal initialized, size=" + bufferInternal.length);
 
-            record = createInternalAudioRecord(sampleRateInHz, audioFormat, bufferSize);
+            record = timedInternalAudioRecord(sampleRateInHz, audioFormat, bufferSize);
             if (record != null) {
                 mAudioRecord = record;
             }
@@ -1285,11 +1397,20 @@ class MicRecorder implements Encoder {
             bufferInternal = new short[bufferSize / 2];
             bufferMic = new short[bufferSize / 2];
 
+            // Internal AudioRecord 的创建与 MIC 的信号探测互不依赖，放到另一个线程并行进行
+            FutureTask<AudioRecord> internalTask = new FutureTask<>(
+                    () -> timedInternalAudioRecord(sampleRateInHz, audioFormat, bufferSize));
+            new Thread(internalTask, "AudioProbe-INTERNAL").start();
+
             // 创建 MIC AudioRecord
-            mAudioRecordMic = createMicAudioRecord(sampleRateInHz, channelConfig, audioFormat, bufferSize);
+            mAudioRecordMic = timedMicAudioRecord(sampleRateInHz, channelConfig, audioFormat, bufferSize);
 
-            // 创建 Internal AudioRecord
-            mAudioRecord = createInternalAudioRecord(sampleRateInHz, audioFormat, bufferSize);
+            try {
+                mAudioRecord = internalTask.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(TAG, "createAudioRecord: internal AudioRecord creation failed", e);
+                mAudioRecord = null;
+            }
 
             // 返回 MIC 的 record 作为主 record
             record = mAudioRecordMic;
@@ -1325,6 +1446,34 @@ class MicRecorder implements Encoder {
         return record;
     }
 
+    private AudioRecord timedMicAudioRecord(int sampleRateInHz, int channelConfig, int audioFormat, int bufferSize) {
+        long startMs = SystemClock.elapsedRealtime();
+        AudioRecord record = createMicAudioRecord(sampleRateInHz, channelConfig, audioFormat, bufferSize);
+        mMicStartupMs = SystemClock.elapsedRealtime() - startMs;
+        Log.i(TAG, "★★★ AUDIO STARTUP ★★★ MIC ready in " + mMicStartupMs + "ms, probe: " + mMicProbeSummary);
+        return record;
+    }
+
+    private AudioRecord timedInternalAudioRecord(int sampleRateInHz, int audioFormat, int bufferSize) {
+        long startMs = SystemClock.elapsedRealtime();
+        AudioRecord record = createInternalAudioRecord(sampleRateInHz, audioFormat, bufferSize);
+        mInternalStartupMs = SystemClock.elapsedRealtime() - startMs;
+        Log.i(TAG, "★★★ AUDIO STARTUP ★★★ INTERNAL ready in " + mInternalStartupMs + "ms");
+        return record;
+    }
+
+    /**
+     * 取出 MIC 探测时读到的采样（只取一次），record 不是探测通过的 MIC 时返回 null
+     */
+    private short[] takeProbedSamples(AudioRecord record) {
+        short[] probed = mProbedMicPcm;
+        if (probed == null || record == null || record != mAudioRecordMic) {
+            return null;
+        }
+        mProbedMicPcm = null;
+        return probed.length > 0 ? probed : null;
+    }
+
     /**
      * 创建麦克风 AudioRecord，尝试多种音频源以提高兼容性
      *
@@ -1371,8 +1520,7 @@ class MicRecorder implements Encoder {
                     if (verifyAudioRecordWorks(record, audioSource)) {
                         Log.d(TAG, "createMicAudioRecord: SUCCESS with audioSource=" + audioSource +
                                 " (" + getAudioSourceName(audioSource) + ")");
-                        // 停止录制，让 MSG_PREPARE 重新启动（保持原有流程）
-                        record.stop();
+                        // 保持录制状态，探测时读到的采样接着作为第一段音频，MSG_PREPARE 中再次启动不会中断
                         return record;
                     } else {
                         Log.w(TAG, "createMicAudioRecord: audioSource=" + audioSource +
@@ -1429,10 +1577,12 @@ class MicRecorder implements Encoder {
     /**
      * 验证 AudioRecord 是否能真正读取到有效（非静音）数据
      * 某些设备上某些音频源虽然能初始化成功，但读取的数据全是0
+     * 读到足够的有效信号即结束（最长 PROBE_MAX_MS），通过时读到的采样保存在 mProbedMicPcm 中
      *
      * 注意：此方法会启动录制，调用者需要在验证后决定是否 stop()
      */
     private boolean verifyAudioRecordWorks(AudioRecord record, int audioSource) {
+        mProbedMicPcm = null;
         try {
             record.startRecording();
             if (record.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
@@ -1440,64 +1590,36 @@ class MicRecorder implements Encoder {
                 return false;
             }
 
-            // 读取几帧数据来验证
-            short[] testBuffer = new short[1024];
-            int totalNonZero = 0;
-            int maxValue = 0;
-            int totalSamples = 0;
-            long sumAbsValue = 0;  // 用于计算平均幅度
-
-            // 读取5次来检验（给麦克风更多时间稳定，提高检测准确性）
-            for (int i = 0; i < 5; i++) {
+            final int samplesPerMs = Math.max(1, mSampleRate * mChannelCount / 1000);
+            final int maxSamples = PROBE_MAX_MS * samplesPerMs;
+            AudioSignalProbe probe = new AudioSignalProbe(PROBE_MIN_MS * samplesPerMs, maxSamples);
+            short[] testBuffer = new short[PROBE_READ_SAMPLES];
+            long startNs = SystemClock.elapsedRealtimeNanos();
+            long readDoneNs = startNs;
+            // 阻塞读取本身按采集速度等待，不再额外 sleep；读取出错或多次读不到数据时按已有采样判定
+            int maxReads = maxSamples / PROBE_READ_SAMPLES + 4;
+            for (int i = 0; i < maxReads && probe.getState() == AudioSignalProbe.PENDING; i++) {
                 int read = record.read(testBuffer, 0, testBuffer.length);
-                if (read > 0) {
-                    totalSamples += read;
-                    for (int j = 0; j < read; j++) {
-                        int absVal = Math.abs(testBuffer[j]);
-                        if (testBuffer[j] != 0) {
-                            totalNonZero++;
-                            sumAbsValue += absVal;
-                        }
-                        maxValue = Math.max(maxValue, absVal);
-                    }
+                if (read < 0) {
+                    Log.w(TAG, "verifyAudioRecordWorks: read error " + read + " for audioSource=" + audioSource);
+                    break;
                 }
-                // 短暂等待让麦克风稳定
-                try { Thread.sleep(30); } catch (InterruptedException ignored) {}
+                readDoneNs = SystemClock.elapsedRealtimeNanos();
+                probe.offer(testBuffer, read);
             }
+            boolean passed = probe.finish() == AudioSignalProbe.PASSED;
+            mMicProbeSummary = getAudioSourceName(audioSource) + " " + probe
+                    + " in " + (readDoneNs - startNs) / 1_000_000 + "ms";
+            Log.d(TAG, "verifyAudioRecordWorks: audioSource=" + audioSource + ", " + mMicProbeSummary);
 
-            // 计算平均幅度（只计算非零样本）
-            int avgValue = totalNonZero > 0 ? (int)(sumAbsValue / totalNonZero) : 0;
-            int nonZeroPercentage = totalSamples > 0 ? (totalNonZero * 100 / totalSamples) : 0;
-
-            Log.d(TAG, "verifyAudioRecordWorks: audioSource=" + audioSource +
-                    " (" + getAudioSourceName(audioSource) + ")" +
-                    ", totalNonZero=" + totalNonZero + "/" + totalSamples +
-                    " (" + nonZeroPercentage + "%)" +
-                    ", maxValue=" + maxValue + ", avgValue=" + avgValue);
-
-            // ===== 改进的阈值验证 =====
-            // 阈值从50提升到200，避免极微弱的噪声通过验证
-            // 正常语音信号幅度应该在几百到几千（16位PCM范围是-32768到32767）
-            //
-            // 验证条件：
-            // 1. 最大值必须 >= 200（排除极弱信号和静音）
-            // 2. 或者：非零样本占比 >= 30% 且平均值 >= 50（说明有持续的音频活动）
-            //
-            // 这个双重条件可以同时处理：
-            // - 安静环境下的偶发声音（高峰值但低占比）
-            // - 持续的低音量背景音（低峰值但高占比）
-
-            boolean passedMaxThreshold = maxValue >= 200;
-            boolean passedAvgThreshold = nonZeroPercentage >= 30 && avgValue >= 50;
-
-            if (passedMaxThreshold || passedAvgThreshold) {
-                Log.d(TAG, "verifyAudioRecordWorks: PASSED - audioSource=" + audioSource +
-                        " (passedMax=" + passedMaxThreshold + ", passedAvg=" + passedAvgThreshold + ")");
+            if (passed) {
                 // 验证成功，保持录制状态（调用者会决定是否 stop）
+                mProbedMicPcm = probe.getSamples();
+                mProbedMicReadDoneNs = readDoneNs;
                 return true;
             } else {
                 Log.w(TAG, "verifyAudioRecordWorks: FAILED - audioSource=" + audioSource +
-                        " produces too weak signal (maxValue=" + maxValue + " < 200, avgValue=" + avgValue + ")");
+                        " produces too weak signal (" + probe + ")");
                 // 失败时停止录制
                 try { record.stop(); } catch (Exception ignored) {}
                 return false;
@@ -1520,13 +1642,15 @@ class MicRecorder implements Encoder {
             long elapsedTimeMs = currentTimeMs - mLastLogTimeMs;
             if (elapsedTimeMs == 0) elapsedTimeMs = 1; // 避免除零
 
-            double framesPerSec = (mTotalFramesProcessed * 1000.0) / elapsedTimeMs;
-            double kbytesPerSec = (mTotalBytesEncoded / 1024.0) * 1000.0 / elapsedTimeMs;
+            // 最近几个完整秒的速率（不再用累计值除以日志间隔）
+            double framesPerSec = mInputFramesCounter.ratePerSecond();
+            double kbytesPerSec = mInputBytesCounter.ratePerSecond() / 1024.0;
 
-            // 计算丢帧率
+            // 计算丢弃率（按字节）
+            long overflowBytes = mPendingRing.getOverflowBytes();
             double dropRate = 0.0;
-            if (mTotalFramesProcessed > 0) {
-                dropRate = (mTotalFramesDropped * 100.0) / (mTotalFramesProcessed + mTotalFramesDropped);
+            if (mTotalBytesEncoded + overflowBytes > 0) {
+                dropRate = (overflowBytes * 100.0) / (mTotalBytesEncoded + overflowBytes);
             }
 
             Log.i(TAG, "╔═══════════════════════════════════════════════════════════════");
@@ -1536,23 +1660,51 @@ class MicRecorder implements Encoder {
             Log.i(TAG, "║ Total bytes:      " + mTotalBytesEncoded + " (" + (mTotalBytesEncoded / 1024) + " KB)");
             Log.i(TAG, "║ Frames/sec:       " + String.format("%.2f", framesPerSec));
             Log.i(TAG, "║ Data rate:        " + String.format("%.2f", kbytesPerSec) + " KB/s");
+            Log.i(TAG, "║ Read time:        " + mReadTime);
             Log.i(TAG, "║ Silent frames:    " + mConsecutiveSilentFrames + " consecutive");
             Log.i(TAG, "║ Audio mode:       " + getAudioModeString());
+            Log.i(TAG, "║ Startup:          " + getStartupString());
             Log.i(TAG, "╠═══════════════════════════════════════════════════════════════");
             Log.i(TAG, "║ 📊 BUFFER QUEUE STATS");
             Log.i(TAG, "╠═══════════════════════════════════════════════════════════════");
             Log.i(TAG, "║ Buffer unavailable: " + mTotalBufferNotAvailableCount + " times");
-            Log.i(TAG, "║ Frames queued:      " + mTotalFramesQueued);
-            Log.i(TAG, "║ Frames dropped:     " + mTotalFramesDropped + " (" + String.format("%.2f", dropRate) + "%)");
-            Log.i(TAG, "║ Dropped bytes:      " + mTotalDroppedBytes + " (" + (mTotalDroppedBytes / 1024) + " KB)");
-            Log.i(TAG, "║ Current queue size: " + mPendingFramesQueue.size());
-            Log.i(TAG, "║ Max queue depth:    " + mMaxQueueDepth);
+            Log.i(TAG, "║ Pending now:        " + mPendingRing.available() + " bytes (" + mPendingRing.availableMs() + " ms)");
+            Log.i(TAG, "║ Max pending:        " + mPendingRing.getMaxFill() + "/" + mPendingRing.capacity() + " bytes");
+            Log.i(TAG, "║ High watermark hits:" + mPendingRing.getHighWatermarkHits());
+            Log.i(TAG, "║ Overflow events:    " + mPendingRing.getOverflowEvents());
+            Log.i(TAG, "║ Dropped bytes:      " + overflowBytes + " (" + (overflowBytes / 1024) + " KB, "
+                    + String.format("%.2f", dropRate) + "%)");
+            if (mMixer != null) {
+                Log.i(TAG, "║ Mixer:              " + mMixer);
+            }
+            AudioCaptureThread internalCapture = mInternalCapture;
+            AudioCaptureThread micCapture = mMicCapture;
+            if (internalCapture != null && micCapture != null) {
+                Log.i(TAG, "║ Capture INTERNAL:   " + internalCapture);
+                Log.i(TAG, "║ Capture MIC:        " + micCapture);
+            }
             Log.i(TAG, "╚═══════════════════════════════════════════════════════════════");
 
             mLastLogTimeMs = currentTimeMs;
         }
     }
 
+    /**
+     * 各音频源的启动耗时（创建 + 信号探测）
+     */
+    private String getStartupString() {
+        StringBuilder sb = new StringBuilder();
+        if (mMicStartupMs >= 0) {
+            sb.append("MIC=").append(mMicStartupMs).append("ms (").append(mMicProbeSummary).append(')');
+        }
+        long internalMs = mInternalStartupMs;
+        if (internalMs >= 0) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append("INTERNAL=").append(internalMs).append("ms");
+        }
+        return sb.length() == 0 ? "n/a" : sb.toString();
+    }
+
     /**
      * 获取当前音频模式的字符串描述
      */
@@ -1737,33 +1889,100 @@ class MicRecorder implements Encoder {
     }
 
     /**
-     * 设置录制开始时间戳（从 ScreenRecorder 传递）
-     * @param startTimeNanos 录制开始的纳秒时间戳
+     * 设置是否使用采样数时钟作为 PTS（启用时优先于墙钟模式）
+     * @param useSampleClock true=按累计采样数推算并校正漂移，false=沿用墙钟/兼容模式
      */
-    public void setRecordingStartTimeNanos(long startTimeNanos) {
-        this.mRecordingStartTimeNanos = startTimeNanos;
-        Log.i(TAG, String.format("★★★ RECEIVED startNs FROM ScreenRecorder ★★★ startTimeNanos=%d", startTimeNanos));
+    public void setUseSampleClockPTS(boolean useSampleClock) {
+        this.mUseSampleClockPTS = useSampleClock;
+        Log.i(TAG, String.format("★★★ SAMPLE CLOCK PTS MODE ★★★ enabled=%b", useSampleClock));
     }
 
     /**
-     * 实时检测音频帧是否为静音
-     * @param buffer 音频数据缓冲区
-     * @param length 有效数据长度
-     * @return true表示静音，false表示有声音
+     * 暂停采集：停止 AudioRecord 和采集线程，不再向编码器送数据，PTS 时钟同时暂停
+     * （恢复后重新对齐到真实时间，暂停间隔由 muxer 扣除）
      */
-    private boolean isSilentFrame(short[] buffer, int length) {
-        if (buffer == null || length == 0) return true;
+    public void pause() {
+        if (mRecordHandler == null) return;
+        mRecordHandler.post(this::pauseCapture);
+    }
 
-        boolean allZeros = true;
-        int maxValue = 0;
+    /**
+     * 恢复采集：重新启动 AudioRecord 和采集线程，清空对齐缓冲
+     */
+    public void resume() {
+        if (mRecordHandler == null) return;
+        mRecordHandler.post(this::resumeCapture);
+    }
 
-        for (int i = 0; i < length; i++) {
-            if (buffer[i] != 0) allZeros = false;
-            maxValue = Math.max(maxValue, Math.abs(buffer[i]));
+    private void pauseCapture() {
+        if (mPaused || mForceStop.get()) return;
+        mPaused = true;
+        mResumeCaptureThreads = mInternalCapture != null || mMicCapture != null;
+        // 采集线程必须先退出，AudioRecord 停止后阻塞中的 read 才会返回
+        stopCaptureThreads();
+        for (AudioRecord record : activeRecords()) {
+            try {
+                record.stop();
+            } catch (Exception e) {
+                Log.w(TAG, "pauseCapture: Error stopping AudioRecord", e);
+            }
         }
+        // 暂停前积压的数据不再送编码器，否则会带着恢复后的 PTS 写入
+        mPendingRing.clear();
+        // 采样数时钟恢复后会按新锚点重新确定偏移，暂停前丢弃的采样不用再上报
+        mDroppedPendingSamples = 0;
+        if (mSampleClock != null) mSampleClock.pause();
+        Log.i(TAG, "★★★ AUDIO CAPTURE PAUSED ★★★ captureThreads=" + mResumeCaptureThreads);
+    }
 
-        boolean isSilent = allZeros || maxValue < SILENT_FRAME_MAX_VALUE_THRESHOLD;
+    private void resumeCapture() {
+        if (!mPaused || mForceStop.get()) return;
+        mPaused = false;
+        for (AudioRecord record : activeRecords()) {
+            startRecordingWithVerify(record, "RESUME");
+        }
+        if (mSampleClock != null) mSampleClock.resume();
+        if (mResumeCaptureThreads && mMixer != null) {
+            // 采集线程都已退出，可以安全地重建时间线；之后由采集线程唤醒编码
+            mMixer.reset();
+            launchCaptureThreads();
+        } else {
+            mWaitingForCapture = false;
+            if (!mRecordHandler.hasMessages(MSG_FEED_INPUT)) {
+                mRecordHandler.sendEmptyMessage(MSG_FEED_INPUT);
+            }
+        }
+        Log.i(TAG, "★★★ AUDIO CAPTURE RESUMED ★★★ captureThreads=" + mResumeCaptureThreads);
+    }
 
+    /**
+     * 当前使用的 AudioRecord（去重，mMic 可能与另两个之一是同一个实例）
+     */
+    private List<AudioRecord> activeRecords() {
+        List<AudioRecord> records = new ArrayList<>(3);
+        for (AudioRecord record : new AudioRecord[]{mAudioRecord, mAudioRecordMic, mMic}) {
+            if (record != null && !records.contains(record)) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 设置与 ScreenRecorder 共用的录制时间线，需在 prepare 之前调用
+     * @param timeline 已开始的录制时间线
+     */
+    void setRecordingTimeline(RecordingTimeline timeline) {
+        this.mTimeline = timeline;
+        Log.i(TAG, String.format("★★★ RECEIVED TIMELINE FROM ScreenRecorder ★★★ startTimeNanos=%d", timeline.getStartNanos()));
+    }
+
+    /**
+     * 更新连续静音帧计数
+     * @param isSilent 本帧静音判定结果（由 PcmFrameAnalyzer 在同一遍扫描中给出）
+     * @return 原样返回 isSilent
+     */
+    private boolean trackSilentFrame(boolean isSilent) {
         if (isSilent) {
             mConsecutiveSilentFrames++;
         } else {
@@ -1774,82 +1993,43 @@ class MicRecorder implements Encoder {
     }
 
     /**
-     * 应用静音填充策略
+     * 应用静音填充策略（原地改写 buffer）
      * @param buffer 原始音频数据
      * @param length 数据长度
-     * @return 填充后的字节数组，如果返回null表示跳过这一帧
+     * @return true表示继续编码这一帧，false表示跳过这一帧
      */
-    private byte[] applySilentFillStrategy(short[] buffer, int length) {
+    private boolean applySilentFillStrategy(short[] buffer, int length) {
         AudioSilentFillConfig.SilentFillMode mode = mSilentFillConfig.getMode();
 
         switch (mode) {
             case LOW_AMPLITUDE_NOISE:
-                return fillLowAmplitudeNoise(buffer, length, mSilentFillConfig.getNoiseAmplitude());
+                PcmUtils.fillNoise(buffer, length, mSilentFillConfig.getNoiseAmplitude(), mNoiseRandom);
+                return true;
 
             case FIXED_LOW_VALUE:
-                return fillFixedLowValue(buffer, length);
+                PcmUtils.fillAlternating(buffer, length);
+                return true;
 
             case REDUCED_SAMPLE_RATE:
                 if (shouldSkipSilentFrame()) {
-                    return null;  // 跳过这一帧
+                    return false;  // 跳过这一帧
                 }
-                return fillFixedLowValue(buffer, length);
+                PcmUtils.fillAlternating(buffer, length);
+                return true;
 
             case ZERO_WITH_PTS_COMPENSATION:
-                return new byte[length * 2];  // 全0
+                Arrays.fill(buffer, 0, length, (short) 0);  // 全0
+                return true;
 
             case HYBRID:
-                if (isInInitialPeriod()) {
-                    return convertToBytes(buffer, length);  // 前N秒正常feed
-                } else {
-                    return fillLowAmplitudeNoise(buffer, length, mSilentFillConfig.getNoiseAmplitude());
+                if (!isInInitialPeriod()) {
+                    PcmUtils.fillNoise(buffer, length, mSilentFillConfig.getNoiseAmplitude(), mNoiseRandom);
                 }
+                return true;  // 前N秒正常feed
 
             default:
-                return convertToBytes(buffer, length);
-        }
-    }
-
-    /**
-     * 模式1：填充极低幅度白噪声
-     */
-    private byte[] fillLowAmplitudeNoise(short[] buffer, int length, int amplitude) {
-        if (length <= 0) return new byte[0];
-
-        if (this.buffer == null || this.buffer.length < length * 2) {
-            this.buffer = new byte[length * 2];
-        }
-
-        for (int i = 0; i < length; i++) {
-            // 生成±amplitude范围内的随机噪声
-            short noise = (short)(mNoiseRandom.nextInt(amplitude * 2 + 1) - amplitude);
-            int byteIndex = i * 2;
-            this.buffer[byteIndex] = (byte)(noise & 0xFF);
-            this.buffer[byteIndex + 1] = (byte)((noise >> 8) & 0xFF);
-        }
-
-        return this.buffer;
-    }
-
-    /**
-     * 模式2：填充固定低值（交替±1）
-     */
-    private byte[] fillFixedLowValue(short[] buffer, int length) {
-        if (length <= 0) return new byte[0];
-
-        if (this.buffer == null || this.buffer.length < length * 2) {
-            this.buffer = new byte[length * 2];
-        }
-
-        for (int i = 0; i < length; i++) {
-            // 交替填充±1
-            short value = (short)((i % 2 == 0) ? 1 : -1);
-            int byteIndex = i * 2;
-            this.buffer[byteIndex] = (byte)(value & 0xFF);
-            this.buffer[byteIndex + 1] = (byte)((value >> 8) & 0xFF);
+                return true;
         }
-
-        return this.buffer;
     }
 
     /**
@@ -0,0 +1,549 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link FragmentedMp4Writer} 与 {@link RecordingRecovery} 共用的 MP4 box 写入工具：
+ * 大端 box 缓冲区以及 ftyp / mvhd / tkhd / mdhd / hdlr / minf 头部、stsd 样本描述（avc1、hvc1、av01、mp4a）
+ */
+final class Mp4Boxes {
+    static final int MOVIE_TIMESCALE = 1000;
+    static final int VIDEO_TIMESCALE = 90000;
+    private static final int[] MATRIX = {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+
+    private Mp4Boxes() {
+    }
+
+    static byte[] fourcc(String type) {
+        return type.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** 轨道媒体时间刻度：视频 90kHz，音频为采样率 */
+    static int timescaleOf(TrackSpec spec) {
+        return spec.isVideo() ? VIDEO_TIMESCALE : spec.sampleRate;
+    }
+
+    /** 无法从 PTS 推算时的样本时长：视频按 30fps，AAC 一帧 1024 个采样 */
+    static int defaultSampleDuration(TrackSpec spec) {
+        return spec.isVideo() ? VIDEO_TIMESCALE / 30 : 1024;
+    }
+
+    /**
+     * 检查轨道是否能封装（H.264 / H.265 / AV1 / AAC 且参数齐全）
+     *
+     * @throws IllegalArgumentException 不支持的格式
+     */
+    static void checkTrack(TrackSpec spec) {
+        if (TrackSpec.MIME_AVC.equals(spec.mimeType) || TrackSpec.MIME_HEVC.equals(spec.mimeType)
+                || TrackSpec.MIME_AV1.equals(spec.mimeType)) {
+            if (spec.width <= 0 || spec.height <= 0 || spec.csd.length == 0) {
+                throw new IllegalArgumentException("invalid video track: " + spec);
+            }
+        } else if (TrackSpec.MIME_AAC.equals(spec.mimeType)) {
+            if (spec.sampleRate <= 0 || spec.channelCount <= 0 || spec.csd.length == 0) {
+                throw new IllegalArgumentException("invalid audio track: " + spec);
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported mime: " + spec.mimeType);
+        }
+    }
+
+    static void writeFtyp(Buffer b, String majorBrand, String... compatibleBrands) throws IOException {
+        final long ftyp = b.begin("ftyp");
+        b.fourcc(majorBrand);
+        b.u32(0);
+        for (String brand : compatibleBrands) {
+            b.fourcc(brand);
+        }
+        b.end(ftyp);
+    }
+
+    /**
+     * 视频轨道样本描述对应的 ftyp 兼容品牌（avc1 / hvc1 / av01），非视频轨道返回 null
+     */
+    static String codecBrand(TrackSpec spec) {
+        if (TrackSpec.MIME_AVC.equals(spec.mimeType)) {
+            return "avc1";
+        } else if (TrackSpec.MIME_HEVC.equals(spec.mimeType)) {
+            return "hvc1";
+        } else if (TrackSpec.MIME_AV1.equals(spec.mimeType)) {
+            return "av01";
+        }
+        return null;
+    }
+
+    /**
+     * @param duration 影片时长（{@link #MOVIE_TIMESCALE}），未知时为 0
+     */
+    static void writeMvhd(Buffer b, long duration, int nextTrackId) throws IOException {
+        final long mvhd = b.beginFull("mvhd", 0, 0);
+        b.u32(0);                 // creation_time
+        b.u32(0);                 // modification_time
+        b.u32(MOVIE_TIMESCALE);
+        b.u32(clampU32(duration));
+        b.u32(0x00010000);        // rate 1.0
+        b.u16(0x0100);            // volume 1.0
+        b.zeros(2 + 8);
+        for (int m : MATRIX) b.u32(m);
+        b.zeros(6 * 4);           // pre_defined
+        b.u32(nextTrackId);
+        b.end(mvhd);
+    }
+
+    /**
+     * @param duration 轨道时长（{@link #MOVIE_TIMESCALE}），未知时为 0
+     */
+    static void writeTkhd(Buffer b, int trackId, TrackSpec spec, long duration) throws IOException {
+        final boolean video = spec.isVideo();
+        final long tkhd = b.beginFull("tkhd", 0, 0x000003);  // enabled | in_movie
+        b.u32(0);
+        b.u32(0);
+        b.u32(trackId);
+        b.u32(0);                 // reserved
+        b.u32(clampU32(duration));
+        b.zeros(8);
+        b.u16(0);                 // layer
+        b.u16(0);                 // alternate_group
+        b.u16(video ? 0 : 0x0100);
+        b.u16(0);
+        for (int m : MATRIX) b.u32(m);
+        b.u32(video ? spec.width << 16 : 0);
+        b.u32(video ? spec.height << 16 : 0);
+        b.end(tkhd);
+    }
+
+    /**
+     * @param duration 媒体时长（轨道时间刻度），未知时为 0
+     */
+    static void writeMdhd(Buffer b, int timescale, long duration) throws IOException {
+        final long mdhd = b.beginFull("mdhd", 0, 0);
+        b.u32(0);
+        b.u32(0);
+        b.u32(timescale);
+        b.u32(clampU32(duration));
+        b.u16(0x55C4);            // language "und"
+        b.u16(0);
+        b.end(mdhd);
+    }
+
+    static void writeHdlr(Buffer b, boolean video) throws IOException {
+        final long hdlr = b.beginFull("hdlr", 0, 0);
+        b.u32(0);
+        b.fourcc(video ? "vide" : "soun");
+        b.zeros(12);
+        b.bytes((video ? "VideoHandler" : "SoundHandler").getBytes(StandardCharsets.US_ASCII));
+        b.u8(0);
+        b.end(hdlr);
+    }
+
+    /**
+     * minf 中样本表之前的部分：vmhd / smhd + dinf（数据在本文件中）
+     */
+    static void writeMediaHeader(Buffer b, boolean video) throws IOException {
+        if (video) {
+            final long vmhd = b.beginFull("vmhd", 0, 1);
+            b.zeros(8);           // graphicsmode + opcolor
+            b.end(vmhd);
+        } else {
+            final long smhd = b.beginFull("smhd", 0, 0);
+            b.zeros(4);           // balance + reserved
+            b.end(smhd);
+        }
+        final long dinf = b.begin("dinf");
+        final long dref = b.beginFull("dref", 0, 0);
+        b.u32(1);
+        final long url = b.beginFull("url ", 0, 1);
+        b.end(url);
+        b.end(dref);
+        b.end(dinf);
+    }
+
+    /**
+     * stsd：H.264 为 avc1 + avcC，H.265 为 hvc1 + hvcC，AV1 为 av01 + av1C，AAC 为 mp4a + esds
+     */
+    static void writeStsd(Buffer b, int trackId, TrackSpec spec) throws IOException {
+        final long stsd = b.beginFull("stsd", 0, 0);
+        b.u32(1);
+        if (TrackSpec.MIME_HEVC.equals(spec.mimeType)) {
+            writeHvc1(b, spec);
+        } else if (TrackSpec.MIME_AV1.equals(spec.mimeType)) {
+            writeAv01(b, spec);
+        } else if (spec.isVideo()) {
+            writeAvc1(b, spec);
+        } else {
+            writeMp4a(b, trackId, spec);
+        }
+        b.end(stsd);
+    }
+
+    private static void writeAvc1(Buffer b, TrackSpec spec) throws IOException {
+        final List<byte[]> sps = new ArrayList<>();
+        final List<byte[]> pps = new ArrayList<>();
+        for (byte[] csd : spec.csd) {
+            for (byte[] nal : FragmentedMp4Writer.splitNalUnits(csd)) {
+                int type = nal[0] & 0x1f;
+                if (type == 7) {
+                    sps.add(nal);
+                } else if (type == 8) {
+                    pps.add(nal);
+                }
+            }
+        }
+        if (sps.isEmpty() || sps.get(0).length < 4) {
+            throw new IllegalArgumentException("no SPS in csd: " + spec);
+        }
+
+        final long avc1 = beginVisualSampleEntry(b, "avc1", spec);
+        final long avcC = b.begin("avcC");
+        final byte[] first = sps.get(0);
+        b.u8(1);                  // configurationVersion
+        b.u8(first[1] & 0xff);    // profile
+        b.u8(first[2] & 0xff);    // profile compatibility
+        b.u8(first[3] & 0xff);    // level
+        b.u8(0xff);               // lengthSizeMinusOne = 3
+        b.u8(0xe0 | sps.size());
+        for (byte[] nal : sps) {
+            b.u16(nal.length);
+            b.bytes(nal);
+        }
+        b.u8(pps.size());
+        for (byte[] nal : pps) {
+            b.u16(nal.length);
+            b.bytes(nal);
+        }
+        b.end(avcC);
+        b.end(avc1);
+    }
+
+    /**
+     * VisualSampleEntry 公共部分，返回的 box 由调用者在写完解码配置后结束
+     */
+    private static long beginVisualSampleEntry(Buffer b, String type, TrackSpec spec) throws IOException {
+        final long entry = b.begin(type);
+        b.zeros(6);
+        b.u16(1);                 // data_reference_index
+        b.zeros(2 + 2 + 12);      // pre_defined + reserved + pre_defined
+        b.u16(spec.width);
+        b.u16(spec.height);
+        b.u32(0x00480000);        // 72 dpi
+        b.u32(0x00480000);
+        b.u32(0);
+        b.u16(1);                 // frame_count
+        b.zeros(32);              // compressorname
+        b.u16(0x0018);            // depth
+        b.u16(0xffff);            // pre_defined = -1
+        return entry;
+    }
+
+    private static final int HEVC_NAL_VPS = 32;
+    private static final int HEVC_NAL_SPS = 33;
+    private static final int HEVC_NAL_PPS = 34;
+    /** SPS 中 NAL 头（2 字节）之后：1 字节层信息 + 12 字节 general profile_tier_level */
+    private static final int HEVC_PTL_BYTES = 12;
+
+    private static void writeHvc1(Buffer b, TrackSpec spec) throws IOException {
+        final List<byte[]> vps = new ArrayList<>();
+        final List<byte[]> sps = new ArrayList<>();
+        final List<byte[]> pps = new ArrayList<>();
+        for (byte[] csd : spec.csd) {
+            for (byte[] nal : FragmentedMp4Writer.splitNalUnits(csd)) {
+                int type = (nal[0] >> 1) & 0x3f;
+                if (type == HEVC_NAL_VPS) {
+                    vps.add(nal);
+                } else if (type == HEVC_NAL_SPS) {
+                    sps.add(nal);
+                } else if (type == HEVC_NAL_PPS) {
+                    pps.add(nal);
+                }
+            }
+        }
+        final byte[] rbsp = sps.isEmpty() ? new byte[0] : unescapeRbsp(sps.get(0), 2, 1 + HEVC_PTL_BYTES);
+        if (rbsp.length < 1 + HEVC_PTL_BYTES) {
+            throw new IllegalArgumentException("no SPS in csd: " + spec);
+        }
+        final int subLayers = ((rbsp[0] >> 1) & 0x7) + 1;
+        final int temporalIdNested = rbsp[0] & 0x1;
+
+        final long hvc1 = beginVisualSampleEntry(b, "hvc1", spec);
+        final long hvcC = b.begin("hvcC");
+        b.u8(1);                  // configurationVersion
+        // general_profile_space/tier/profile_idc、compatibility_flags、constraint_flags、level_idc
+        // 与 SPS 中 general profile_tier_level 的字节布局相同
+        for (int i = 1; i <= HEVC_PTL_BYTES; i++) {
+            b.u8(rbsp[i] & 0xff);
+        }
+        b.u16(0xf000);            // min_spatial_segmentation_idc = 0
+        b.u8(0xfc);               // parallelismType = 0（未知）
+        b.u8(0xfc | 1);           // chromaFormat = 4:2:0
+        b.u8(0xf8);               // bitDepthLumaMinus8 = 0
+        b.u8(0xf8);               // bitDepthChromaMinus8 = 0
+        b.u16(0);                 // avgFrameRate 未指定
+        // constantFrameRate = 0，numTemporalLayers，temporalIdNested，lengthSizeMinusOne = 3
+        b.u8((subLayers << 3) | (temporalIdNested << 2) | 0x3);
+        b.u8((vps.isEmpty() ? 0 : 1) + 1 + (pps.isEmpty() ? 0 : 1));
+        writeHvccArray(b, HEVC_NAL_VPS, vps);
+        writeHvccArray(b, HEVC_NAL_SPS, sps);
+        writeHvccArray(b, HEVC_NAL_PPS, pps);
+        b.end(hvcC);
+        b.end(hvc1);
+    }
+
+    private static void writeHvccArray(Buffer b, int type, List<byte[]> nals) throws IOException {
+        if (nals.isEmpty()) {
+            return;
+        }
+        b.u8(0x80 | type);        // array_completeness = 1
+        b.u16(nals.size());
+        for (byte[] nal : nals) {
+            b.u16(nal.length);
+            b.bytes(nal);
+        }
+    }
+
+    /**
+     * 去掉 NAL 中的防竞争字节（00 00 03 中的 03），最多取 maxLength 字节
+     */
+    static byte[] unescapeRbsp(byte[] nal, int from, int maxLength) {
+        final byte[] out = new byte[Math.max(0, Math.min(maxLength, nal.length - from))];
+        int n = 0;
+        int zeros = 0;
+        for (int i = from; i < nal.length && n < out.length; i++) {
+            int v = nal[i] & 0xff;
+            if (zeros >= 2 && v == 3) {
+                zeros = 0;
+                continue;
+            }
+            zeros = v == 0 ? zeros + 1 : 0;
+            out[n++] = (byte) v;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * AV1 编码器的 csd-0 就是 AV1CodecConfigurationRecord（marker + version = 0x81 开头），原样写入 av1C
+     */
+    private static void writeAv01(Buffer b, TrackSpec spec) throws IOException {
+        final byte[] config = spec.csd[0];
+        if (config.length < 4 || (config[0] & 0xff) != 0x81) {
+            throw new IllegalArgumentException("no av1C in csd: " + spec);
+        }
+        final long av01 = beginVisualSampleEntry(b, "av01", spec);
+        final long av1C = b.begin("av1C");
+        b.bytes(config);
+        b.end(av1C);
+        b.end(av01);
+    }
+
+    private static void writeMp4a(Buffer b, int trackId, TrackSpec spec) throws IOException {
+        final byte[] asc = spec.csd[0];
+        final long mp4a = b.begin("mp4a");
+        b.zeros(6);
+        b.u16(1);                 // data_reference_index
+        b.zeros(8);
+        b.u16(spec.channelCount);
+        b.u16(16);                // samplesize
+        b.zeros(4);
+        b.u32(spec.sampleRate <= 0xffff ? spec.sampleRate << 16 : 0);
+
+        final long esds = b.beginFull("esds", 0, 0);
+        final long es = b.beginDescriptor(0x03);
+        b.u16(trackId);           // ES_ID
+        b.u8(0);
+        final long dcd = b.beginDescriptor(0x04);
+        b.u8(0x40);               // objectTypeIndication: AAC
+        b.u8(0x15);               // streamType: audio
+        b.u24(0);                 // bufferSizeDB
+        b.u32(spec.bitrate);      // maxBitrate
+        b.u32(spec.bitrate);      // avgBitrate
+        final long dsi = b.beginDescriptor(0x05);
+        b.bytes(asc);
+        b.endDescriptor(dsi);
+        b.endDescriptor(dcd);
+        final long sl = b.beginDescriptor(0x06);
+        b.u8(0x02);
+        b.endDescriptor(sl);
+        b.endDescriptor(es);
+        b.end(esds);
+        b.end(mp4a);
+    }
+
+    private static int clampU32(long v) {
+        return (int) Math.max(0, Math.min(0xffffffffL, v));
+    }
+
+    /**
+     * 大端 box 写入缓冲区，box 长度在 end 时回填。位置都是绝对位置（从 base 起算）
+     *
+     * 内存模式下缓冲区按需扩容，由调用方 flip 后写出；流式模式下缓冲区写满时按位置写入文件通道，
+     * 已写出部分的长度回填直接按位置写文件，用来生成大小不受内存限制的 moov（样本表）
+     */
+    static final class Buffer {
+        private ByteBuffer mBuf;
+        private final FileChannel mChannel;
+        private final ByteBuffer mPatch = ByteBuffer.allocate(4);
+        // mBuf[0] 对应的绝对位置
+        private long mBase;
+
+        /** 内存模式 */
+        Buffer(int capacity) {
+            mBuf = ByteBuffer.allocate(capacity);
+            mChannel = null;
+            mBase = 0;
+        }
+
+        /** 流式模式：从 channel 的 position 处开始写 */
+        Buffer(FileChannel channel, long position, int capacity) {
+            mBuf = ByteBuffer.allocate(capacity);
+            mChannel = channel;
+            mBase = position;
+        }
+
+        void clear() {
+            mBuf.clear();
+        }
+
+        long position() {
+            return mBase + mBuf.position();
+        }
+
+        /** 内存模式下取出已写内容 */
+        ByteBuffer flip() {
+            mBuf.flip();
+            return mBuf;
+        }
+
+        /** 流式模式下把缓冲区内容写到文件 */
+        void flush() throws IOException {
+            mBuf.flip();
+            while (mBuf.hasRemaining()) {
+                mBase += mChannel.write(mBuf, mBase);
+            }
+            mBuf.clear();
+        }
+
+        long begin(String type) throws IOException {
+            ensure(8);
+            final long start = position();
+            mBuf.putInt(0);
+            mBuf.put(Mp4Boxes.fourcc(type));
+            return start;
+        }
+
+        long beginFull(String type, int version, int flags) throws IOException {
+            final long start = begin(type);
+            u32(version << 24 | flags);
+            return start;
+        }
+
+        void end(long start) throws IOException {
+            patchU32(start, (int) (position() - start));
+        }
+
+        /** MPEG-4 描述符：tag + 4 字节可扩展长度，endDescriptor 时回填 */
+        long beginDescriptor(int tag) throws IOException {
+            u8(tag);
+            final long start = position();
+            u32(0);
+            return start;
+        }
+
+        void endDescriptor(long start) throws IOException {
+            final int len = (int) (position() - start - 4);
+            patchU32(start, (0x80 | (len >> 21) & 0x7f) << 24
+                    | (0x80 | (len >> 14) & 0x7f) << 16
+                    | (0x80 | (len >> 7) & 0x7f) << 8
+                    | len & 0x7f);
+        }
+
+        void patchU32(long position, int value) throws IOException {
+            if (position >= mBase) {
+                mBuf.putInt((int) (position - mBase), value);
+                return;
+            }
+            mPatch.clear();
+            mPatch.putInt(value).flip();
+            while (mPatch.hasRemaining()) {
+                mChannel.write(mPatch, position + mPatch.position());
+            }
+        }
+
+        void u8(int v) throws IOException {
+            ensure(1);
+            mBuf.put((byte) v);
+        }
+
+        void u16(int v) throws IOException {
+            ensure(2);
+            mBuf.putShort((short) v);
+        }
+
+        void u24(int v) throws IOException {
+            u8(v >> 16);
+            u16(v);
+        }
+
+        void u32(int v) throws IOException {
+            ensure(4);
+            mBuf.putInt(v);
+        }
+
+        void u64(long v) throws IOException {
+            ensure(8);
+            mBuf.putLong(v);
+        }
+
+        void fourcc(String type) throws IOException {
+            bytes(Mp4Boxes.fourcc(type));
+        }
+
+        void bytes(byte[] data) throws IOException {
+            ensure(data.length);
+            mBuf.put(data);
+        }
+
+        void zeros(int n) throws IOException {
+            ensure(n);
+            for (int i = 0; i < n; i++) {
+                mBuf.put((byte) 0);
+            }
+        }
+
+        private void ensure(int n) throws IOException {
+            if (mBuf.remaining() >= n) {
+                return;
+            }
+            if (mChannel != null) {
+                flush();
+                if (mBuf.remaining() >= n) {
+                    return;
+                }
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(mBuf.capacity() * 2, mBuf.position() + n));
+            mBuf.flip();
+            bigger.put(mBuf);
+            mBuf = bigger;
+        }
+    }
+}
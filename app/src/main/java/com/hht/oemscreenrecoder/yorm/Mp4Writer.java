@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 纯 Java 的 MP4 写入器（H.264 / HEVC / AV1 + AAC，见 {@link Mp4Boxes#checkTrack}），由 {@link Mp4WriterSink} 适配为 {@link SampleSink}
+ *
+ * 调用顺序：addTrack... → start → writeSample... → finish → close。非线程安全
+ */
+interface Mp4Writer extends Closeable {
+
+    /** 与 MediaCodec.BUFFER_FLAG_KEY_FRAME 相同 */
+    int FLAG_KEY_FRAME = 1;
+    /** 与 MediaCodec.BUFFER_FLAG_END_OF_STREAM 相同 */
+    int FLAG_END_OF_STREAM = 4;
+
+    /**
+     * @return 轨道索引（从 0 开始，writeSample 使用）
+     * @throws IllegalArgumentException 不支持的格式
+     * @throws IllegalStateException 已经 start
+     */
+    int addTrack(TrackSpec spec);
+
+    /**
+     * 写出文件头
+     */
+    void start() throws IOException;
+
+    /**
+     * 写入一个样本，data 的 position~limit 为样本数据（调用后 position 不变）
+     *
+     * @param flags {@link #FLAG_KEY_FRAME} / {@link #FLAG_END_OF_STREAM}，空的 EOS 样本被忽略
+     */
+    void writeSample(int track, ByteBuffer data, long presentationTimeUs, int flags) throws IOException;
+
+    /**
+     * 写出剩余数据使文件完整可播放，之后不能再写入
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 纯 Java 封装后端：把 {@link Mp4Writer}（分片 MP4 / 可断电恢复的 MP4）适配为 {@link SampleSink}
+ */
+final class Mp4WriterSink implements SampleSink {
+    private final Mp4Writer mWriter;
+
+    Mp4WriterSink(Mp4Writer writer) {
+        mWriter = writer;
+    }
+
+    @Override
+    public int addTrack(MediaFormat format) {
+        return mWriter.addTrack(toTrackSpec(format));
+    }
+
+    @Override
+    public void start() {
+        try {
+            mWriter.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to write header", e);
+        }
+    }
+
+    @Override
+    public void writeSampleData(int track, ByteBuffer data, MediaCodec.BufferInfo info) {
+        try {
+            mWriter.writeSample(track, data, info.presentationTimeUs, info.flags);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to write sample", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            mWriter.finish();
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to finish file", e);
+        }
+    }
+
+    @Override
+    public void release() {
+        try {
+            mWriter.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+
+    /**
+     * 从编码器输出格式中取出封装需要的参数
+     */
+    static TrackSpec toTrackSpec(MediaFormat format) {
+        final String mime = format.getString(MediaFormat.KEY_MIME);
+        if (mime == null) {
+            throw new IllegalArgumentException("no mime in format: " + format);
+        }
+        final byte[] csd0 = csdBytes(format, "csd-0");
+        final byte[] csd1 = csdBytes(format, "csd-1");
+        final byte[][] csd = csd0 == null ? new byte[0][]
+                : csd1 == null ? new byte[][]{csd0} : new byte[][]{csd0, csd1};
+        final int bitrate = format.containsKey(MediaFormat.KEY_BIT_RATE)
+                ? format.getInteger(MediaFormat.KEY_BIT_RATE) : 0;
+        if (mime.startsWith("video/")) {
+            return TrackSpec.video(mime, format.getInteger(MediaFormat.KEY_WIDTH),
+                    format.getInteger(MediaFormat.KEY_HEIGHT), bitrate, csd);
+        }
+        return TrackSpec.audio(mime, format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                format.getInteger(MediaFormat.KEY_CHANNEL_COUNT), bitrate, csd);
+    }
+
+    private static byte[] csdBytes(MediaFormat format, String key) {
+        if (!format.containsKey(key)) {
+            return null;
+        }
+        final ByteBuffer buffer = format.getByteBuffer(key).duplicate();
+        buffer.position(0);
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Mp4WriterSink{" + mWriter + '}';
+    }
+}
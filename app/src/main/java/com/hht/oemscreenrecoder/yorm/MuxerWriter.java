@@ -0,0 +1,433 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * 独立的 muxer 写入线程
+ *
+ * 编码器回调线程只把输出数据拷贝进 {@link DirectBufferPool} 的缓冲区并入队，随即可以释放编码器输出缓冲区；
+ * 真正的 MediaMuxer 写入由单个写线程按入队顺序完成，存储刷盘变慢（低剩余空间的 eMMC）不会再直接卡住编码器输出。
+ *
+ * 队列按样本数和内存两个维度限长：超出时 {@link #enqueue} 阻塞等待（不丢帧，丢视频帧会破坏 GOP），
+ * 等待时间计入 {@link #getEnqueueStall()}。写入失败后不再写入，后续样本直接丢弃并通过 {@link ErrorListener} 通知一次。
+ *
+ * 通过 {@link #setInterleaving} 开启交织后，写线程先把样本交给 {@link SampleInterleaver}，按时间戳在轨道间交织后再写入；
+ * 被交织器扣留的样本仍占用队列内存，队列空闲时最多等待 maxSkewUs 对应的时长，超时后不再等待其它轨道，
+ * 避免生产者因内存上限阻塞时与交织等待互相卡住。
+ *
+ * enqueue 可由多个线程调用，同一线程入队的样本保持顺序。纯 Java 实现
+ */
+final class MuxerWriter {
+
+    static final int DEFAULT_MAX_QUEUED_SAMPLES = 120;
+    static final int DEFAULT_MAX_QUEUED_BYTES = 16 * 1024 * 1024;
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocateDirect(0);
+
+    /**
+     * 实际写入（在写线程中调用），data 的 position~limit 为样本数据
+     */
+    interface SampleWriter {
+        void writeSample(int track, ByteBuffer data, long presentationTimeUs, int flags);
+    }
+
+    /**
+     * 写入失败回调（在写线程中调用，只回调一次）
+     */
+    interface ErrorListener {
+        void onWriteError(Exception e);
+    }
+
+    private static final class Sample {
+        int track;
+        ByteBuffer data;
+        int size;
+        long presentationTimeUs;
+        int flags;
+        long enqueueNs;
+    }
+
+    private final SampleWriter mWriter;
+    private final ErrorListener mErrorListener;
+    private final int mMaxQueuedSamples;
+    private final Thread mThread;
+
+    // 以下由 mLock 保护
+    private final Object mLock = new Object();
+    private final ArrayDeque<Sample> mQueue;
+    private final ArrayDeque<Sample> mSpareSamples;
+    private final DirectBufferPool mPool;
+    private int mReserved = 0;          // 已占位、正在拷贝还未入队的样本数
+    private long mQueuedBytes = 0;
+    private boolean mClosing = false;
+    private SampleInterleaver<Sample> mInterleaver;
+    private long mMaxHoldNs = 0;
+
+    private volatile boolean mAborted = false;
+    private volatile Exception mError;
+
+    // 统计信息（计数在 mLock 内或只由写线程更新）
+    private final LatencyHistogram mEnqueueStall = new LatencyHistogram();  // 生产者因队列满而等待的时间
+    private final LatencyHistogram mQueueDelay = new LatencyHistogram();    // 入队到开始写入
+    private final LatencyHistogram mWriteTime = new LatencyHistogram();     // 单次 muxer 写入耗时
+    private volatile long mSamplesWritten = 0;
+    private volatile long mBytesWritten = 0;
+    private volatile long mDroppedSamples = 0;
+    private volatile long mStallCount = 0;
+    private volatile long mHoldTimeouts = 0;
+    private volatile int mMaxDepth = 0;
+    private volatile long mMaxQueuedBytes = 0;
+
+    /**
+     * @param maxQueuedSamples 队列最多容纳的样本数
+     * @param maxQueuedBytes 队列中样本占用的直接内存上限
+     */
+    MuxerWriter(SampleWriter writer, int maxQueuedSamples, int maxQueuedBytes, ErrorListener errorListener) {
+        if (maxQueuedSamples <= 0) {
+            throw new IllegalArgumentException("maxQueuedSamples=" + maxQueuedSamples);
+        }
+        mWriter = writer;
+        mErrorListener = errorListener;
+        mMaxQueuedSamples = maxQueuedSamples;
+        mQueue = new ArrayDeque<>(maxQueuedSamples);
+        mSpareSamples = new ArrayDeque<>(maxQueuedSamples);
+        mPool = new DirectBufferPool(Math.max(DirectBufferPool.MIN_BUFFER_SIZE, maxQueuedBytes));
+        mThread = new Thread(this::runLoop, "MuxerWriter");
+    }
+
+    void start() {
+        mThread.start();
+    }
+
+    /**
+     * 开启轨道间按时间戳交织写入，需在第一个样本入队之前调用
+     *
+     * @param trackCount 轨道数
+     * @param maxSkewUs 轨道之间最大领先时长，也是样本被扣留的最长时间
+     * @param reorderWindowUs 可重排轨道的排序窗口
+     * @param reorderTracks 可在窗口内按时间戳重排的轨道（音频）
+     */
+    void setInterleaving(int trackCount, long maxSkewUs, long reorderWindowUs, int... reorderTracks) {
+        final SampleInterleaver<Sample> interleaver = new SampleInterleaver<>(trackCount, maxSkewUs, reorderWindowUs);
+        for (int track : reorderTracks) {
+            interleaver.setReorder(track, true);
+        }
+        synchronized (mLock) {
+            mInterleaver = interleaver;
+            mMaxHoldNs = maxSkewUs * 1000;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * 拷贝 data 的 position~limit 并入队，data 的 position 不变，返回后即可释放编码器缓冲区。
+     * 队列已满时阻塞等待
+     *
+     * @return 已关闭或已写入失败时返回 false（样本被丢弃）
+     */
+    boolean enqueue(int track, ByteBuffer data, long presentationTimeUs, int flags) {
+        final int size = data.remaining();
+        long stallStartNs = 0;
+        ByteBuffer buffer;
+        Sample sample;
+        synchronized (mLock) {
+            while (true) {
+                if (mClosing || mError != null) {
+                    mDroppedSamples++;
+                    return false;
+                }
+                if (mQueue.size() + mReserved < mMaxQueuedSamples) {
+                    buffer = size == 0 ? EMPTY_BUFFER : mPool.acquire(size);
+                    if (buffer != null) break;
+                }
+                if (stallStartNs == 0) {
+                    stallStartNs = System.nanoTime();
+                    mStallCount++;
+                }
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    mDroppedSamples++;
+                    return false;
+                }
+            }
+            mReserved++;
+            sample = mSpareSamples.pollLast();
+        }
+        if (stallStartNs != 0) {
+            mEnqueueStall.record(System.nanoTime() - stallStartNs);
+        }
+        if (sample == null) {
+            sample = new Sample();
+        }
+
+        // 拷贝在锁外进行
+        if (size > 0) {
+            final int position = data.position();
+            buffer.put(data);
+            buffer.flip();
+            data.position(position);
+        }
+        sample.track = track;
+        sample.data = buffer;
+        sample.size = size;
+        sample.presentationTimeUs = presentationTimeUs;
+        sample.flags = flags;
+        sample.enqueueNs = System.nanoTime();
+
+        synchronized (mLock) {
+            mReserved--;
+            mQueue.addLast(sample);
+            mQueuedBytes += size;
+            if (mQueue.size() > mMaxDepth) mMaxDepth = mQueue.size();
+            if (mQueuedBytes > mMaxQueuedBytes) mMaxQueuedBytes = mQueuedBytes;
+            mLock.notifyAll();
+        }
+        return true;
+    }
+
+    private void runLoop() {
+        while (true) {
+            final Sample sample = nextSample();
+            if (sample == null) {
+                // 已关闭且队列已空
+                break;
+            }
+
+            final int size = sample.size;
+            boolean dropped = true;
+            if (!mAborted && mError == null) {
+                final long startNs = System.nanoTime();
+                mQueueDelay.record(startNs - sample.enqueueNs);
+                try {
+                    mWriter.writeSample(sample.track, sample.data, sample.presentationTimeUs, sample.flags);
+                    mSamplesWritten++;
+                    mBytesWritten += size;
+                    dropped = false;
+                } catch (RuntimeException e) {
+                    mError = e;
+                    if (mErrorListener != null) {
+                        mErrorListener.onWriteError(e);
+                    }
+                }
+                mWriteTime.record(System.nanoTime() - startNs);
+            }
+
+            synchronized (mLock) {
+                recycle(sample, dropped);
+            }
+        }
+    }
+
+    /**
+     * 取出下一个要写入的样本，已关闭且没有剩余样本时返回 null。
+     * 开启交织时先把队列中的样本全部交给交织器，再取出可以写入的样本
+     */
+    private Sample nextSample() {
+        synchronized (mLock) {
+            while (true) {
+                final SampleInterleaver<Sample> interleaver = mInterleaver;
+                if (interleaver == null) {
+                    if (!mQueue.isEmpty() || mClosing || mAborted) {
+                        return mQueue.pollFirst();
+                    }
+                } else {
+                    Sample queued;
+                    while ((queued = mQueue.pollFirst()) != null) {
+                        if ((queued.flags & Mp4Writer.FLAG_END_OF_STREAM) != 0) {
+                            interleaver.offerEnd(queued.track, queued);
+                        } else if (!interleaver.offer(queued.track, queued.presentationTimeUs, queued)) {
+                            recycle(queued, true);
+                        }
+                    }
+                    Sample ready = interleaver.poll();
+                    final Sample head = interleaver.peek();
+                    if (ready == null && head != null) {
+                        final long waitNs = mMaxHoldNs - (System.nanoTime() - head.enqueueNs);
+                        if (mClosing || mAborted) {
+                            ready = interleaver.pollForced();
+                        } else if (waitNs <= 0) {
+                            mHoldTimeouts++;
+                            ready = interleaver.pollForced();
+                        } else {
+                            waitLocked(waitNs);
+                            continue;
+                        }
+                    }
+                    if (ready != null) {
+                        // 交织器抬高的时间戳只用于排序，写入 muxer 的仍是编码器给出的 PTS（B 帧按解码顺序输出时 PTS 本就不单调）
+                        return ready;
+                    }
+                    if (mClosing || mAborted) {
+                        return null;
+                    }
+                }
+                waitLocked(0);
+            }
+        }
+    }
+
+    private void waitLocked(long timeoutNs) {
+        try {
+            if (timeoutNs > 0) {
+                mLock.wait(timeoutNs / 1000000, (int) (timeoutNs % 1000000));
+            } else {
+                mLock.wait();
+            }
+        } catch (InterruptedException e) {
+            mAborted = true;
+        }
+    }
+
+    private void recycle(Sample sample, boolean dropped) {
+        if (sample.data != EMPTY_BUFFER) {
+            mPool.release(sample.data);
+        }
+        sample.data = null;
+        mSpareSamples.addLast(sample);
+        mQueuedBytes -= sample.size;
+        if (dropped) mDroppedSamples++;
+        mLock.notifyAll();
+    }
+
+    /**
+     * 停止接收新样本，等待已入队样本写完后退出写线程。超时后放弃剩余样本并再等待同样时长
+     *
+     * @return 队列是否全部写完
+     */
+    boolean close(long timeoutMs) {
+        synchronized (mLock) {
+            mClosing = true;
+            mLock.notifyAll();
+        }
+        if (!mThread.isAlive()) {
+            return !mAborted;
+        }
+        boolean drained = join(timeoutMs);
+        if (!drained) {
+            mAborted = true;
+            join(timeoutMs);
+        }
+        return drained && !mAborted;
+    }
+
+    private boolean join(long timeoutMs) {
+        try {
+            mThread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !mThread.isAlive();
+    }
+
+    /** 写线程是否已退出（close 超时时可能仍卡在一次写入中） */
+    boolean isTerminated() {
+        return !mThread.isAlive();
+    }
+
+    Exception getError() {
+        return mError;
+    }
+
+    int getQueuedSamples() {
+        synchronized (mLock) {
+            return mQueue.size();
+        }
+    }
+
+    long getQueuedBytes() {
+        synchronized (mLock) {
+            return mQueuedBytes;
+        }
+    }
+
+    int getMaxQueuedSamples() {
+        return mMaxQueuedSamples;
+    }
+
+    long getSamplesWritten() {
+        return mSamplesWritten;
+    }
+
+    long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    long getDroppedSamples() {
+        return mDroppedSamples;
+    }
+
+    long getStallCount() {
+        return mStallCount;
+    }
+
+    /** 交织等待超时、不再等待其它轨道的次数 */
+    long getHoldTimeouts() {
+        return mHoldTimeouts;
+    }
+
+    int getMaxDepth() {
+        return mMaxDepth;
+    }
+
+    long getMaxQueuedBytesSeen() {
+        return mMaxQueuedBytes;
+    }
+
+    /** 生产者因队列满（样本数或内存）而阻塞的时间分布 */
+    LatencyHistogram getEnqueueStall() {
+        return mEnqueueStall;
+    }
+
+    /** 样本在队列中等待的时间分布 */
+    LatencyHistogram getQueueDelay() {
+        return mQueueDelay;
+    }
+
+    /** 单次 muxer 写入耗时分布 */
+    LatencyHistogram getWriteTime() {
+        return mWriteTime;
+    }
+
+    @Override
+    public String toString() {
+        final String pool;
+        final int depth;
+        final String interleaver;
+        synchronized (mLock) {
+            pool = mPool.toString();
+            depth = mQueue.size();
+            interleaver = mInterleaver == null ? "" : ", holdTimeouts=" + mHoldTimeouts + ", " + mInterleaver;
+        }
+        return "MuxerWriter{written=" + mSamplesWritten
+                + ", bytes=" + mBytesWritten
+                + ", dropped=" + mDroppedSamples
+                + ", depth=" + depth + "/" + mMaxQueuedSamples
+                + ", maxDepth=" + mMaxDepth
+                + ", maxQueuedBytes=" + mMaxQueuedBytes
+                + ", stalls=" + mStallCount
+                + ", enqueueStall[" + mEnqueueStall + "]"
+                + ", queueDelay[" + mQueueDelay + "]"
+                + ", writeTime[" + mWriteTime + "]"
+                + ", " + pool
+                + interleaver + '}';
+    }
+}
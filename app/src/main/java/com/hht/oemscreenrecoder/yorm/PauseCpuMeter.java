@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.Locale;
+
+/**
+ * 录制中/暂停中的 CPU 占用统计，用于验证暂停时停止采集和编码带来的节省
+ *
+ * 分别累计两种状态下经过的真实时间、进程 CPU 时间和编码输出的样本数，
+ * CPU 占用 = CPU 时间 / 真实时间（多核时可能超过 100%）。
+ * 时间由调用者传入（elapsedRealtime 与 Process.getElapsedCpuTime，毫秒），便于单元测试。纯 Java 实现，线程安全
+ */
+final class PauseCpuMeter {
+    private static final int RECORDING = 0;
+    private static final int PAUSED = 1;
+
+    private boolean mStarted = false;
+    private int mState = RECORDING;
+    private long mStateStartMs;
+    private long mStateStartCpuMs;
+
+    private final long[] mElapsedMs = new long[2];
+    private final long[] mCpuMs = new long[2];
+    private final long[] mSamples = new long[2];
+    private long mPauseCount = 0;
+
+    synchronized void start(long nowMs, long cpuMs) {
+        mStarted = true;
+        mState = RECORDING;
+        mStateStartMs = nowMs;
+        mStateStartCpuMs = cpuMs;
+    }
+
+    synchronized void pause(long nowMs, long cpuMs) {
+        if (!mStarted || mState == PAUSED) return;
+        switchTo(PAUSED, nowMs, cpuMs);
+        mPauseCount++;
+    }
+
+    synchronized void resume(long nowMs, long cpuMs) {
+        if (!mStarted || mState == RECORDING) return;
+        switchTo(RECORDING, nowMs, cpuMs);
+    }
+
+    /**
+     * 结束统计，把当前状态的时间计入
+     */
+    synchronized void stop(long nowMs, long cpuMs) {
+        if (!mStarted) return;
+        accumulate(nowMs, cpuMs);
+        mStarted = false;
+    }
+
+    /**
+     * 编码器输出一个样本（无论最终是否写入）
+     */
+    synchronized void onEncodedSample() {
+        mSamples[mState]++;
+    }
+
+    synchronized boolean isPaused() {
+        return mStarted && mState == PAUSED;
+    }
+
+    synchronized long getPauseCount() {
+        return mPauseCount;
+    }
+
+    synchronized long getPausedMs() {
+        return mElapsedMs[PAUSED];
+    }
+
+    synchronized long getPausedSamples() {
+        return mSamples[PAUSED];
+    }
+
+    synchronized long getRecordingSamples() {
+        return mSamples[RECORDING];
+    }
+
+    /** 录制中的平均 CPU 占用（%），没有数据时为 0 */
+    synchronized double getRecordingCpuPercent() {
+        return percent(RECORDING);
+    }
+
+    /** 暂停中的平均 CPU 占用（%），没有数据时为 0 */
+    synchronized double getPausedCpuPercent() {
+        return percent(PAUSED);
+    }
+
+    private void switchTo(int state, long nowMs, long cpuMs) {
+        accumulate(nowMs, cpuMs);
+        mState = state;
+    }
+
+    private void accumulate(long nowMs, long cpuMs) {
+        mElapsedMs[mState] += Math.max(0, nowMs - mStateStartMs);
+        mCpuMs[mState] += Math.max(0, cpuMs - mStateStartCpuMs);
+        mStateStartMs = nowMs;
+        mStateStartCpuMs = cpuMs;
+    }
+
+    private double percent(int state) {
+        return mElapsedMs[state] > 0 ? mCpuMs[state] * 100.0 / mElapsedMs[state] : 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "recording: %dms cpu=%.1f%% samples=%d | paused(x%d): %dms cpu=%.1f%% samples=%d",
+                mElapsedMs[RECORDING], percent(RECORDING), mSamples[RECORDING],
+                mPauseCount, mElapsedMs[PAUSED], percent(PAUSED), mSamples[PAUSED]);
+    }
+}
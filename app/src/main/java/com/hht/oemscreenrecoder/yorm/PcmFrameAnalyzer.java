@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+/**
+ * 单遍音频帧分析器
+ * 在一次循环中完成峰值、RMS、零值计数、削波计数和静音判定，混音模式下同时完成增益与混音，
+ * 取代 feedAudioEncoder 中诊断循环、isSilentFrame、scaleValues、混音转换的多次扫描
+ *
+ * 实例可复用，结果保存在 {@link #first}、{@link #second}、{@link #output} 中，每帧不分配对象。
+ * 纯 Java 实现，不依赖 Android API
+ */
+final class PcmFrameAnalyzer {
+
+    /**
+     * 单个音频源（或混音输出）的一帧统计结果
+     */
+    static final class FrameStats {
+        /** 最大绝对幅度 */
+        int peak;
+        /** 采样值平方和，用于计算 RMS */
+        long sumSquares;
+        /** 值为0的采样数 */
+        int zeroCount;
+        /** 达到满幅（或混音时被钳位）的采样数 */
+        int clipCount;
+        /** 有效采样数 */
+        int length;
+        /** 是否判定为静音帧（peak 低于阈值） */
+        boolean silent;
+
+        double rms() {
+            return length == 0 ? 0 : Math.sqrt((double) sumSquares / length);
+        }
+
+        boolean allZeros() {
+            return zeroCount == length;
+        }
+
+        void reset(int len) {
+            peak = 0;
+            sumSquares = 0;
+            zeroCount = 0;
+            clipCount = 0;
+            length = len;
+            silent = true;
+        }
+
+        @Override
+        public String toString() {
+            return "peak=" + peak + ", rms=" + (int) rms() + ", zeros=" + zeroCount + "/" + length
+                    + ", clips=" + clipCount + ", silent=" + silent;
+        }
+    }
+
+    private final int mSilenceThreshold;
+
+    /** 单源模式下的源数据统计；混音模式下为第一个源（内录）的原始数据统计 */
+    final FrameStats first = new FrameStats();
+    /** 混音模式下第二个源（麦克风）的原始数据统计（增益前） */
+    final FrameStats second = new FrameStats();
+    /** 实际送入编码器的数据统计（增益/混音后） */
+    final FrameStats output = new FrameStats();
+
+    /**
+     * @param silenceThreshold 峰值低于该值视为静音帧
+     */
+    PcmFrameAnalyzer(int silenceThreshold) {
+        mSilenceThreshold = silenceThreshold;
+    }
+
+    /**
+     * 单源：原地应用增益，同时统计原始数据与输出数据
+     *
+     * @param buf 采样数据（原地改写）
+     * @param len 有效采样数
+     * @param gain 增益系数
+     * @return 输出峰值
+     */
+    int analyze(short[] buf, int len, float gain) {
+        first.reset(len);
+        output.reset(len);
+        int peak = 0;
+        long sumSquares = 0;
+        int zeros = 0;
+        int clips = 0;
+        int outPeak = 0;
+        int outClips = 0;
+        for (int i = 0; i < len; i++) {
+            int v = buf[i];
+            int abs = v < 0 ? -v : v;
+            if (abs > peak) peak = abs;
+            sumSquares += v * v;
+            if (v == 0) zeros++;
+            if (v == Short.MAX_VALUE || v == Short.MIN_VALUE) clips++;
+
+            if (gain != 1f) {
+                v = (int) (v * gain);
+                if (v > Short.MAX_VALUE) {
+                    v = Short.MAX_VALUE;
+                    outClips++;
+                } else if (v < Short.MIN_VALUE) {
+                    v = Short.MIN_VALUE;
+                    outClips++;
+                }
+                buf[i] = (short) v;
+                abs = v < 0 ? -v : v;
+            }
+            if (abs > outPeak) outPeak = abs;
+        }
+        finish(first, peak, sumSquares, zeros, clips);
+        if (gain == 1f) {
+            copy(first, output);
+        } else {
+            // 增益后的 RMS 按比例换算，避免在循环中再累加一次
+            long outSquares = (long) (sumSquares * (double) gain * gain);
+            finish(output, outPeak, outSquares, zeros, clips + outClips);
+        }
+        return output.peak;
+    }
+
+    /**
+     * 双源混音：统计两个源的原始数据，对 src 应用增益后混入 dst（带钳位），结果保存在 dst 中
+     *
+     * @param dst 第一个音频源（内录），同时作为输出
+     * @param src 第二个音频源（麦克风），不改写
+     * @param len 有效采样数
+     * @param srcGain 第二个源的增益
+     * @return 输出峰值
+     */
+    int mix(short[] dst, short[] src, int len, float srcGain) {
+        first.reset(len);
+        second.reset(len);
+        output.reset(len);
+        int peakA = 0, peakB = 0, peakOut = 0;
+        long squaresA = 0, squaresB = 0, squaresOut = 0;
+        int zerosA = 0, zerosB = 0, zerosOut = 0;
+        int clipsA = 0, clipsB = 0, clipsOut = 0;
+        for (int i = 0; i < len; i++) {
+            int a = dst[i];
+            int b = src[i];
+
+            int absA = a < 0 ? -a : a;
+            if (absA > peakA) peakA = absA;
+            squaresA += a * a;
+            if (a == 0) zerosA++;
+            if (a == Short.MAX_VALUE || a == Short.MIN_VALUE) clipsA++;
+
+            int absB = b < 0 ? -b : b;
+            if (absB > peakB) peakB = absB;
+            squaresB += b * b;
+            if (b == 0) zerosB++;
+            if (b == Short.MAX_VALUE || b == Short.MIN_VALUE) clipsB++;
+
+            // 与旧实现一致：先对麦克风钳位增益，再与内录相加钳位
+            int scaled = (int) (b * srcGain);
+            if (scaled > Short.MAX_VALUE) {
+                scaled = Short.MAX_VALUE;
+            } else if (scaled < Short.MIN_VALUE) {
+                scaled = Short.MIN_VALUE;
+            }
+            int sum = a + scaled;
+            if (sum > Short.MAX_VALUE) {
+                sum = Short.MAX_VALUE;
+                clipsOut++;
+            } else if (sum < Short.MIN_VALUE) {
+                sum = Short.MIN_VALUE;
+                clipsOut++;
+            }
+            dst[i] = (short) sum;
+
+            int absOut = sum < 0 ? -sum : sum;
+            if (absOut > peakOut) peakOut = absOut;
+            squaresOut += sum * sum;
+            if (sum == 0) zerosOut++;
+        }
+        finish(first, peakA, squaresA, zerosA, clipsA);
+        finish(second, peakB, squaresB, zerosB, clipsB);
+        finish(output, peakOut, squaresOut, zerosOut, clipsOut);
+        return peakOut;
+    }
+
+    private void finish(FrameStats stats, int peak, long sumSquares, int zeros, int clips) {
+        stats.peak = peak;
+        stats.sumSquares = sumSquares;
+        stats.zeroCount = zeros;
+        stats.clipCount = clips;
+        stats.silent = peak < mSilenceThreshold;
+    }
+
+    private static void copy(FrameStats from, FrameStats to) {
+        to.peak = from.peak;
+        to.sumSquares = from.sumSquares;
+        to.zeroCount = from.zeroCount;
+        to.clipCount = from.clipCount;
+        to.length = from.length;
+        to.silent = from.silent;
+    }
+}
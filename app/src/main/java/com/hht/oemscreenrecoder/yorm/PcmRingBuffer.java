@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单生产者/单消费者无锁 PCM 环形缓冲区
+ * 容量按音频时长（毫秒）预分配，运行期间不再分配内存；数据按本机字节序以 16bit 采样存放，
+ * 可直接整块拷贝进 MediaCodec 输入缓冲区，支持只读取一部分（编码器缓冲区小于积压数据时）
+ *
+ * 线程约束：write 只能由一个线程调用，read/skip/clear 只能由另一个（或同一个）线程调用。
+ * 写满时只写入能放下的部分，其余计入溢出统计，不会整帧丢弃
+ */
+final class PcmRingBuffer {
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final byte[] mData;
+    private final int mCapacity;
+    private final int mHighWatermark;
+    private final int mBytesPerMs;
+
+    // 单调递增的读写位置（字节），实际下标为 pos % capacity
+    private final AtomicLong mWritePos = new AtomicLong();
+    private final AtomicLong mReadPos = new AtomicLong();
+
+    // 统计信息（只由生产者线程写入）
+    private volatile long mOverflowBytes = 0;    // 因缓冲区已满而未写入的字节数
+    private volatile long mOverflowEvents = 0;   // 发生溢出的写入次数
+    private volatile long mHighWatermarkHits = 0; // 写入后超过高水位的次数
+    private volatile int mMaxFill = 0;           // 最大填充字节数
+
+    /**
+     * 按音频时长创建缓冲区
+     *
+     * @param sampleRate 采样率
+     * @param channelCount 声道数
+     * @param durationMs 可容纳的音频时长（毫秒）
+     */
+    static PcmRingBuffer forDuration(int sampleRate, int channelCount, int durationMs) {
+        int bytesPerMs = Math.max(1, sampleRate * channelCount * 2 / 1000);
+        return new PcmRingBuffer(bytesPerMs * durationMs, bytesPerMs);
+    }
+
+    /**
+     * @param capacityBytes 容量（字节），会向下取整到偶数
+     */
+    PcmRingBuffer(int capacityBytes) {
+        this(capacityBytes, 0);
+    }
+
+    private PcmRingBuffer(int capacityBytes, int bytesPerMs) {
+        if (capacityBytes < 2) {
+            throw new IllegalArgumentException("capacity too small: " + capacityBytes);
+        }
+        mCapacity = capacityBytes & ~1;
+        mData = new byte[mCapacity];
+        // 填充超过 3/4 时发出背压信号
+        mHighWatermark = (mCapacity / 4 * 3) & ~1;
+        mBytesPerMs = bytesPerMs;
+    }
+
+    // ===== 生产者 =====
+
+    /**
+     * 写入 16bit 采样，缓冲区剩余空间不足时只写入能放下的部分
+     *
+     * @return 实际写入的采样数
+     */
+    int write(short[] src, int offset, int count) {
+        final long w = mWritePos.get();
+        final long r = mReadPos.get();
+        final int free = mCapacity - (int) (w - r);
+        final int writable = Math.min(count, free >> 1);
+
+        int pos = (int) (w % mCapacity);
+        final int end = offset + writable;
+        for (int i = offset; i < end; i++) {
+            short s = src[i];
+            byte lo = (byte) s;
+            byte hi = (byte) (s >> 8);
+            mData[pos] = LITTLE_ENDIAN ? lo : hi;
+            mData[pos + 1] = LITTLE_ENDIAN ? hi : lo;
+            pos += 2;
+            if (pos == mCapacity) pos = 0;
+        }
+        final long newWrite = w + ((long) writable << 1);
+        // 数据写完后再发布写位置，保证消费者看到完整数据
+        mWritePos.lazySet(newWrite);
+
+        if (writable < count) {
+            mOverflowBytes += (long) (count - writable) << 1;
+            mOverflowEvents++;
+        }
+        int fill = (int) (newWrite - r);
+        if (fill > mMaxFill) mMaxFill = fill;
+        if (fill >= mHighWatermark) mHighWatermarkHits++;
+        return writable;
+    }
+
+    // ===== 消费者 =====
+
+    /**
+     * 读取数据到 dst（通常为编码器输入缓冲区），最多读取 dst 剩余空间能容纳的偶数字节
+     *
+     * @return 实际读取的字节数
+     */
+    int read(ByteBuffer dst) {
+        final long r = mReadPos.get();
+        final int available = (int) (mWritePos.get() - r);
+        final int n = Math.min(available, dst.remaining() & ~1);
+        if (n <= 0) return 0;
+
+        final int pos = (int) (r % mCapacity);
+        final int first = Math.min(n, mCapacity - pos);
+        dst.put(mData, pos, first);
+        if (first < n) {
+            dst.put(mData, 0, n - first);
+        }
+        mReadPos.lazySet(r + n);
+        return n;
+    }
+
+    /**
+     * 读取 16bit 采样到 dst
+     *
+     * @return 实际读取的采样数
+     */
+    int read(short[] dst, int offset, int count) {
+        final long r = mReadPos.get();
+        final int available = (int) (mWritePos.get() - r) >> 1;
+        final int n = Math.min(available, count);
+        if (n <= 0) return 0;
+
+        int pos = (int) (r % mCapacity);
+        final int end = offset + n;
+        for (int i = offset; i < end; i++) {
+            int b0 = mData[pos] & 0xff;
+            int b1 = mData[pos + 1] & 0xff;
+            dst[i] = (short) (LITTLE_ENDIAN ? (b1 << 8) | b0 : (b0 << 8) | b1);
+            pos += 2;
+            if (pos == mCapacity) pos = 0;
+        }
+        mReadPos.lazySet(r + ((long) n << 1));
+        return n;
+    }
+
+    /**
+     * 跳过最多 bytes 字节未读数据（向下取偶数）
+     *
+     * @return 实际跳过的字节数
+     */
+    int skip(int bytes) {
+        final long r = mReadPos.get();
+        final int n = Math.min((int) (mWritePos.get() - r), bytes & ~1);
+        if (n <= 0) return 0;
+        mReadPos.lazySet(r + n);
+        return n;
+    }
+
+    /**
+     * 丢弃所有未读数据（消费者线程调用）
+     */
+    void clear() {
+        mReadPos.lazySet(mWritePos.get());
+    }
+
+    // ===== 状态查询（任意线程） =====
+
+    /** 可读字节数 */
+    int available() {
+        return (int) (mWritePos.get() - mReadPos.get());
+    }
+
+    boolean isEmpty() {
+        return available() == 0;
+    }
+
+    /** 剩余可写字节数 */
+    int free() {
+        return mCapacity - available();
+    }
+
+    int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * 背压信号：填充超过高水位（3/4 容量），消费者应优先、阻塞地清空积压数据
+     */
+    boolean isAboveHighWatermark() {
+        return available() >= mHighWatermark;
+    }
+
+    /** 当前积压数据对应的音频时长（毫秒），按时长创建时有效 */
+    long availableMs() {
+        return mBytesPerMs == 0 ? 0 : available() / mBytesPerMs;
+    }
+
+    long getOverflowBytes() {
+        return mOverflowBytes;
+    }
+
+    long getOverflowEvents() {
+        return mOverflowEvents;
+    }
+
+    long getHighWatermarkHits() {
+        return mHighWatermarkHits;
+    }
+
+    int getMaxFill() {
+        return mMaxFill;
+    }
+
+    /** 累计写入字节数 */
+    long getTotalWritten() {
+        return mWritePos.get();
+    }
+
+    /** 累计读出（含 clear 丢弃）字节数 */
+    long getTotalRead() {
+        return mReadPos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PcmRingBuffer{fill=" + available() + "/" + mCapacity
+                + ", maxFill=" + mMaxFill
+                + ", overflowBytes=" + mOverflowBytes
+                + ", overflowEvents=" + mOverflowEvents
+                + ", highWatermarkHits=" + mHighWatermarkHits + '}';
+    }
+}
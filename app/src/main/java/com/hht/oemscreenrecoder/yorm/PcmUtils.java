@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * 16bit PCM 原地处理工具（增益、混音与统计见 {@link PcmFrameAnalyzer}）
+ * 所有方法只操作调用者传入的缓冲区，不分配任何对象，用于长时间录制下的零分配喂数据路径
+ * 纯 Java 实现，不依赖 Android API，可直接在 JVM 单元测试中运行
+ */
+final class PcmUtils {
+
+    private PcmUtils() {
+    }
+
+    /**
+     * 将采样按本机字节序直接写入编码器输入缓冲区
+     * 只写入 dst 剩余空间能容纳的部分，返回实际写入的采样数，剩余部分由调用者继续处理
+     *
+     * @param src 采样数据
+     * @param offset 起始采样下标
+     * @param count 待写入采样数
+     * @param dst 目标缓冲区（通常为 MediaCodec 输入 ByteBuffer）
+     * @return 实际写入的采样数
+     */
+    static int writeSamples(short[] src, int offset, int count, ByteBuffer dst) {
+        dst.order(ByteOrder.nativeOrder());
+        int n = Math.min(count, dst.remaining() >> 1);
+        int end = offset + n;
+        for (int i = offset; i < end; i++) {
+            dst.putShort(src[i]);
+        }
+        return n;
+    }
+
+    /**
+     * 声道数转换（交错 PCM）：单声道复制到所有输出声道；多声道转单声道取平均；
+     * 其余情况按声道下标取模映射
+     *
+     * @param src 输入
+     * @param frames 帧数
+     * @param srcChannels 输入声道数
+     * @param dst 输出，容量至少 frames * dstChannels
+     * @param dstChannels 输出声道数
+     */
+    static void convertChannels(short[] src, int frames, int srcChannels, short[] dst, int dstChannels) {
+        if (srcChannels == dstChannels) {
+            System.arraycopy(src, 0, dst, 0, frames * srcChannels);
+        } else if (dstChannels == 1) {
+            for (int f = 0, si = 0; f < frames; f++) {
+                int sum = 0;
+                for (int c = 0; c < srcChannels; c++) {
+                    sum += src[si++];
+                }
+                dst[f] = (short) (sum / srcChannels);
+            }
+        } else if (srcChannels == 1) {
+            for (int f = 0, di = 0; f < frames; f++) {
+                short v = src[f];
+                for (int c = 0; c < dstChannels; c++) {
+                    dst[di++] = v;
+                }
+            }
+        } else {
+            for (int f = 0; f < frames; f++) {
+                int si = f * srcChannels;
+                int di = f * dstChannels;
+                for (int c = 0; c < dstChannels; c++) {
+                    dst[di + c] = src[si + c % srcChannels];
+                }
+            }
+        }
+    }
+
+    /**
+     * 原地填充 ±amplitude 范围内的随机噪声
+     */
+    static void fillNoise(short[] buf, int len, int amplitude, Random random) {
+        int bound = amplitude * 2 + 1;
+        for (int i = 0; i < len; i++) {
+            buf[i] = (short) (random.nextInt(bound) - amplitude);
+        }
+    }
+
+    /**
+     * 原地填充交替的 ±1
+     */
+    static void fillAlternating(short[] buf, int len) {
+        for (int i = 0; i < len; i++) {
+            buf[i] = (short) ((i & 1) == 0 ? 1 : -1);
+        }
+    }
+}
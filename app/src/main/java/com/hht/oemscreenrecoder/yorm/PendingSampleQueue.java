@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.Arrays;
+
+/**
+ * muxer 启动前暂存的编码器输出（输出缓冲区索引 + BufferInfo 各字段），所有轨道共用一个预分配的槽位池
+ *
+ * 槽位池按字段分成原始类型数组（相当于 BufferInfo 对象池），每个轨道一个 int 环形队列按到达顺序存放槽位号，
+ * 入队出队不装箱、不分配链表节点。槽位用完时容量翻倍，只会发生在启动阶段的突发中，之后不再分配。
+ * 出队的槽位立即归还，内容保持到下一次 {@link #add} 为止。
+ * 只在录制线程中使用，非线程安全。纯 Java 实现
+ */
+final class PendingSampleQueue {
+    private final int[][] mRings;
+    private final int[] mHeads;
+    private final int[] mCounts;
+
+    // 槽位池
+    private int[] mIndices;
+    private int[] mOffsets;
+    private int[] mSizes;
+    private long[] mPresentationTimesUs;
+    private int[] mFlags;
+    private int[] mFreeSlots;
+    private int mFreeCount;
+    private int mGrowCount = 0;
+
+    /**
+     * @param trackCount 轨道数，轨道编号为 0..trackCount-1
+     * @param initialCapacity 初始槽位数
+     */
+    PendingSampleQueue(int trackCount, int initialCapacity) {
+        if (trackCount <= 0 || initialCapacity <= 0) {
+            throw new IllegalArgumentException("trackCount=" + trackCount + ", initialCapacity=" + initialCapacity);
+        }
+        mRings = new int[trackCount][initialCapacity];
+        mHeads = new int[trackCount];
+        mCounts = new int[trackCount];
+        mIndices = new int[initialCapacity];
+        mOffsets = new int[initialCapacity];
+        mSizes = new int[initialCapacity];
+        mPresentationTimesUs = new long[initialCapacity];
+        mFlags = new int[initialCapacity];
+        mFreeSlots = new int[initialCapacity];
+        resetFreeSlots();
+    }
+
+    /**
+     * 暂存一个输出缓冲区，BufferInfo 的字段拷贝进槽位，调用者的对象不被保留
+     */
+    void add(int track, int index, int offset, int size, long presentationTimeUs, int flags) {
+        if (mFreeCount == 0) {
+            grow();
+        }
+        int slot = mFreeSlots[--mFreeCount];
+        mIndices[slot] = index;
+        mOffsets[slot] = offset;
+        mSizes[slot] = size;
+        mPresentationTimesUs[slot] = presentationTimeUs;
+        mFlags[slot] = flags;
+
+        int[] ring = mRings[track];
+        ring[(mHeads[track] + mCounts[track]) % ring.length] = slot;
+        mCounts[track]++;
+    }
+
+    /**
+     * 取出轨道队首
+     *
+     * @return 槽位号，队列为空时为 -1；槽位内容保持到下一次 add
+     */
+    int poll(int track) {
+        if (mCounts[track] == 0) {
+            return -1;
+        }
+        int[] ring = mRings[track];
+        int slot = ring[mHeads[track]];
+        mHeads[track] = (mHeads[track] + 1) % ring.length;
+        mCounts[track]--;
+        mFreeSlots[mFreeCount++] = slot;
+        return slot;
+    }
+
+    int index(int slot) {
+        return mIndices[slot];
+    }
+
+    int offset(int slot) {
+        return mOffsets[slot];
+    }
+
+    int size(int slot) {
+        return mSizes[slot];
+    }
+
+    long presentationTimeUs(int slot) {
+        return mPresentationTimesUs[slot];
+    }
+
+    int flags(int slot) {
+        return mFlags[slot];
+    }
+
+    int count(int track) {
+        return mCounts[track];
+    }
+
+    boolean isEmpty() {
+        return mFreeCount == mIndices.length;
+    }
+
+    /**
+     * 清空所有轨道，保留已分配的容量
+     */
+    void clear() {
+        Arrays.fill(mHeads, 0);
+        Arrays.fill(mCounts, 0);
+        resetFreeSlots();
+    }
+
+    int capacity() {
+        return mIndices.length;
+    }
+
+    /**
+     * @return 扩容次数
+     */
+    int getGrowCount() {
+        return mGrowCount;
+    }
+
+    private void resetFreeSlots() {
+        // 倒序放入，先取到小号槽位
+        int n = mIndices.length;
+        for (int i = 0; i < n; i++) {
+            mFreeSlots[i] = n - 1 - i;
+        }
+        mFreeCount = n;
+    }
+
+    private void grow() {
+        final int oldCap = mIndices.length;
+        final int newCap = oldCap * 2;
+        mIndices = Arrays.copyOf(mIndices, newCap);
+        mOffsets = Arrays.copyOf(mOffsets, newCap);
+        mSizes = Arrays.copyOf(mSizes, newCap);
+        mPresentationTimesUs = Arrays.copyOf(mPresentationTimesUs, newCap);
+        mFlags = Arrays.copyOf(mFlags, newCap);
+        // 池已用完，空闲栈为空，新增的槽位全部空闲
+        mFreeSlots = new int[newCap];
+        for (int i = 0; i < oldCap; i++) {
+            mFreeSlots[i] = newCap - 1 - i;
+        }
+        mFreeCount = oldCap;
+        // 环形队列按顺序展开到新数组
+        for (int t = 0; t < mRings.length; t++) {
+            int[] ring = mRings[t];
+            int[] grown = new int[newCap];
+            for (int i = 0; i < mCounts[t]; i++) {
+                grown[i] = ring[(mHeads[t] + i) % ring.length];
+            }
+            mRings[t] = grown;
+            mHeads[t] = 0;
+        }
+        mGrowCount++;
+    }
+}
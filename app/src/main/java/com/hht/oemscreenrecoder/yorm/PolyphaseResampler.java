@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.Arrays;
+
+/**
+ * 流式多相（polyphase）重采样器，16bit 交错 PCM
+ *
+ * 以 L/M（L = 输出率 / gcd，M = 输入率 / gcd）做有理数变换：原型低通滤波器为加 Blackman 窗的 sinc，
+ * 长度 L * TAPS_PER_PHASE，拆成 L 个相位，每个输出采样只需计算 TAPS_PER_PHASE 次乘加。
+ * 输入可以任意分块送入，块与块之间保留滤波器历史，不会产生拼接噪声。
+ * 输入输出采样率相同时直接拷贝。
+ *
+ * 实例只能在一个线程内使用；内部缓冲区按最大输入块预分配，之后不再分配。纯 Java 实现
+ */
+final class PolyphaseResampler {
+
+    /** 每个相位的滤波器抽头数 */
+    static final int TAPS_PER_PHASE = 16;
+
+    private final int mInRate;
+    private final int mOutRate;
+    private final int mChannels;
+    private final int mL;
+    private final int mM;
+    private final boolean mPassThrough;
+    // [phase][tap]
+    private final float[][] mPhases;
+
+    // 输入窗口：前 TAPS_PER_PHASE-1 帧为历史，后面是尚未消费完的新输入（交错存放）
+    private short[] mWindow;
+    private int mWindowFrames;
+    // 下一个输出采样在"上采样域"中的位置（单位 1/L 输入帧），相对 mWindow 起点
+    private long mTime;
+
+    PolyphaseResampler(int inRate, int outRate, int channels) {
+        if (inRate <= 0 || outRate <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("inRate=" + inRate + ", outRate=" + outRate + ", channels=" + channels);
+        }
+        mInRate = inRate;
+        mOutRate = outRate;
+        mChannels = channels;
+        int g = gcd(inRate, outRate);
+        mL = outRate / g;
+        mM = inRate / g;
+        mPassThrough = inRate == outRate;
+        mPhases = mPassThrough ? null : designFilter(mL, mM);
+
+        mWindowFrames = TAPS_PER_PHASE - 1;
+        mWindow = new short[(TAPS_PER_PHASE - 1 + 1024) * channels];
+        // 第一个输出对应窗口中最新的历史帧
+        mTime = (long) (TAPS_PER_PHASE - 1) * mL;
+    }
+
+    int getInRate() {
+        return mInRate;
+    }
+
+    int getOutRate() {
+        return mOutRate;
+    }
+
+    /**
+     * 输入 inFrames 帧时最多可能产生的输出帧数，用于分配输出缓冲区
+     */
+    int maxOutputFrames(int inFrames) {
+        if (mPassThrough) return inFrames;
+        return (int) (((long) inFrames * mL + mM - 1) / mM) + 1;
+    }
+
+    /**
+     * 重采样一块输入
+     *
+     * @param in 交错 PCM
+     * @param inFrames 输入帧数
+     * @param out 输出缓冲区，容量至少为 {@link #maxOutputFrames(int)} 帧
+     * @return 输出帧数
+     */
+    int process(short[] in, int inFrames, short[] out) {
+        final int ch = mChannels;
+        if (mPassThrough) {
+            System.arraycopy(in, 0, out, 0, inFrames * ch);
+            return inFrames;
+        }
+
+        ensureWindowCapacity(mWindowFrames + inFrames);
+        System.arraycopy(in, 0, mWindow, mWindowFrames * ch, inFrames * ch);
+        mWindowFrames += inFrames;
+
+        final short[] w = mWindow;
+        final int taps = TAPS_PER_PHASE;
+        final long endTime = (long) mWindowFrames * mL;
+        int produced = 0;
+        long t = mTime;
+        while (t < endTime) {
+            final int newest = (int) (t / mL);
+            final float[] h = mPhases[(int) (t % mL)];
+            // newest 帧及其之前 taps-1 帧参与卷积
+            final int first = newest - (taps - 1);
+            final int outBase = produced * ch;
+            for (int c = 0; c < ch; c++) {
+                float acc = 0f;
+                int idx = first * ch + c;
+                for (int k = taps - 1; k >= 0; k--) {
+                    acc += h[k] * w[idx];
+                    idx += ch;
+                }
+                int v = Math.round(acc);
+                if (v > Short.MAX_VALUE) {
+                    v = Short.MAX_VALUE;
+                } else if (v < Short.MIN_VALUE) {
+                    v = Short.MIN_VALUE;
+                }
+                out[outBase + c] = (short) v;
+            }
+            produced++;
+            t += mM;
+        }
+
+        // 丢弃不再需要的帧，只保留下一次卷积需要的 taps-1 帧历史
+        int nextNewest = (int) (t / mL);
+        int drop = Math.max(0, Math.min(nextNewest - (taps - 1), mWindowFrames));
+        if (drop > 0) {
+            System.arraycopy(w, drop * ch, w, 0, (mWindowFrames - drop) * ch);
+            mWindowFrames -= drop;
+            t -= (long) drop * mL;
+        }
+        mTime = t;
+        return produced;
+    }
+
+    /**
+     * 清空滤波器历史（例如暂停恢复后）
+     */
+    void reset() {
+        Arrays.fill(mWindow, (short) 0);
+        mWindowFrames = TAPS_PER_PHASE - 1;
+        mTime = (long) (TAPS_PER_PHASE - 1) * mL;
+    }
+
+    private void ensureWindowCapacity(int frames) {
+        if (frames * mChannels > mWindow.length) {
+            short[] bigger = new short[frames * mChannels];
+            System.arraycopy(mWindow, 0, bigger, 0, mWindowFrames * mChannels);
+            mWindow = bigger;
+        }
+    }
+
+    /**
+     * 设计原型低通滤波器并拆分为 L 个相位
+     * 截止频率取输入/输出中较低奈奎斯特频率的 90%，每个相位的系数之和归一化为 1（直流增益为 1）
+     */
+    private static float[][] designFilter(int l, int m) {
+        final int taps = TAPS_PER_PHASE;
+        final int n = l * taps;
+        // 上采样域中的归一化截止频率（相对采样率）
+        final double cutoff = 0.5 / Math.max(l, m) * 0.9;
+        final double center = (n - 1) / 2.0;
+        double[] proto = new double[n];
+        for (int i = 0; i < n; i++) {
+            double x = i - center;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * i / (n - 1))
+                    + 0.08 * Math.cos(4 * Math.PI * i / (n - 1));
+            proto[i] = sinc * window;
+        }
+        float[][] phases = new float[l][taps];
+        for (int p = 0; p < l; p++) {
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                sum += proto[k * l + p];
+            }
+            for (int k = 0; k < taps; k++) {
+                phases[p][k] = (float) (proto[k * l + p] / sum);
+            }
+        }
+        return phases;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 录制恢复：根据 {@link SampleJournal} 把 {@link JournaledMp4Writer} 写出的未完成 mp4 修复为可播放文件
+ *
+ * 校验日志记录（轨道号、连续的偏移、数据在文件长度以内），截掉最后一条有效记录之后的残余数据，
+ * 在文件末尾追加带完整样本表（stts / stss / stsz / stsc / co64）的 moov，最后回填 mdat 长度并删除日志。
+ * 日志按需多次顺序读取，moov 边生成边写入文件，不会把录制文件或样本表读入内存。
+ *
+ * 正常停止录制时 {@link JournaledMp4Writer#finish()} 也走这里；服务启动时调用 {@link #recoverAll(File)}
+ * 修复上次因崩溃或断电没有结束的录制。正在录制（日志被锁定）的文件会被跳过。纯 Java 实现
+ */
+public final class RecordingRecovery {
+
+    private RecordingRecovery() {
+    }
+
+    /**
+     * 修复目录下所有未完成的录制，单个文件失败时保留原文件，下次再试
+     *
+     * @return 修复成功的文件
+     */
+    public static List<File> recoverAll(File dir) {
+        final List<File> recovered = new ArrayList<>();
+        final File[] journals = dir.listFiles((d, name) -> name.startsWith(".") && name.endsWith(SampleJournal.SUFFIX));
+        if (journals == null) {
+            return recovered;
+        }
+        for (File journal : journals) {
+            final File mp4 = SampleJournal.mp4FileOf(journal);
+            if (mp4 == null) {
+                continue;
+            }
+            try {
+                if (recover(mp4)) {
+                    recovered.add(mp4);
+                }
+            } catch (IOException e) {
+                // 正在录制或读写失败，保留文件
+            }
+        }
+        return recovered;
+    }
+
+    /**
+     * 按日志补写 moov，成功后删除日志；没有日志时不做任何事
+     *
+     * @return true 文件可播放；false 没有可恢复的样本，mp4 与日志都已删除
+     * @throws IOException 读写失败或录制仍在进行，文件保持可再次恢复的状态
+     */
+    public static synchronized boolean recover(File mp4) throws IOException {
+        final File journal = SampleJournal.journalFileOf(mp4);
+        if (!journal.exists()) {
+            return mp4.exists();
+        }
+        if (!mp4.exists()) {
+            journal.delete();
+            return false;
+        }
+        try (RandomAccessFile lockFile = new RandomAccessFile(journal, "rw")) {
+            final FileLock lock;
+            try {
+                lock = lockFile.getChannel().tryLock();
+            } catch (OverlappingFileLockException e) {
+                throw new IOException("recording in progress: " + mp4);
+            }
+            if (lock == null) {
+                throw new IOException("recording in progress: " + mp4);
+            }
+            final boolean playable;
+            try (RandomAccessFile raf = new RandomAccessFile(mp4, "rw")) {
+                playable = rebuild(raf.getChannel(), journal);
+            } catch (SampleJournal.FormatException e) {
+                // 日志头部都没写完，录制还没有任何样本
+                if (!mp4.delete()) {
+                    throw new IOException("failed to delete " + mp4, e);
+                }
+                lock.release();
+                journal.delete();
+                return false;
+            }
+            lock.release();
+            if (!playable) {
+                mp4.delete();
+            }
+            if (!journal.delete()) {
+                throw new IOException("failed to delete " + journal);
+            }
+            return playable;
+        }
+    }
+
+    /** 每个轨道在日志有效部分中的统计 */
+    private static final class TrackInfo {
+        final TrackSpec spec;
+        final int timescale;
+        int id;
+        long count = 0;
+        long syncCount = 0;
+        long firstPtsUs = -1;
+        long mediaDuration = 0;   // 轨道时间刻度
+        final SampleDurations durations;
+
+        TrackInfo(TrackSpec spec) {
+            this.spec = spec;
+            this.timescale = Mp4Boxes.timescaleOf(spec);
+            this.durations = new SampleDurations(spec);
+        }
+
+        long durationInMovie() {
+            return mediaDuration * Mp4Boxes.MOVIE_TIMESCALE / timescale;
+        }
+    }
+
+    /**
+     * 由相邻样本的 PTS 计算样本时长（与 {@link FragmentedMp4Writer} 相同：最短 1 个刻度，
+     * 最后一个样本沿用前一个样本的时长）
+     */
+    private static final class SampleDurations {
+        private final int mTimescale;
+        private final int mDefault;
+        private long mPendingDecode = -1;
+        private long mNextDecode = -1;
+        private int mLast = 0;
+
+        SampleDurations(TrackSpec spec) {
+            mTimescale = Mp4Boxes.timescaleOf(spec);
+            mDefault = Mp4Boxes.defaultSampleDuration(spec);
+        }
+
+        void reset() {
+            mPendingDecode = -1;
+            mNextDecode = -1;
+            mLast = 0;
+        }
+
+        /**
+         * 加入一个样本
+         *
+         * @return 前一个样本的时长，没有前一个样本时返回 -1
+         */
+        int add(long presentationTimeUs) {
+            final long ticks = presentationTimeUs * mTimescale / 1_000_000L;
+            int duration = -1;
+            if (mPendingDecode >= 0) {
+                duration = (int) Math.min(Integer.MAX_VALUE, Math.max(1, ticks - mPendingDecode));
+                mNextDecode = mPendingDecode + duration;
+                mLast = duration;
+            }
+            mPendingDecode = mNextDecode < 0 ? Math.max(0, ticks) : mNextDecode;
+            return duration;
+        }
+
+        /** 最后一个样本的时长 */
+        int last() {
+            return mLast > 0 ? mLast : mDefault;
+        }
+    }
+
+    /**
+     * @return false 没有有效样本
+     */
+    private static boolean rebuild(FileChannel channel, File journal) throws IOException {
+        final long mdatDataStart;
+        final List<TrackSpec> specs;
+        final long validRecords;
+        final long dataEnd;
+        final List<TrackInfo> tracks = new ArrayList<>();
+        try (SampleJournal.Reader reader = new SampleJournal.Reader(journal)) {
+            mdatDataStart = reader.mdatDataStart;
+            specs = reader.tracks;
+            if (isFinalized(channel, mdatDataStart)) {
+                // 上次恢复已完成，只是没来得及删除日志
+                return true;
+            }
+            for (TrackSpec spec : specs) {
+                tracks.add(new TrackInfo(spec));
+            }
+            // 第一遍：校验记录并统计各轨道
+            final long fileLength = channel.size();
+            final SampleJournal.Entry e = new SampleJournal.Entry();
+            long expectedOffset = mdatDataStart;
+            long valid = 0;
+            while (reader.next(e)) {
+                if (e.track >= tracks.size() || e.size <= 0 || e.offset != expectedOffset
+                        || e.offset + e.size > fileLength) {
+                    break;
+                }
+                final TrackInfo t = tracks.get(e.track);
+                if (t.count == 0) {
+                    t.firstPtsUs = e.presentationTimeUs;
+                }
+                t.count++;
+                if ((e.flags & Mp4Writer.FLAG_KEY_FRAME) != 0) {
+                    t.syncCount++;
+                }
+                final int duration = t.durations.add(e.presentationTimeUs);
+                if (duration > 0) {
+                    t.mediaDuration += duration;
+                }
+                expectedOffset += e.size;
+                valid++;
+            }
+            validRecords = valid;
+            dataEnd = expectedOffset;
+        }
+        if (validRecords == 0) {
+            return false;
+        }
+
+        final List<TrackInfo> present = new ArrayList<>();
+        long movieStartUs = Long.MAX_VALUE;
+        for (TrackInfo t : tracks) {
+            if (t.count == 0) continue;
+            t.mediaDuration += t.durations.last();
+            t.id = present.size() + 1;
+            present.add(t);
+            movieStartUs = Math.min(movieStartUs, t.firstPtsUs);
+        }
+        long movieDuration = 0;
+        for (TrackInfo t : present) {
+            movieDuration = Math.max(movieDuration, editOffset(t, movieStartUs) + t.durationInMovie());
+        }
+
+        // 截掉残余数据（写了一半的样本或上次恢复写了一半的 moov）
+        channel.truncate(dataEnd);
+        final Mp4Boxes.Buffer b = new Mp4Boxes.Buffer(channel, dataEnd, 64 * 1024);
+        final long moov = b.begin("moov");
+        Mp4Boxes.writeMvhd(b, movieDuration, present.size() + 1);
+        for (TrackInfo t : present) {
+            writeTrak(b, journal, validRecords, t, movieStartUs, tracks.indexOf(t));
+        }
+        b.end(moov);
+        b.flush();
+        channel.force(true);
+
+        // moov 完整落盘后才回填 mdat 长度，中途断电时下次恢复会重做
+        final ByteBuffer size = ByteBuffer.allocate(8);
+        size.putLong(dataEnd - (mdatDataStart - JournaledMp4Writer.MDAT_HEADER_SIZE)).flip();
+        final long sizePosition = mdatDataStart - 8;
+        while (size.hasRemaining()) {
+            channel.write(size, sizePosition + size.position());
+        }
+        channel.force(true);
+        return true;
+    }
+
+    /**
+     * mdat 头已回填长度
+     *
+     * @throws IOException mdat 头不在日志记录的位置（不是对应的录制文件）
+     */
+    private static boolean isFinalized(FileChannel channel, long mdatDataStart) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(JournaledMp4Writer.MDAT_HEADER_SIZE);
+        final long position = mdatDataStart - JournaledMp4Writer.MDAT_HEADER_SIZE;
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) {
+                throw new IOException("mdat header truncated");
+            }
+        }
+        header.flip();
+        if (header.getInt() != 1 || header.getInt() != 0x6d646174) {  // "mdat"
+            throw new IOException("mdat header not found at " + position);
+        }
+        return header.getLong() != 0;
+    }
+
+    /** 轨道第一个样本相对影片起点的延迟（影片时间刻度），用空 edit 表示 */
+    private static long editOffset(TrackInfo t, long movieStartUs) {
+        return (t.firstPtsUs - movieStartUs) * Mp4Boxes.MOVIE_TIMESCALE / 1_000_000L;
+    }
+
+    private static void writeTrak(Mp4Boxes.Buffer b, File journal, long records, TrackInfo t,
+                                  long movieStartUs, int track) throws IOException {
+        final boolean video = t.spec.isVideo();
+        final long editOffset = editOffset(t, movieStartUs);
+        final long trak = b.begin("trak");
+        Mp4Boxes.writeTkhd(b, t.id, t.spec, editOffset + t.durationInMovie());
+        if (editOffset > 0) {
+            final long edts = b.begin("edts");
+            final long elst = b.beginFull("elst", 0, 0);
+            b.u32(2);
+            b.u32((int) editOffset);      // 空 edit
+            b.u32(-1);
+            b.u32(0x00010000);
+            b.u32((int) t.durationInMovie());
+            b.u32(0);                     // media_time
+            b.u32(0x00010000);            // rate 1.0
+            b.end(elst);
+            b.end(edts);
+        }
+        final long mdia = b.begin("mdia");
+        Mp4Boxes.writeMdhd(b, t.timescale, t.mediaDuration);
+        Mp4Boxes.writeHdlr(b, video);
+        final long minf = b.begin("minf");
+        Mp4Boxes.writeMediaHeader(b, video);
+        final long stbl = b.begin("stbl");
+        Mp4Boxes.writeStsd(b, t.id, t.spec);
+        writeStts(b, journal, records, t, track);
+        if (video && t.syncCount < t.count) {
+            writeStss(b, journal, records, t, track);
+        }
+        // 每个样本一个 chunk，偏移直接写在 co64 中
+        final long stsc = b.beginFull("stsc", 0, 0);
+        b.u32(1);
+        b.u32(1);                 // first_chunk
+        b.u32(1);                 // samples_per_chunk
+        b.u32(1);                 // sample_description_index
+        b.end(stsc);
+        writeStszAndCo64(b, journal, records, t, track);
+        b.end(stbl);
+        b.end(minf);
+        b.end(mdia);
+        b.end(trak);
+    }
+
+    private static void writeStts(Mp4Boxes.Buffer b, File journal, long records, TrackInfo t,
+                                  int track) throws IOException {
+        final long stts = b.beginFull("stts", 0, 0);
+        final long countPosition = b.position();
+        b.u32(0);
+        int entries = 0;
+        int runDuration = -1;
+        long runLength = 0;
+        t.durations.reset();
+        try (SampleJournal.Reader reader = new SampleJournal.Reader(journal)) {
+            final SampleJournal.Entry e = new SampleJournal.Entry();
+            for (long i = 0; i < records && reader.next(e); i++) {
+                if (e.track != track) continue;
+                final int duration = t.durations.add(e.presentationTimeUs);
+                if (duration < 0) continue;
+                if (duration != runDuration) {
+                    if (runLength > 0) {
+                        entries += writeRun(b, runLength, runDuration);
+                    }
+                    runDuration = duration;
+                    runLength = 0;
+                }
+                runLength++;
+            }
+        }
+        final int last = t.durations.last();
+        if (last != runDuration) {
+            if (runLength > 0) {
+                entries += writeRun(b, runLength, runDuration);
+            }
+            runDuration = last;
+            runLength = 0;
+        }
+        entries += writeRun(b, runLength + 1, runDuration);
+        b.patchU32(countPosition, entries);
+        b.end(stts);
+    }
+
+    /** 写一个 stts 条目（样本数超过 32 位时拆分），返回条目数 */
+    private static int writeRun(Mp4Boxes.Buffer b, long count, int duration) throws IOException {
+        int entries = 0;
+        while (count > 0) {
+            final long n = Math.min(count, 0xffffffffL);
+            b.u32((int) n);
+            b.u32(duration);
+            count -= n;
+            entries++;
+        }
+        return entries;
+    }
+
+    private static void writeStss(Mp4Boxes.Buffer b, File journal, long records, TrackInfo t,
+                                  int track) throws IOException {
+        final long stss = b.beginFull("stss", 0, 0);
+        b.u32((int) t.syncCount);
+        try (SampleJournal.Reader reader = new SampleJournal.Reader(journal)) {
+            final SampleJournal.Entry e = new SampleJournal.Entry();
+            int sample = 0;
+            for (long i = 0; i < records && reader.next(e); i++) {
+                if (e.track != track) continue;
+                sample++;
+                if ((e.flags & Mp4Writer.FLAG_KEY_FRAME) != 0) {
+                    b.u32(sample);
+                }
+            }
+        }
+        b.end(stss);
+    }
+
+    private static void writeStszAndCo64(Mp4Boxes.Buffer b, File journal, long records, TrackInfo t,
+                                         int track) throws IOException {
+        final long stsz = b.beginFull("stsz", 0, 0);
+        b.u32(0);                 // sample_size：各不相同
+        b.u32((int) t.count);
+        try (SampleJournal.Reader reader = new SampleJournal.Reader(journal)) {
+            final SampleJournal.Entry e = new SampleJournal.Entry();
+            for (long i = 0; i < records && reader.next(e); i++) {
+                if (e.track == track) {
+                    b.u32(e.size);
+                }
+            }
+        }
+        b.end(stsz);
+
+        final long co64 = b.beginFull("co64", 0, 0);
+        b.u32((int) t.count);
+        try (SampleJournal.Reader reader = new SampleJournal.Reader(journal)) {
+            final SampleJournal.Entry e = new SampleJournal.Entry();
+            for (long i = 0; i < records && reader.next(e); i++) {
+                if (e.track == track) {
+                    b.u64(e.offset);
+                }
+            }
+        }
+        b.end(co64);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 录制启动耗时追踪：以点击录制按钮的时刻为起点，依次记录各阶段（创建编码器、挂上 Surface、第一帧写入等）的完成时刻，
+ * 用于定位点击到第一帧之间的延迟
+ *
+ * 每个阶段只记录第一次到达的时刻。时间由调用者传入（elapsedRealtimeNanos，纳秒），便于单元测试。纯 Java 实现，线程安全
+ */
+final class RecordingStartTrace {
+    private final long mOriginNanos;
+    private final List<String> mPhases = new ArrayList<>();
+    private final List<Long> mTimes = new ArrayList<>();
+
+    /**
+     * @param originNanos 起点（点击录制按钮的时刻）
+     */
+    RecordingStartTrace(long originNanos) {
+        mOriginNanos = originNanos;
+    }
+
+    long getOriginNanos() {
+        return mOriginNanos;
+    }
+
+    /**
+     * 记录阶段完成时刻，早于起点的时刻按起点计
+     * @return false 表示该阶段已经记录过
+     */
+    synchronized boolean mark(String phase, long nowNanos) {
+        if (mPhases.contains(phase)) {
+            return false;
+        }
+        mPhases.add(phase);
+        mTimes.add(Math.max(nowNanos, mOriginNanos));
+        return true;
+    }
+
+    synchronized boolean isMarked(String phase) {
+        return mPhases.contains(phase);
+    }
+
+    /**
+     * @return 起点到该阶段的耗时（毫秒），未记录时为 -1
+     */
+    synchronized long elapsedMs(String phase) {
+        int i = mPhases.indexOf(phase);
+        return i < 0 ? -1 : (mTimes.get(i) - mOriginNanos) / 1_000_000;
+    }
+
+    /**
+     * 按记录顺序列出各阶段的累计耗时和相对上一阶段的增量，例如 "record=12ms(+12), surface=40ms(+28)"
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        long prev = mOriginNanos;
+        for (int i = 0; i < mPhases.size(); i++) {
+            long t = mTimes.get(i);
+            if (i > 0) sb.append(", ");
+            sb.append(mPhases.get(i)).append('=').append((t - mOriginNanos) / 1_000_000)
+                    .append("ms(+").append((t - prev) / 1_000_000).append(')');
+            prev = t;
+        }
+        return sb.toString();
+    }
+}
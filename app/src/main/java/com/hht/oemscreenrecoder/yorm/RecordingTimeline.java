@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+/**
+ * 录制时间线：音视频共用的时间起点、暂停区间和各轨道输出 PTS 的单调性
+ *
+ * {@link #start} 在同一时刻记录两个锚点：主时钟（elapsedRealtime，墙钟模式的音视频 PTS、采样数时钟）和
+ * CLOCK_MONOTONIC（System.nanoTime，VirtualDisplay 的采集时间），两种时钟的时间戳各自换算到同一个录制起点，
+ * 不再混用；两者之间的偏差（深睡眠期间只有主时钟在走）通过 {@link #getClockDriftUs()} 观察。
+ *
+ * 暂停/恢复按主时钟记录区间（{@link #getPausedUs()}）。样本门控和暂停间隔补偿交给内部的 {@link ResumeGate}，
+ * 间隔按恢复后第一个样本的 PTS 测量（编码器输出有延迟，比按时钟测得的更准），补偿后每个轨道的输出 PTS 严格单调。
+ *
+ * 时钟通过 {@link Clock} 注入，单元测试可以确定性地模拟漂移、暂停和恢复。线程安全，纯 Java 实现
+ */
+final class RecordingTimeline {
+
+    static final int VIDEO = 0;
+    static final int AUDIO = 1;
+
+    /** {@link #admit} 返回该值表示丢弃样本 */
+    static final long DROP = ResumeGate.DROP;
+
+    /**
+     * 时间线使用的时钟（纳秒）
+     */
+    interface Clock {
+        /** 主时钟，Android 上为 SystemClock.elapsedRealtimeNanos() */
+        long elapsedRealtimeNanos();
+
+        /** CLOCK_MONOTONIC，与 System.nanoTime() 和 VirtualDisplay 帧时间戳同一时钟 */
+        long monotonicNanos();
+    }
+
+    private final Clock mClock;
+    private final ResumeGate mGate = new ResumeGate();
+
+    private boolean mStarted = false;
+    private long mStartNanos = 0;
+    private long mStartMonotonicNanos = 0;
+
+    // 暂停区间（主时钟）
+    private boolean mPaused = false;
+    private long mPauseStartNanos = 0;
+    private long mPausedNanos = 0;
+    private int mPauseCount = 0;
+
+    RecordingTimeline(Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * 以当前时刻作为录制起点，清空暂停区间
+     */
+    synchronized void start() {
+        mStartNanos = mClock.elapsedRealtimeNanos();
+        mStartMonotonicNanos = mClock.monotonicNanos();
+        mStarted = true;
+        mPaused = false;
+        mPausedNanos = 0;
+        mPauseCount = 0;
+    }
+
+    synchronized boolean isStarted() {
+        return mStarted;
+    }
+
+    /** 录制起点（主时钟，纳秒），未开始时为 0 */
+    synchronized long getStartNanos() {
+        return mStartNanos;
+    }
+
+    /** 主时钟当前时间（纳秒） */
+    long nowNanos() {
+        return mClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * 从录制起点到现在经过的时间（微秒，包含暂停时长，暂停由 {@link #admit} 扣除），未开始时为 0
+     */
+    synchronized long elapsedUs() {
+        if (!mStarted) {
+            return 0;
+        }
+        return Math.max(0, (mClock.elapsedRealtimeNanos() - mStartNanos) / 1000);
+    }
+
+    /**
+     * 把 CLOCK_MONOTONIC 时基的时间戳（如 VirtualDisplay 采集时间）换算到录制起点（微秒，包含暂停时长）
+     */
+    synchronized long fromMonotonicUs(long monotonicUs) {
+        if (!mStarted) {
+            return 0;
+        }
+        return Math.max(0, monotonicUs - mStartMonotonicNanos / 1000);
+    }
+
+    /**
+     * 录制开始后主时钟比 CLOCK_MONOTONIC 多走的时间（微秒），设备深睡眠时增大
+     */
+    synchronized long getClockDriftUs() {
+        if (!mStarted) {
+            return 0;
+        }
+        return ((mClock.elapsedRealtimeNanos() - mStartNanos) - (mClock.monotonicNanos() - mStartMonotonicNanos)) / 1000;
+    }
+
+    synchronized void pause() {
+        mGate.pause();
+        if (!mPaused) {
+            mPaused = true;
+            mPauseStartNanos = mClock.elapsedRealtimeNanos();
+            mPauseCount++;
+        }
+    }
+
+    /**
+     * @param waitForKeyFrame 视频轨道需等到关键帧才放行（录制包含视频时为 true）
+     */
+    synchronized void resume(boolean waitForKeyFrame) {
+        mGate.resume(waitForKeyFrame);
+        if (mPaused) {
+            mPaused = false;
+            mPausedNanos += mClock.elapsedRealtimeNanos() - mPauseStartNanos;
+        }
+    }
+
+    synchronized boolean isPaused() {
+        return mPaused;
+    }
+
+    /** 恢复后仍在等待视频关键帧 */
+    synchronized boolean isAwaitingKeyFrame() {
+        return mGate.isAwaitingKeyFrame();
+    }
+
+    /**
+     * 决定样本是否写入，并换算为扣除暂停间隔后的输出 PTS，同一轨道的输出 PTS 严格单调
+     *
+     * @param track {@link #VIDEO} 或 {@link #AUDIO}
+     * @param presentationTimeUs 相对录制起点、未扣除暂停时长的 PTS
+     * @param keyFrame 样本是同步帧
+     * @return 输出 PTS，或 {@link #DROP}
+     */
+    synchronized long admit(int track, long presentationTimeUs, boolean keyFrame) {
+        return mGate.admit(track == VIDEO, presentationTimeUs, keyFrame);
+    }
+
+    /**
+     * 换算不经过门控的样本（如 EOS）的 PTS
+     */
+    synchronized long shift(long presentationTimeUs) {
+        return mGate.shift(presentationTimeUs);
+    }
+
+    /** 按主时钟累计的暂停时长（微秒），包含正在进行的暂停 */
+    synchronized long getPausedUs() {
+        long pausedNanos = mPausedNanos;
+        if (mPaused) {
+            pausedNanos += mClock.elapsedRealtimeNanos() - mPauseStartNanos;
+        }
+        return pausedNanos / 1000;
+    }
+
+    synchronized int getPauseCount() {
+        return mPauseCount;
+    }
+
+    /** 按样本 PTS 测得并从输出中扣除的暂停间隔（微秒） */
+    synchronized long getOffsetUs() {
+        return mGate.getOffsetUs();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "timeline{pauses=" + mPauseCount + ", pausedMs=" + getPausedUs() / 1000
+                + ", driftMs=" + getClockDriftUs() / 1000 + ", " + mGate + '}';
+    }
+}
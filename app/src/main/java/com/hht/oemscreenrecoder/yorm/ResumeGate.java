@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+/**
+ * 暂停/恢复时的样本门控与 PTS 间隔补偿
+ *
+ * 暂停期间丢弃所有样本；恢复后视频在第一个关键帧到达前继续丢弃（之前的 P 帧引用的参考帧从未写入），
+ * 音频不受关键帧限制。恢复后第一个被放行的样本（任一轨道）用来测量暂停间隔：
+ * 间隔 = 该样本 PTS - (暂停前最后一个样本 PTS + 该轨道帧时长)，累加到所有轨道共用的偏移量上，
+ * 音视频同步不变。补偿后仍不单调的样本直接丢弃，不再人为加偏移。
+ *
+ * 输入 PTS 为未扣除暂停时长的时间（微秒），线程安全
+ */
+final class ResumeGate {
+    /** {@link #admit} 返回该值表示丢弃样本 */
+    static final long DROP = -1;
+    /** 尚未测得帧时长时使用的默认值 */
+    static final long DEFAULT_FRAME_DURATION_US = 20_000;
+    /** 帧时长上限，避免暂停前的长间隔（如静止画面）被当作帧时长 */
+    static final long MAX_FRAME_DURATION_US = 100_000;
+
+    private static final int VIDEO = 0;
+    private static final int AUDIO = 1;
+
+    private boolean mPaused = false;
+    private boolean mAwaitingGap = false;
+    private boolean mAwaitingKeyFrame = false;
+    private long mOffsetUs = 0;
+
+    // 暂停前最后放行的样本（所有轨道中 PTS 最大者）
+    private long mLastInputUs = Long.MIN_VALUE;
+    private int mLastTrack = VIDEO;
+
+    private final long[] mTrackLastInputUs = {Long.MIN_VALUE, Long.MIN_VALUE};
+    private final long[] mTrackLastOutputUs = {Long.MIN_VALUE, Long.MIN_VALUE};
+    private final long[] mFrameDurationUs = {DEFAULT_FRAME_DURATION_US, DEFAULT_FRAME_DURATION_US};
+
+    // 统计信息
+    private long mResumeCount = 0;
+    private long mLastGapUs = 0;
+    private long mPausedDrops = 0;
+    private long mKeyFrameDrops = 0;
+    private long mNonMonotonicDrops = 0;
+
+    synchronized void pause() {
+        mPaused = true;
+    }
+
+    /**
+     * @param waitForKeyFrame 视频轨道需等到关键帧才放行（录制包含视频时为 true）
+     */
+    synchronized void resume(boolean waitForKeyFrame) {
+        if (!mPaused) return;
+        mPaused = false;
+        mAwaitingGap = mLastInputUs != Long.MIN_VALUE;
+        mAwaitingKeyFrame = waitForKeyFrame;
+        mResumeCount++;
+    }
+
+    synchronized boolean isPaused() {
+        return mPaused;
+    }
+
+    /** 恢复后仍在等待视频关键帧 */
+    synchronized boolean isAwaitingKeyFrame() {
+        return mAwaitingKeyFrame;
+    }
+
+    /**
+     * 决定样本是否写入，并换算输出 PTS
+     *
+     * @param video 视频轨道样本
+     * @param presentationTimeUs 未扣除暂停时长的 PTS
+     * @param keyFrame 样本是同步帧
+     * @return 输出 PTS，或 {@link #DROP}
+     */
+    synchronized long admit(boolean video, long presentationTimeUs, boolean keyFrame) {
+        if (mPaused) {
+            mPausedDrops++;
+            return DROP;
+        }
+        if (video && mAwaitingKeyFrame) {
+            if (!keyFrame) {
+                mKeyFrameDrops++;
+                return DROP;
+            }
+            mAwaitingKeyFrame = false;
+        }
+        if (mAwaitingGap) {
+            long expectedUs = mLastInputUs + mFrameDurationUs[mLastTrack];
+            mLastGapUs = Math.max(0, presentationTimeUs - expectedUs);
+            mOffsetUs += mLastGapUs;
+            mAwaitingGap = false;
+        }
+
+        final int track = video ? VIDEO : AUDIO;
+        long outputUs = presentationTimeUs - mOffsetUs;
+        if (mTrackLastOutputUs[track] != Long.MIN_VALUE && outputUs <= mTrackLastOutputUs[track]) {
+            mNonMonotonicDrops++;
+            return DROP;
+        }
+        if (mTrackLastInputUs[track] != Long.MIN_VALUE) {
+            long durationUs = presentationTimeUs - mTrackLastInputUs[track];
+            if (durationUs > 0) {
+                mFrameDurationUs[track] = Math.min(durationUs, MAX_FRAME_DURATION_US);
+            }
+        }
+        mTrackLastInputUs[track] = presentationTimeUs;
+        mTrackLastOutputUs[track] = outputUs;
+        if (presentationTimeUs >= mLastInputUs) {
+            mLastInputUs = presentationTimeUs;
+            mLastTrack = track;
+        }
+        return outputUs;
+    }
+
+    /**
+     * 换算不经过门控的样本（如 EOS）的 PTS
+     */
+    synchronized long shift(long presentationTimeUs) {
+        return Math.max(0, presentationTimeUs - mOffsetUs);
+    }
+
+    /** 累计扣除的暂停时长（微秒） */
+    synchronized long getOffsetUs() {
+        return mOffsetUs;
+    }
+
+    synchronized long getLastGapUs() {
+        return mLastGapUs;
+    }
+
+    synchronized long getResumeCount() {
+        return mResumeCount;
+    }
+
+    synchronized long getPausedDrops() {
+        return mPausedDrops;
+    }
+
+    synchronized long getKeyFrameDrops() {
+        return mKeyFrameDrops;
+    }
+
+    synchronized long getNonMonotonicDrops() {
+        return mNonMonotonicDrops;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "resumes=" + mResumeCount + ", offsetUs=" + mOffsetUs + ", lastGapUs=" + mLastGapUs
+                + ", drops(paused/keyframe/nonMonotonic)=" + mPausedDrops + "/" + mKeyFrameDrops
+                + "/" + mNonMonotonicDrops;
+    }
+}
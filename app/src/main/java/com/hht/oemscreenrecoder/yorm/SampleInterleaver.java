@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 多轨样本交织器
+ *
+ * 各轨道的样本先进入各自的小窗口，按时间戳跨轨道合并输出：只有所有未结束的轨道都不会再到达更早的样本时，
+ * 最早的样本才会输出，保证写入 muxer 的样本在轨道间按时间戳交织。某个轨道停顿（音频卡顿、编码器异常）时，
+ * 其它轨道最多领先 maxSkewUs（按已收到的最新时间戳计算），超过后不再等待，强制输出并计入 {@link #getForcedCount()}。
+ *
+ * 可重排的轨道（音频，每个样本都可独立解码）在 reorderWindowUs 窗口内按时间戳排序，
+ * 窗口之后才到达、早于已输出时间戳的样本被丢弃；不可重排的轨道（视频，编码器按解码顺序输出）保持到达顺序，
+ * 时间戳回退时排序键只抬到前一个样本之后 1us，计入 {@link #getAdjustedCount()}；样本自身的时间戳由调用者原样保留
+ * （B 帧按解码顺序输出时 PTS 本就不单调，不能改写）。
+ *
+ * 结束样本（EOS）通过 {@link #offerEnd} 加入，排在该轨道所有样本之后，轨道结束后不再阻塞其它轨道。
+ * 输出样本的排序键通过 {@link #getPolledTimeUs()} 读取。非线程安全，纯 Java 实现
+ *
+ * @param <T> 样本对象，交织器只保存引用
+ */
+final class SampleInterleaver<T> {
+
+    private static final class Entry<T> {
+        long timeUs;
+        T sample;
+        boolean end;
+    }
+
+    private final int mTrackCount;
+    private final long mMaxSkewUs;
+    private final long mReorderWindowUs;
+    private final boolean[] mReorder;
+    private final ArrayList<ArrayList<Entry<T>>> mQueues;
+    private final long[] mLastTimeUs;       // 每个轨道已入窗口的最大时间戳
+    private final long[] mLastPolledUs;     // 每个轨道已输出的最大时间戳
+    private final boolean[] mEnded;
+    private final ArrayDeque<Entry<T>> mSpareEntries = new ArrayDeque<>();
+    private long mNewestUs = Long.MIN_VALUE;
+    private int mSize = 0;
+
+    private int mPolledTrack = -1;
+    private long mPolledTimeUs = 0;
+
+    // 统计
+    private long mReorderedCount = 0;
+    private long mAdjustedCount = 0;
+    private long mLateDropCount = 0;
+    private long mForcedCount = 0;
+    private long mMaxSkewSeenUs = 0;
+
+    /**
+     * @param trackCount 轨道数，轨道号为 0 ~ trackCount-1
+     * @param maxSkewUs 轨道之间最大领先时长，超过后不再等待落后的轨道
+     * @param reorderWindowUs 可重排轨道的排序窗口
+     */
+    SampleInterleaver(int trackCount, long maxSkewUs, long reorderWindowUs) {
+        if (trackCount <= 0) {
+            throw new IllegalArgumentException("trackCount=" + trackCount);
+        }
+        if (maxSkewUs < 0 || reorderWindowUs < 0) {
+            throw new IllegalArgumentException("maxSkewUs=" + maxSkewUs + ", reorderWindowUs=" + reorderWindowUs);
+        }
+        mTrackCount = trackCount;
+        mMaxSkewUs = maxSkewUs;
+        mReorderWindowUs = reorderWindowUs;
+        mReorder = new boolean[trackCount];
+        mQueues = new ArrayList<>(trackCount);
+        for (int i = 0; i < trackCount; i++) {
+            mQueues.add(new ArrayList<Entry<T>>());
+        }
+        mLastTimeUs = new long[trackCount];
+        mLastPolledUs = new long[trackCount];
+        Arrays.fill(mLastTimeUs, Long.MIN_VALUE);
+        Arrays.fill(mLastPolledUs, Long.MIN_VALUE);
+        mEnded = new boolean[trackCount];
+    }
+
+    /**
+     * 设置轨道是否可在窗口内按时间戳重排，需在加入样本之前调用
+     */
+    void setReorder(int track, boolean reorder) {
+        mReorder[checkTrack(track)] = reorder;
+    }
+
+    /**
+     * 加入一个样本
+     *
+     * @return 样本到达过晚（或轨道已结束）被丢弃时返回 false，调用者负责回收 sample
+     */
+    boolean offer(int track, long timeUs, T sample) {
+        checkTrack(track);
+        if (mEnded[track]) {
+            mLateDropCount++;
+            return false;
+        }
+        final ArrayList<Entry<T>> queue = mQueues.get(track);
+        int position = queue.size();
+        if (mReorder[track]) {
+            if (timeUs <= mLastPolledUs[track]) {
+                mLateDropCount++;
+                return false;
+            }
+            while (position > 0 && queue.get(position - 1).timeUs > timeUs) {
+                position--;
+            }
+            if (position < queue.size()) {
+                mReorderedCount++;
+            }
+        } else if (timeUs < mLastTimeUs[track]) {
+            timeUs = mLastTimeUs[track] + 1;
+            mAdjustedCount++;
+        }
+        queue.add(position, obtain(timeUs, sample, false));
+        mSize++;
+        if (timeUs > mLastTimeUs[track]) {
+            mLastTimeUs[track] = timeUs;
+        }
+        if (timeUs > mNewestUs) {
+            mNewestUs = timeUs;
+        }
+        return true;
+    }
+
+    /**
+     * 结束一个轨道，sample 排在该轨道所有样本之后输出，之后该轨道不再阻塞其它轨道
+     */
+    void offerEnd(int track, T sample) {
+        checkTrack(track);
+        if (mEnded[track]) {
+            throw new IllegalStateException("track " + track + " already ended");
+        }
+        mEnded[track] = true;
+        final long timeUs = Math.max(mLastTimeUs[track], mLastPolledUs[track]);
+        mQueues.get(track).add(obtain(timeUs, sample, true));
+        mSize++;
+    }
+
+    /**
+     * 取出下一个可以输出的样本，需要继续等待其它轨道时返回 null
+     */
+    T poll() {
+        final int track = headTrack();
+        if (track < 0) {
+            return null;
+        }
+        final Entry<T> head = mQueues.get(track).get(0);
+        if (!head.end && isWaiting(head.timeUs)) {
+            if (mNewestUs - head.timeUs <= mMaxSkewUs) {
+                return null;
+            }
+            mForcedCount++;
+        }
+        return take(track);
+    }
+
+    /**
+     * 不再等待，按时间戳顺序取出下一个样本（关闭或等待超时时使用），没有样本时返回 null
+     */
+    T pollForced() {
+        final int track = headTrack();
+        return track < 0 ? null : take(track);
+    }
+
+    /**
+     * 下一个将要输出的样本，不取出，没有样本时返回 null
+     */
+    T peek() {
+        final int track = headTrack();
+        return track < 0 ? null : mQueues.get(track).get(0).sample;
+    }
+
+    /** 上一次 poll 输出样本的轨道 */
+    int getPolledTrack() {
+        return mPolledTrack;
+    }
+
+    /** 上一次 poll 输出样本的排序键（可能已被抬高，见类说明），结束样本为该轨道最后的时间戳 */
+    long getPolledTimeUs() {
+        return mPolledTimeUs;
+    }
+
+    /** 窗口中的样本数 */
+    int size() {
+        return mSize;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /** 在窗口内被重排的样本数 */
+    long getReorderedCount() {
+        return mReorderedCount;
+    }
+
+    /** 时间戳回退被抬高的样本数 */
+    long getAdjustedCount() {
+        return mAdjustedCount;
+    }
+
+    /** 到达过晚被丢弃的样本数 */
+    long getLateDropCount() {
+        return mLateDropCount;
+    }
+
+    /** 超过最大领先时长、不再等待其它轨道而输出的样本数 */
+    long getForcedCount() {
+        return mForcedCount;
+    }
+
+    /** 等待期间观察到的最大轨道领先时长 */
+    long getMaxSkewSeenUs() {
+        return mMaxSkewSeenUs;
+    }
+
+    /**
+     * 是否还需要等待：某个未结束的轨道之后还可能到达早于 timeUs 的样本
+     */
+    private boolean isWaiting(long timeUs) {
+        boolean waiting = false;
+        for (int i = 0; i < mTrackCount; i++) {
+            if (!mEnded[i] && watermark(i) < timeUs) {
+                waiting = true;
+                break;
+            }
+        }
+        if (waiting && mNewestUs - timeUs > mMaxSkewSeenUs) {
+            mMaxSkewSeenUs = mNewestUs - timeUs;
+        }
+        return waiting;
+    }
+
+    /**
+     * 轨道之后到达的样本时间戳下限：不可重排的轨道不会早于最后一个样本，可重排的轨道再减去排序窗口
+     */
+    private long watermark(int track) {
+        final long lastUs = mLastTimeUs[track];
+        if (!mReorder[track] || lastUs == Long.MIN_VALUE) {
+            return lastUs;
+        }
+        return lastUs - mReorderWindowUs;
+    }
+
+    /**
+     * 队首时间戳最小的轨道（相同时间戳时轨道号小的优先），没有样本时返回 -1
+     */
+    private int headTrack() {
+        int track = -1;
+        long minUs = Long.MAX_VALUE;
+        for (int i = 0; i < mTrackCount; i++) {
+            final ArrayList<Entry<T>> queue = mQueues.get(i);
+            if (!queue.isEmpty() && (track < 0 || queue.get(0).timeUs < minUs)) {
+                track = i;
+                minUs = queue.get(0).timeUs;
+            }
+        }
+        return track;
+    }
+
+    private T take(int track) {
+        final Entry<T> entry = mQueues.get(track).remove(0);
+        mSize--;
+        final T sample = entry.sample;
+        mPolledTrack = track;
+        mPolledTimeUs = entry.timeUs;
+        if (entry.timeUs > mLastPolledUs[track]) {
+            mLastPolledUs[track] = entry.timeUs;
+        }
+        entry.sample = null;
+        mSpareEntries.addLast(entry);
+        return sample;
+    }
+
+    private Entry<T> obtain(long timeUs, T sample, boolean end) {
+        Entry<T> entry = mSpareEntries.pollLast();
+        if (entry == null) {
+            entry = new Entry<>();
+        }
+        entry.timeUs = timeUs;
+        entry.sample = sample;
+        entry.end = end;
+        return entry;
+    }
+
+    private int checkTrack(int track) {
+        if (track < 0 || track >= mTrackCount) {
+            throw new IllegalArgumentException("track=" + track + ", trackCount=" + mTrackCount);
+        }
+        return track;
+    }
+
+    @Override
+    public String toString() {
+        return "SampleInterleaver{held=" + mSize
+                + ", maxSkewMs=" + mMaxSkewUs / 1000
+                + ", maxSkewSeenMs=" + mMaxSkewSeenUs / 1000
+                + ", forced=" + mForcedCount
+                + ", reordered=" + mReorderedCount
+                + ", adjusted=" + mAdjustedCount
+                + ", lateDropped=" + mLateDropCount + '}';
+    }
+}
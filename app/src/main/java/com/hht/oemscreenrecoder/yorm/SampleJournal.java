@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 录制索引日志：录制时与 mp4 并列写出（隐藏文件 .xxx.mp4.journal），记录每个样本在 mdat 中的位置，
+ * 进程崩溃或断电后 {@link RecordingRecovery} 据此补写 moov
+ *
+ * 格式（大端）：
+ * 头部：magic "SRJ1"、版本、mdat 数据起点、轨道数、各轨道的 {@link TrackSpec}；
+ * 之后每个样本一条定长记录 track(1) flags(1) reserved(2) size(4) offset(8) ptsUs(8)，
+ * 末尾不完整的记录在读取时丢弃
+ */
+final class SampleJournal {
+    static final String SUFFIX = ".journal";
+    static final int RECORD_SIZE = 24;
+
+    private static final int MAGIC = 0x53524A31;  // "SRJ1"
+    private static final int VERSION = 1;
+    private static final int MAX_TRACKS = 8;
+    private static final int MAX_CSD_BYTES = 64 * 1024;
+
+    private SampleJournal() {
+    }
+
+    /** mp4 对应的日志文件：同目录下的 .文件名.journal */
+    static File journalFileOf(File mp4) {
+        return new File(mp4.getParentFile(), "." + mp4.getName() + SUFFIX);
+    }
+
+    /** 日志文件对应的 mp4，不是日志文件名时返回 null */
+    static File mp4FileOf(File journal) {
+        final String name = journal.getName();
+        if (!name.startsWith(".") || !name.endsWith(SUFFIX) || name.length() <= 1 + SUFFIX.length()) {
+            return null;
+        }
+        return new File(journal.getParentFile(), name.substring(1, name.length() - SUFFIX.length()));
+    }
+
+    /** 一条样本记录，读取时复用 */
+    static final class Entry {
+        int track;
+        int flags;
+        int size;
+        long offset;
+        long presentationTimeUs;
+    }
+
+    /** 日志头部损坏或不完整（写头部时断电），对应的录制没有可恢复的样本 */
+    static final class FormatException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FormatException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 日志写入：记录先缓存在内存中，{@link #sync()} 时追加到文件并 force。
+     * 调用方必须先 force 样本数据再 sync 日志，保证日志中的记录指向已落盘的数据
+     *
+     * 写入期间持有日志文件的独占锁，{@link RecordingRecovery} 据此跳过正在录制的文件
+     */
+    static final class Writer implements Closeable {
+        private final RandomAccessFile mFile;
+        private final FileChannel mChannel;
+        private final FileLock mLock;
+        private ByteBuffer mPending = ByteBuffer.allocate(256 * RECORD_SIZE);
+        private long mRecords = 0;
+
+        /**
+         * 创建（或清空）日志文件，写入头部并 force
+         *
+         * @param mdatDataStart mdat 数据在 mp4 中的起点
+         * @throws IOException 创建失败或日志被其他写入者锁定
+         */
+        Writer(File file, long mdatDataStart, List<TrackSpec> tracks) throws IOException {
+            mFile = new RandomAccessFile(file, "rw");
+            mChannel = mFile.getChannel();
+            FileLock lock;
+            try {
+                lock = mChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                mFile.close();
+                throw new IOException("journal is locked: " + file);
+            }
+            mLock = lock;
+            try {
+                mChannel.truncate(0);
+                final ByteBuffer header = ByteBuffer.wrap(encodeHeader(mdatDataStart, tracks));
+                while (header.hasRemaining()) {
+                    mChannel.write(header);
+                }
+                mChannel.force(true);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void append(int track, int flags, int size, long offset, long presentationTimeUs) {
+            if (mPending.remaining() < RECORD_SIZE) {
+                ByteBuffer bigger = ByteBuffer.allocate(mPending.capacity() * 2);
+                mPending.flip();
+                bigger.put(mPending);
+                mPending = bigger;
+            }
+            mPending.put((byte) track);
+            mPending.put((byte) flags);
+            mPending.putShort((short) 0);
+            mPending.putInt(size);
+            mPending.putLong(offset);
+            mPending.putLong(presentationTimeUs);
+        }
+
+        /**
+         * 追加缓存的记录并 force 到存储
+         */
+        void sync() throws IOException {
+            if (mPending.position() == 0) {
+                return;
+            }
+            mPending.flip();
+            mRecords += mPending.remaining() / RECORD_SIZE;
+            while (mPending.hasRemaining()) {
+                mChannel.write(mPending);
+            }
+            mPending.clear();
+            mChannel.force(false);
+        }
+
+        /** 已落盘的记录数 */
+        long getSyncedRecords() {
+            return mRecords;
+        }
+
+        /** 释放锁并关闭，未 sync 的记录被丢弃 */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (mLock != null && mLock.isValid()) {
+                    mLock.release();
+                }
+            } finally {
+                mFile.close();
+            }
+        }
+    }
+
+    /**
+     * 顺序读取日志，不会把整个日志读入内存
+     */
+    static final class Reader implements Closeable {
+        final long mdatDataStart;
+        final List<TrackSpec> tracks;
+        private final DataInputStream mIn;
+        private final byte[] mRecord = new byte[RECORD_SIZE];
+        private final ByteBuffer mRecordView = ByteBuffer.wrap(mRecord);
+
+        /**
+         * @throws FormatException 头部损坏或不完整
+         */
+        Reader(File file) throws IOException {
+            mIn = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            try {
+                if (mIn.readInt() != MAGIC) {
+                    throw new FormatException("bad magic: " + file);
+                }
+                final int version = mIn.readInt();
+                if (version != VERSION) {
+                    throw new FormatException("unsupported version " + version + ": " + file);
+                }
+                mdatDataStart = mIn.readLong();
+                final int count = mIn.readInt();
+                if (mdatDataStart <= 0 || count <= 0 || count > MAX_TRACKS) {
+                    throw new FormatException("bad header: " + file);
+                }
+                final List<TrackSpec> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(readTrack(mIn));
+                }
+                tracks = Collections.unmodifiableList(list);
+            } catch (EOFException e) {
+                mIn.close();
+                throw new FormatException("truncated header: " + file);
+            } catch (IOException e) {
+                mIn.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 读下一条记录
+         *
+         * @return false 表示到达末尾（末尾不完整的记录被丢弃）
+         */
+        boolean next(Entry e) throws IOException {
+            try {
+                mIn.readFully(mRecord);
+            } catch (EOFException eof) {
+                return false;
+            }
+            mRecordView.clear();
+            e.track = mRecordView.get() & 0xff;
+            e.flags = mRecordView.get() & 0xff;
+            mRecordView.getShort();
+            e.size = mRecordView.getInt();
+            e.offset = mRecordView.getLong();
+            e.presentationTimeUs = mRecordView.getLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+    }
+
+    static byte[] encodeHeader(long mdatDataStart, List<TrackSpec> tracks) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(mdatDataStart);
+        out.writeInt(tracks.size());
+        for (TrackSpec spec : tracks) {
+            out.writeUTF(spec.mimeType);
+            out.writeInt(spec.width);
+            out.writeInt(spec.height);
+            out.writeInt(spec.sampleRate);
+            out.writeInt(spec.channelCount);
+            out.writeInt(spec.bitrate);
+            out.writeInt(spec.csd.length);
+            for (byte[] csd : spec.csd) {
+                out.writeInt(csd.length);
+                out.write(csd);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static TrackSpec readTrack(DataInputStream in) throws IOException {
+        final String mime = in.readUTF();
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final int sampleRate = in.readInt();
+        final int channelCount = in.readInt();
+        final int bitrate = in.readInt();
+        final int csdCount = in.readInt();
+        if (csdCount < 0 || csdCount > 4) {
+            throw new FormatException("bad csd count " + csdCount);
+        }
+        final byte[][] csd = new byte[csdCount][];
+        for (int i = 0; i < csdCount; i++) {
+            final int len = in.readInt();
+            if (len < 0 || len > MAX_CSD_BYTES) {
+                throw new FormatException("bad csd length " + len);
+            }
+            csd[i] = new byte[len];
+            in.readFully(csd[i]);
+        }
+        return mime.startsWith("video/")
+                ? TrackSpec.video(mime, width, height, bitrate, csd)
+                : TrackSpec.audio(mime, sampleRate, channelCount, bitrate, csd);
+    }
+}
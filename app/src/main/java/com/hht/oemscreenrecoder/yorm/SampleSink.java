@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 封装后端（与 MediaMuxer 相同的调用顺序：addTrack → start → writeSampleData → stop → release）
+ *
+ * 出错时抛出 IllegalStateException / IllegalArgumentException，与 MediaMuxer 一致，
+ * 调用方沿用原有的错误处理（音轨添加失败降级为纯视频，写入失败停止录制）
+ */
+interface SampleSink {
+
+    /**
+     * @param format 编码器输出格式
+     * @return 轨道索引
+     */
+    int addTrack(MediaFormat format);
+
+    void start();
+
+    /**
+     * 写入一个样本（muxer 写入线程调用），data 的 position~limit 为样本数据
+     */
+    void writeSampleData(int track, ByteBuffer data, MediaCodec.BufferInfo info);
+
+    void stop();
+
+    void release();
+}
@@ -1,23 +1,27 @@
 package com.hht.oemscreenrecoder.yorm;
 
 import static android.media.MediaFormat.MIMETYPE_AUDIO_AAC;
+import static android.media.MediaFormat.MIMETYPE_VIDEO_AV1;
 import static android.media.MediaFormat.MIMETYPE_VIDEO_AVC;
+import static android.media.MediaFormat.MIMETYPE_VIDEO_HEVC;
 
 import android.hardware.display.VirtualDisplay;
 import android.media.MediaCodec;
 import android.media.MediaFormat;
-import android.media.MediaMuxer;
 import android.media.projection.MediaProjection;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.LinkedList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -29,22 +33,81 @@ public class ScreenRecorder {
     private static final boolean VERBOSE = false;
     private static final int INVALID_INDEX = -1;
     public static final String VIDEO_AVC = MIMETYPE_VIDEO_AVC; // H.264 Advanced Video Coding
+    public static final String VIDEO_HEVC = MIMETYPE_VIDEO_HEVC; // H.265 High Efficiency Video Coding
+    public static final String VIDEO_AV1 = MIMETYPE_VIDEO_AV1; // AOMedia Video 1
     public static final String AUDIO_AAC = MIMETYPE_AUDIO_AAC; // H.264 Advanced Audio Coding
+    // 录制时间线使用的系统时钟：主时钟 elapsedRealtime，VirtualDisplay 帧时间戳为 CLOCK_MONOTONIC
+    static final RecordingTimeline.Clock SYSTEM_CLOCK = new RecordingTimeline.Clock() {
+        @Override
+        public long elapsedRealtimeNanos() {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public long monotonicNanos() {
+            return System.nanoTime();
+        }
+    };
     private String mDstPath;
     private VideoEncoder mVideoEncoder;
     private MicRecorder mAudioEncoder;
 
     private MediaFormat mVideoOutputFormat = null, mAudioOutputFormat = null;
     private int mVideoTrackIndex = INVALID_INDEX, mAudioTrackIndex = INVALID_INDEX;
-    private MediaMuxer mMuxer;
+    private SampleSink mMuxer;
     private boolean mMuxerStarted = false;
-    private AtomicBoolean mPauseMux = new AtomicBoolean(false);
-    private AtomicLong pauseDelayTime = new AtomicLong();
-    private AtomicLong oncePauseTime = new AtomicLong();
-    /**
-     * previous presentationTimeUs for writing
-     */
-    private AtomicLong prevOutputPTSUs = new AtomicLong();
+    // ===== 封装后端 =====
+    // 默认系统 MediaMuxer；分片 MP4 每隔一段时间写出一个 moof/mdat，崩溃或断电时已写出的部分仍可播放；
+    // 断电恢复模式写普通 MP4 + 样本索引日志，下次启动时由 RecordingRecovery 补写 moov
+    private boolean mUseFragmentedMp4 = false;
+    private long mFragmentDurationUs = FragmentedMp4Writer.DEFAULT_FRAGMENT_DURATION_US;
+    private boolean mUseCrashSafeMp4 = false;
+    private long mCrashSafeSyncIntervalUs = JournaledMp4Writer.DEFAULT_SYNC_INTERVAL_US;
+    // 分段录制：达到时长或大小上限后在视频关键帧处切换到新文件，不重建编码器和 VirtualDisplay
+    private long mSegmentDurationUs = 0;
+    private long mSegmentBytes = 0;
+    // ===== 独立 muxer 写入线程 =====
+    // 编码输出拷贝进池化的直接内存后入队，由写线程写入封装后端，存储变慢不再卡住编码器回调线程
+    private volatile MuxerWriter mMuxerWriter;
+    private int mMuxerQueueSamples = MuxerWriter.DEFAULT_MAX_QUEUED_SAMPLES;
+    private int mMuxerQueueBytes = MuxerWriter.DEFAULT_MAX_QUEUED_BYTES;
+    private final MediaCodec.BufferInfo mMuxerWriterInfo = new MediaCodec.BufferInfo(); // 只在写线程中使用
+    private static final long MUXER_WRITER_CLOSE_TIMEOUT_MS = 3000;
+    // muxer 写入时音视频按时间戳交织（0 表示关闭），音频在窗口内按时间戳重排
+    private long mInterleaveMaxSkewUs = 500_000;
+    private long mInterleaveReorderWindowUs = 40_000;
+    // ===== 运行时码率控制 =====
+    // 每个周期根据视频编码输出、muxer 写入情况和剩余空间调整编码器码率（BitrateController）
+    private final int mVideoBitrate;
+    private int mBitrateFloorBps = 0;
+    private int mBitrateCeilingBps = 0;
+    private long mBitrateReserveBytes = 0;
+    private long mBitrateMinRemainingSeconds = 0;
+    private FreeSpaceProvider mFreeSpaceProvider;
+    private BitrateController mBitrateController;               // 只在 mHandler 线程中使用
+    private final BitrateController.Feedback mRateFeedback = new BitrateController.Feedback();
+    private final AtomicLong mRateControlVideoBytes = new AtomicLong();
+    private long mLastRateControlMs;
+    private long mLastWriteCount;
+    private double mLastWriteTimeSumNs;
+    private long mLastStallCount;
+    private static final long RATE_CONTROL_INTERVAL_MS = 1000;
+    // 录制时间线：音视频共用的起点、暂停区间和门控（暂停期间丢弃样本，恢复后视频等到关键帧才写入，暂停间隔按实际样本 PTS 测量扣除）
+    private final RecordingTimeline mTimeline = new RecordingTimeline(SYSTEM_CLOCK);
+    // 健康指标：编码延迟、写入耗时、队列深度、丢帧、帧率/码率，供录制悬浮窗和 dumpsys 使用
+    private final MetricsRegistry mMetrics = new MetricsRegistry(System::nanoTime);
+    private final MetricsRegistry.Counter mVideoFramesCounter = mMetrics.counter(MetricsRegistry.VIDEO_FRAMES);
+    private final MetricsRegistry.Counter mVideoBytesCounter = mMetrics.counter(MetricsRegistry.VIDEO_BYTES);
+    private final MetricsRegistry.Counter mVideoDroppedCounter = mMetrics.counter(MetricsRegistry.VIDEO_DROPPED);
+    private final MetricsRegistry.Counter mAudioFramesCounter = mMetrics.counter(MetricsRegistry.AUDIO_FRAMES);
+    private final MetricsRegistry.Counter mAudioBytesCounter = mMetrics.counter(MetricsRegistry.AUDIO_BYTES);
+    private final MetricsRegistry.Counter mAudioDroppedCounter = mMetrics.counter(MetricsRegistry.AUDIO_DROPPED);
+    private final LatencyHistogram mVideoCodecLatency = mMetrics.histogram(MetricsRegistry.VIDEO_CODEC_LATENCY);
+    private final LatencyHistogram mAudioCodecLatency = mMetrics.histogram(MetricsRegistry.AUDIO_CODEC_LATENCY);
+    // 超过该值的编码延迟视为时间戳不是采集时刻（部分设备的编码器改写 PTS），不计入直方图
+    private static final long MAX_CODEC_LATENCY_NS = 10_000_000_000L;
+    // 录制中/暂停中的 CPU 占用，验证暂停时挂起编码和停止采集的效果
+    private final PauseCpuMeter mPauseCpuMeter = new PauseCpuMeter();
     private AtomicBoolean mForceQuit = new AtomicBoolean(false);
     private AtomicBoolean mIsRunning = new AtomicBoolean(false);
     private VirtualDisplay mVirtualDisplay;
@@ -57,19 +120,35 @@ public class ScreenRecorder {
     private long mLastMuxerLogTimeMs = 0;
     private static final long MUXER_LOG_INTERVAL_MS = 5000; // 每5秒打印一次
 
-    // ===== 墙钟时间戳（统一起点）=====
-    // 核心策略：在录制真正开始时初始化，音频和视频共用同一个起点
-    private long mRecordingStartTimeNanos = 0;  // 录制开始的纳秒时间戳（单调时钟）
+    // ===== 静态画面模式（可变帧率）=====
+    // 画面不变时编码器不产生新帧，视频 PTS 取 VirtualDisplay 的采集时间（CLOCK_MONOTONIC），由 mTimeline 换算到同一个录制起点
+    private final boolean mStaticContentMode;
+    private final FrameRateStats mFrameRateStats;
     private boolean mUseWallClockPTS = true;    // 是否使用墙钟作为 PTS（默认启用）
+    private boolean mUseSampleClockPTS = false; // 是否使用采样数时钟作为音频 PTS（优先于墙钟模式）
+    private boolean mUseAsyncAudioCodec = true; // 音频编码器是否使用 MediaCodec 异步回调模式（失败时自动回退轮询）
+
+    // ===== 预热（工具栏显示期间提前创建并启动视频编码器，点击录制时只需挂上 Surface）=====
+    private boolean mStartRequested = false;
+    private boolean mVideoEncoderPrepared = false;
+    private boolean mWarmStart = false;
+    // 只有挂上过 Surface 才在释放时摘下，VirtualDisplay 可能已被下一个录制使用
+    private boolean mSurfaceAttached = false;
+    // 点击录制到第一帧的各阶段耗时
+    private RecordingStartTrace mStartTrace;
 
     private HandlerThread mWorker;
     private CallbackHandler mHandler;
 
     private Callback mCallback;
-    private LinkedList<Integer> mPendingVideoEncoderBufferIndices = new LinkedList<>();
-    private LinkedList<Integer> mPendingAudioEncoderBufferIndices = new LinkedList<>();
-    private LinkedList<MediaCodec.BufferInfo> mPendingAudioEncoderBufferInfos = new LinkedList<>();
-    private LinkedList<MediaCodec.BufferInfo> mPendingVideoEncoderBufferInfos = new LinkedList<>();
+    // muxer 启动前暂存的编码输出，两条轨道共用一个槽位池，入队出队不分配；取出时填入复用的 BufferInfo
+    private static final int PENDING_VIDEO = 0;
+    private static final int PENDING_AUDIO = 1;
+    private static final int PENDING_INITIAL_CAPACITY = 64;
+    private final PendingSampleQueue mPendingOutputs = new PendingSampleQueue(2, PENDING_INITIAL_CAPACITY);
+    private final MediaCodec.BufferInfo mPendingInfo = new MediaCodec.BufferInfo();
+    // EOS 样本没有数据，共用一个空缓冲区
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
 
     /**
      * @param display for {@link VirtualDisplay#setSurface(Surface)}
@@ -81,6 +160,9 @@ public class ScreenRecorder {
                           String dstPath) {
         mVirtualDisplay = display;
         mDstPath = dstPath;
+        mVideoBitrate = video.bitrate;
+        mStaticContentMode = video.staticContentMode;
+        mFrameRateStats = new FrameRateStats(video.framerate > 0 ? video.framerate : 30);
         mVideoEncoder = new VideoEncoder(video);
         mAudioEncoder = audio == null ? null : new MicRecorder(audio);
 
@@ -114,12 +196,132 @@ public class ScreenRecorder {
         }
     }
 
+    /**
+     * 设置是否使用采样数时钟作为音频 PTS（启用时优先于墙钟模式）
+     * @param useSampleClock true=按累计采样数推算并校正漂移
+     */
+    public void setUseSampleClockPTS(boolean useSampleClock) {
+        this.mUseSampleClockPTS = useSampleClock;
+        if (mAudioEncoder != null) {
+            mAudioEncoder.setUseSampleClockPTS(useSampleClock);
+        }
+    }
+
+    /**
+     * 设置音频编码器是否使用 MediaCodec 异步回调模式，需在 start 之前调用
+     * @param async true=回调驱动（默认），false=轮询模式
+     */
+    public void setUseAsyncAudioCodec(boolean async) {
+        this.mUseAsyncAudioCodec = async;
+    }
+
+    /**
+     * 设置是否使用分片 MP4 封装（代替 MediaMuxer），需在 start 之前调用
+     * @param enable true=分片 MP4
+     * @param fragmentDurationMs 分片时长（毫秒），在此之后的第一个视频关键帧处切分
+     */
+    public void setUseFragmentedMp4(boolean enable, long fragmentDurationMs) {
+        this.mUseFragmentedMp4 = enable;
+        if (fragmentDurationMs > 0) {
+            this.mFragmentDurationUs = fragmentDurationMs * 1000;
+        }
+    }
+
+    /**
+     * 设置是否使用断电恢复模式（普通 MP4 + 样本索引日志，代替 MediaMuxer），需在 start 之前调用。
+     * 与分片 MP4 同时开启时使用分片 MP4
+     * @param enable true=断电恢复模式
+     * @param syncIntervalMs 样本数据与索引日志落盘的间隔（毫秒），断电时最多丢失这段时间
+     */
+    public void setUseCrashSafeMp4(boolean enable, long syncIntervalMs) {
+        this.mUseCrashSafeMp4 = enable;
+        if (syncIntervalMs > 0) {
+            this.mCrashSafeSyncIntervalUs = syncIntervalMs * 1000;
+        }
+    }
+
+    /**
+     * 剩余存储空间查询，在录制线程中调用
+     */
+    public interface FreeSpaceProvider {
+        /**
+         * @return 剩余空间（字节），<0 表示未知
+         */
+        long getFreeBytes();
+    }
+
+    /**
+     * 设置运行时码率控制，需在 start 之前调用。ceilingBps <=0 时不启用，码率固定为配置值
+     * @param floorBps 码率下限
+     * @param ceilingBps 码率上限
+     * @param reserveBytes 剩余空间中不能使用的部分（低于该值时录制会被停止）
+     * @param minRemainingSeconds 剩余空间至少要够录制的时长（秒），不够时按剩余空间降低码率，<=0 表示不限制
+     * @param provider 剩余空间查询，可以为 null
+     */
+    public void setBitrateControl(int floorBps, int ceilingBps, long reserveBytes, long minRemainingSeconds,
+                                  FreeSpaceProvider provider) {
+        this.mBitrateFloorBps = floorBps;
+        this.mBitrateCeilingBps = ceilingBps;
+        this.mBitrateReserveBytes = reserveBytes;
+        this.mBitrateMinRemainingSeconds = minRemainingSeconds;
+        this.mFreeSpaceProvider = provider;
+    }
+
+    /**
+     * 设置分段录制，需在 start 之前调用。两个上限都 <=0 时不分段
+     * @param segmentDurationMs 单个分段的时长上限（毫秒）
+     * @param segmentBytes 单个分段的大小上限（字节）
+     */
+    public void setSegmentConfig(long segmentDurationMs, long segmentBytes) {
+        this.mSegmentDurationUs = Math.max(0, segmentDurationMs) * 1000;
+        this.mSegmentBytes = Math.max(0, segmentBytes);
+    }
+
+    private boolean isSegmented() {
+        return mSegmentDurationUs > 0 || mSegmentBytes > 0;
+    }
+
+    /**
+     * 设置 muxer 写入队列的容量，需在 start 之前调用
+     * @param maxSamples 最多排队的样本数
+     * @param maxBytes 排队样本占用的内存上限（字节）
+     */
+    public void setMuxerQueueConfig(int maxSamples, int maxBytes) {
+        this.mMuxerQueueSamples = maxSamples;
+        this.mMuxerQueueBytes = maxBytes;
+    }
+
+    /**
+     * 设置 muxer 写入时的音视频交织，需在 start 之前调用
+     * @param maxSkewMs 音视频之间最大领先时长，一路停顿超过该时长后不再等待，0 表示关闭交织
+     * @param reorderWindowMs 音频样本按时间戳重排的窗口
+     */
+    public void setInterleaveConfig(long maxSkewMs, long reorderWindowMs) {
+        this.mInterleaveMaxSkewUs = Math.max(0, maxSkewMs) * 1000;
+        this.mInterleaveReorderWindowUs = Math.max(0, reorderWindowMs) * 1000;
+    }
+
+    /**
+     * muxer 写入线程统计（队列深度、生产者阻塞/排队/写入耗时分布），未开始录制时为空字符串
+     */
+    public String getMuxerWriterStats() {
+        MuxerWriter writer = mMuxerWriter;
+        return writer == null ? "" : writer.toString();
+    }
+
+    /**
+     * 录制健康指标快照（帧率/码率、编码延迟、写入耗时、队列深度、丢帧），可在任意线程调用
+     */
+    public MetricsRegistry.Snapshot getMetricsSnapshot() {
+        return mMetrics.snapshot();
+    }
+
     /**
      * 获取录制开始时间戳（纳秒）
      * @return 录制开始的纳秒时间戳
      */
     public long getRecordingStartTimeNanos() {
-        return mRecordingStartTimeNanos;
+        return mTimeline.getStartNanos();
     }
 
     /**
@@ -127,7 +329,11 @@ public class ScreenRecorder {
      */
     public final void quit() {
         mForceQuit.set(true);
-        if (!mIsRunning.get()) {
+        Handler handler = mHandler;
+        if (!mIsRunning.get() && handler != null && !mStartRequested) {
+            // 只预热未录制：编码器在录制线程中创建，也在录制线程中释放
+            handler.post(this::release);
+        } else if (!mIsRunning.get()) {
             release();
         } else {
             Log.d(TAG, "quit: signalStop (false)");
@@ -137,19 +343,58 @@ public class ScreenRecorder {
     }
 
     public void start() {
-        if (mWorker != null) {
+        if (mStartRequested) {
             throw new IllegalStateException();
         }
+        mStartRequested = true;
+        if (mStartTrace == null) {
+            mStartTrace = new RecordingStartTrace(SystemClock.elapsedRealtimeNanos());
+        }
+        if (mWorker == null) {
+            startWorker();
+        }
+        mHandler.sendEmptyMessage(MSG_START);
+    }
+
+    /**
+     * 预热：启动录制线程并提前创建、启动视频编码器（输入 Surface 暂不挂到 VirtualDisplay），
+     * 之后的 start 只需创建 muxer、准备音频并挂上 Surface。需在 start 之前调用，重复调用无效。
+     * 不再录制时调用 {@link #quit()} 释放编码器
+     */
+    public void warmUp() {
+        if (mWorker != null) {
+            return;
+        }
+        startWorker();
+        mHandler.sendEmptyMessage(MSG_WARM_UP);
+    }
+
+    private void startWorker() {
         mWorker = new HandlerThread(TAG);
         mWorker.start();
         mHandler = new CallbackHandler(mWorker.getLooper());
-        mHandler.sendEmptyMessage(MSG_START);
+    }
+
+    /**
+     * 设置点击录制按钮的时刻（elapsedRealtimeNanos），作为启动耗时追踪的起点，需在 start 之前调用。
+     * 不设置时以调用 start 的时刻为起点
+     */
+    public void setStartRequestedNanos(long nanos) {
+        mStartTrace = new RecordingStartTrace(nanos);
+    }
+
+    /**
+     * 更换录制文件路径（预热后点击录制时按点击时刻生成文件名），需在 start 之前调用
+     */
+    public void setDstPath(String dstPath) {
+        if (mStartRequested) {
+            throw new IllegalStateException("already started");
+        }
+        mDstPath = dstPath;
     }
     protected final Object mSync = new Object();
     public void resume() {
 //        synchronized (mSync) {
-            oncePauseTime.set(System.nanoTime() - oncePauseTime.get());
-            pauseDelayTime.set(pauseDelayTime.get() + oncePauseTime.get());
             if (mHandler!=null) {
                 mHandler.sendEmptyMessage(MSG_RESUME);
             }
@@ -160,7 +405,6 @@ public class ScreenRecorder {
 
     public void pause() {
 //        synchronized (mSync){
-            oncePauseTime.set(System.nanoTime());
             if (mHandler!=null) {
                 mHandler.sendEmptyMessage(MSG_PAUSE);
             }
@@ -173,8 +417,11 @@ public class ScreenRecorder {
         mCallback = callback;
     }
 
+    /**
+     * @return 录制文件路径，分段录制时为播放列表路径
+     */
     public String getSavedPath() {
-        return mDstPath;
+        return isSegmented() ? SegmentPlaylist.playlistPath(mDstPath) : mDstPath;
     }
 
     public interface Callback {
@@ -198,6 +445,8 @@ public class ScreenRecorder {
     private static final int MSG_ERROR = 2;
     private static final int MSG_PAUSE = 3;
     private static final int MSG_RESUME = 4;
+    private static final int MSG_RATE_CONTROL = 5;
+    private static final int MSG_WARM_UP = 6;
     private static final int STOP_WITH_EOS = 1;
 
     private class CallbackHandler extends Handler {
@@ -222,12 +471,18 @@ public class ScreenRecorder {
                         Message.obtain(mHandler, MSG_ERROR, e).sendToTarget();
                     }
                     break;
+                case MSG_WARM_UP:
+                    warmUpEncoders();
+                    break;
                 case MSG_RESUME:
                     resumeRecord();
                     break;
                 case MSG_PAUSE:
                     pauseEncoders();
                     break;
+                case MSG_RATE_CONTROL:
+                    adjustBitrate();
+                    break;
                 case MSG_STOP:
                 case MSG_ERROR:
                     stopEncoders();
@@ -237,7 +492,7 @@ public class ScreenRecorder {
                     }
                     if (mCallback != null) {
                         if (msg.obj == null) {
-                            msg.obj = mDstPath;
+                            msg.obj = getSavedPath();
                         }
                         mCallback.onStop(msg.obj);
                     }
@@ -249,7 +504,7 @@ public class ScreenRecorder {
 
     private void signalEndOfStream() {
         MediaCodec.BufferInfo eos = new MediaCodec.BufferInfo();
-        ByteBuffer buffer = ByteBuffer.allocate(0);
+        ByteBuffer buffer = EMPTY_BUFFER;
         eos.set(0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
         if (VERBOSE) {
             Log.i(TAG, "Signal EOS to muxer ");
@@ -272,11 +527,13 @@ public class ScreenRecorder {
             throw new IllegalStateException("maybe release");
         }
         mIsRunning.set(true);
+        markStartPhase("record");
 
-        // ===== 初始化墙钟时间戳（统一起点）=====
+        // ===== 初始化录制时间线（统一起点）=====
         // 关键：在录制真正开始时就初始化，音频和视频共用同一个起点
-        mRecordingStartTimeNanos = android.os.SystemClock.elapsedRealtimeNanos();
-        Log.i(TAG, "★★★ WALL CLOCK PTS INITIALIZED (UNIFIED) ★★★ startTimeNanos=" + mRecordingStartTimeNanos);
+        mTimeline.start();
+        Log.i(TAG, "★★★ RECORDING TIMELINE STARTED (UNIFIED) ★★★ startTimeNanos=" + mTimeline.getStartNanos());
+        mPauseCpuMeter.start(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
 
         // ===== 重置Muxer统计变量 =====
         mVideoFramesWritten = 0;
@@ -286,22 +543,35 @@ public class ScreenRecorder {
         mLastMuxerLogTimeMs = System.currentTimeMillis();
         mVideoPtsOffset = 0;
         mAudioPtsOffset = 0;
-        mLastVideoPtsUs = 0;
         Log.d(TAG, "record: Muxer statistics reset - starting recording");
 
         try {
             // create muxer
-            mMuxer = new MediaMuxer(mDstPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
-            // create encoder and input surface
-            prepareVideoEncoder();
+            mMuxer = isSegmented()
+                    ? new SegmentingSampleSink(mDstPath, mSegmentDurationUs, mSegmentBytes, this::createSampleSink)
+                    : createSampleSink(mDstPath);
+            Log.i(TAG, "record: sample sink = " + mMuxer);
+            startMuxerWriter(mMuxer);
+            // create encoder and input surface（预热时已创建）
+            mWarmStart = mVideoEncoderPrepared;
+            if (!mVideoEncoderPrepared) {
+                prepareVideoEncoder();
+                mVideoEncoderPrepared = true;
+            }
+            markStartPhase("video_encoder");
             // 增强音频编码器准备的错误处理
             try {
-                prepareAudioEncoder();
-                // ===== 将统一的 startNs 传递给音频编码器 =====
+                // ===== 音频编码器共用同一条录制时间线（prepare 之前设置，音频线程准备完成后即开始打时间戳）=====
                 if (mAudioEncoder != null) {
-                    mAudioEncoder.setRecordingStartTimeNanos(mRecordingStartTimeNanos);
+                    mAudioEncoder.setRecordingTimeline(mTimeline);
+                    mAudioEncoder.setMetrics(mMetrics);
                     mAudioEncoder.setUseWallClockPTS(mUseWallClockPTS);
-                    Log.i(TAG, "★★★ PASSED startNs TO AUDIO ENCODER ★★★ startTimeNanos=" + mRecordingStartTimeNanos);
+                    mAudioEncoder.setUseSampleClockPTS(mUseSampleClockPTS);
+                    Log.i(TAG, "★★★ PASSED TIMELINE TO AUDIO ENCODER ★★★ startTimeNanos=" + mTimeline.getStartNanos());
+                }
+                prepareAudioEncoder();
+                if (mAudioEncoder != null) {
+                    markStartPhase("audio_encoder");
                 }
             } catch (Exception e) {
                 Log.w(TAG, "Failed to prepare audio encoder, continuing with video-only recording", e);
@@ -314,17 +584,155 @@ public class ScreenRecorder {
 
         // "turn on" VirtualDisplay after VideoEncoder prepared
         mVirtualDisplay.setSurface(mVideoEncoder.getInputSurface());
+        mSurfaceAttached = true;
+        markStartPhase("surface");
         if (VERBOSE) {
             Log.d(TAG, "set surface to display: " + mVirtualDisplay.getDisplay());
         }
+        startBitrateControl();
+    }
+
+    /**
+     * 启动码率控制（编码器和 muxer 写线程都已启动后调用）
+     */
+    private void startBitrateControl() {
+        if (mBitrateCeilingBps <= 0) {
+            return;
+        }
+        // 编码器回退到 AVC 时初始码率会变大，上限同比放大
+        int initial = mVideoEncoder.getConfig().bitrate;
+        int ceiling = initial == mVideoBitrate ? mBitrateCeilingBps
+                : (int) Math.min(Integer.MAX_VALUE, (long) mBitrateCeilingBps * initial / mVideoBitrate);
+        int floor = Math.max(1, Math.min(mBitrateFloorBps, ceiling));
+        mBitrateController = new BitrateController(initial, floor, ceiling,
+                mBitrateReserveBytes, mBitrateMinRemainingSeconds);
+        resetRateFeedback();
+        if (mBitrateController.getTargetBps() != initial) {
+            applyBitrate(mBitrateController.getTargetBps());
+        }
+        mHandler.sendEmptyMessageDelayed(MSG_RATE_CONTROL, RATE_CONTROL_INTERVAL_MS);
+        Log.i(TAG, "★★★ BITRATE CONTROL ★★★ " + mBitrateController);
+    }
+
+    /**
+     * 以当前时刻为起点重新开始统计下一个控制周期
+     */
+    private void resetRateFeedback() {
+        mLastRateControlMs = SystemClock.elapsedRealtime();
+        mRateControlVideoBytes.set(0);
+        MuxerWriter writer = mMuxerWriter;
+        if (writer != null) {
+            LatencyHistogram writeTime = writer.getWriteTime();
+            mLastWriteCount = writeTime.getCount();
+            mLastWriteTimeSumNs = writeTime.getMean() * mLastWriteCount;
+            mLastStallCount = writer.getStallCount();
+        }
+    }
+
+    /**
+     * 一个码率控制周期：收集反馈，按 BitrateController 的结果调整编码器码率
+     */
+    private void adjustBitrate() {
+        final BitrateController controller = mBitrateController;
+        final MuxerWriter writer = mMuxerWriter;
+        if (controller == null || writer == null || !mIsRunning.get()) {
+            return;
+        }
+        mHandler.sendEmptyMessageDelayed(MSG_RATE_CONTROL, RATE_CONTROL_INTERVAL_MS);
+        if (mTimeline.isPaused()) {
+            // 暂停期间编码器挂起，没有输出，不作为反馈
+            resetRateFeedback();
+            return;
+        }
+
+        final BitrateController.Feedback feedback = mRateFeedback;
+        final long now = SystemClock.elapsedRealtime();
+        final LatencyHistogram writeTime = writer.getWriteTime();
+        final long writeCount = writeTime.getCount();
+        final double writeTimeSumNs = writeTime.getMean() * writeCount;
+        final long stallCount = writer.getStallCount();
+        feedback.intervalMs = now - mLastRateControlMs;
+        feedback.encodedBytes = mRateControlVideoBytes.get();
+        feedback.meanWriteTimeNs = writeCount > mLastWriteCount
+                ? (long) ((writeTimeSumNs - mLastWriteTimeSumNs) / (writeCount - mLastWriteCount)) : 0;
+        feedback.queueFill = Math.max((double) writer.getQueuedSamples() / writer.getMaxQueuedSamples(),
+                (double) writer.getQueuedBytes() / mMuxerQueueBytes);
+        feedback.stalls = stallCount - mLastStallCount;
+        feedback.freeBytes = queryFreeBytes();
+        resetRateFeedback();
+
+        final int previous = controller.getTargetBps();
+        final int target = controller.update(feedback);
+        if (target != previous) {
+            applyBitrate(target);
+            Log.i(TAG, "★★★ BITRATE ★★★ " + (previous / 1000) + " -> " + (target / 1000) + "kbps, " + controller
+                    + ", writeTimeUs=" + feedback.meanWriteTimeNs / 1000
+                    + ", queueFill=" + String.format(java.util.Locale.US, "%.2f", feedback.queueFill)
+                    + ", stalls=" + feedback.stalls + ", freeMB=" + (feedback.freeBytes >> 20));
+        }
+    }
+
+    private long queryFreeBytes() {
+        FreeSpaceProvider provider = mFreeSpaceProvider;
+        if (provider == null) {
+            return -1;
+        }
+        try {
+            return provider.getFreeBytes();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "queryFreeBytes: failed", e);
+            return -1;
+        }
+    }
+
+    private void applyBitrate(int bps) {
+        try {
+            mVideoEncoder.setBitrate(bps);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "applyBitrate: set video bitrate " + bps + " failed", e);
+        }
     }
 
     private void resumeRecord() {
-        mPauseMux.set(false);
+        mPauseCpuMeter.resume(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+        mTimeline.resume(mVideoEncoder != null);
+        if (mAudioEncoder != null) {
+            mAudioEncoder.resume();
+        }
+        if (mVideoEncoder != null) {
+            // 暂停前后的 P 帧参考链已断开，立即请求 IDR，在它到达之前视频样本由 mTimeline 丢弃
+            try {
+                mVideoEncoder.setSuspended(false);
+                if (mVirtualDisplay != null) {
+                    mVirtualDisplay.setSurface(mVideoEncoder.getInputSurface());
+                }
+                mVideoEncoder.requestSyncFrame();
+                Log.i(TAG, "★★★ RESUME ★★★ sync frame requested");
+            } catch (RuntimeException e) {
+                Log.w(TAG, "resumeRecord: resume video encoder failed, waiting for next key frame", e);
+            }
+        }
+        Log.i(TAG, "★★★ RESUME ★★★ " + mPauseCpuMeter);
     }
 
     private void pauseEncoders() {
-        mPauseMux.set(true);
+        mTimeline.pause();
+        if (mAudioEncoder != null) {
+            mAudioEncoder.pause();
+        }
+        if (mVideoEncoder != null) {
+            // 断开 VirtualDisplay 不再合成画面，编码器同时挂起，暂停期间不再采集和编码
+            try {
+                if (mVirtualDisplay != null) {
+                    mVirtualDisplay.setSurface(null);
+                }
+                mVideoEncoder.setSuspended(true);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "pauseEncoders: suspend video encoder failed, samples will be dropped instead", e);
+            }
+        }
+        mPauseCpuMeter.pause(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+        Log.i(TAG, "★★★ PAUSE ★★★ " + mPauseCpuMeter);
     }
 
     private void muxVideo(int index, MediaCodec.BufferInfo buffer) {
@@ -333,10 +741,9 @@ public class ScreenRecorder {
             return;
         }
         if (!mMuxerStarted || mVideoTrackIndex == INVALID_INDEX) {
-            Log.d(TAG, "muxVideo: Muxer not ready - PENDING video buffer index=" + index +
+            if (VERBOSE) Log.d(TAG, "muxVideo: Muxer not ready - PENDING video buffer index=" + index +
                     ", mMuxerStarted=" + mMuxerStarted + ", mVideoTrackIndex=" + mVideoTrackIndex);
-            mPendingVideoEncoderBufferIndices.add(index);
-            mPendingVideoEncoderBufferInfos.add(buffer);
+            mPendingOutputs.add(PENDING_VIDEO, index, buffer.offset, buffer.size, buffer.presentationTimeUs, buffer.flags);
             return;
         }
         ByteBuffer encodedData = mVideoEncoder.getOutputBuffer(index);
@@ -352,7 +759,7 @@ public class ScreenRecorder {
 
 
     private void muxAudio(int index, MediaCodec.BufferInfo buffer) {
-        Log.d(TAG, "muxAudio: ★★★ CALLED ★★★ index=" + index + ", size=" + buffer.size +
+        if (VERBOSE) Log.d(TAG, "muxAudio: ★★★ CALLED ★★★ index=" + index + ", size=" + buffer.size +
                 ", mIsRunning=" + mIsRunning.get() + ", mMuxerStarted=" + mMuxerStarted +
                 ", mAudioTrackIndex=" + mAudioTrackIndex);
         if (!mIsRunning.get()) {
@@ -360,21 +767,20 @@ public class ScreenRecorder {
             return;
         }
         if (!mMuxerStarted || mAudioTrackIndex == INVALID_INDEX) {
-            Log.d(TAG, "muxAudio: Muxer not ready - PENDING audio buffer index=" + index +
+            if (VERBOSE) Log.d(TAG, "muxAudio: Muxer not ready - PENDING audio buffer index=" + index +
                     ", mMuxerStarted=" + mMuxerStarted + ", mAudioTrackIndex=" + mAudioTrackIndex);
-            mPendingAudioEncoderBufferIndices.add(index);
-            mPendingAudioEncoderBufferInfos.add(buffer);
+            mPendingOutputs.add(PENDING_AUDIO, index, buffer.offset, buffer.size, buffer.presentationTimeUs, buffer.flags);
             return;
 
         }
-        Log.d(TAG, "muxAudio: Getting output buffer from encoder...");
+        if (VERBOSE) Log.d(TAG, "muxAudio: Getting output buffer from encoder...");
         ByteBuffer encodedData = mAudioEncoder.getOutputBuffer(index);
-        Log.d(TAG, "muxAudio: Got buffer, size=" + (encodedData != null ? encodedData.remaining() : "null") +
+        if (VERBOSE) Log.d(TAG, "muxAudio: Got buffer, size=" + (encodedData != null ? encodedData.remaining() : "null") +
                 ", calling writeSampleData...");
         writeSampleData(mAudioTrackIndex, buffer, encodedData);
-        Log.d(TAG, "muxAudio: writeSampleData returned, releasing buffer...");
+        if (VERBOSE) Log.d(TAG, "muxAudio: writeSampleData returned, releasing buffer...");
         mAudioEncoder.releaseOutputBuffer(index);
-        Log.d(TAG, "muxAudio: Buffer released");
+        if (VERBOSE) Log.d(TAG, "muxAudio: Buffer released");
         if ((buffer.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
             if (VERBOSE) {
                 Log.d(TAG, "Stop encoder and muxer, since the buffer has been marked with EOS");
@@ -382,17 +788,18 @@ public class ScreenRecorder {
             mAudioTrackIndex = INVALID_INDEX;
             signalStop(true);
         }
-        Log.d(TAG, "muxAudio: ★★★ EXIT ★★★");
+        if (VERBOSE) Log.d(TAG, "muxAudio: ★★★ EXIT ★★★");
     }
 
     private void writeSampleData(int track, MediaCodec.BufferInfo buffer, ByteBuffer encodedData) {
         String trackType = (track == mVideoTrackIndex) ? "VIDEO" : (track == mAudioTrackIndex) ? "AUDIO" : "UNKNOWN";
-        Log.d(TAG, "writeSampleData: ★★★ CALLED ★★★ track=" + track + " (" + trackType + ")" +
+        if (VERBOSE) Log.d(TAG, "writeSampleData: ★★★ CALLED ★★★ track=" + track + " (" + trackType + ")" +
                 ", size=" + buffer.size + ", pts=" + buffer.presentationTimeUs +
-                ", flags=" + buffer.flags + ", mPauseMux=" + mPauseMux.get());
+                ", flags=" + buffer.flags + ", paused=" + mTimeline.isPaused());
+        mPauseCpuMeter.onEncodedSample();
 
-        if (mPauseMux.get()){
-            Log.w(TAG, "writeSampleData: SKIPPED due to mPauseMux=true");
+        if (mTimeline.isPaused()){
+            Log.w(TAG, "writeSampleData: SKIPPED due to paused");
             return;
         }
         if ((buffer.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
@@ -413,12 +820,29 @@ public class ScreenRecorder {
             encodedData = null;
         } else {
             if (buffer.presentationTimeUs != 0) { // maybe 0 if eos
+                if (!eos) {
+                    recordCodecLatency(track, buffer.presentationTimeUs);
+                }
                 if (track == mVideoTrackIndex) {
                     resetVideoPts(buffer);
                 } else if (track == mAudioTrackIndex) {
                     resetAudioPts(buffer);
                 }
             }
+            if (eos) {
+                buffer.presentationTimeUs = mTimeline.shift(buffer.presentationTimeUs);
+            } else {
+                boolean keyFrame = (buffer.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+                long ptsUs = mTimeline.admit(track == mVideoTrackIndex ? RecordingTimeline.VIDEO : RecordingTimeline.AUDIO,
+                        buffer.presentationTimeUs, keyFrame);
+                if (ptsUs == RecordingTimeline.DROP) {
+                    (track == mVideoTrackIndex ? mVideoDroppedCounter : mAudioDroppedCounter).increment();
+                    Log.w(TAG, "writeSampleData: SKIPPED by timeline, track=" + track + " (" + trackType + ")" +
+                            ", pts=" + buffer.presentationTimeUs + ", " + mTimeline);
+                    return;
+                }
+                buffer.presentationTimeUs = ptsUs;
+            }
             if (VERBOSE) {
                 Log.d(TAG, "[" + Thread.currentThread().getId() + "] Got buffer, track=" + track
                         + ", info: size=" + buffer.size
@@ -431,19 +855,40 @@ public class ScreenRecorder {
         if (encodedData != null) {
             encodedData.position(buffer.offset);
             encodedData.limit(buffer.offset + buffer.size);
-            Log.i(TAG, "writeSampleData: ★★★ WRITING TO MUXER ★★★ track=" + track + " (" + trackType + ")" +
+            if (VERBOSE) Log.i(TAG, "writeSampleData: ★★★ QUEUE TO MUXER WRITER ★★★ track=" + track + " (" + trackType + ")" +
                     ", size=" + buffer.size + ", pts=" + buffer.presentationTimeUs);
-            mMuxer.writeSampleData(track, encodedData, buffer);
-            Log.d(TAG, "writeSampleData: Muxer write completed successfully");
+            // 拷贝后立即返回，调用者随后即可释放编码器输出缓冲区
+            MuxerWriter writer = mMuxerWriter;
+            if (writer == null || !writer.enqueue(track, encodedData, buffer.presentationTimeUs, buffer.flags)) {
+                Log.w(TAG, "writeSampleData: DROPPED - muxer writer closed or failed, track=" + track);
+                (track == mVideoTrackIndex ? mVideoDroppedCounter : mAudioDroppedCounter).increment();
+                return;
+            }
+            if (VERBOSE) Log.d(TAG, "writeSampleData: Queued to muxer writer");
 
             // ===== 统计Muxer写入数据 =====
             if (track == mVideoTrackIndex) {
+                if (mVideoFramesWritten == 0 && markStartPhase("first_video")) {
+                    Log.i(TAG, "★★★ START LATENCY ★★★ tap->first video frame " + mStartTrace.elapsedMs("first_video")
+                            + "ms, warm=" + mWarmStart
+                            + ", " + mStartTrace);
+                }
                 mVideoFramesWritten++;
                 mVideoBytesWritten += buffer.size;
+                mVideoFramesCounter.increment();
+                mVideoBytesCounter.add(buffer.size);
+                mRateControlVideoBytes.addAndGet(buffer.size);
+                mFrameRateStats.onFrame(buffer.presentationTimeUs, buffer.size,
+                        (buffer.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0);
             } else if (track == mAudioTrackIndex) {
+                if (mAudioFramesWritten == 0) {
+                    markStartPhase("first_audio");
+                }
                 mAudioFramesWritten++;
                 mAudioBytesWritten += buffer.size;
-                Log.i(TAG, "writeSampleData: AUDIO frame written! Total audio frames=" + mAudioFramesWritten +
+                mAudioFramesCounter.increment();
+                mAudioBytesCounter.add(buffer.size);
+                if (VERBOSE) Log.i(TAG, "writeSampleData: AUDIO frame written! Total audio frames=" + mAudioFramesWritten +
                         ", total bytes=" + mAudioBytesWritten);
             }
 
@@ -456,7 +901,7 @@ public class ScreenRecorder {
         } else {
             Log.w(TAG, "writeSampleData: SKIPPED - encodedData is null");
         }
-        Log.d(TAG, "writeSampleData: ★★★ EXIT ★★★");
+        if (VERBOSE) Log.d(TAG, "writeSampleData: ★★★ EXIT ★★★");
     }
 
     /**
@@ -468,10 +913,11 @@ public class ScreenRecorder {
             long elapsedTimeMs = currentTimeMs - mLastMuxerLogTimeMs;
             if (elapsedTimeMs == 0) elapsedTimeMs = 1;
 
-            double videoFps = (mVideoFramesWritten * 1000.0) / elapsedTimeMs;
-            double audioFps = (mAudioFramesWritten * 1000.0) / elapsedTimeMs;
-            double videoKbps = (mVideoBytesWritten * 8.0 / 1024.0) * 1000.0 / elapsedTimeMs;
-            double audioKbps = (mAudioBytesWritten * 8.0 / 1024.0) * 1000.0 / elapsedTimeMs;
+            // 最近几个完整秒的速率（不再用累计值除以日志间隔）
+            final MetricsRegistry.Snapshot metrics = mMetrics.snapshot();
+            double videoFps = metrics.getRate(MetricsRegistry.VIDEO_FRAMES);
+            double videoKbps = metrics.getRate(MetricsRegistry.VIDEO_BYTES) * 8.0 / 1024.0;
+            double audioKbps = metrics.getRate(MetricsRegistry.AUDIO_BYTES) * 8.0 / 1024.0;
 
             Log.i(TAG, "╔═══════════════════════════════════════════════════════════════");
             Log.i(TAG, "║ 📹 MUXER STATS (last " + (elapsedTimeMs / 1000) + "s)");
@@ -480,63 +926,93 @@ public class ScreenRecorder {
             Log.i(TAG, "║   Frames:       " + mVideoFramesWritten + " (" + String.format("%.2f", videoFps) + " fps)");
             Log.i(TAG, "║   Bytes:        " + mVideoBytesWritten + " (" + (mVideoBytesWritten / 1024) + " KB)");
             Log.i(TAG, "║   Bitrate:      " + String.format("%.2f", videoKbps) + " Kbps");
+            Log.i(TAG, "║   Frame rate:   " + (mStaticContentMode ? "VFR " : "") + mFrameRateStats);
             Log.i(TAG, "║ AUDIO:");
             Log.i(TAG, "║   Frames:       " + mAudioFramesWritten);
             Log.i(TAG, "║   Bytes:        " + mAudioBytesWritten + " (" + (mAudioBytesWritten / 1024) + " KB)");
             Log.i(TAG, "║   Bitrate:      " + String.format("%.2f", audioKbps) + " Kbps");
+            Log.i(TAG, "║ WRITER:");
+            Log.i(TAG, "║   " + getMuxerWriterStats());
+            Log.i(TAG, "║ CODEC LATENCY:");
+            Log.i(TAG, "║   video[" + metrics.getHistogram(MetricsRegistry.VIDEO_CODEC_LATENCY) + "]");
+            Log.i(TAG, "║   audio[" + metrics.getHistogram(MetricsRegistry.AUDIO_CODEC_LATENCY) + "]");
+            Log.i(TAG, "║   dropped video=" + metrics.getCount(MetricsRegistry.VIDEO_DROPPED)
+                    + ", audio=" + metrics.getCount(MetricsRegistry.AUDIO_DROPPED));
+            Log.i(TAG, "║ TIMELINE:");
+            Log.i(TAG, "║   " + mTimeline);
+            if (mBitrateController != null) {
+                Log.i(TAG, "║ BITRATE:");
+                Log.i(TAG, "║   " + mBitrateController);
+            }
+            Log.i(TAG, "║ CPU:");
+            Log.i(TAG, "║   " + mPauseCpuMeter);
             Log.i(TAG, "╚═══════════════════════════════════════════════════════════════");
 
             mLastMuxerLogTimeMs = currentTimeMs;
         }
     }
 
+    /**
+     * 记录编码器输入到输出的延迟，rawPtsUs 为改写前的编码器时间戳：
+     * 视频是 Surface 的采集时刻（单调时钟），墙钟/采样时钟模式下的音频是时间线上的采集时刻
+     */
+    private void recordCodecLatency(int track, long rawPtsUs) {
+        long latencyNs;
+        if (track == mVideoTrackIndex) {
+            latencyNs = System.nanoTime() - rawPtsUs * 1000L;
+            if (latencyNs >= 0 && latencyNs < MAX_CODEC_LATENCY_NS) {
+                mVideoCodecLatency.record(latencyNs);
+            }
+        } else if (track == mAudioTrackIndex && (mUseWallClockPTS || mUseSampleClockPTS) && mTimeline.isStarted()) {
+            latencyNs = (mTimeline.elapsedUs() - rawPtsUs) * 1000L;
+            if (latencyNs >= 0 && latencyNs < MAX_CODEC_LATENCY_NS) {
+                mAudioCodecLatency.record(latencyNs);
+            }
+        }
+    }
+
     private long mVideoPtsOffset, mAudioPtsOffset;
-    private long mLastVideoPtsUs = 0;
 
     private void resetAudioPts(MediaCodec.BufferInfo buffer) {
         if (VERBOSE) {
             Log.d(TAG, "resetAudioPts, mAudioPtsOffset == "+mAudioPtsOffset);
         }
+        if ((mUseWallClockPTS || mUseSampleClockPTS) && mTimeline.isStarted()) {
+            // MicRecorder 已按同一条时间线打时间戳，不再以第一个音频样本为起点，否则音频整体提前了音频启动耗时
+            return;
+        }
 //        synchronized (mSync){
             if (mAudioPtsOffset == 0) {
                 mAudioPtsOffset = buffer.presentationTimeUs;
                 buffer.presentationTimeUs = 0;
             } else {
-                long pauseDelayUs = mAudioPtsOffset*1000 + pauseDelayTime.get();
-                long resetUs= buffer.presentationTimeUs - pauseDelayUs/1000;
-                if (resetUs < prevOutputPTSUs.get()){
-                    Log.e(TAG, "resetAudioPts, timestamp went backwards, adding 1000us offset");
-                    buffer.presentationTimeUs =  prevOutputPTSUs.get()+1000;
-                }else {
-                    buffer.presentationTimeUs = resetUs;
-                }
+                // 暂停时长由 mTimeline 扣除，这里只换算到录制起点
+                buffer.presentationTimeUs -= mAudioPtsOffset;
                 if (VERBOSE) {
-                    Log.d(TAG, "resetAudioPts, pauseDelayUs == "+pauseDelayTime.get() +" PTS=="+buffer.presentationTimeUs);
+                    Log.d(TAG, "resetAudioPts, PTS=="+buffer.presentationTimeUs);
                 }
             }
-            prevOutputPTSUs.set(buffer.presentationTimeUs);
 //            mSync.notifyAll();
 //        }
     }
 
     private void resetVideoPts(MediaCodec.BufferInfo buffer) {
-        // ===== 墙钟模式：保持相对时间间隔，只调整起点 =====
-        if (mUseWallClockPTS && mRecordingStartTimeNanos > 0) {
-            long elapsedNanos = android.os.SystemClock.elapsedRealtimeNanos() - mRecordingStartTimeNanos;
-            long pauseDelayUs = pauseDelayTime.get() / 1000;
-            long ptsUs = Math.max(0, (elapsedNanos / 1000) - pauseDelayUs);
-
-            if (ptsUs < mLastVideoPtsUs) {
-                Log.w(TAG, "resetVideoPts [WALL_CLOCK]: timestamp went backwards, clamping");
-                ptsUs = mLastVideoPtsUs + 1000;
+        // ===== 采集时间模式（静态画面）：帧间隔保持真实的画面变化时刻，空闲期间没有帧 =====
+        if (mStaticContentMode && mTimeline.isStarted()) {
+            buffer.presentationTimeUs = mTimeline.fromMonotonicUs(buffer.presentationTimeUs);
+            if (VERBOSE) {
+                Log.d(TAG, "resetVideoPts [CAPTURE_TIME]: PTS==" + buffer.presentationTimeUs);
             }
-            mLastVideoPtsUs = ptsUs;
-            buffer.presentationTimeUs = ptsUs;
+            return;
+        }
+
+        // ===== 墙钟模式：保持相对时间间隔，只调整起点 =====
+        if (mUseWallClockPTS && mTimeline.isStarted()) {
+            // 单调时钟不会回退，写入顺序和轨道内单调性由 muxer 写线程的交织器保证
+            buffer.presentationTimeUs = mTimeline.elapsedUs();
 
             if (VERBOSE) {
-                Log.d(TAG, String.format(java.util.Locale.US,
-                    "resetVideoPts [WALL_CLOCK]: elapsedNs=%d, pauseDelayUs=%d, finalPts=%d",
-                    elapsedNanos, pauseDelayUs, buffer.presentationTimeUs));
+                Log.d(TAG, "resetVideoPts [WALL_CLOCK]: finalPts=" + buffer.presentationTimeUs);
             }
             return;
         }
@@ -549,10 +1025,9 @@ public class ScreenRecorder {
             mVideoPtsOffset = buffer.presentationTimeUs;
             buffer.presentationTimeUs = 0;
         } else {
-            long pauseDelayUs = mVideoPtsOffset + pauseDelayTime.get()/1000;
-            buffer.presentationTimeUs -= pauseDelayUs;
+            buffer.presentationTimeUs -= mVideoPtsOffset;
             if (VERBOSE) {
-                Log.d(TAG, "resetVideoPts, pauseDelayUs == "+pauseDelayTime.get() +" PTS=="+buffer.presentationTimeUs);
+                Log.d(TAG, "resetVideoPts, PTS=="+buffer.presentationTimeUs);
             }
         }
     }
@@ -575,6 +1050,11 @@ public class ScreenRecorder {
         mAudioOutputFormat = newFormat;
     }
 
+    private void setPendingInfo(MediaCodec.BufferInfo info, int slot) {
+        info.set(mPendingOutputs.offset(slot), mPendingOutputs.size(slot),
+                mPendingOutputs.presentationTimeUs(slot), mPendingOutputs.flags(slot));
+    }
+
     private void startMuxerIfReady() {
         Log.d(TAG, "startMuxerIfReady: mMuxerStarted=" + mMuxerStarted +
                 ", mVideoOutputFormat=" + (mVideoOutputFormat != null ? "SET" : "NULL") +
@@ -641,6 +1121,14 @@ public class ScreenRecorder {
                 mAudioTrackIndex = INVALID_INDEX;
             }
 
+            // ===== 音视频按时间戳交织写入（只有一路时不需要）=====
+            if (mAudioTrackIndex != INVALID_INDEX && mInterleaveMaxSkewUs > 0) {
+                mMuxerWriter.setInterleaving(Math.max(mVideoTrackIndex, mAudioTrackIndex) + 1,
+                        mInterleaveMaxSkewUs, mInterleaveReorderWindowUs, mAudioTrackIndex);
+                Log.i(TAG, "Muxer interleaving enabled: maxSkewUs=" + mInterleaveMaxSkewUs
+                        + ", reorderWindowUs=" + mInterleaveReorderWindowUs);
+            }
+
             // ===== 启动Muxer =====
             mMuxer.start();
             mMuxerStarted = true;
@@ -672,28 +1160,109 @@ public class ScreenRecorder {
         }
 
         // ===== 处理pending buffers =====
-        if (mPendingVideoEncoderBufferIndices.isEmpty() && mPendingAudioEncoderBufferIndices.isEmpty()) {
+        if (mPendingOutputs.isEmpty()) {
             return;
         }
-        if (VERBOSE) {
-            Log.i(TAG, "Mux pending video output buffers...");
-        }
-        MediaCodec.BufferInfo info;
-        while ((info = mPendingVideoEncoderBufferInfos.poll()) != null) {
-            int index = mPendingVideoEncoderBufferIndices.poll();
-            muxVideo(index, info);
+        Log.i(TAG, "Mux pending output buffers: video=" + mPendingOutputs.count(PENDING_VIDEO)
+                + ", audio=" + mPendingOutputs.count(PENDING_AUDIO) + ", capacity=" + mPendingOutputs.capacity());
+        // muxer 已启动，mux 过程中不会再向队列添加，复用同一个 BufferInfo
+        final MediaCodec.BufferInfo info = mPendingInfo;
+        int slot;
+        while ((slot = mPendingOutputs.poll(PENDING_VIDEO)) >= 0) {
+            setPendingInfo(info, slot);
+            muxVideo(mPendingOutputs.index(slot), info);
         }
         if (mAudioEncoder != null) {
-            while ((info = mPendingAudioEncoderBufferInfos.poll()) != null) {
-                int index = mPendingAudioEncoderBufferIndices.poll();
-                muxAudio(index, info);
+            while ((slot = mPendingOutputs.poll(PENDING_AUDIO)) >= 0) {
+                setPendingInfo(info, slot);
+                muxAudio(mPendingOutputs.index(slot), info);
             }
         }
         if (VERBOSE) {
-            Log.i(TAG, "Mux pending video output buffers done.");
+            Log.i(TAG, "Mux pending output buffers done.");
         }
     }
 
+    /**
+     * 按配置创建单个文件的封装后端
+     */
+    private SampleSink createSampleSink(String path) throws IOException {
+        if (mUseFragmentedMp4) {
+            return new Mp4WriterSink(new FragmentedMp4Writer(
+                    new FileOutputStream(path).getChannel(), mFragmentDurationUs));
+        } else if (mUseCrashSafeMp4) {
+            return new Mp4WriterSink(new JournaledMp4Writer(new File(path), mCrashSafeSyncIntervalUs));
+        }
+        return new MediaMuxerSink(path);
+    }
+
+    /**
+     * 创建并启动 muxer 写入线程，写入失败时按错误停止录制
+     */
+    private void startMuxerWriter(final SampleSink muxer) {
+        mMuxerWriter = new MuxerWriter((track, data, presentationTimeUs, flags) -> {
+            mMuxerWriterInfo.set(data.position(), data.remaining(), presentationTimeUs, flags);
+            muxer.writeSampleData(track, data, mMuxerWriterInfo);
+        }, mMuxerQueueSamples, mMuxerQueueBytes, e -> {
+            Log.e(TAG, "Muxer writer encountered an error! ", e);
+            Handler handler = mHandler;
+            if (handler != null) {
+                Message.obtain(handler, MSG_ERROR, e).sendToTarget();
+            }
+        });
+        final MuxerWriter writer = mMuxerWriter;
+        mMetrics.register(MetricsRegistry.MUXER_WRITE_TIME, writer.getWriteTime());
+        mMetrics.register(MetricsRegistry.MUXER_QUEUE_DELAY, writer.getQueueDelay());
+        mMetrics.register(MetricsRegistry.MUXER_ENQUEUE_STALL, writer.getEnqueueStall());
+        mMetrics.gauge(MetricsRegistry.MUXER_QUEUE_DEPTH, writer::getQueuedSamples);
+        mMetrics.gauge(MetricsRegistry.MUXER_QUEUE_BYTES, writer::getQueuedBytes);
+        mMetrics.gauge(MetricsRegistry.MUXER_DROPPED, writer::getDroppedSamples);
+        mMuxerWriter.start();
+        Log.i(TAG, "startMuxerWriter: maxSamples=" + mMuxerQueueSamples + ", maxBytes=" + mMuxerQueueBytes);
+    }
+
+    /**
+     * 等待已排队的样本写完后停止写入线程，必须在封装后端 stop 之前调用
+     */
+    private void closeMuxerWriter() {
+        if (mMuxerWriter == null) {
+            return;
+        }
+        if (!mMuxerWriter.close(MUXER_WRITER_CLOSE_TIMEOUT_MS)) {
+            Log.w(TAG, "closeMuxerWriter: queue not drained in " + MUXER_WRITER_CLOSE_TIMEOUT_MS
+                    + "ms, remaining samples dropped, terminated=" + mMuxerWriter.isTerminated());
+        }
+        Log.i(TAG, "closeMuxerWriter: " + mMuxerWriter);
+        mMuxerWriter = null;
+    }
+
+    /**
+     * 预热时在录制线程中创建并启动视频编码器，失败时不影响录制，点击录制时重新创建
+     */
+    private void warmUpEncoders() {
+        if (mVideoEncoderPrepared || mForceQuit.get() || mVideoEncoder == null) {
+            return;
+        }
+        long startNs = SystemClock.elapsedRealtimeNanos();
+        try {
+            prepareVideoEncoder();
+            mVideoEncoderPrepared = true;
+            Log.i(TAG, "★★★ WARM UP ★★★ video encoder ready in "
+                    + (SystemClock.elapsedRealtimeNanos() - startNs) / 1_000_000 + "ms, " + mVideoEncoder.getConfig());
+        } catch (Exception e) {
+            Log.w(TAG, "warmUp: prepare video encoder failed, will retry on start", e);
+        }
+    }
+
+    /**
+     * 记录启动阶段的完成时刻
+     * @return false 表示该阶段已记录过或没有开始追踪
+     */
+    private boolean markStartPhase(String phase) {
+        RecordingStartTrace trace = mStartTrace;
+        return trace != null && trace.mark(phase, SystemClock.elapsedRealtimeNanos());
+    }
+
     // @WorkerThread
     private void prepareVideoEncoder() throws IOException {
         VideoEncoder.Callback callback = new VideoEncoder.Callback() {
@@ -739,15 +1308,15 @@ public class ScreenRecorder {
 
             @Override
             public void onOutputBufferAvailable(BaseEncoder codec, int index, MediaCodec.BufferInfo info) {
-                Log.i(TAG, "★★★ AudioEncoder.Callback.onOutputBufferAvailable CALLED ★★★ index=" + index +
+                if (VERBOSE) Log.i(TAG, "★★★ AudioEncoder.Callback.onOutputBufferAvailable CALLED ★★★ index=" + index +
                         ", size=" + info.size + ", pts=" + info.presentationTimeUs + ", flags=" + info.flags);
                 if (VERBOSE) {
                     Log.i(TAG, "[" + Thread.currentThread().getId() + "] AudioEncoder output buffer available: index=" + index);
                 }
                 try {
-                    Log.d(TAG, "AudioEncoder.Callback: Calling muxAudio...");
+                    if (VERBOSE) Log.d(TAG, "AudioEncoder.Callback: Calling muxAudio...");
                     muxAudio(index, info);
-                    Log.d(TAG, "AudioEncoder.Callback: muxAudio returned");
+                    if (VERBOSE) Log.d(TAG, "AudioEncoder.Callback: muxAudio returned");
                 } catch (Exception e) {
                     Log.e(TAG, "Muxer encountered an error! ", e);
                     Message.obtain(mHandler, MSG_ERROR, e).sendToTarget();
@@ -786,6 +1355,7 @@ public class ScreenRecorder {
 
         };
         micRecorder.setCallback(callback);
+        micRecorder.setUseAsyncCodec(mUseAsyncAudioCodec);
         micRecorder.prepare();
     }
 
@@ -796,10 +1366,19 @@ public class ScreenRecorder {
 
     private void stopEncoders() {
         mIsRunning.set(false);
-        mPendingAudioEncoderBufferInfos.clear();
-        mPendingAudioEncoderBufferIndices.clear();
-        mPendingVideoEncoderBufferInfos.clear();
-        mPendingVideoEncoderBufferIndices.clear();
+        if (mHandler != null) {
+            mHandler.removeMessages(MSG_RATE_CONTROL);
+        }
+        if (mBitrateController != null) {
+            Log.i(TAG, "stopEncoders: ★★★ BITRATE ★★★ " + mBitrateController);
+        }
+        Log.i(TAG, "stopEncoders: ★★★ FRAME RATE ★★★ staticContent=" + mStaticContentMode + ", " + mFrameRateStats);
+        mPauseCpuMeter.stop(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+        Log.i(TAG, "stopEncoders: ★★★ CPU ★★★ " + mPauseCpuMeter);
+        if (mStartTrace != null) {
+            Log.i(TAG, "stopEncoders: ★★★ START LATENCY ★★★ " + mStartTrace);
+        }
+        mPendingOutputs.clear();
         // maybe called on an error has been occurred
         try {
             if (mVideoEncoder != null) {
@@ -820,7 +1399,10 @@ public class ScreenRecorder {
 
     private void release() {
         if (mVirtualDisplay != null) {
-            mVirtualDisplay.setSurface(null);
+            if (mSurfaceAttached) {
+                mVirtualDisplay.setSurface(null);
+                mSurfaceAttached = false;
+            }
             mVirtualDisplay = null;
         }
 
@@ -841,13 +1423,15 @@ public class ScreenRecorder {
             mAudioEncoder = null;
         }
 
+        closeMuxerWriter();
         if (mMuxer != null) {
             try {
                 mMuxer.stop();
-                mMuxer.release();
             } catch (Exception e) {
                 // ignored
             }
+            // stop 失败（例如没有写入任何样本）时也要释放文件
+            mMuxer.release();
             mMuxer = null;
         }
         mHandler = null;
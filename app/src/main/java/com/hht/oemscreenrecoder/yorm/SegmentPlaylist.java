@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 分段录制的播放列表（扩展 M3U）：按顺序列出各分段文件名和时长，
+ * 新分段开始时先以未知时长（-1）加入，分段结束后更新为实际时长。
+ * 每次更新都写临时文件后重命名，崩溃时列表仍然完整。纯 Java 实现
+ */
+public final class SegmentPlaylist {
+    static final String EXTENSION = ".m3u";
+    private static final String MP4_EXTENSION = ".mp4";
+
+    private final File mFile;
+    private final List<String> mNames = new ArrayList<>();
+    private final List<Double> mDurations = new ArrayList<>();
+
+    SegmentPlaylist(File file) {
+        mFile = file;
+    }
+
+    File getFile() {
+        return mFile;
+    }
+
+    int size() {
+        return mNames.size();
+    }
+
+    /** 加入一个正在录制的分段 */
+    void begin(String fileName) throws IOException {
+        mNames.add(fileName);
+        mDurations.add(-1.0);
+        write();
+    }
+
+    /** 更新最后一个分段的时长 */
+    void finish(double durationSeconds) throws IOException {
+        if (mNames.isEmpty()) {
+            throw new IllegalStateException("no segment");
+        }
+        mDurations.set(mDurations.size() - 1, durationSeconds);
+        write();
+    }
+
+    private void write() throws IOException {
+        final File tmp = new File(mFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write("#EXTM3U\n");
+            for (int i = 0; i < mNames.size(); i++) {
+                final double duration = mDurations.get(i);
+                writer.write("#EXTINF:" + (duration < 0 ? "-1" : String.format(Locale.US, "%.3f", duration))
+                        + "," + mNames.get(i) + "\n");
+                writer.write(mNames.get(i) + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(mFile)) {
+            tmp.delete();
+            throw new IOException("failed to rename " + tmp + " to " + mFile);
+        }
+    }
+
+    /** 分段录制的播放列表路径：basePath 去掉 .mp4 后加 .m3u */
+    static String playlistPath(String basePath) {
+        return stripMp4(basePath) + EXTENSION;
+    }
+
+    /** 第 index 个分段（从 1 开始）的路径：basePath 去掉 .mp4 后加 _001.mp4 */
+    static String segmentPath(String basePath, int index) {
+        return stripMp4(basePath) + String.format(Locale.US, "_%03d", index) + MP4_EXTENSION;
+    }
+
+    private static String stripMp4(String path) {
+        return path.endsWith(MP4_EXTENSION) ? path.substring(0, path.length() - MP4_EXTENSION.length()) : path;
+    }
+
+    /**
+     * 一次录制包含的所有文件：播放列表返回其中的分段（存在的）和列表本身，其他文件返回自身
+     */
+    public static List<File> filesOf(File recording) {
+        final List<File> files = new ArrayList<>();
+        if (!recording.getName().endsWith(EXTENSION)) {
+            files.add(recording);
+            return files;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(recording), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                final File segment = new File(recording.getParentFile(), line);
+                if (segment.exists()) {
+                    files.add(segment);
+                }
+            }
+        } catch (IOException e) {
+            // 列表不可读时只返回列表本身
+        }
+        files.add(recording);
+        return files;
+    }
+}
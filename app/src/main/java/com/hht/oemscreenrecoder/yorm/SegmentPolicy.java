@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+/**
+ * 分段录制的切分规则：当前分段时长或大小达到上限后，在下一个同步样本（视频关键帧）处切换到新文件，
+ * 保证每个分段都从关键帧开始、可以单独播放。
+ *
+ * 第一个分段保持原始 PTS，之后的分段以切分处的关键帧 PTS 为零点；
+ * 切分后才到达、PTS 早于零点的音频样本按零点写入。纯 Java 实现，非线程安全
+ */
+final class SegmentPolicy {
+    private final long mMaxDurationUs;
+    private final long mMaxBytes;
+
+    private long mSegmentStartUs = -1;
+    private long mSegmentEndUs = -1;
+    private long mSegmentBytes = 0;
+    private long mBaseUs = 0;
+
+    /**
+     * @param maxDurationUs 分段时长上限，<=0 表示不按时长切分
+     * @param maxBytes 分段大小上限，<=0 表示不按大小切分
+     */
+    SegmentPolicy(long maxDurationUs, long maxBytes) {
+        if (maxDurationUs <= 0 && maxBytes <= 0) {
+            throw new IllegalArgumentException("no segment limit");
+        }
+        mMaxDurationUs = maxDurationUs;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 写入样本前调用
+     *
+     * @param syncSample 样本可以作为新分段的第一个样本（视频关键帧）
+     * @return true 表示应先切换到新分段再写入该样本
+     */
+    boolean shouldRotate(long presentationTimeUs, boolean syncSample) {
+        if (!syncSample || mSegmentStartUs < 0) {
+            return false;
+        }
+        return (mMaxDurationUs > 0 && presentationTimeUs - mSegmentStartUs >= mMaxDurationUs)
+                || (mMaxBytes > 0 && mSegmentBytes >= mMaxBytes);
+    }
+
+    /**
+     * 开始新分段
+     *
+     * @param presentationTimeUs 新分段第一个样本的 PTS，第一个分段传 -1（不平移时间戳）
+     */
+    void startSegment(long presentationTimeUs) {
+        mSegmentStartUs = -1;
+        mSegmentEndUs = -1;
+        mSegmentBytes = 0;
+        mBaseUs = presentationTimeUs < 0 ? 0 : presentationTimeUs;
+    }
+
+    /** 写入分段文件时使用的 PTS */
+    long rebase(long presentationTimeUs) {
+        return Math.max(0, presentationTimeUs - mBaseUs);
+    }
+
+    void onSampleWritten(long presentationTimeUs, int size) {
+        if (mSegmentStartUs < 0) {
+            mSegmentStartUs = presentationTimeUs;
+        }
+        mSegmentEndUs = Math.max(mSegmentEndUs, presentationTimeUs);
+        mSegmentBytes += size;
+    }
+
+    /** 当前分段第一个到最后一个样本的 PTS 跨度 */
+    long getSegmentDurationUs() {
+        return mSegmentStartUs < 0 ? 0 : mSegmentEndUs - mSegmentStartUs;
+    }
+
+    long getSegmentBytes() {
+        return mSegmentBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentPolicy{maxDurationUs=" + mMaxDurationUs
+                + ", maxBytes=" + mMaxBytes
+                + ", segmentDurationUs=" + getSegmentDurationUs()
+                + ", segmentBytes=" + mSegmentBytes + '}';
+    }
+}
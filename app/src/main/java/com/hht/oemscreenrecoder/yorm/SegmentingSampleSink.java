@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分段录制后端：按 {@link SegmentPolicy} 在视频关键帧处切换到新的分段文件（basePath_001.mp4、_002.mp4 ...），
+ * 每个分段由 {@link Factory} 创建的后端独立封装、可以单独播放，并记录到 {@link SegmentPlaylist}。
+ *
+ * 切换在 muxer 写入线程中完成，编码器和 VirtualDisplay 不受影响
+ */
+final class SegmentingSampleSink implements SampleSink {
+
+    /** 创建单个分段的封装后端 */
+    interface Factory {
+        SampleSink create(String path) throws IOException;
+    }
+
+    private final String mBasePath;
+    private final Factory mFactory;
+    private final SegmentPolicy mPolicy;
+    private final SegmentPlaylist mPlaylist;
+    private final List<MediaFormat> mFormats = new ArrayList<>();
+    private final MediaCodec.BufferInfo mInfo = new MediaCodec.BufferInfo();
+
+    private SampleSink mCurrent;
+    private int mSegmentIndex = 0;
+    private int mVideoTrack = -1;
+    private boolean mStarted = false;
+
+    /**
+     * 创建第一个分段
+     *
+     * @param basePath 录制文件路径，分段和播放列表以它为前缀
+     */
+    SegmentingSampleSink(String basePath, long maxDurationUs, long maxBytes, Factory factory) throws IOException {
+        mBasePath = basePath;
+        mFactory = factory;
+        mPolicy = new SegmentPolicy(maxDurationUs, maxBytes);
+        mPlaylist = new SegmentPlaylist(new File(SegmentPlaylist.playlistPath(basePath)));
+        mCurrent = openSegment();
+        mPolicy.startSegment(-1);
+    }
+
+    @Override
+    public int addTrack(MediaFormat format) {
+        final int track = mCurrent.addTrack(format);
+        if (track != mFormats.size()) {
+            throw new IllegalStateException("unexpected track index " + track);
+        }
+        mFormats.add(format);
+        final String mime = format.getString(MediaFormat.KEY_MIME);
+        if (mVideoTrack < 0 && mime != null && mime.startsWith("video/")) {
+            mVideoTrack = track;
+        }
+        return track;
+    }
+
+    @Override
+    public void start() {
+        mCurrent.start();
+        mStarted = true;
+    }
+
+    @Override
+    public void writeSampleData(int track, ByteBuffer data, MediaCodec.BufferInfo info) {
+        // 有视频时只在视频关键帧处切分，纯音频时任意样本都可以
+        final boolean clockTrack = mVideoTrack < 0 || track == mVideoTrack;
+        final boolean sync = mVideoTrack < 0 || (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+        if (clockTrack && info.size > 0 && mPolicy.shouldRotate(info.presentationTimeUs, sync)) {
+            rotate(info.presentationTimeUs);
+        }
+        mInfo.set(info.offset, info.size, mPolicy.rebase(info.presentationTimeUs), info.flags);
+        mCurrent.writeSampleData(track, data, mInfo);
+        if (info.size > 0) {
+            mPolicy.onSampleWritten(info.presentationTimeUs, info.size);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (mStarted) {
+            mStarted = false;
+            mCurrent.stop();
+            finishPlaylistEntry();
+        }
+    }
+
+    @Override
+    public void release() {
+        mCurrent.release();
+    }
+
+    /** 播放列表路径 */
+    String getPlaylistPath() {
+        return mPlaylist.getFile().getPath();
+    }
+
+    int getSegmentCount() {
+        return mSegmentIndex;
+    }
+
+    private void rotate(long presentationTimeUs) {
+        try {
+            mCurrent.stop();
+            finishPlaylistEntry();
+        } finally {
+            mCurrent.release();
+        }
+        final SampleSink next;
+        try {
+            next = openSegment();
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to open segment " + (mSegmentIndex + 1), e);
+        }
+        mCurrent = next;
+        for (MediaFormat format : mFormats) {
+            next.addTrack(format);
+        }
+        next.start();
+        mPolicy.startSegment(presentationTimeUs);
+    }
+
+    private SampleSink openSegment() throws IOException {
+        final String path = SegmentPlaylist.segmentPath(mBasePath, mSegmentIndex + 1);
+        final SampleSink sink = mFactory.create(path);
+        mSegmentIndex++;
+        mPlaylist.begin(new File(path).getName());
+        return sink;
+    }
+
+    private void finishPlaylistEntry() {
+        try {
+            mPlaylist.finish(mPolicy.getSegmentDurationUs() / 1_000_000.0);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to update playlist", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentingSampleSink{segments=" + mSegmentIndex
+                + ", current=" + mCurrent
+                + ", " + mPolicy + '}';
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hht.oemscreenrecoder.yorm;
+
+/**
+ * 轨道描述（编码器输出格式中封装需要的部分），不依赖 MediaFormat，供纯 Java 的封装器使用
+ */
+final class TrackSpec {
+    static final String MIME_AVC = "video/avc";
+    static final String MIME_HEVC = "video/hevc";
+    static final String MIME_AV1 = "video/av01";
+    static final String MIME_AAC = "audio/mp4a-latm";
+
+    final String mimeType;
+    final int width;
+    final int height;
+    final int sampleRate;
+    final int channelCount;
+    final int bitrate;
+    /** codec specific data（csd-0, csd-1 ...），视频为带起始码的参数集，AAC 为 AudioSpecificConfig */
+    final byte[][] csd;
+
+    private TrackSpec(String mimeType, int width, int height, int sampleRate, int channelCount,
+                      int bitrate, byte[][] csd) {
+        this.mimeType = mimeType;
+        this.width = width;
+        this.height = height;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.bitrate = bitrate;
+        this.csd = csd;
+    }
+
+    static TrackSpec video(String mimeType, int width, int height, int bitrate, byte[]... csd) {
+        return new TrackSpec(mimeType, width, height, 0, 0, bitrate, csd);
+    }
+
+    static TrackSpec audio(String mimeType, int sampleRate, int channelCount, int bitrate, byte[]... csd) {
+        return new TrackSpec(mimeType, 0, 0, sampleRate, channelCount, bitrate, csd);
+    }
+
+    boolean isVideo() {
+        return mimeType.startsWith("video/");
+    }
+
+    /** H.264 / H.265 编码器输出 Annex-B 起始码格式，封装时需要转为长度前缀 */
+    boolean isAnnexB() {
+        return MIME_AVC.equals(mimeType) || MIME_HEVC.equals(mimeType);
+    }
+
+    @Override
+    public String toString() {
+        return "TrackSpec{" +
+                "mimeType='" + mimeType + '\'' +
+                (isVideo() ? ", width=" + width + ", height=" + height
+                        : ", sampleRate=" + sampleRate + ", channelCount=" + channelCount) +
+                ", bitrate=" + bitrate +
+                ", csd=" + csd.length +
+                '}';
+    }
+}
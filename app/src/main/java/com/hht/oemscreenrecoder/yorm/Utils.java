@@ -17,38 +17,332 @@
 package com.hht.oemscreenrecoder.yorm;
 
 import static com.hht.oemscreenrecoder.yorm.ScreenRecorder.AUDIO_AAC;
+import static com.hht.oemscreenrecoder.yorm.ScreenRecorder.VIDEO_AV1;
 import static com.hht.oemscreenrecoder.yorm.ScreenRecorder.VIDEO_AVC;
+import static com.hht.oemscreenrecoder.yorm.ScreenRecorder.VIDEO_HEVC;
 
 import android.media.MediaCodecInfo;
 import android.media.MediaCodecList;
-import android.os.AsyncTask;
+import android.os.Build;
 import android.util.Log;
 import android.util.Range;
 import android.util.SparseArray;
 import android.widget.ArrayAdapter;
 import android.widget.SpinnerAdapter;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 public class Utils {
 
-    public static MediaCodecInfo[] mAvcCodecInfos; // avc codecs
-    public static MediaCodecInfo[] mAacCodecInfos; // aac codecs
+    public static volatile MediaCodecInfo[] mAvcCodecInfos; // avc codecs
+    public static volatile MediaCodecInfo[] mAacCodecInfos; // aac codecs
+
+    // ===== 编码器能力缓存 =====
+    // 枚举 MediaCodecList 并逐个查询能力需要几十到几百毫秒，开机后第一次录制时常常还没枚举完。
+    // 能力按 Build.FINGERPRINT 缓存在文件里，init 时同步读取（只有几 KB），随后由 CodecDiscovery
+    // 在后台并行重新查询 AVC/HEVC/AV1/AAC，全部完成后内容有变化才重写缓存
+    private static final String[] DISCOVERY_TYPES = {VIDEO_AVC, VIDEO_HEVC, VIDEO_AV1, AUDIO_AAC};
+    /** 没有缓存时等待后台查询的最长时间 */
+    public static final long DISCOVERY_TIMEOUT_MS = 3000;
+    private static final Map<String, EncoderInfo[]> sEncoders = new ConcurrentHashMap<>();
+    private static final CodecDiscovery sDiscovery = new CodecDiscovery(Utils::lookupEncoders, DISCOVERY_TYPES.length);
+    private static boolean sRefreshStarted;
+    private static volatile File sCacheDir;
+
+    // ===== 编码器选择 =====
+    // 能力探测尺寸：设置里可选的三种录制分辨率，以及依次尝试的帧率
+    private static final int[] PROBE_SIZES = {1280, 720, 1920, 1080, 3840, 2160};
+    private static final int[] PROBE_FRAME_RATES = {60, 30, 24, 15};
+    private static final int BENCHMARK_FRAMES = 90;
+    /** 编码器实测帧率，键为 CodecRanker.benchmarkKey */
+    private static final Map<String, Float> sBenchmarkResults = new ConcurrentHashMap<>();
 
-    public static void init() {
-        Log.i("liyiwei","--------------init Encoders---------------");
-        findEncodersByTypeAsync(VIDEO_AVC, infos -> {
-            logCodecInfos(infos, VIDEO_AVC);
+    /**
+     * @param cacheDir 能力缓存所在目录，建议使用不参与备份的 noBackupFilesDir
+     */
+    public static synchronized void init(File cacheDir) {
+        final File cacheFile = new File(cacheDir, CodecCapabilityCache.FILE_NAME);
+        if (sCacheDir == null) {
+            sCacheDir = cacheDir;
+            sBenchmarkResults.putAll(EncoderBenchmark.loadResults(
+                    new File(cacheDir, EncoderBenchmark.FILE_NAME), Build.FINGERPRINT));
+        }
+        if (sEncoders.isEmpty()) {
+            long start = System.nanoTime();
+            List<EncoderInfo> cached = CodecCapabilityCache.read(cacheFile, Build.FINGERPRINT);
+            long costUs = (System.nanoTime() - start) / 1000;
+            if (cached != null) {
+                for (String type : DISCOVERY_TYPES) {
+                    sEncoders.put(type, CodecCapabilityCache.filter(cached, type));
+                }
+                Log.i(TAG, "Encoder capabilities loaded from cache in " + costUs + "us: " + cached.size() + " encoders");
+            } else {
+                Log.i(TAG, "No valid encoder capability cache, checked in " + costUs + "us");
+            }
+        }
+        if (!sRefreshStarted) {
+            sRefreshStarted = true;
+            final long start = System.nanoTime();
+            sDiscovery.discoverAll(DISCOVERY_TYPES).thenRun(() -> writeCapabilityCache(cacheFile, start));
+        }
+    }
+
+    /**
+     * CodecDiscovery 的查询实现，运行在查询线程上
+     */
+    private static EncoderInfo[] lookupEncoders(String mimeType) {
+        long start = System.nanoTime();
+        MediaCodecInfo[] infos = findEncodersByType(mimeType);
+        EncoderInfo[] encoders = toEncoderInfos(infos, mimeType);
+        if (VIDEO_AVC.equals(mimeType)) {
             mAvcCodecInfos = infos;
-        });
-        findEncodersByTypeAsync(AUDIO_AAC, infos -> {
-            logCodecInfos(infos, AUDIO_AAC);
+        } else if (AUDIO_AAC.equals(mimeType)) {
             mAacCodecInfos = infos;
-        });
+        }
+        sEncoders.put(mimeType, encoders);
+        Log.i(TAG, "Found " + encoders.length + " " + mimeType + " encoders in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms on " + Thread.currentThread().getName());
+        return encoders;
+    }
+
+    private static void writeCapabilityCache(File cacheFile, long startNanos) {
+        List<EncoderInfo> all = new ArrayList<>();
+        for (String type : DISCOVERY_TYPES) {
+            if (!sDiscovery.isDone(type)) {
+                Log.w(TAG, "Discovery of " + type + " failed, encoder capability cache not written");
+                return;
+            }
+            all.addAll(Arrays.asList(sEncoders.get(type)));
+        }
+        try {
+            boolean written = CodecCapabilityCache.write(cacheFile, Build.FINGERPRINT, all);
+            Log.i(TAG, "Encoder discovery finished in " + (System.nanoTime() - startNanos) / 1_000_000
+                    + "ms, cache " + (written ? "updated" : "unchanged"));
+            if (written) {
+                // 只在能力变化（首次运行或系统升级）时打印完整列表
+                for (String type : DISCOVERY_TYPES) {
+                    logEncoderInfos(sEncoders.get(type));
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write encoder capability cache " + cacheFile, e);
+        }
+    }
+
+    /**
+     * 获取指定类型的编码器能力：有缓存或查询已完成时直接返回，否则等待后台查询，
+     * 最多 {@link #DISCOVERY_TIMEOUT_MS}
+     *
+     * @return 超时或查询失败时返回空数组
+     */
+    public static EncoderInfo[] getEncoders(String mimeType) {
+        EncoderInfo[] encoders = sEncoders.get(mimeType);
+        if (encoders != null) {
+            return encoders;
+        }
+        long start = System.nanoTime();
+        try {
+            encoders = sDiscovery.await(mimeType, DISCOVERY_TIMEOUT_MS);
+            Log.i(TAG, "Waited " + (System.nanoTime() - start) / 1_000_000 + "ms for " + mimeType + " encoders");
+            return encoders;
+        } catch (TimeoutException e) {
+            Log.e(TAG, "Timed out waiting " + DISCOVERY_TIMEOUT_MS + "ms for " + mimeType + " encoders");
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to find " + mimeType + " encoders", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new EncoderInfo[0];
+    }
+
+    public static EncoderInfo[] getAvcEncoders() {
+        return getEncoders(VIDEO_AVC);
+    }
+
+    public static EncoderInfo[] getAacEncoders() {
+        return getEncoders(AUDIO_AAC);
+    }
+
+    /**
+     * 按 CodecRanker 的规则为给定编码格式、尺寸和帧率选择编码器。AV1 软件编码太慢，只考虑硬件编码器
+     *
+     * @return 没有可用编码器时返回 null
+     */
+    public static EncoderInfo selectVideoEncoder(String mimeType, int width, int height, int frameRate) {
+        EncoderInfo[] encoders = getEncoders(mimeType);
+        if (VIDEO_AV1.equals(mimeType)) {
+            List<EncoderInfo> hardware = new ArrayList<>();
+            for (EncoderInfo encoder : encoders) {
+                if (encoder.hardwareAccelerated) {
+                    hardware.add(encoder);
+                }
+            }
+            encoders = hardware.toArray(new EncoderInfo[0]);
+        }
+        CodecRanker ranker = new CodecRanker(width, height, frameRate);
+        for (EncoderInfo encoder : encoders) {
+            Float fps = sBenchmarkResults.get(CodecRanker.benchmarkKey(encoder.name, width, height));
+            if (fps != null) {
+                ranker.setMeasuredFps(encoder.name, fps);
+            }
+        }
+        for (CodecRanker.Candidate candidate : ranker.rank(encoders)) {
+            Log.i(TAG, "Encoder rank " + mimeType + " " + width + "x" + height + "@" + frameRate + ": " + candidate);
+        }
+        return ranker.select(encoders);
+    }
+
+    /**
+     * 在查询线程上对还没有实测结果的视频编码器做吞吐量基准测试，结果持久化，
+     * 供之后的 {@link #selectVideoEncoder} 使用。需在 {@link #init(File)} 之后调用
+     */
+    public static void benchmarkVideoEncodersAsync(final String mimeType, final int width, final int height) {
+        sDiscovery.discover(mimeType).thenAcceptAsync(encoders -> {
+            boolean changed = false;
+            for (EncoderInfo encoder : encoders) {
+                String key = CodecRanker.benchmarkKey(encoder.name, width, height);
+                if (sBenchmarkResults.containsKey(key) || !encoder.isSizeSupported(width, height)) {
+                    continue;
+                }
+                try {
+                    float fps = EncoderBenchmark.measure(encoder.name, mimeType, width, height, BENCHMARK_FRAMES);
+                    sBenchmarkResults.put(key, fps);
+                    changed = true;
+                    Log.i(TAG, "Benchmark " + key + ": " + fps + " fps");
+                } catch (IOException | RuntimeException e) {
+                    // 记为 0，不再重复测试
+                    sBenchmarkResults.put(key, 0f);
+                    changed = true;
+                    Log.w(TAG, "Benchmark " + key + " failed", e);
+                }
+            }
+            File dir = sCacheDir;
+            if (changed && dir != null) {
+                try {
+                    EncoderBenchmark.saveResults(new File(dir, EncoderBenchmark.FILE_NAME),
+                            Build.FINGERPRINT, sBenchmarkResults);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to save encoder benchmark results", e);
+                }
+            }
+        }, sDiscovery.executor());
+    }
+
+    private static void logEncoderInfos(EncoderInfo[] encoders) {
+        for (EncoderInfo encoder : encoders) {
+            Log.i("@@@", encoder.toString());
+        }
+    }
+
+    /**
+     * @return 厂商性能点覆盖的最高探测帧率，都不覆盖时为 0
+     */
+    private static int coveredFrameRate(List<MediaCodecInfo.VideoCapabilities.PerformancePoint> points,
+                                        int width, int height) {
+        for (int fps : PROBE_FRAME_RATES) {
+            MediaCodecInfo.VideoCapabilities.PerformancePoint wanted =
+                    new MediaCodecInfo.VideoCapabilities.PerformancePoint(width, height, fps);
+            for (MediaCodecInfo.VideoCapabilities.PerformancePoint point : points) {
+                if (point.covers(wanted)) {
+                    return fps;
+                }
+            }
+        }
+        return 0;
+    }
+
+    static EncoderInfo[] toEncoderInfos(MediaCodecInfo[] infos, String mimeType) {
+        List<EncoderInfo> encoders = new ArrayList<>(infos.length);
+        for (MediaCodecInfo info : infos) {
+            try {
+                encoders.add(toEncoderInfo(info, mimeType));
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to query capabilities of " + info.getName(), e);
+            }
+        }
+        return encoders.toArray(new EncoderInfo[0]);
+    }
+
+    static EncoderInfo toEncoderInfo(MediaCodecInfo info, String mimeType) {
+        MediaCodecInfo.CodecCapabilities caps = info.getCapabilitiesForType(mimeType);
+        EncoderInfo encoder = new EncoderInfo();
+        encoder.name = info.getName();
+        encoder.mimeType = mimeType;
+        encoder.hardwareAccelerated = info.isHardwareAccelerated();
+        encoder.softwareOnly = info.isSoftwareOnly();
+        MediaCodecInfo.CodecProfileLevel[] profileLevels = caps.profileLevels;
+        if (profileLevels != null) {
+            encoder.profiles = new int[profileLevels.length];
+            encoder.levels = new int[profileLevels.length];
+            for (int i = 0; i < profileLevels.length; i++) {
+                encoder.profiles[i] = profileLevels[i].profile;
+                encoder.levels[i] = profileLevels[i].level;
+            }
+        }
+        if (caps.colorFormats != null) {
+            encoder.colorFormats = caps.colorFormats.clone();
+        }
+        MediaCodecInfo.VideoCapabilities videoCaps = caps.getVideoCapabilities();
+        if (videoCaps != null) {
+            encoder.bitrateMin = videoCaps.getBitrateRange().getLower();
+            encoder.bitrateMax = videoCaps.getBitrateRange().getUpper();
+            encoder.widthMin = videoCaps.getSupportedWidths().getLower();
+            encoder.widthMax = videoCaps.getSupportedWidths().getUpper();
+            encoder.heightMin = videoCaps.getSupportedHeights().getLower();
+            encoder.heightMax = videoCaps.getSupportedHeights().getUpper();
+            encoder.widthAlignment = videoCaps.getWidthAlignment();
+            encoder.heightAlignment = videoCaps.getHeightAlignment();
+            encoder.frameRateMin = videoCaps.getSupportedFrameRates().getLower();
+            encoder.frameRateMax = videoCaps.getSupportedFrameRates().getUpper();
+            int probes = PROBE_SIZES.length / 2;
+            List<MediaCodecInfo.VideoCapabilities.PerformancePoint> points = videoCaps.getSupportedPerformancePoints();
+            boolean hasPoints = points != null && !points.isEmpty();
+            encoder.probeSizes = PROBE_SIZES.clone();
+            encoder.maxFrameRates = new int[probes];
+            encoder.performanceFrameRates = hasPoints ? new int[probes] : new int[0];
+            for (int i = 0; i < probes; i++) {
+                int width = PROBE_SIZES[i * 2];
+                int height = PROBE_SIZES[i * 2 + 1];
+                if (!videoCaps.isSizeSupported(width, height)) {
+                    continue;
+                }
+                for (int fps : PROBE_FRAME_RATES) {
+                    if (videoCaps.areSizeAndRateSupported(width, height, fps)) {
+                        encoder.maxFrameRates[i] = fps;
+                        break;
+                    }
+                }
+                if (hasPoints) {
+                    encoder.performanceFrameRates[i] = coveredFrameRate(points, width, height);
+                }
+            }
+        }
+        MediaCodecInfo.AudioCapabilities audioCaps = caps.getAudioCapabilities();
+        if (audioCaps != null) {
+            encoder.bitrateMin = audioCaps.getBitrateRange().getLower();
+            encoder.bitrateMax = audioCaps.getBitrateRange().getUpper();
+            int[] sampleRates = audioCaps.getSupportedSampleRates();
+            if (sampleRates != null) {
+                encoder.sampleRates = sampleRates.clone();
+            }
+            Range<Integer>[] ranges = audioCaps.getSupportedSampleRateRanges();
+            if (ranges != null && ranges.length > 0) {
+                encoder.sampleRateMin = ranges[0].getLower();
+                encoder.sampleRateMax = ranges[ranges.length - 1].getUpper();
+            }
+            encoder.maxChannels = audioCaps.getMaxInputChannelCount();
+        }
+        return encoder;
     }
 
     public static MediaCodecInfo getAudioCodecInfo(String codecName) {
@@ -70,8 +364,16 @@ public class Utils {
 
     public static Integer resetAudioBitrateAdapter(MediaCodecInfo.CodecCapabilities capabilities,int pos) {
         Range<Integer> bitrateRange = capabilities.getAudioCapabilities().getBitrateRange();
-        int lower = Math.max(bitrateRange.getLower() / 1000, 80);
-        int upper = bitrateRange.getUpper() / 1000;
+        return audioBitrateKbps(bitrateRange.getLower(), bitrateRange.getUpper(), pos);
+    }
+
+    public static Integer resetAudioBitrateAdapter(EncoderInfo encoder, int pos) {
+        return audioBitrateKbps(encoder.bitrateMin, encoder.bitrateMax, pos);
+    }
+
+    private static Integer audioBitrateKbps(int bitrateMin, int bitrateMax, int pos) {
+        int lower = Math.max(bitrateMin / 1000, 80);
+        int upper = bitrateMax / 1000;
         List<Integer> rates = new ArrayList<>();
         for (int rate = lower; rate < upper; rate += lower) {
             rates.add(rate);
@@ -199,32 +501,6 @@ public class Utils {
         }
     }
 
-    public interface Callback {
-        void onResult(MediaCodecInfo[] infos);
-    }
-
-    public static final class EncoderFinder extends AsyncTask<String, Void, MediaCodecInfo[]> {
-        private Callback func;
-
-        EncoderFinder(Callback func) {
-            this.func = func;
-        }
-
-        @Override
-        protected MediaCodecInfo[] doInBackground(String... mimeTypes) {
-            return findEncodersByType(mimeTypes[0]);
-        }
-
-        @Override
-        protected void onPostExecute(MediaCodecInfo[] mediaCodecInfos) {
-            func.onResult(mediaCodecInfos);
-        }
-    }
-
-    public static void findEncodersByTypeAsync(String mimeType, Callback callback) {
-        new EncoderFinder(callback).execute(mimeType);
-    }
-
     public static final String TAG = "Utils";
     /**
      * Find an encoder supported specified MIME type
@@ -241,8 +517,6 @@ public class Utils {
             }
             try {
                 MediaCodecInfo.CodecCapabilities cap = info.getCapabilitiesForType(mimeType);
-                Log.d(TAG, "findEncodersByType: "+info.getName());
-                Log.d(TAG, "getSupportedTypes: "+ Arrays.toString(info.getSupportedTypes()));
                 if (cap == null) continue;
             } catch (IllegalArgumentException e) {
                 // unsupported
@@ -258,6 +532,10 @@ public class Utils {
     public static SparseArray<String> sAACProfiles = new SparseArray<>();
     public static SparseArray<String> sAVCProfiles = new SparseArray<>();
     public static SparseArray<String> sAVCLevels = new SparseArray<>();
+    public static SparseArray<String> sHEVCProfiles = new SparseArray<>();
+    public static SparseArray<String> sHEVCLevels = new SparseArray<>();
+    public static SparseArray<String> sAV1Profiles = new SparseArray<>();
+    public static SparseArray<String> sAV1Levels = new SparseArray<>();
 
 
     public static String resetAvcProfileLevelAdapter(MediaCodecInfo.CodecCapabilities capabilities,int pos) {
@@ -276,29 +554,86 @@ public class Utils {
         return profileLevels[pos];
     }
 
+    /**
+     * 为编码器选择 profile/level：AVC 保持原来的规则（列表中第一项）；
+     * HEVC 选 Main、AV1 选 Main 8bit 中最高的 level（Surface 输入是 8 位 4:2:0），没有时返回 null 交给编码器决定
+     */
+    public static MediaCodecInfo.CodecProfileLevel selectProfileLevel(EncoderInfo encoder) {
+        if (VIDEO_AVC.equals(encoder.mimeType)) {
+            return toProfileLevel(resetAvcProfileLevelAdapter(encoder, 1));
+        }
+        int profile;
+        if (VIDEO_HEVC.equals(encoder.mimeType)) {
+            profile = MediaCodecInfo.CodecProfileLevel.HEVCProfileMain;
+        } else if (VIDEO_AV1.equals(encoder.mimeType)) {
+            profile = MediaCodecInfo.CodecProfileLevel.AV1ProfileMain8;
+        } else {
+            return null;
+        }
+        MediaCodecInfo.CodecProfileLevel best = null;
+        for (int i = 0; i < encoder.profiles.length; i++) {
+            if (encoder.profiles[i] == profile && (best == null || encoder.levels[i] > best.level)) {
+                best = new MediaCodecInfo.CodecProfileLevel();
+                best.profile = profile;
+                best.level = encoder.levels[i];
+            }
+        }
+        return best;
+    }
+
+    public static String resetAvcProfileLevelAdapter(EncoderInfo encoder, int pos) {
+        if (encoder.profiles.length == 0 || pos == 0) {
+            return "Default";
+        }
+        MediaCodecInfo.CodecProfileLevel profileLevel = new MediaCodecInfo.CodecProfileLevel();
+        profileLevel.profile = encoder.profiles[pos - 1];
+        profileLevel.level = encoder.levels[pos - 1];
+        return Utils.avcProfileLevelToString(profileLevel);
+    }
+
     /**
      * @param avcProfileLevel AVC CodecProfileLevel
      */
    public static String avcProfileLevelToString(MediaCodecInfo.CodecProfileLevel avcProfileLevel) {
+        return profileLevelToString(VIDEO_AVC, avcProfileLevel);
+    }
+
+    /**
+     * @param mimeType AVC / HEVC / AV1，其他类型按数字输出
+     */
+    public static String profileLevelToString(String mimeType, MediaCodecInfo.CodecProfileLevel profileLevel) {
         if (sAVCProfiles.size() == 0 || sAVCLevels.size() == 0) {
             initProfileLevels();
         }
-        String profile = null, level = null;
-        int i = sAVCProfiles.indexOfKey(avcProfileLevel.profile);
-        if (i >= 0) {
-            profile = sAVCProfiles.valueAt(i);
+        SparseArray<String> profiles = null, levels = null;
+        if (VIDEO_AVC.equals(mimeType)) {
+            profiles = sAVCProfiles;
+            levels = sAVCLevels;
+        } else if (VIDEO_HEVC.equals(mimeType)) {
+            profiles = sHEVCProfiles;
+            levels = sHEVCLevels;
+        } else if (VIDEO_AV1.equals(mimeType)) {
+            profiles = sAV1Profiles;
+            levels = sAV1Levels;
         }
+        String profile = null, level = null;
+        if (profiles != null) {
+            int i = profiles.indexOfKey(profileLevel.profile);
+            if (i >= 0) {
+                profile = profiles.valueAt(i);
+            }
 
-        i = sAVCLevels.indexOfKey(avcProfileLevel.level);
-        if (i >= 0) {
-            level = sAVCLevels.valueAt(i);
+            i = levels.indexOfKey(profileLevel.level);
+            if (i >= 0) {
+                level = levels.valueAt(i);
+            }
         }
 
         if (profile == null) {
-            profile = String.valueOf(avcProfileLevel.profile);
+            profile = String.valueOf(profileLevel.profile);
         }
         if (level == null) {
-            level = String.valueOf(avcProfileLevel.level);
+            level = String.valueOf(profileLevel.level);
         }
         return profile + '-' + level;
     }
@@ -329,6 +664,10 @@ public class Utils {
         MediaCodecInfo.CodecProfileLevel res = new MediaCodecInfo.CodecProfileLevel();
         if (profile.startsWith("AVC")) {
             res.profile = keyOfValue(sAVCProfiles, profile);
+        } else if (profile.startsWith("HEVC")) {
+            res.profile = keyOfValue(sHEVCProfiles, profile);
+        } else if (profile.startsWith("AV1")) {
+            res.profile = keyOfValue(sAV1Profiles, profile);
         } else if (profile.startsWith("AAC")) {
             res.profile = keyOfValue(sAACProfiles, profile);
         } else {
@@ -342,6 +681,10 @@ public class Utils {
         if (level != null) {
             if (level.startsWith("AVC")) {
                 res.level = keyOfValue(sAVCLevels, level);
+            } else if (level.startsWith("HEVC")) {
+                res.level = keyOfValue(sHEVCLevels, level);
+            } else if (level.startsWith("AV1")) {
+                res.level = keyOfValue(sAV1Levels, level);
             } else {
                 try {
                     res.level = Integer.parseInt(level);
@@ -377,6 +720,14 @@ public class Utils {
                 target = sAVCProfiles;
             } else if (name.startsWith("AVCLevel")) {
                 target = sAVCLevels;
+            } else if (name.startsWith("HEVCProfile")) {
+                target = sHEVCProfiles;
+            } else if (name.startsWith("HEVCMainTierLevel") || name.startsWith("HEVCHighTierLevel")) {
+                target = sHEVCLevels;
+            } else if (name.startsWith("AV1Profile")) {
+                target = sAV1Profiles;
+            } else if (name.startsWith("AV1Level")) {
+                target = sAV1Levels;
             } else if (name.startsWith("AACObject")) {
                 target = sAACProfiles;
             } else {
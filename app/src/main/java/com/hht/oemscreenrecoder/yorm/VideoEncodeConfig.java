@@ -19,6 +19,30 @@ public class VideoEncodeConfig {
     public String codecName;
     public String mimeType;
     public MediaCodecInfo.CodecProfileLevel codecProfileLevel;
+    /**
+     * 静态画面模式：编码器输入帧率不超过 framerate，画面不变时不再产生新帧，
+     * 只在空闲超过 repeatFrameAfterUs 后重复上一帧（<=0 表示不重复）；视频 PTS 使用采集时间（可变帧率）
+     */
+    public boolean staticContentMode;
+    public long repeatFrameAfterUs;
+    /**
+     * HEVC / AV1 编码器 configure 失败时改用的备选配置（通常是 AVC），null 表示不回退
+     */
+    public VideoEncodeConfig fallback;
+
+    /**
+     * 相同画质下 HEVC 约需 AVC 码率的 60%，AV1 约 50%
+     *
+     * @param avcBitrate 按 AVC 计算的码率
+     */
+    public static int scaleBitrate(String mimeType, int avcBitrate) {
+        if (ScreenRecorder.VIDEO_HEVC.equals(mimeType)) {
+            return (int) (avcBitrate * 0.6f);
+        } else if (ScreenRecorder.VIDEO_AV1.equals(mimeType)) {
+            return (int) (avcBitrate * 0.5f);
+        }
+        return avcBitrate;
+    }
 
     /**
      * @param codecName         selected codec name, maybe null
@@ -49,8 +73,12 @@ public class VideoEncodeConfig {
             format.setInteger(MediaFormat.KEY_PROFILE, codecProfileLevel.profile);
             format.setInteger("level", codecProfileLevel.level);
         }
-        // maybe useful
-        // format.setInteger(MediaFormat.KEY_REPEAT_PREVIOUS_FRAME_AFTER, 10_000_000);
+        if (staticContentMode) {
+            format.setFloat(MediaFormat.KEY_MAX_FPS_TO_ENCODER, framerate);
+            if (repeatFrameAfterUs > 0) {
+                format.setLong(MediaFormat.KEY_REPEAT_PREVIOUS_FRAME_AFTER, repeatFrameAfterUs);
+            }
+        }
         return format;
     }
 
@@ -62,9 +90,12 @@ public class VideoEncodeConfig {
                 ", bitrate=" + bitrate +
                 ", framerate=" + framerate +
                 ", iframeInterval=" + iframeInterval +
+                ", staticContentMode=" + staticContentMode +
+                ", repeatFrameAfterUs=" + repeatFrameAfterUs +
                 ", codecName='" + codecName + '\'' +
                 ", mimeType='" + mimeType + '\'' +
-                ", codecProfileLevel=" + (codecProfileLevel == null ? "" : Utils.avcProfileLevelToString(codecProfileLevel)) +
+                ", codecProfileLevel=" + (codecProfileLevel == null ? "" : Utils.profileLevelToString(mimeType, codecProfileLevel)) +
+                ", fallback=" + (fallback == null ? "" : fallback.mimeType) +
                 '}';
     }
 }
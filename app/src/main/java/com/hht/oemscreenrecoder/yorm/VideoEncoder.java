@@ -18,9 +18,11 @@ package com.hht.oemscreenrecoder.yorm;
 
 import android.media.MediaCodec;
 import android.media.MediaFormat;
+import android.os.Bundle;
 import android.util.Log;
 import android.view.Surface;
 
+import java.io.IOException;
 import java.util.Objects;
 
 /**
@@ -38,6 +40,40 @@ class VideoEncoder extends BaseEncoder {
         this.mConfig = config;
     }
 
+    /**
+     * 创建、配置或启动编码器失败且设置了 {@link VideoEncodeConfig#fallback} 时，改用备选配置（AVC）重新 prepare；
+     * 调用线程不对或重复 prepare 这类调用错误不回退
+     */
+    @Override
+    public void prepare() throws IOException {
+        checkCanPrepare();
+        try {
+            super.prepare();
+        } catch (IllegalArgumentException | IllegalStateException | IOException e) {
+            VideoEncodeConfig fallback = mConfig.fallback;
+            if (fallback == null) {
+                throw e;
+            }
+            Log.w("@@", "VideoEncoder " + mConfig.mimeType + " (" + mConfig.codecName
+                    + ") failed, falling back to " + fallback.mimeType + " (" + fallback.codecName + ")", e);
+            // 失败的编码器已被释放，但 configure 后创建的输入 Surface 不会随之释放
+            if (mSurface != null) {
+                mSurface.release();
+                mSurface = null;
+            }
+            mConfig = fallback;
+            setCodecName(fallback.codecName);
+            super.prepare();
+        }
+    }
+
+    /**
+     * @return 实际使用的配置，回退后为备选配置
+     */
+    VideoEncodeConfig getConfig() {
+        return mConfig;
+    }
+
     @Override
     protected void onEncoderConfigured(MediaCodec encoder) {
         mSurface = encoder.createInputSurface();
@@ -56,6 +92,39 @@ class VideoEncoder extends BaseEncoder {
         return Objects.requireNonNull(mSurface, "doesn't prepare()");
     }
 
+    /**
+     * 请求编码器尽快输出一个同步帧（IDR），用于恢复录制后立即得到可独立解码的画面
+     *
+     * @throws NullPointerException if prepare() not call
+     */
+    void requestSyncFrame() {
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+        getEncoder().setParameters(params);
+    }
+
+    /**
+     * 挂起/恢复编码：挂起期间编码器丢弃输入 Surface 上的新帧，不再编码输出
+     *
+     * @throws NullPointerException if prepare() not call
+     */
+    void setSuspended(boolean suspended) {
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_SUSPEND, suspended ? 1 : 0);
+        getEncoder().setParameters(params);
+    }
+
+    /**
+     * 运行时调整目标码率（不需要重新配置编码器）
+     *
+     * @throws NullPointerException if prepare() not call
+     */
+    void setBitrate(int bitrate) {
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, bitrate);
+        getEncoder().setParameters(params);
+    }
+
     @Override
     public void release() {
         if (mSurface != null) {
@@ -0,0 +1,202 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AudioMixer 单元测试：两路对齐、不截断、迟到补静音、超时静音输出、采样率/声道不一致
+ */
+public class AudioMixerTest {
+
+    private static final int RATE = 48000;
+    private static final long T0 = 1_000_000_000L;
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void unevenReads_areNotTruncated() {
+        AudioMixer mixer = new AudioMixer(RATE, 2, 100);
+        int a = mixer.addSource(RATE, 2);
+        int b = mixer.addSource(RATE, 2);
+        short[][] dst = {new short[8192], new short[8192]};
+
+        mixer.write(a, filled(1024 * 2, 1), 1024 * 2, 0);
+        mixer.write(b, filled(800 * 2, 2), 800 * 2, 0);
+        assertEquals(800, mixer.pull(dst, 4096));
+        // 多出来的 224 帧留在缓冲中，等另一路补齐后输出
+        assertEquals(224, mixer.available(a));
+        assertEquals(0, mixer.pull(dst, 4096));
+
+        mixer.write(b, filled(224 * 2, 2), 224 * 2, 0);
+        assertEquals(224, mixer.pull(dst, 4096));
+        assertEquals(1, dst[a][0]);
+        assertEquals(2, dst[b][224 * 2 - 1]);
+        assertEquals(0, mixer.getUnderrunFrames(a));
+        assertEquals(0, mixer.getUnderrunFrames(b));
+    }
+
+    @Test
+    public void lateStartingSource_isPaddedToCaptureTime() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 200);
+        int a = mixer.addSource(RATE, 1);
+        int b = mixer.addSource(RATE, 1);
+        short[][] dst = {new short[RATE], new short[RATE]};
+
+        // A 从 T0 开始采集，B 晚 50ms 才开始
+        mixer.write(a, filled(4800, 1), 4800, T0 + 100 * MS);
+        mixer.write(b, filled(2400, 2), 2400, T0 + 100 * MS);
+
+        int n = mixer.pull(dst, RATE);
+        assertEquals(4800, n);
+        assertEquals(2400, mixer.getPaddedFrames(b));
+        for (int i = 0; i < 2400; i++) {
+            assertEquals(0, dst[b][i]);
+        }
+        for (int i = 2400; i < 4800; i++) {
+            assertEquals(2, dst[b][i]);
+        }
+    }
+
+    @Test
+    public void dataCapturedBeforeOrigin_isDropped() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 200);
+        int a = mixer.addSource(RATE, 1);
+        int b = mixer.addSource(RATE, 1);
+        short[][] dst = {new short[RATE], new short[RATE]};
+
+        mixer.write(a, filled(4800, 1), 4800, T0 + 100 * MS);
+        // B 的第一块比 A 早 20ms 开始采集
+        mixer.write(b, filled(4800, 2), 4800, T0 + 80 * MS);
+        assertEquals(960, mixer.getDroppedFrames(b));
+        assertEquals(3840, mixer.pull(dst, RATE));
+    }
+
+    @Test
+    public void laggingSource_isSilencedAfterMaxLatencyAndRealignsAfterGap() {
+        final int chunk = 480;   // 10ms
+        final int maxLatencyMs = 100;
+        AudioMixer mixer = new AudioMixer(RATE, 1, maxLatencyMs);
+        int a = mixer.addSource(RATE, 1);
+        int b = mixer.addSource(RATE, 1);
+        short[][] dst = {new short[RATE], new short[RATE]};
+        short[] outA = new short[RATE * 2];
+        short[] outB = new short[RATE * 2];
+        int produced = 0;
+
+        for (int k = 0; k < 100; k++) {
+            long readDone = T0 + (k + 1) * 10 * MS;
+            mixer.write(a, filled(chunk, 1), chunk, readDone);
+            // B 在第 20~49 块丢失了 300ms 数据（AudioRecord 溢出）
+            if (k < 20 || k >= 50) {
+                mixer.write(b, filled(chunk, 2), chunk, readDone);
+            }
+            int n = mixer.pull(dst, RATE);
+            // 落后的一路最多等待 maxLatency
+            assertTrue(mixer.available(a) <= RATE * maxLatencyMs / 1000);
+            System.arraycopy(dst[a], 0, outA, produced, n);
+            System.arraycopy(dst[b], 0, outB, produced, n);
+            produced += n;
+        }
+
+        assertEquals(100 * chunk, produced);
+        assertEquals(1, mixer.getGapCount(b));
+        assertTrue(mixer.getUnderrunFrames(b) > 0);
+        for (int i = 0; i < produced; i++) {
+            assertEquals(1, outA[i]);
+            boolean inGap = i >= 20 * chunk && i < 50 * chunk;
+            assertEquals("frame " + i, inGap ? 0 : 2, outB[i]);
+        }
+    }
+
+    @Test
+    public void mismatchedRatesAndChannels_areConvertedToOutputFormat() {
+        AudioMixer mixer = new AudioMixer(RATE, 2, 200);
+        int internal = mixer.addSource(RATE, 2);
+        int mic = mixer.addSource(44100, 1);
+        short[][] dst = {new short[RATE * 2], new short[RATE * 2]};
+
+        int produced = 0;
+        short[] stereo = filled(480 * 2, 1000);
+        short[] mono = filled(441, 3000);
+        for (int k = 0; k < 100; k++) {
+            long readDone = T0 + (k + 1) * 10 * MS;
+            mixer.write(internal, stereo, stereo.length, readDone);
+            mixer.write(mic, mono, mono.length, readDone);
+            produced += mixer.pull(dst, RATE);
+        }
+        // 1 秒输入：同格式的一路全部输出或留在缓冲中，重采样的一路只差滤波器延迟
+        assertEquals(RATE, produced + mixer.available(internal));
+        assertEquals(RATE, produced, 100);
+        assertEquals(0, mixer.getGapCount(mic));
+        // 单声道被复制到两个声道，直流电平保持
+        assertEquals(3000, dst[mic][20], 5);
+        assertEquals(3000, dst[mic][21], 5);
+    }
+
+    @Test
+    public void queueLatency_measuresAgeOfPulledData() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 200);
+        int a = mixer.addSource(RATE, 1);
+        short[][] dst = {new short[RATE]};
+
+        // 40ms 的一块在 T0+40ms 读完，10ms 后只取走前 20ms：最后一帧采集于 T0+20ms
+        mixer.write(a, filled(1920, 1), 1920, T0 + 40 * MS);
+        assertEquals(960, mixer.pull(dst, 960, T0 + 50 * MS));
+        LatencyHistogram latency = mixer.getQueueLatency(a);
+        assertEquals(1, latency.getCount());
+        assertEquals(30 * MS, latency.getMax());
+    }
+
+    @Test
+    public void concurrentWriters_stayAlignedWithSingleReader() throws Exception {
+        final int chunk = 480;
+        final int chunks = 2000;
+        final AudioMixer mixer = new AudioMixer(RATE, 1, 500);
+        final int a = mixer.addSource(RATE, 1);
+        final int b = mixer.addSource(RATE, 1);
+
+        Thread[] writers = new Thread[2];
+        for (int w = 0; w < 2; w++) {
+            final int source = w == 0 ? a : b;
+            writers[w] = new Thread(() -> {
+                short[] buf = new short[chunk];
+                for (int k = 0; k < chunks; k++) {
+                    // 每块内容是块序号，便于检查两路是否对齐
+                    Arrays.fill(buf, (short) k);
+                    // 模拟实时采集：读线程落后太多时等待，避免 FIFO 溢出
+                    while (mixer.available(source) > RATE / 4) {
+                        Thread.yield();
+                    }
+                    mixer.write(source, buf, chunk, T0 + (k + 1) * 10 * MS);
+                }
+            });
+            writers[w].start();
+        }
+
+        short[][] dst = {new short[RATE], new short[RATE]};
+        int produced = 0;
+        while (produced < chunk * chunks) {
+            int n = mixer.pull(dst, 4096);
+            for (int i = 0; i < n; i++) {
+                assertEquals(dst[a][i], dst[b][i]);
+                assertEquals((produced + i) / chunk, dst[a][i]);
+            }
+            produced += n;
+            if (n == 0) Thread.yield();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(0, mixer.getUnderrunFrames(a));
+        assertEquals(0, mixer.getUnderrunFrames(b));
+    }
+
+    private static short[] filled(int len, int value) {
+        short[] buf = new short[len];
+        Arrays.fill(buf, (short) value);
+        return buf;
+    }
+}
@@ -0,0 +1,285 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AudioSampleClock 单元测试：用模拟的采集时间线验证抖动、卡顿、丢数据、暂停下的 PTS 行为
+ */
+public class AudioSampleClockTest {
+
+    private static final int RATE = 48000;
+    private static final int CHUNK = 1024;
+    private static final double CHUNK_NS = CHUNK * 1e9 / RATE;
+    private static final long ORIGIN = 5_000_000_000L;
+
+    /**
+     * 模拟一个 AudioRecord：真实采样时钟可以相对标称采样率有偏差（ppm）
+     */
+    private static final class SimulatedSource {
+        final double actualFrameNs;
+        final long startNs;
+        long framesCaptured = 0;
+
+        SimulatedSource(long startNs, double driftPpm) {
+            this.startNs = startNs;
+            this.actualFrameNs = 1e9 / RATE / (1 + driftPpm / 1e6);
+        }
+
+        /** 第 frame 帧的真实采集时间 */
+        long captureTimeNs(long frame) {
+            return startNs + (long) (frame * actualFrameNs);
+        }
+    }
+
+    @Test
+    public void steadyReads_producePerfectlySpacedPts() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        SimulatedSource src = new SimulatedSource(ORIGIN, 0);
+        long prev = -1;
+        for (int i = 0; i < 1000; i++) {
+            long readDone = src.captureTimeNs(src.framesCaptured + CHUNK);
+            long pts = clock.nextPtsUs(CHUNK, readDone);
+            src.framesCaptured += CHUNK;
+            if (prev >= 0) {
+                assertEquals((long) (CHUNK_NS / 1000), pts - prev, 1);
+            }
+            prev = pts;
+        }
+        assertEquals(0, clock.getResyncCount());
+    }
+
+    @Test
+    public void jitteryReads_stayMonotonicAndTrackCaptureTime() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        SimulatedSource src = new SimulatedSource(ORIGIN, 0);
+        Random random = new Random(42);
+
+        long prev = Long.MIN_VALUE;
+        double maxErrorUsAfterSettle = 0;
+        for (int i = 0; i < 20_000; i++) {
+            // 读取完成时刻在采集完成之后 0~15ms 随机抖动
+            long readDone = src.captureTimeNs(src.framesCaptured + CHUNK) + random.nextInt(15_000_000);
+            long pts = clock.nextPtsUs(CHUNK, readDone);
+            long truthUs = (src.captureTimeNs(src.framesCaptured) - ORIGIN) / 1000;
+            src.framesCaptured += CHUNK;
+
+            assertStep(prev, pts);
+            prev = pts;
+            if (i > 500) {
+                maxErrorUsAfterSettle = Math.max(maxErrorUsAfterSettle, Math.abs(pts - truthUs));
+            }
+        }
+        // 抖动本身最多 15ms，输出 PTS 与真实采集时间的偏差应远小于抖动
+        // （没有锚点时参考时间平均偏晚约 7.5ms，属于固定延迟，不会随时间累积）
+        assertTrue("maxError=" + maxErrorUsAfterSettle, maxErrorUsAfterSettle < 12_000);
+        assertEquals(0, clock.getResyncCount());
+    }
+
+    @Test
+    public void anchoredClock_followsSampleRateDriftWithoutAccumulatingError() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        // 真实采样时钟偏快 300ppm：一小时累计约 1 秒偏差
+        SimulatedSource src = new SimulatedSource(ORIGIN, 300);
+        Random random = new Random(1);
+
+        long prev = Long.MIN_VALUE;
+        double maxErrorUs = 0;
+        int chunksPerHour = (int) (3600L * RATE / CHUNK);
+        for (int i = 0; i < chunksPerHour; i++) {
+            if (i % 47 == 0) {
+                // 约每秒刷新一次锚点（AudioRecord.getTimestamp 给出的是已采集到的位置）
+                long position = src.framesCaptured + random.nextInt(CHUNK);
+                clock.updateAnchor(position, src.captureTimeNs(position));
+            }
+            long readDone = src.captureTimeNs(src.framesCaptured + CHUNK) + random.nextInt(10_000_000);
+            long pts = clock.nextPtsUs(CHUNK, readDone);
+            long truthUs = (src.captureTimeNs(src.framesCaptured) - ORIGIN) / 1000;
+            src.framesCaptured += CHUNK;
+
+            assertStep(prev, pts);
+            prev = pts;
+            if (i > 2000) {
+                maxErrorUs = Math.max(maxErrorUs, Math.abs(pts - truthUs));
+            }
+        }
+        assertTrue("maxError=" + maxErrorUs, maxErrorUs < 500);
+        // 锚点之间按标称采样率外推，参考时间带锯齿误差，偏差估计允许一定波动
+        assertEquals(300, -clock.getFreqOffsetPpm(), 100);
+        assertEquals(0, clock.getResyncCount());
+    }
+
+    @Test
+    public void shortStall_isAbsorbedWithoutDiscontinuity() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        SimulatedSource src = new SimulatedSource(ORIGIN, 0);
+        long prev = Long.MIN_VALUE;
+        for (int i = 0; i < 400; i++) {
+            long readDone = src.captureTimeNs(src.framesCaptured + CHUNK);
+            if (i == 200) {
+                // 读取线程卡顿 150ms（AudioRecord 内部缓冲未溢出，数据不丢）
+                readDone += 150_000_000L;
+            }
+            long pts = clock.nextPtsUs(CHUNK, readDone);
+            src.framesCaptured += CHUNK;
+            assertStep(prev, pts);
+            prev = pts;
+        }
+        assertEquals(0, clock.getResyncCount());
+        long expectedLastUs = (src.captureTimeNs(src.framesCaptured - CHUNK) - ORIGIN) / 1000;
+        assertEquals(expectedLastUs, prev, 2_000);
+    }
+
+    @Test
+    public void lostSamples_triggerSingleResyncAndStayMonotonic() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        SimulatedSource src = new SimulatedSource(ORIGIN, 0);
+        long prev = Long.MIN_VALUE;
+        for (int i = 0; i < 400; i++) {
+            if (i == 200) {
+                // AudioRecord 溢出：500ms 的数据丢失，读到的下一帧来自更晚的时间
+                src.framesCaptured += RATE / 2;
+            }
+            long readDone = src.captureTimeNs(src.framesCaptured + CHUNK);
+            long pts = clock.nextPtsUs(CHUNK, readDone);
+            long truthUs = (src.captureTimeNs(src.framesCaptured) - ORIGIN) / 1000;
+            src.framesCaptured += CHUNK;
+
+            assertTrue(pts > prev);
+            if (i == 200) {
+                assertEquals(truthUs, pts, 10);
+            }
+            prev = pts;
+        }
+        assertEquals(1, clock.getResyncCount());
+    }
+
+    @Test
+    public void pauseAndResume_realignsToReferenceTime() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        long now = ORIGIN;
+        long prev = Long.MIN_VALUE;
+        for (int i = 0; i < 100; i++) {
+            now += (long) CHUNK_NS;
+            prev = clock.nextPtsUs(CHUNK, now);
+        }
+        clock.updateAnchor(0, ORIGIN);
+
+        clock.pause();
+        assertTrue(clock.isPaused());
+        now += 3_000_000_000L;
+        clock.resume();
+
+        now += (long) CHUNK_NS;
+        long pts = clock.nextPtsUs(CHUNK, now);
+        // 恢复后对齐到读取时刻（旧锚点失效），暂停间隔由 muxer 负责扣除
+        assertEquals((now - (long) CHUNK_NS - ORIGIN) / 1000, pts, 1);
+        assertTrue(pts > prev);
+        assertEquals(0, clock.getResyncCount());
+
+        now += (long) CHUNK_NS;
+        assertEquals((long) (CHUNK_NS / 1000), clock.nextPtsUs(CHUNK, now) - pts, 1);
+    }
+
+    @Test
+    public void skip_advancesPtsByDroppedDuration() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        long now = ORIGIN + (long) CHUNK_NS;
+        long first = clock.nextPtsUs(CHUNK, now);
+        clock.skip(CHUNK * 4);
+        now += (long) (CHUNK_NS * 5);
+        long next = clock.nextPtsUs(CHUNK, now);
+        assertEquals((long) (CHUNK_NS * 5 / 1000), next - first, 2);
+        assertEquals(CHUNK * 6, clock.getFramesRead());
+    }
+
+    @Test
+    public void anchorAheadOfFedFrames_reportedDropsKeepPtsOnCaptureTime() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        SimulatedSource src = new SimulatedSource(ORIGIN, 0);
+        long prev = Long.MIN_VALUE;
+        double maxErrorUs = 0;
+        for (int i = 0; i < 3000; i++) {
+            if (i == 1000) {
+                // 积压缓冲区溢出：已采集的 100ms 没有送编码器，锚点位置比送入帧数领先
+                src.framesCaptured += RATE / 10;
+                clock.skip(RATE / 10);
+            }
+            if (i % 47 == 0) {
+                clock.updateAnchor(src.framesCaptured, src.captureTimeNs(src.framesCaptured));
+            }
+            long readDone = src.captureTimeNs(src.framesCaptured + CHUNK);
+            long pts = clock.nextPtsUs(CHUNK, readDone);
+            long truthUs = (src.captureTimeNs(src.framesCaptured) - ORIGIN) / 1000;
+            src.framesCaptured += CHUNK;
+            assertTrue(pts > prev);
+            prev = pts;
+            maxErrorUs = Math.max(maxErrorUs, Math.abs(pts - truthUs));
+        }
+        // 丢弃的帧已上报，不应被当作时钟误差慢慢校正成 100ms 的固定偏移
+        assertTrue("maxError=" + maxErrorUs, maxErrorUs < 100);
+        assertEquals(0, clock.getResyncCount());
+    }
+
+    @Test
+    public void resumeWithAnchorAheadOfFedFrames_rebasesAnchorOffset() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        SimulatedSource src = new SimulatedSource(ORIGIN, 0);
+        for (int i = 0; i < 200; i++) {
+            clock.updateAnchor(src.framesCaptured, src.captureTimeNs(src.framesCaptured));
+            clock.nextPtsUs(CHUNK, src.captureTimeNs(src.framesCaptured + CHUNK));
+            src.framesCaptured += CHUNK;
+        }
+
+        // 暂停 2 秒：AudioRecord 帧位置继续计数，这些帧和清空的积压数据都没有送入时钟
+        clock.pause();
+        src.framesCaptured += 2 * RATE;
+        clock.resume();
+
+        long prev = Long.MIN_VALUE;
+        long firstPts = 0;
+        long firstTruthNs = src.captureTimeNs(src.framesCaptured);
+        for (int i = 0; i < 1000; i++) {
+            if (i % 47 == 1) {
+                clock.updateAnchor(src.framesCaptured, src.captureTimeNs(src.framesCaptured));
+            }
+            long pts = clock.nextPtsUs(CHUNK, src.captureTimeNs(src.framesCaptured + CHUNK));
+            if (i == 0) {
+                firstPts = pts;
+            }
+            assertStep(prev, pts);
+            prev = pts;
+            src.framesCaptured += CHUNK;
+        }
+        // 恢复后按帧时长连续推进，没有被旧的帧差拉偏
+        long expectedUs = firstPts + (src.captureTimeNs(src.framesCaptured - CHUNK) - firstTruthNs) / 1000;
+        assertEquals(expectedUs, prev, 100);
+        assertEquals(0, clock.getResyncCount());
+    }
+
+    @Test
+    public void eosQuery_doesNotAdvance() {
+        AudioSampleClock clock = new AudioSampleClock(RATE, ORIGIN);
+        long now = ORIGIN + (long) CHUNK_NS;
+        long pts = clock.nextPtsUs(CHUNK, now);
+        long eos = clock.nextPtsUs(0, now + (long) CHUNK_NS);
+        assertEquals((long) (CHUNK_NS / 1000), eos - pts, 1);
+        assertEquals(CHUNK, clock.getFramesRead());
+    }
+
+    /**
+     * 相邻 PTS 严格递增，且步长偏离标称帧时长不超过最大校正量
+     */
+    private static void assertStep(long prev, long pts) {
+        if (prev == Long.MIN_VALUE) return;
+        long step = pts - prev;
+        double nominalUs = CHUNK_NS / 1000;
+        double maxDev = nominalUs * (AudioSampleClock.MAX_SLEW_RATIO + AudioSampleClock.MAX_FREQ_OFFSET) + 2;
+        assertTrue("step=" + step, step > 0);
+        assertTrue("step=" + step + " nominal=" + nominalUs, Math.abs(step - nominalUs) <= maxDev);
+    }
+}
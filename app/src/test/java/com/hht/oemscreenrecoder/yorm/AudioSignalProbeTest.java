@@ -0,0 +1,74 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * AudioSignalProbe 单元测试：峰值提前通过、持续低音量判定、静音失败、采样保留
+ */
+public class AudioSignalProbeTest {
+
+    private static short[] constant(int count, int value) {
+        short[] pcm = new short[count];
+        Arrays.fill(pcm, (short) value);
+        return pcm;
+    }
+
+    @Test
+    public void loudSignal_passesOnFirstRead() {
+        AudioSignalProbe probe = new AudioSignalProbe(2000, 6000);
+        short[] pcm = new short[100];
+        pcm[50] = -300;
+        assertEquals(AudioSignalProbe.PASSED, probe.offer(pcm, pcm.length));
+        assertEquals(300, probe.getPeak());
+        // 通过后不再接收数据
+        assertEquals(AudioSignalProbe.PASSED, probe.offer(pcm, pcm.length));
+        assertEquals(100, probe.getSampleCount());
+    }
+
+    @Test
+    public void steadyQuietSignal_needsMinSamplesBeforePassing() {
+        AudioSignalProbe probe = new AudioSignalProbe(2000, 6000);
+        short[] pcm = constant(1024, 60);
+        assertEquals(AudioSignalProbe.PENDING, probe.offer(pcm, pcm.length));
+        assertEquals(AudioSignalProbe.PASSED, probe.offer(pcm, pcm.length));
+        assertEquals(100, probe.getNonZeroPercent());
+        assertEquals(60, probe.getAverage());
+    }
+
+    @Test
+    public void silence_failsAtMaxSamples() {
+        AudioSignalProbe probe = new AudioSignalProbe(2000, 3000);
+        short[] pcm = constant(1024, 0);
+        assertEquals(AudioSignalProbe.PENDING, probe.offer(pcm, pcm.length));
+        assertEquals(AudioSignalProbe.PENDING, probe.offer(pcm, pcm.length));
+        assertEquals(AudioSignalProbe.FAILED, probe.offer(pcm, pcm.length));
+        assertEquals(3000, probe.getSampleCount());
+    }
+
+    @Test
+    public void finish_decidesWithCollectedSamples() {
+        AudioSignalProbe quiet = new AudioSignalProbe(2000, 6000);
+        quiet.offer(constant(500, 80), 500);
+        assertEquals(AudioSignalProbe.PASSED, quiet.finish());
+
+        AudioSignalProbe sparse = new AudioSignalProbe(2000, 6000);
+        short[] pcm = new short[500];
+        pcm[0] = 100;
+        sparse.offer(pcm, pcm.length);
+        assertEquals(AudioSignalProbe.FAILED, sparse.finish());
+        assertEquals(AudioSignalProbe.FAILED, new AudioSignalProbe(1, 10).finish());
+    }
+
+    @Test
+    public void samples_areKeptInOrderUpToMax() {
+        AudioSignalProbe probe = new AudioSignalProbe(4, 5);
+        probe.offer(new short[]{1, 2, 3}, 3);
+        probe.offer(new short[]{4, 5, 6}, 3);
+        assertArrayEquals(new short[]{1, 2, 3, 4, 5}, probe.getSamples());
+    }
+}
@@ -0,0 +1,131 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BitrateController 单元测试：存储压力下乘性下降、用满时加性上调、静止画面降码率与画面变化后的恢复、剩余空间限制
+ */
+public class BitrateControllerTest {
+    private static final int MBPS = 1_000_000;
+
+    private static BitrateController.Feedback outputAt(int bps) {
+        BitrateController.Feedback f = new BitrateController.Feedback();
+        f.intervalMs = 1000;
+        f.encodedBytes = bps / 8;
+        return f;
+    }
+
+    @Test
+    public void storagePressure_decreasesMultiplicativelyAndHoldsOff() {
+        BitrateController c = new BitrateController(20 * MBPS, 2 * MBPS, 40 * MBPS, 0, 0);
+        BitrateController.Feedback f = outputAt(20 * MBPS);
+        f.stalls = 1;
+        assertEquals(14 * MBPS, c.update(f));
+
+        f = outputAt(14 * MBPS);
+        f.meanWriteTimeNs = BitrateController.WRITE_TIME_HIGH_NS;
+        assertEquals(9_800_000, c.update(f));
+
+        // 冷却期内即使用满也不上调
+        f = outputAt(9_800_000);
+        for (int i = 0; i < BitrateController.COOLDOWN_TICKS; i++) {
+            assertEquals(9_800_000, c.update(f));
+        }
+        assertEquals(11_800_000, c.update(f));
+        assertEquals(2, c.getDecreaseCount());
+        assertEquals(1, c.getIncreaseCount());
+    }
+
+    @Test
+    public void saturatedEncoder_increasesAdditivelyUpToCeiling() {
+        BitrateController c = new BitrateController(36 * MBPS, 2 * MBPS, 40 * MBPS, 0, 0);
+        assertEquals(38 * MBPS, c.update(outputAt(36 * MBPS)));
+        assertEquals(40 * MBPS, c.update(outputAt(38 * MBPS)));
+        assertEquals(40 * MBPS, c.update(outputAt(40 * MBPS)));
+    }
+
+    @Test
+    public void staticContent_dropsToHeadroomAboveOutputButNotBelowFloor() {
+        BitrateController c = new BitrateController(40 * MBPS, 2 * MBPS, 40 * MBPS, 0, 0);
+        BitrateController.Feedback f = outputAt(3 * MBPS);
+        for (int i = 1; i < BitrateController.LOW_UTILIZATION_TICKS; i++) {
+            assertEquals(40 * MBPS, c.update(f));
+        }
+        assertEquals(6 * MBPS, c.update(f));
+        // 几乎没有输出时停在下限
+        BitrateController.Feedback idle = outputAt(100_000);
+        for (int i = 0; i < BitrateController.LOW_UTILIZATION_TICKS; i++) {
+            c.update(idle);
+        }
+        assertEquals(2 * MBPS, c.getTargetBps());
+    }
+
+    @Test
+    public void motionAfterStaticContent_restoresPreviousTargetAtOnce() {
+        // 4K：上限 41Mbps，静止画面降到下限
+        BitrateController c = new BitrateController(41 * MBPS, 2 * MBPS, 41 * MBPS, 0, 0);
+        BitrateController.Feedback idle = outputAt(500_000);
+        for (int i = 0; i < BitrateController.LOW_UTILIZATION_TICKS; i++) {
+            c.update(idle);
+        }
+        assertEquals(2 * MBPS, c.getTargetBps());
+
+        // 换页后编码器用满目标码率：一个周期内恢复，而不是按加性步长爬升约 20 个周期
+        assertEquals(41 * MBPS, c.update(outputAt(2 * MBPS)));
+        assertEquals(1, c.getIncreaseCount());
+        // 恢复只发生一次，之后回到加性上调
+        c.update(outputAt(41 * MBPS));
+        assertEquals(41 * MBPS, c.getTargetBps());
+    }
+
+    @Test
+    public void storagePressureAfterStaticContent_cancelsRestore() {
+        BitrateController c = new BitrateController(40 * MBPS, 2 * MBPS, 40 * MBPS, 0, 0);
+        BitrateController.Feedback idle = outputAt(2 * MBPS);
+        for (int i = 0; i < BitrateController.LOW_UTILIZATION_TICKS; i++) {
+            c.update(idle);
+        }
+        assertEquals(4 * MBPS, c.getTargetBps());
+        BitrateController.Feedback f = outputAt(4 * MBPS);
+        f.stalls = 1;
+        assertEquals(2_800_000, c.update(f));
+        f = outputAt(2_800_000);
+        for (int i = 0; i < BitrateController.COOLDOWN_TICKS; i++) {
+            c.update(f);
+        }
+        // 冷却结束后按加性步长上调，不跳回静止前的 40Mbps
+        assertEquals(4_800_000, c.update(f));
+    }
+
+    @Test
+    public void lowFreeSpace_capsBitrateToFitRemainingTime() {
+        // 保留 500MB，剩余空间至少录 1000 秒
+        BitrateController c = new BitrateController(40 * MBPS, 2 * MBPS, 40 * MBPS, 500_000_000L, 1000);
+        BitrateController.Feedback f = outputAt(40 * MBPS);
+        f.freeBytes = 1_500_000_000L;
+        assertEquals(8 * MBPS, c.update(f));
+        assertEquals(1, c.getSpaceLimitedCount());
+
+        // 空间耗尽时停在下限
+        f.freeBytes = 400_000_000L;
+        assertEquals(2 * MBPS, c.update(f));
+
+        // 剩余空间未知时不限制
+        f = outputAt(2 * MBPS);
+        assertTrue(c.update(f) > 2 * MBPS);
+    }
+
+    @Test
+    public void smallChanges_areSuppressed() {
+        BitrateController c = new BitrateController(10 * MBPS, 2 * MBPS, 40 * MBPS, 0, 1000);
+        BitrateController.Feedback f = outputAt(10 * MBPS);
+        // 剩余空间只够 9.8Mbps，比当前低 2%，不调整
+        f.freeBytes = 1_225_000_000L;
+        assertEquals(10 * MBPS, c.update(f));
+        f.freeBytes = 1_000_000_000L;
+        assertEquals(8 * MBPS, c.update(f));
+    }
+}
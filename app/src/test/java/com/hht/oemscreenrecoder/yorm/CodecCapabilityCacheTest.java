@@ -0,0 +1,159 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CodecCapabilityCache 单元测试：往返读写、指纹不匹配、损坏文件、内容不变时不重写
+ */
+public class CodecCapabilityCacheTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("capabilities").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    private static EncoderInfo avc() {
+        EncoderInfo e = new EncoderInfo();
+        e.name = "c2.vendor.avc.encoder";
+        e.mimeType = ScreenRecorder.VIDEO_AVC;
+        e.hardwareAccelerated = true;
+        e.profiles = new int[]{1, 2, 8};
+        e.levels = new int[]{0x1000, 0x1000, 0x2000};
+        e.colorFormats = new int[]{0x7F000789, 0x7F420888};
+        e.bitrateMin = 1;
+        e.bitrateMax = 120_000_000;
+        e.widthMin = 32;
+        e.widthMax = 4096;
+        e.heightMin = 32;
+        e.heightMax = 2304;
+        e.widthAlignment = 2;
+        e.heightAlignment = 2;
+        e.frameRateMin = 1;
+        e.frameRateMax = 240;
+        e.probeSizes = new int[]{1280, 720, 1920, 1080, 3840, 2160};
+        e.maxFrameRates = new int[]{60, 60, 30};
+        e.performanceFrameRates = new int[]{60, 60, 24};
+        return e;
+    }
+
+    private static EncoderInfo aac() {
+        EncoderInfo e = new EncoderInfo();
+        e.name = "c2.android.aac.encoder";
+        e.mimeType = ScreenRecorder.AUDIO_AAC;
+        e.softwareOnly = true;
+        e.profiles = new int[]{2};
+        e.levels = new int[]{0};
+        e.bitrateMin = 8000;
+        e.bitrateMax = 960_000;
+        e.sampleRates = new int[]{8000, 16000, 44100, 48000};
+        e.sampleRateMin = 8000;
+        e.sampleRateMax = 48000;
+        e.maxChannels = 6;
+        return e;
+    }
+
+    @Test
+    public void writeThenRead_roundTripsAllFields() throws Exception {
+        File file = new File(mDir, CodecCapabilityCache.FILE_NAME);
+        assertNull(CodecCapabilityCache.read(file, "fp"));
+
+        assertTrue(CodecCapabilityCache.write(file, "fp", Arrays.asList(avc(), aac())));
+        List<EncoderInfo> read = CodecCapabilityCache.read(file, "fp");
+        assertEquals(Arrays.asList(avc(), aac()), read);
+
+        EncoderInfo[] video = CodecCapabilityCache.filter(read, ScreenRecorder.VIDEO_AVC);
+        assertEquals(1, video.length);
+        assertTrue(video[0].isVideo());
+        assertTrue(video[0].hardwareAccelerated);
+        assertArrayEquals(new int[]{0x1000, 0x1000, 0x2000}, video[0].levels);
+        assertTrue(video[0].isSizeSupported(1920, 1080));
+        assertFalse(video[0].isSizeSupported(1921, 1080));
+        assertEquals(24, video[0].performanceFrameRates[video[0].probeIndex(3840, 2160)]);
+        EncoderInfo audio = CodecCapabilityCache.filter(read, ScreenRecorder.AUDIO_AAC)[0];
+        assertTrue(audio.softwareOnly);
+        assertTrue(audio.isSampleRateSupported(44100));
+        assertFalse(audio.isSampleRateSupported(32000));
+        assertTrue(audio.hasProfile(2));
+    }
+
+    @Test
+    public void unchangedContent_isNotRewritten() throws Exception {
+        File file = new File(mDir, CodecCapabilityCache.FILE_NAME);
+        List<EncoderInfo> encoders = Arrays.asList(avc(), aac());
+        assertTrue(CodecCapabilityCache.write(file, "fp", encoders));
+        assertFalse(CodecCapabilityCache.write(file, "fp", encoders));
+
+        EncoderInfo changed = aac();
+        changed.maxChannels = 2;
+        assertTrue(CodecCapabilityCache.write(file, "fp", Arrays.asList(avc(), changed)));
+        assertEquals(2, CodecCapabilityCache.read(file, "fp").get(1).maxChannels);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void otherFingerprint_isTreatedAsMissing() throws Exception {
+        File file = new File(mDir, "cache.bin");
+        CodecCapabilityCache.write(file, "build/1", Arrays.asList(avc(), aac()));
+        assertNull(CodecCapabilityCache.read(file, "build/2"));
+        // 系统升级后重新写入
+        assertTrue(CodecCapabilityCache.write(file, "build/2", Arrays.asList(avc())));
+        assertEquals(1, CodecCapabilityCache.read(file, "build/2").size());
+    }
+
+    @Test
+    public void corruptOrTruncatedFile_isTreatedAsMissing() throws Exception {
+        byte[] data = CodecCapabilityCache.encode("fp", Arrays.asList(avc(), aac()));
+        File file = new File(mDir, "cache.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data, 0, data.length - 3);
+        }
+        assertNull(CodecCapabilityCache.read(file, "fp"));
+
+        data[0] ^= 0xFF;
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        assertNull(CodecCapabilityCache.read(file, "fp"));
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[0]);
+        }
+        assertNull(CodecCapabilityCache.read(file, "fp"));
+    }
+
+    @Test
+    public void sampleRateRange_isUsedWithoutDiscreteList() {
+        EncoderInfo e = aac();
+        e.sampleRates = new int[0];
+        assertTrue(e.isSampleRateSupported(32000));
+        assertFalse(e.isSampleRateSupported(96000));
+    }
+}
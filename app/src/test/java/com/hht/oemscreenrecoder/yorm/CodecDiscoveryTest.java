@@ -0,0 +1,108 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * CodecDiscovery 单元测试：并行查询、同类型只查一次、超时、失败后重新查询
+ */
+public class CodecDiscoveryTest {
+
+    private static EncoderInfo[] encoders(String mimeType) {
+        EncoderInfo e = new EncoderInfo();
+        e.name = "encoder." + mimeType;
+        e.mimeType = mimeType;
+        return new EncoderInfo[]{e};
+    }
+
+    @Test
+    public void queries_runConcurrently() throws Exception {
+        final CountDownLatch started = new CountDownLatch(3);
+        CodecDiscovery discovery = new CodecDiscovery(type -> {
+            started.countDown();
+            try {
+                // 三个查询都开始后才返回，串行执行时会超时
+                if (!started.await(1, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("not concurrent");
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return encoders(type);
+        }, 3);
+        discovery.discoverAll("video/avc", "video/hevc", "audio/mp4a-latm").get(2, TimeUnit.SECONDS);
+        assertEquals("encoder.video/hevc", discovery.await("video/hevc", 0)[0].name);
+        assertTrue(discovery.isDone("video/avc"));
+        assertTrue(discovery.isDone("audio/mp4a-latm"));
+        discovery.shutdown();
+    }
+
+    @Test
+    public void sameType_isLookedUpOnce() throws Exception {
+        final AtomicInteger lookups = new AtomicInteger();
+        CodecDiscovery discovery = new CodecDiscovery(type -> {
+            lookups.incrementAndGet();
+            return encoders(type);
+        }, 2);
+        assertSame(discovery.discover("video/avc"), discovery.discover("video/avc"));
+        discovery.await("video/avc", 1000);
+        discovery.await("video/avc", 1000);
+        assertEquals(1, lookups.get());
+        discovery.shutdown();
+    }
+
+    @Test
+    public void slowLookup_timesOutAndCompletesLater() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        CodecDiscovery discovery = new CodecDiscovery(type -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return encoders(type);
+        }, 1);
+        try {
+            discovery.await("video/avc", 50);
+            fail("expected timeout");
+        } catch (TimeoutException expected) {
+            // 查询继续在后台进行
+        }
+        assertFalse(discovery.isDone("video/avc"));
+        release.countDown();
+        assertEquals(1, discovery.await("video/avc", 1000).length);
+        discovery.shutdown();
+    }
+
+    @Test
+    public void failedLookup_isRetriedOnNextRequest() throws Exception {
+        final AtomicInteger lookups = new AtomicInteger();
+        CodecDiscovery discovery = new CodecDiscovery(type -> {
+            if (lookups.incrementAndGet() == 1) {
+                throw new IllegalStateException("mediaserver died");
+            }
+            return encoders(type);
+        }, 1);
+        try {
+            discovery.await("audio/mp4a-latm", 1000);
+            fail("expected failure");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(discovery.isDone("audio/mp4a-latm"));
+        assertEquals(1, discovery.await("audio/mp4a-latm", 1000).length);
+        assertEquals(2, lookups.get());
+        discovery.shutdown();
+    }
+}
@@ -0,0 +1,100 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * CodecRanker 单元测试：用假的能力表验证硬件优先、帧率估计的来源与优先级、尺寸过滤和同分顺序
+ */
+public class CodecRankerTest {
+
+    private static final int[] PROBES = {1280, 720, 1920, 1080, 3840, 2160};
+
+    private static EncoderInfo video(String name, boolean hardware, boolean softwareOnly, int maxWidth, int maxHeight) {
+        EncoderInfo e = new EncoderInfo();
+        e.name = name;
+        e.mimeType = ScreenRecorder.VIDEO_AVC;
+        e.hardwareAccelerated = hardware;
+        e.softwareOnly = softwareOnly;
+        e.widthMin = 16;
+        e.heightMin = 16;
+        e.widthMax = maxWidth;
+        e.heightMax = maxHeight;
+        e.widthAlignment = 2;
+        e.heightAlignment = 2;
+        e.probeSizes = PROBES;
+        e.maxFrameRates = new int[]{60, 60, 30};
+        return e;
+    }
+
+    @Test
+    public void hardwareEncoder_beatsSoftwareListedFirst() {
+        EncoderInfo sw = video("c2.android.avc.encoder", false, true, 4096, 2304);
+        EncoderInfo hw = video("c2.vendor.avc.encoder", true, false, 4096, 2304);
+        CodecRanker ranker = new CodecRanker(1920, 1080, 30);
+        List<CodecRanker.Candidate> ranked = ranker.rank(new EncoderInfo[]{sw, hw});
+        assertSame(hw, ranked.get(0).encoder);
+        assertEquals(CodecRanker.SCORE_HARDWARE + CodecRanker.SCORE_FRAME_RATE, ranked.get(0).score);
+        assertEquals(CodecRanker.SCORE_FRAME_RATE - CodecRanker.PENALTY_SOFTWARE_ONLY, ranked.get(1).score);
+        assertEquals(CodecRanker.SOURCE_CAPABILITIES, ranked.get(0).fpsSource);
+    }
+
+    @Test
+    public void performancePoints_overrideTheoreticalFrameRate() {
+        EncoderInfo slow = video("hw.slow", true, false, 4096, 2304);
+        slow.performanceFrameRates = new int[]{60, 30, 15};
+        EncoderInfo fast = video("hw.fast", true, false, 4096, 2304);
+        fast.performanceFrameRates = new int[]{60, 60, 30};
+        CodecRanker ranker = new CodecRanker(3840, 2160, 30);
+        List<CodecRanker.Candidate> ranked = ranker.rank(new EncoderInfo[]{slow, fast});
+        assertSame(fast, ranked.get(0).encoder);
+        assertEquals(CodecRanker.SOURCE_PERFORMANCE_POINT, ranked.get(1).fpsSource);
+        assertEquals(15f, ranked.get(1).estimatedFps, 0f);
+        assertEquals(CodecRanker.SCORE_HARDWARE + CodecRanker.BONUS_PERFORMANCE_POINT
+                + CodecRanker.SCORE_FRAME_RATE / 2, ranked.get(1).score);
+    }
+
+    @Test
+    public void measuredThroughput_takesPrecedence() {
+        EncoderInfo a = video("hw.a", true, false, 4096, 2304);
+        a.performanceFrameRates = new int[]{60, 60, 60};
+        EncoderInfo b = video("hw.b", true, false, 4096, 2304);
+        CodecRanker ranker = new CodecRanker(3840, 2160, 30);
+        ranker.setMeasuredFps("hw.a", 12f);
+        ranker.setMeasuredFps("hw.b", 45f);
+        List<CodecRanker.Candidate> ranked = ranker.rank(new EncoderInfo[]{a, b});
+        assertSame(b, ranked.get(0).encoder);
+        assertEquals(CodecRanker.SOURCE_MEASURED, ranked.get(1).fpsSource);
+        assertEquals(CodecRanker.SCORE_HARDWARE + CodecRanker.BONUS_MEASURED + 120, ranked.get(1).score);
+    }
+
+    @Test
+    public void unsupportedSize_isExcludedWithPlatformFallback() {
+        EncoderInfo small = video("hw.1080p", true, false, 1920, 1088);
+        EncoderInfo big = video("sw.4k", false, true, 4096, 2304);
+        CodecRanker ranker = new CodecRanker(3840, 2160, 30);
+        assertEquals(1, ranker.rank(new EncoderInfo[]{small, big}).size());
+        assertSame(big, ranker.select(new EncoderInfo[]{small, big}));
+        // 都不支持时退回平台第一个
+        assertSame(small, ranker.select(new EncoderInfo[]{small}));
+        assertNull(ranker.select(new EncoderInfo[0]));
+    }
+
+    @Test
+    public void ties_keepPlatformOrder_andUnknownRateScoresHalf() {
+        EncoderInfo first = video("vendor.first", false, false, 8192, 4320);
+        EncoderInfo second = video("vendor.second", false, false, 8192, 4320);
+        // 超出所有探测尺寸
+        CodecRanker ranker = new CodecRanker(7680, 4320, 30);
+        List<CodecRanker.Candidate> ranked = ranker.rank(new EncoderInfo[]{first, second});
+        assertSame(first, ranked.get(0).encoder);
+        assertEquals(CodecRanker.SOURCE_UNKNOWN, ranked.get(0).fpsSource);
+        assertEquals(CodecRanker.SCORE_FRAME_RATE / 2, ranked.get(0).score);
+        assertEquals(ranked.get(0).score, ranked.get(1).score);
+    }
+}
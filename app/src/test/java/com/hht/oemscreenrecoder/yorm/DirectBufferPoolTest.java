@@ -0,0 +1,97 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DirectBufferPool 单元测试：分级、复用、内存上限与回收
+ */
+public class DirectBufferPoolTest {
+
+    @Test
+    public void sizeClasses_roundUpToPowerOfTwo() {
+        assertEquals(0, DirectBufferPool.classOf(1));
+        assertEquals(0, DirectBufferPool.classOf(4096));
+        assertEquals(1, DirectBufferPool.classOf(4097));
+        assertEquals(1, DirectBufferPool.classOf(8192));
+        assertEquals(8, DirectBufferPool.classOf(1 << 20));
+
+        DirectBufferPool pool = new DirectBufferPool(1 << 20);
+        ByteBuffer b = pool.acquire(5000);
+        assertEquals(8192, b.capacity());
+        assertTrue(b.isDirect());
+        assertEquals(0, b.position());
+        assertEquals(8192, b.limit());
+    }
+
+    @Test
+    public void releasedBuffers_areReused() {
+        DirectBufferPool pool = new DirectBufferPool(1 << 20);
+        ByteBuffer a = pool.acquire(3000);
+        a.put((byte) 1);
+        pool.release(a);
+        ByteBuffer b = pool.acquire(4000);
+        assertSame(a, b);
+        assertEquals(0, b.position());
+        assertEquals(1, pool.getAllocations());
+        assertEquals(1, pool.getReuses());
+        assertEquals(4096, pool.getInUseBytes());
+    }
+
+    @Test
+    public void inUseBytes_areCapped() {
+        DirectBufferPool pool = new DirectBufferPool(64 * 1024);
+        ByteBuffer a = pool.acquire(32 * 1024);
+        ByteBuffer b = pool.acquire(16 * 1024);
+        assertNotNull(a);
+        assertNotNull(b);
+        assertNull(pool.acquire(32 * 1024));
+        assertNotNull(pool.acquire(16 * 1024));
+        pool.release(a);
+        assertNotNull(pool.acquire(32 * 1024));
+        assertEquals(64 * 1024, pool.getPeakInUseBytes());
+    }
+
+    @Test
+    public void idleBuffersOfOtherClasses_areEvictedToMakeRoom() {
+        DirectBufferPool pool = new DirectBufferPool(64 * 1024);
+        for (int i = 0; i < 16; i++) {
+            pool.release(pool.acquire(4096));
+        }
+        ByteBuffer small = pool.acquire(4096);
+        pool.release(small);
+        // 只分配过一个 4KB，复用即可
+        assertEquals(1, pool.getAllocations());
+
+        ByteBuffer[] smalls = new ByteBuffer[16];
+        for (int i = 0; i < 16; i++) {
+            smalls[i] = pool.acquire(4096);
+        }
+        for (ByteBuffer s : smalls) {
+            pool.release(s);
+        }
+        assertEquals(64 * 1024, pool.getAllocatedBytes());
+        // 空闲的小缓冲区被回收，给 32KB 腾出空间
+        ByteBuffer big = pool.acquire(32 * 1024);
+        assertNotNull(big);
+        assertEquals(8, pool.getEvictions());
+        assertTrue(pool.getAllocatedBytes() <= 64 * 1024);
+    }
+
+    @Test
+    public void oversizedRequest_isAllowedWhenNothingInUse() {
+        DirectBufferPool pool = new DirectBufferPool(16 * 1024);
+        ByteBuffer big = pool.acquire(100 * 1024);
+        assertNotNull(big);
+        assertNull(pool.acquire(4096));
+        pool.release(big);
+        assertNotNull(pool.acquire(4096));
+    }
+}
@@ -0,0 +1,390 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import com.hht.oemscreenrecoder.yorm.Mp4TestSupport.Box;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.ASC;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.AUDIO_RATE;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.PPS;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.SPS;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.audioFrame;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.audioPts;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.audioSpec;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.concat;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.fourcc;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.parse;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.u16;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.u32;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.u64;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.videoFrame;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.videoPts;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.videoSpec;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * FragmentedMp4Writer 单元测试：用独立的 box 解析器检查 ftyp/moov 描述、
+ * 分片切分与时间连续性、trun 数据偏移、Annex-B 转换、HEVC / AV1 样本描述，以及未 finish 时已写出分片的完整性
+ */
+public class FragmentedMp4WriterTest {
+
+    private File mFile;
+    private RandomAccessFile mRaf;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("fmp4", ".mp4");
+        mRaf = new RandomAccessFile(mFile, "rw");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mRaf.close();
+        mFile.delete();
+    }
+
+    // ===== 输入 =====
+
+    /** 按 PTS 交错写入 seconds 秒的 30fps 视频（每秒一个关键帧）和 AAC 音频 */
+    private static int[] writeAv(FragmentedMp4Writer writer, int video, int audio, double seconds) throws IOException {
+        int v = 0;
+        int a = 0;
+        long end = (long) (seconds * 1_000_000);
+        while (videoPts(v) < end || (audio >= 0 && audioPts(a) < end)) {
+            if (audio >= 0 && (audioPts(a) <= videoPts(v) || videoPts(v) >= end)) {
+                writer.writeSample(audio, audioFrame(a), audioPts(a), 0);
+                a++;
+            } else {
+                boolean key = v % 30 == 0;
+                writer.writeSample(video, videoFrame(v, key), videoPts(v), key ? FragmentedMp4Writer.FLAG_KEY_FRAME : 0);
+                v++;
+            }
+        }
+        return new int[]{v, a};
+    }
+
+    private byte[] readFile() throws IOException {
+        return Files.readAllBytes(mFile.toPath());
+    }
+
+    // ===== 测试 =====
+
+    @Test
+    public void header_describesTracks() throws IOException {
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(mRaf.getChannel(), 2_000_000);
+        assertEquals(0, writer.addTrack(videoSpec()));
+        assertEquals(1, writer.addTrack(audioSpec()));
+        writer.start();
+        writer.finish();
+
+        byte[] d = readFile();
+        List<Box> top = parse(d, 0, d.length);
+        assertEquals(2, top.size());
+        assertEquals("ftyp", top.get(0).type);
+        assertEquals("iso6", fourcc(d, top.get(0).offset + 8));
+        // 最后一个兼容品牌对应视频编码格式
+        assertEquals("avc1", fourcc(d, top.get(0).offset + top.get(0).size - 4));
+        Box moov = top.get(1);
+        assertEquals("moov", moov.type);
+        assertNotNull(moov.child("mvhd"));
+        List<Box> traks = moov.all("trak");
+        assertEquals(2, traks.size());
+
+        Box vtrak = traks.get(0);
+        Box tkhd = vtrak.child("tkhd");
+        assertEquals(1, u32(d, tkhd.offset + 8 + 12));
+        assertEquals(1280 << 16, u32(d, tkhd.offset + tkhd.size - 8));
+        assertEquals(720 << 16, u32(d, tkhd.offset + tkhd.size - 4));
+        assertEquals(90000, u32(d, vtrak.child("mdia/mdhd").offset + 8 + 12));
+        assertEquals("vide", fourcc(d, vtrak.child("mdia/hdlr").offset + 8 + 8));
+        Box avc1 = vtrak.child("mdia/minf/stbl/stsd/avc1");
+        assertNotNull(avc1);
+        assertEquals(1280, u16(d, avc1.offset + 8 + 24));
+        assertEquals(720, u16(d, avc1.offset + 8 + 26));
+        Box avcC = avc1.child("avcC");
+        byte[] expectedAvcC = {1, 0x42, (byte) 0xc0, 0x1f, (byte) 0xff, (byte) 0xe1, 0, 5,
+                0x67, 0x42, (byte) 0xc0, 0x1f, (byte) 0xaa, 1, 0, 4, 0x68, (byte) 0xce, 0x3c, (byte) 0x80};
+        assertArrayEquals(expectedAvcC, Arrays.copyOfRange(d, avcC.offset + 8, avcC.offset + avcC.size));
+
+        Box atrak = traks.get(1);
+        assertEquals(AUDIO_RATE, u32(d, atrak.child("mdia/mdhd").offset + 8 + 12));
+        assertEquals("soun", fourcc(d, atrak.child("mdia/hdlr").offset + 8 + 8));
+        Box mp4a = atrak.child("mdia/minf/stbl/stsd/mp4a");
+        assertNotNull(mp4a);
+        assertEquals(2, u16(d, mp4a.offset + 8 + 16));
+        assertEquals(AUDIO_RATE, u32(d, mp4a.offset + 8 + 24) >>> 16);
+        Box esds = mp4a.child("esds");
+        // DecoderSpecificInfo：tag 0x05 + 4 字节长度 + ASC
+        int dsi = -1;
+        for (int i = esds.offset + 12; i < esds.offset + esds.size - 5; i++) {
+            if (d[i] == 0x05 && (d[i + 1] & 0x80) != 0) {
+                dsi = i;
+                break;
+            }
+        }
+        assertTrue(dsi > 0);
+        assertEquals(ASC.length, d[dsi + 4]);
+        assertArrayEquals(ASC, Arrays.copyOfRange(d, dsi + 5, dsi + 5 + ASC.length));
+        assertEquals(0x40, d[dsi - 13] & 0xff);   // objectTypeIndication
+
+        List<Box> trex = moov.child("mvex").all("trex");
+        assertEquals(2, trex.size());
+        assertEquals(1, u32(d, trex.get(0).offset + 12));
+        assertEquals(2, u32(d, trex.get(1).offset + 12));
+    }
+
+    @Test
+    public void fragments_splitAtKeyframesWithContinuousTiming() throws IOException {
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(mRaf.getChannel(), 2_000_000);
+        int video = writer.addTrack(videoSpec());
+        int audio = writer.addTrack(audioSpec());
+        writer.start();
+        int[] counts = writeAv(writer, video, audio, 5.0);
+        writer.writeSample(video, ByteBuffer.allocate(0), 0, FragmentedMp4Writer.FLAG_END_OF_STREAM);
+        writer.finish();
+        assertEquals(3, writer.getFragmentCount());
+
+        byte[] d = readFile();
+        List<Box> top = parse(d, 0, d.length);
+        List<Box> moofs = new ArrayList<>();
+        for (Box b : top) {
+            if (b.type.equals("moof")) moofs.add(b);
+        }
+        assertEquals(3, moofs.size());
+
+        long[] nextDecodeTime = {-1, -1};
+        int[] nextIndex = {0, 0};
+        int[] expectedVideoCounts = {60, 60, 30};
+        for (int f = 0; f < moofs.size(); f++) {
+            Box moof = moofs.get(f);
+            assertEquals(f + 1, u32(d, moof.child("mfhd").offset + 12));
+            // mdat 紧跟 moof
+            int mdat = moof.offset + moof.size;
+            assertEquals("mdat", fourcc(d, mdat + 4));
+            int mdatEnd = mdat + u32(d, mdat);
+
+            for (Box traf : moof.all("traf")) {
+                Box tfhd = traf.child("tfhd");
+                assertEquals(0x020000, u32(d, tfhd.offset + 8) & 0xffffff);
+                int trackId = u32(d, tfhd.offset + 12);
+                int t = trackId - 1;
+                Box tfdt = traf.child("tfdt");
+                assertEquals(1, d[tfdt.offset + 8]);
+                long baseTime = u64(d, tfdt.offset + 12);
+                if (nextDecodeTime[t] >= 0) {
+                    assertEquals("track " + trackId + " fragment " + f, nextDecodeTime[t], baseTime);
+                }
+
+                Box trun = traf.child("trun");
+                int sampleCount = u32(d, trun.offset + 12);
+                int pos = moof.offset + u32(d, trun.offset + 16);
+                if (t == 0) {
+                    assertEquals(expectedVideoCounts[f], sampleCount);
+                }
+                long time = baseTime;
+                for (int s = 0; s < sampleCount; s++) {
+                    int entry = trun.offset + 20 + s * 12;
+                    int duration = u32(d, entry);
+                    int size = u32(d, entry + 4);
+                    int flags = u32(d, entry + 8);
+                    assertTrue(duration > 0);
+                    assertTrue(pos + size <= mdatEnd);
+                    int index = nextIndex[t]++;
+                    if (t == 0) {
+                        boolean key = index % 30 == 0;
+                        assertEquals(key ? 0x02000000 : 0x01010000, flags);
+                        // 4 字节长度前缀 + NAL
+                        assertEquals(8, size);
+                        assertEquals(4, u32(d, pos));
+                        assertEquals(key ? 0x65 : 0x41, d[pos + 4] & 0xff);
+                        assertEquals(index & 0xff, d[pos + 5] & 0xff);
+                        if (s == 0) {
+                            assertTrue("fragment starts with keyframe", key);
+                        }
+                        assertEquals(videoPts(index) * 90000 / 1_000_000, time, 1);
+                    } else {
+                        assertEquals(0x02000000, flags);
+                        assertEquals(3, size);
+                        assertEquals(index & 0xff, d[pos + 1] & 0xff);
+                        assertEquals(index * 1024L, time, 1);
+                    }
+                    pos += size;
+                    time += duration;
+                }
+                nextDecodeTime[t] = time;
+            }
+        }
+        assertEquals(counts[0], nextIndex[0]);
+        assertEquals(counts[1], nextIndex[1]);
+    }
+
+    @Test
+    public void unfinishedFile_containsOnlyCompleteFragments() throws IOException {
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(mRaf.getChannel(), 1_000_000);
+        int video = writer.addTrack(videoSpec());
+        writer.start();
+        writeAv(writer, video, -1, 2.5);
+
+        // 模拟进程被杀：不调用 finish，直接读取文件
+        byte[] d = readFile();
+        List<Box> top = parse(d, 0, d.length);
+        List<String> types = new ArrayList<>();
+        for (Box b : top) {
+            types.add(b.type);
+        }
+        assertEquals(Arrays.asList("ftyp", "moov", "moof", "mdat", "moof", "mdat"), types);
+        assertEquals(2, writer.getFragmentCount());
+        assertEquals(2, writer.getFlushTime().getCount());
+    }
+
+    @Test
+    public void annexB_isConvertedToLengthPrefixed() {
+        ByteBuffer src = ByteBuffer.wrap(new byte[]{0, 0, 1, (byte) 0xaa, (byte) 0xbb, 0, 0, 0, 1, (byte) 0xcc, 0});
+        ByteBuffer dst = ByteBuffer.allocate(32);
+        FragmentedMp4Writer.annexBToLengthPrefixed(src, dst);
+        assertEquals(src.limit(), src.position());
+        byte[] expected = {0, 0, 0, 2, (byte) 0xaa, (byte) 0xbb, 0, 0, 0, 1, (byte) 0xcc};
+        assertArrayEquals(expected, Arrays.copyOf(dst.array(), dst.position()));
+
+        // 已经是长度前缀格式时原样拷贝
+        byte[] prefixed = {0, 0, 0, 3, 0x65, 0x11, 0x22};
+        dst.clear();
+        FragmentedMp4Writer.annexBToLengthPrefixed(ByteBuffer.wrap(prefixed), dst);
+        assertArrayEquals(prefixed, Arrays.copyOf(dst.array(), dst.position()));
+
+        List<byte[]> nals = FragmentedMp4Writer.splitNalUnits(concat(new byte[]{0, 0, 0, 1}, concat(SPS,
+                concat(new byte[]{0, 0, 1}, PPS))));
+        assertEquals(2, nals.size());
+        assertArrayEquals(SPS, nals.get(0));
+        assertArrayEquals(PPS, nals.get(1));
+    }
+
+    /** 插入防竞争字节：连续两个 0 之后遇到 <= 3 的字节前插入 03 */
+    private static byte[] escape(byte[] rbsp) {
+        ByteBuffer out = ByteBuffer.allocate(rbsp.length * 2);
+        int zeros = 0;
+        for (byte v : rbsp) {
+            if (zeros >= 2 && (v & 0xff) <= 3) {
+                out.put((byte) 3);
+                zeros = 0;
+            }
+            zeros = v == 0 ? zeros + 1 : 0;
+            out.put(v);
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    @Test
+    public void hevcTrack_isDescribedWithHvcC() throws IOException {
+        byte[] vps = {0x40, 0x01, 0x0c, 0x01, (byte) 0xff};
+        // general profile_tier_level：Main profile、兼容位、约束位、level 4.1 (123)
+        byte[] ptl = {0x01, 0x60, 0, 0, 0, (byte) 0x90, 0, 0, 0, 0, 0, 123};
+        byte[] spsRbsp = new byte[2 + 1 + ptl.length + 1];
+        spsRbsp[0] = 0x42;
+        spsRbsp[1] = 0x01;
+        spsRbsp[2] = 0x01;        // vps_id 0，max_sub_layers_minus1 0，temporal_id_nesting 1
+        System.arraycopy(ptl, 0, spsRbsp, 3, ptl.length);
+        spsRbsp[spsRbsp.length - 1] = (byte) 0xa0;
+        byte[] sps = escape(spsRbsp);
+        assertTrue(sps.length > spsRbsp.length);
+        byte[] pps = {0x44, 0x01, (byte) 0xc1, 0x72};
+        byte[] startCode = {0, 0, 0, 1};
+        byte[] csd = concat(startCode, concat(vps, concat(startCode, concat(sps, concat(startCode, pps)))));
+
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(mRaf.getChannel(), 2_000_000);
+        int video = writer.addTrack(TrackSpec.video(TrackSpec.MIME_HEVC, 1920, 1080, 2_000_000, csd));
+        writer.start();
+        // IDR_W_RADL NAL，Annex-B 起始码应转换为长度前缀
+        writer.writeSample(video, ByteBuffer.wrap(new byte[]{0, 0, 0, 1, 0x26, 0x01, 0x11}), 0,
+                FragmentedMp4Writer.FLAG_KEY_FRAME);
+        writer.finish();
+
+        byte[] d = readFile();
+        List<Box> top = parse(d, 0, d.length);
+        assertEquals("hvc1", fourcc(d, top.get(0).offset + top.get(0).size - 4));
+        Box hvc1 = top.get(1).child("trak/mdia/minf/stbl/stsd/hvc1");
+        assertNotNull(hvc1);
+        assertEquals(1920, u16(d, hvc1.offset + 8 + 24));
+        Box hvcC = hvc1.child("hvcC");
+        int p = hvcC.offset + 8;
+        assertEquals(1, d[p]);
+        assertArrayEquals(ptl, Arrays.copyOfRange(d, p + 1, p + 13));
+        assertEquals(0xfd, d[p + 16] & 0xff);                 // chromaFormat 4:2:0
+        assertEquals((1 << 3) | (1 << 2) | 3, d[p + 21] & 0xff);
+        assertEquals(3, d[p + 22]);                            // numOfArrays
+        int q = p + 23;
+        byte[][] nals = {vps, sps, pps};
+        int[] types = {32, 33, 34};
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0x80 | types[i], d[q] & 0xff);
+            assertEquals(1, u16(d, q + 1));
+            assertEquals(nals[i].length, u16(d, q + 3));
+            assertArrayEquals(nals[i], Arrays.copyOfRange(d, q + 5, q + 5 + nals[i].length));
+            q += 5 + nals[i].length;
+        }
+        assertEquals(hvcC.offset + hvcC.size, q);
+
+        Box mdat = top.get(top.size() - 1);
+        assertEquals("mdat", mdat.type);
+        assertArrayEquals(new byte[]{0, 0, 0, 3, 0x26, 0x01, 0x11},
+                Arrays.copyOfRange(d, mdat.offset + 8, mdat.offset + mdat.size));
+    }
+
+    @Test
+    public void av1Track_copiesConfigRecordIntoAv1C() throws IOException {
+        byte[] av1C = {(byte) 0x81, 0x08, 0x0c, 0x00, 0x0a, 0x0b, 0x00, 0x00, 0x00, 0x42};
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(mRaf.getChannel(), 2_000_000);
+        writer.addTrack(TrackSpec.video(TrackSpec.MIME_AV1, 1280, 720, 1_000_000, av1C));
+        writer.start();
+        writer.finish();
+
+        byte[] d = readFile();
+        List<Box> top = parse(d, 0, d.length);
+        assertEquals("av01", fourcc(d, top.get(0).offset + top.get(0).size - 4));
+        Box av01 = top.get(1).child("trak/mdia/minf/stbl/stsd/av01");
+        assertNotNull(av01);
+        Box box = av01.child("av1C");
+        assertArrayEquals(av1C, Arrays.copyOfRange(d, box.offset + 8, box.offset + box.size));
+    }
+
+    @Test
+    public void invalidUse_isRejected() throws IOException {
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(mRaf.getChannel(), 2_000_000);
+        try {
+            writer.addTrack(TrackSpec.video("video/x-vnd.on2.vp8", 640, 480, 0, new byte[]{1}));
+            fail("unsupported mime accepted");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+        int video = writer.addTrack(videoSpec());
+        try {
+            writer.writeSample(video, videoFrame(0, true), 0, FragmentedMp4Writer.FLAG_KEY_FRAME);
+            fail("write before start accepted");
+        } catch (IllegalStateException expected) {
+            // ok
+        }
+        writer.start();
+        try {
+            writer.addTrack(audioSpec());
+            fail("addTrack after start accepted");
+        } catch (IllegalStateException expected) {
+            // ok
+        }
+        writer.close();
+    }
+}
@@ -0,0 +1,49 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FrameRateStats 单元测试：实际帧率、空闲时长、少编码的帧数和估算节省的字节数
+ */
+public class FrameRateStatsTest {
+
+    @Test
+    public void constantFrameRate_savesNothing() {
+        FrameRateStats stats = new FrameRateStats(30);
+        for (int i = 0; i < 60; i++) {
+            stats.onFrame(i * 33_333L, 1000, i % 30 == 0);
+        }
+        assertEquals(60, stats.getFrames());
+        assertEquals(0, stats.getIdleUs());
+        assertEquals(0, stats.getSkippedFrames());
+        assertEquals(0, stats.getEstimatedSavedBytes());
+        assertEquals(30.0, stats.getEffectiveFps(), 0.1);
+    }
+
+    @Test
+    public void idleScreen_countsSkippedFramesAndEstimatesSavedBytes() {
+        FrameRateStats stats = new FrameRateStats(25);
+        // 1 秒运动（25 帧），之后 4 秒静止，每秒重复一帧
+        for (int i = 0; i < 25; i++) {
+            stats.onFrame(i * 40_000L, 5000, i == 0);
+        }
+        for (int s = 1; s <= 4; s++) {
+            stats.onFrame(960_000L + s * 1_000_000L, 200, false);
+        }
+        assertEquals(29, stats.getFrames());
+        assertEquals(5_000_000, stats.getDurationUs());
+        assertEquals(4 * 960_000, stats.getIdleUs());
+        assertEquals(125, stats.getNominalFrames());
+        assertEquals(96, stats.getSkippedFrames());
+        // 重复帧 200 字节
+        assertEquals(96 * 200, stats.getEstimatedSavedBytes());
+        assertEquals(5.8, stats.getEffectiveFps(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFrameRate_isRejected() {
+        new FrameRateStats(0);
+    }
+}
@@ -0,0 +1,73 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LatencyHistogram 单元测试：分桶精度、百分位数、并发记录
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketLowerBound_isWithinRelativePrecision() {
+        for (long v = 0; v < (1L << 36); v = v * 3 / 2 + 1) {
+            long lower = LatencyHistogram.lowerBound(LatencyHistogram.indexOf(v));
+            assertTrue("v=" + v + " lower=" + lower, lower <= v);
+            assertTrue("v=" + v + " lower=" + lower, v - lower <= v / LatencyHistogram.SUB_BUCKETS);
+        }
+    }
+
+    @Test
+    public void percentiles_followRecordedDistribution() {
+        LatencyHistogram h = new LatencyHistogram();
+        // 1ms ~ 100ms 均匀分布
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1_000_000L);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(1_000_000L, h.getMin());
+        assertEquals(100_000_000L, h.getMax());
+        assertEquals(50.5e6, h.getMean(), 1);
+        assertEquals(50e6, h.getPercentile(50), 50e6 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(99e6, h.getPercentile(99), 99e6 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(100_000_000L, h.getPercentile(100));
+    }
+
+    @Test
+    public void emptyAndReset_reportZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(99));
+        assertEquals(0, h.getMin());
+        h.record(5);
+        h.record(-3);
+        assertEquals(0, h.getMin());
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+
+    @Test
+    public void concurrentRecords_areAllCounted() throws Exception {
+        final LatencyHistogram h = new LatencyHistogram();
+        final int threads = 4;
+        final int perThread = 100_000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    h.record((i + seed) % 1000 * 1000L);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(threads * perThread, h.getCount());
+        assertEquals(999_000L, h.getMax());
+        assertEquals(0, h.getMin());
+    }
+}
@@ -0,0 +1,131 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MetricsRegistry 单元测试：按秒分桶的速率窗口、状态值、直方图注册、快照文本和并发累加
+ */
+public class MetricsRegistryTest {
+
+    private static final long SECOND_NS = 1_000_000_000L;
+
+    @Test
+    public void counterRate_usesCompletedSecondsOnly() {
+        final AtomicLong now = new AtomicLong(100 * SECOND_NS);
+        MetricsRegistry registry = new MetricsRegistry(now::get);
+        MetricsRegistry.Counter frames = registry.counter(MetricsRegistry.VIDEO_FRAMES);
+        assertSame(frames, registry.counter(MetricsRegistry.VIDEO_FRAMES));
+
+        for (int i = 0; i < 30; i++) {
+            frames.increment();
+        }
+        // 第一个完整秒结束前没有速率
+        assertEquals(0, frames.ratePerSecond(), 0);
+        now.addAndGet(SECOND_NS);
+        assertEquals(30, frames.ratePerSecond(), 1e-9);
+
+        for (int s = 0; s < 9; s++) {
+            for (int i = 0; i < 20; i++) {
+                frames.increment();
+            }
+            now.addAndGet(SECOND_NS);
+        }
+        // 只统计最近 5 个完整秒，早期的 30fps 不再计入
+        assertEquals(20, frames.ratePerSecond(), 1e-9);
+        assertEquals(30 + 9 * 20, frames.get());
+
+        // 停止写入后速率逐秒下降，桶不会被误用
+        now.addAndGet(2 * SECOND_NS);
+        assertEquals(3 * 20 / 5.0, frames.ratePerSecond(), 1e-9);
+        now.addAndGet(10 * SECOND_NS);
+        assertEquals(0, frames.ratePerSecond(), 0);
+    }
+
+    @Test
+    public void snapshot_readsGaugesLazilyAndSkipsFailingOnes() {
+        final AtomicLong now = new AtomicLong(0);
+        final AtomicLong depth = new AtomicLong(3);
+        MetricsRegistry registry = new MetricsRegistry(now::get);
+        registry.gauge(MetricsRegistry.MUXER_QUEUE_DEPTH, depth::get);
+        registry.gauge(MetricsRegistry.AUDIO_PENDING_MS, () -> {
+            throw new IllegalStateException("released");
+        });
+
+        depth.set(7);
+        MetricsRegistry.Snapshot snapshot = registry.snapshot();
+        assertEquals(7, snapshot.getGauge(MetricsRegistry.MUXER_QUEUE_DEPTH));
+        assertEquals(0, snapshot.getGauge(MetricsRegistry.AUDIO_PENDING_MS));
+        assertEquals(0, snapshot.getCount("missing"));
+        assertNull(snapshot.getHistogram("missing"));
+        // 快照不可变
+        depth.set(9);
+        assertEquals(7, snapshot.getGauge(MetricsRegistry.MUXER_QUEUE_DEPTH));
+    }
+
+    @Test
+    public void snapshot_formatsOverlayAndDump() {
+        final AtomicLong now = new AtomicLong(10 * SECOND_NS);
+        MetricsRegistry registry = new MetricsRegistry(now::get);
+        LatencyHistogram writeTime = new LatencyHistogram();
+        registry.register(MetricsRegistry.MUXER_WRITE_TIME, writeTime);
+        for (int i = 0; i < 100; i++) {
+            writeTime.record(2_000_000);
+            registry.histogram(MetricsRegistry.VIDEO_CODEC_LATENCY).record(12_000_000);
+        }
+        for (int i = 0; i < 30; i++) {
+            registry.counter(MetricsRegistry.VIDEO_FRAMES).increment();
+            registry.counter(MetricsRegistry.VIDEO_BYTES).add(500_000 / 30);
+        }
+        registry.counter(MetricsRegistry.VIDEO_DROPPED).add(2);
+        registry.gauge(MetricsRegistry.MUXER_QUEUE_DEPTH, () -> 4);
+        now.addAndGet(SECOND_NS);
+
+        MetricsRegistry.Snapshot snapshot = registry.snapshot();
+        assertEquals(1000, snapshot.getUptimeMs());
+        assertEquals(100, snapshot.getHistogram(MetricsRegistry.MUXER_WRITE_TIME).count);
+        String overlay = snapshot.toOverlayText();
+        assertTrue(overlay, overlay.startsWith("30.0fps 4.00Mbps"));
+        // 直方图取桶中值，相对误差约 1/16
+        assertTrue(overlay, overlay.contains(" enc11.") || overlay.contains(" enc12."));
+        assertTrue(overlay, overlay.contains(" wr2.0ms"));
+        assertTrue(overlay, overlay.endsWith(" q4 drop2"));
+
+        StringWriter out = new StringWriter();
+        PrintWriter pw = new PrintWriter(out);
+        snapshot.dump(pw, "  ");
+        pw.flush();
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("    video.frames: total=30, rate=30.0/s"));
+        assertTrue(dump, dump.contains("    muxer.queue_depth: 4"));
+        assertTrue(dump, dump.contains("    muxer.write_time: count=100"));
+    }
+
+    @Test
+    public void concurrentIncrements_areNotLost() throws Exception {
+        final MetricsRegistry registry = new MetricsRegistry(System::nanoTime);
+        final MetricsRegistry.Counter counter = registry.counter(MetricsRegistry.AUDIO_FRAMES);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.increment();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, counter.get());
+        assertEquals(40_000, registry.snapshot().getCount(MetricsRegistry.AUDIO_FRAMES));
+    }
+}
@@ -0,0 +1,159 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MP4 写入相关测试共用的输入样本与独立的参考 box 解析器
+ */
+final class Mp4TestSupport {
+
+    static final byte[] SPS = {0x67, 0x42, (byte) 0xc0, 0x1f, (byte) 0xaa};
+    static final byte[] PPS = {0x68, (byte) 0xce, 0x3c, (byte) 0x80};
+    static final byte[] ASC = {0x12, 0x10};
+    static final int AUDIO_RATE = 44100;
+
+    private Mp4TestSupport() {
+    }
+
+    // ===== 参考解析器 =====
+
+    static final class Box {
+        final String type;
+        final int offset;
+        final int size;
+        final int header;
+        final List<Box> children = new ArrayList<>();
+
+        Box(String type, int offset, int size, int header) {
+            this.type = type;
+            this.offset = offset;
+            this.size = size;
+            this.header = header;
+        }
+
+        Box child(String path) {
+            Box box = this;
+            for (String type : path.split("/")) {
+                Box found = null;
+                for (Box c : box.children) {
+                    if (c.type.equals(type)) {
+                        found = c;
+                        break;
+                    }
+                }
+                if (found == null) return null;
+                box = found;
+            }
+            return box;
+        }
+
+        List<Box> all(String type) {
+            List<Box> list = new ArrayList<>();
+            for (Box c : children) {
+                if (c.type.equals(type)) list.add(c);
+            }
+            return list;
+        }
+    }
+
+    private static final List<String> CONTAINERS = Arrays.asList(
+            "moov", "trak", "edts", "mdia", "minf", "dinf", "stbl", "mvex", "moof", "traf");
+
+    /**
+     * 解析 [from, to) 内的 box 树，box 长度越界或没有恰好铺满父 box 时断言失败
+     */
+    static List<Box> parse(byte[] data, int from, int to) {
+        List<Box> boxes = new ArrayList<>();
+        int pos = from;
+        while (pos < to) {
+            assertTrue("truncated box header at " + pos, pos + 8 <= to);
+            long size = u32(data, pos) & 0xffffffffL;
+            String type = fourcc(data, pos + 4);
+            int header = 8;
+            if (size == 1) {
+                size = u64(data, pos + 8);
+                header = 16;
+            }
+            assertTrue(type + " size " + size + " overruns parent", size >= header && pos + size <= to);
+            Box box = new Box(type, pos, (int) size, header);
+            int childStart = -1;
+            if (CONTAINERS.contains(type)) {
+                childStart = pos + 8;
+            } else if (type.equals("stsd") || type.equals("dref")) {
+                childStart = pos + 16;
+            } else if (type.equals("avc1") || type.equals("hvc1") || type.equals("av01")) {
+                childStart = pos + 8 + 78;
+            } else if (type.equals("mp4a")) {
+                childStart = pos + 8 + 28;
+            }
+            if (childStart > 0) {
+                box.children.addAll(parse(data, childStart, pos + (int) size));
+            }
+            boxes.add(box);
+            pos += size;
+        }
+        assertEquals(to, pos);
+        return boxes;
+    }
+
+    static int u32(byte[] d, int pos) {
+        return ByteBuffer.wrap(d, pos, 4).getInt();
+    }
+
+    static long u64(byte[] d, int pos) {
+        return ByteBuffer.wrap(d, pos, 8).getLong();
+    }
+
+    static int u16(byte[] d, int pos) {
+        return ByteBuffer.wrap(d, pos, 2).getShort() & 0xffff;
+    }
+
+    static String fourcc(byte[] d, int pos) {
+        return new String(d, pos, 4, StandardCharsets.US_ASCII);
+    }
+
+    // ===== 输入 =====
+
+    static TrackSpec videoSpec() {
+        byte[] csd0 = concat(new byte[]{0, 0, 0, 1}, SPS);
+        byte[] csd1 = concat(new byte[]{0, 0, 0, 1}, PPS);
+        return TrackSpec.video(TrackSpec.MIME_AVC, 1280, 720, 4_000_000, csd0, csd1);
+    }
+
+    static TrackSpec audioSpec() {
+        return TrackSpec.audio(TrackSpec.MIME_AAC, AUDIO_RATE, 2, 128_000, ASC);
+    }
+
+    static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    /** Annex-B 视频帧：起始码 + NAL 头 + 帧序号 + rbsp 停止位 */
+    static ByteBuffer videoFrame(int index, boolean key) {
+        return ByteBuffer.wrap(new byte[]{0, 0, 0, 1, (byte) (key ? 0x65 : 0x41), (byte) index, (byte) (index >> 8),
+                (byte) 0x80});
+    }
+
+    static ByteBuffer audioFrame(int index) {
+        return ByteBuffer.wrap(new byte[]{0x21, (byte) index, (byte) (index >> 8)});
+    }
+
+    /** 30fps 视频第 i 帧的 PTS */
+    static long videoPts(int i) {
+        return i * 1_000_000L / 30;
+    }
+
+    /** 第 n 个 AAC 帧（1024 采样）的 PTS */
+    static long audioPts(int n) {
+        return n * 1024L * 1_000_000L / AUDIO_RATE;
+    }
+}
@@ -0,0 +1,237 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MuxerWriter 单元测试：顺序与拷贝语义、样本数/内存背压、写入失败、关闭时排空
+ */
+public class MuxerWriterTest {
+
+    /** 记录写入内容的 SampleWriter，可选地在每次写入时阻塞 */
+    private static final class RecordingWriter implements MuxerWriter.SampleWriter {
+        final List<String> samples = Collections.synchronizedList(new ArrayList<String>());
+        volatile CountDownLatch gate;
+
+        @Override
+        public void writeSample(int track, ByteBuffer data, long presentationTimeUs, int flags) {
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append(track).append(':').append(presentationTimeUs).append(':').append(flags).append(':');
+            while (data.hasRemaining()) {
+                sb.append(data.get());
+            }
+            samples.add(sb.toString());
+        }
+    }
+
+    private static ByteBuffer bytes(int... values) {
+        ByteBuffer b = ByteBuffer.allocate(values.length);
+        for (int v : values) {
+            b.put((byte) v);
+        }
+        b.flip();
+        return b;
+    }
+
+    @Test
+    public void samples_areCopiedAndWrittenInOrder() {
+        RecordingWriter out = new RecordingWriter();
+        MuxerWriter writer = new MuxerWriter(out, 8, 1 << 20, null);
+        writer.start();
+
+        ByteBuffer src = bytes(9, 1, 2, 3);
+        src.position(1);
+        assertTrue(writer.enqueue(0, src, 100, 1));
+        // 源缓冲区 position 不变，入队后修改不影响已入队的数据
+        assertEquals(1, src.position());
+        src.put(1, (byte) 7);
+        assertTrue(writer.enqueue(1, bytes(4), 200, 0));
+        assertTrue(writer.enqueue(0, ByteBuffer.allocate(0), 0, 4));
+
+        assertTrue(writer.close(1000));
+        assertEquals(3, out.samples.size());
+        assertEquals("0:100:1:123", out.samples.get(0));
+        assertEquals("1:200:0:4", out.samples.get(1));
+        assertEquals("0:0:4:", out.samples.get(2));
+        assertEquals(3, writer.getSamplesWritten());
+        assertEquals(4, writer.getBytesWritten());
+        assertEquals(3, writer.getWriteTime().getCount());
+        assertFalse(writer.enqueue(0, bytes(1), 300, 0));
+        assertEquals(1, writer.getDroppedSamples());
+    }
+
+    @Test
+    public void fullQueue_blocksProducerAndRecordsStall() throws Exception {
+        final RecordingWriter out = new RecordingWriter();
+        out.gate = new CountDownLatch(1);
+        final MuxerWriter writer = new MuxerWriter(out, 2, 1 << 20, null);
+        writer.start();
+
+        // 写线程卡在第一个样本上，队列再容纳 2 个
+        assertTrue(writer.enqueue(0, bytes(0), 0, 0));
+        while (writer.getQueuedSamples() > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 1; i < 3; i++) {
+            assertTrue(writer.enqueue(0, bytes(i), i, 0));
+        }
+        final CountDownLatch enqueued = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            writer.enqueue(0, bytes(3), 3, 0);
+            enqueued.countDown();
+        });
+        producer.start();
+        assertFalse(enqueued.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(2, writer.getQueuedSamples());
+
+        out.gate.countDown();
+        assertTrue(enqueued.await(1000, TimeUnit.MILLISECONDS));
+        assertTrue(writer.close(1000));
+        assertEquals(4, out.samples.size());
+        assertEquals(1, writer.getStallCount());
+        assertEquals(1, writer.getEnqueueStall().getCount());
+        assertTrue(writer.getEnqueueStall().getMax() >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(2, writer.getMaxDepth());
+    }
+
+    @Test
+    public void memoryCap_blocksProducerUntilBuffersReturn() throws Exception {
+        final RecordingWriter out = new RecordingWriter();
+        out.gate = new CountDownLatch(1);
+        final MuxerWriter writer = new MuxerWriter(out, 100, 64 * 1024, null);
+        writer.start();
+
+        final ByteBuffer big = ByteBuffer.allocate(30 * 1024);
+        assertTrue(writer.enqueue(0, big.duplicate(), 0, 0));
+        assertTrue(writer.enqueue(0, big.duplicate(), 1, 0));
+        final AtomicInteger done = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            writer.enqueue(0, big.duplicate(), 2, 0);
+            done.incrementAndGet();
+        });
+        producer.start();
+        producer.join(100);
+        assertEquals(0, done.get());
+
+        out.gate.countDown();
+        producer.join(1000);
+        assertEquals(1, done.get());
+        assertTrue(writer.close(1000));
+        assertEquals(3, writer.getSamplesWritten());
+        assertTrue(writer.getMaxQueuedBytesSeen() <= 64 * 1024);
+    }
+
+    @Test
+    public void writeError_isReportedOnceAndLaterSamplesDropped() {
+        final AtomicInteger errors = new AtomicInteger();
+        MuxerWriter writer = new MuxerWriter((track, data, pts, flags) -> {
+            if (pts == 1) throw new IllegalStateException("muxer stopped");
+        }, 8, 1 << 20, e -> errors.incrementAndGet());
+        writer.start();
+        for (int i = 0; i < 4; i++) {
+            writer.enqueue(0, bytes(i), i, 0);
+        }
+        writer.close(1000);
+        assertEquals(1, errors.get());
+        assertTrue(writer.getError() instanceof IllegalStateException);
+        assertEquals(1, writer.getSamplesWritten());
+        assertEquals(3, writer.getDroppedSamples());
+        assertFalse(writer.enqueue(0, bytes(5), 5, 0));
+    }
+
+    @Test
+    public void closeTimeout_abandonsRemainingSamples() {
+        final RecordingWriter out = new RecordingWriter();
+        out.gate = new CountDownLatch(1);
+        MuxerWriter writer = new MuxerWriter(out, 8, 1 << 20, null);
+        writer.start();
+        for (int i = 0; i < 4; i++) {
+            writer.enqueue(0, bytes(i), i, 0);
+        }
+        assertFalse(writer.close(50));
+        assertFalse(writer.isTerminated());
+        out.gate.countDown();
+        writer.close(1000);
+        assertTrue(writer.isTerminated());
+        // 卡住的那一次写入完成，其余放弃
+        assertEquals(1, out.samples.size());
+        assertEquals(3, writer.getDroppedSamples());
+    }
+
+    @Test
+    public void interleaving_writesTracksInTimestampOrder() {
+        RecordingWriter out = new RecordingWriter();
+        MuxerWriter writer = new MuxerWriter(out, 16, 1 << 20, null);
+        writer.setInterleaving(2, 10_000_000, 0, 1);
+        writer.start();
+        // 视频突发到达，音频稍后补上
+        writer.enqueue(0, bytes(1), 0, 1);
+        writer.enqueue(0, bytes(2), 40_000, 0);
+        writer.enqueue(0, bytes(3), 80_000, 0);
+        writer.enqueue(1, bytes(4), 0, 0);
+        writer.enqueue(1, bytes(5), 50_000, 0);
+        writer.enqueue(1, ByteBuffer.allocate(0), 0, 4);
+        writer.enqueue(0, ByteBuffer.allocate(0), 0, 4);
+
+        assertTrue(writer.close(1000));
+        assertEquals("[0:0:1:1, 1:0:0:4, 0:40000:0:2, 1:50000:0:5, 1:0:4:, 0:80000:0:3, 0:0:4:]",
+                out.samples.toString());
+        assertEquals(0, writer.getQueuedBytes());
+        assertEquals(0, writer.getHoldTimeouts());
+    }
+
+    @Test
+    public void interleaving_keepsOriginalPtsOfOutOfOrderVideo() {
+        RecordingWriter out = new RecordingWriter();
+        MuxerWriter writer = new MuxerWriter(out, 16, 1 << 20, null);
+        writer.setInterleaving(2, 10_000_000, 0, 1);
+        writer.start();
+        // B 帧：解码顺序 I P B，PTS 0 80000 40000
+        writer.enqueue(0, bytes(1), 0, 1);
+        writer.enqueue(0, bytes(2), 80_000, 0);
+        writer.enqueue(0, bytes(3), 40_000, 0);
+        writer.enqueue(0, ByteBuffer.allocate(0), 0, 4);
+        writer.enqueue(1, ByteBuffer.allocate(0), 0, 4);
+
+        assertTrue(writer.close(1000));
+        assertEquals("[1:0:4:, 0:0:1:1, 0:80000:0:2, 0:40000:0:3, 0:0:4:]", out.samples.toString());
+    }
+
+    @Test
+    public void interleaving_stalledTrackIsReleasedAfterHoldTimeout() throws Exception {
+        RecordingWriter out = new RecordingWriter();
+        MuxerWriter writer = new MuxerWriter(out, 16, 1 << 20, null);
+        writer.setInterleaving(2, 50_000, 0);
+        writer.start();
+        // 音频一直没有到达，视频最多被扣留 50ms
+        writer.enqueue(0, bytes(1), 0, 1);
+        Thread.sleep(20);
+        assertEquals(0, out.samples.size());
+        long deadline = System.currentTimeMillis() + 1000;
+        while (out.samples.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals("[0:0:1:1]", out.samples.toString());
+        assertEquals(1, writer.getHoldTimeouts());
+        assertTrue(writer.close(1000));
+    }
+}
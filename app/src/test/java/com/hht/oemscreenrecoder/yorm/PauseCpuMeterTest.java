@@ -0,0 +1,57 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PauseCpuMeter 单元测试：按状态累计真实时间、CPU 时间和编码样本数
+ */
+public class PauseCpuMeterTest {
+
+    @Test
+    public void separatesRecordingAndPausedUsage() {
+        PauseCpuMeter meter = new PauseCpuMeter();
+        meter.start(1000, 50);
+        meter.onEncodedSample();
+        meter.onEncodedSample();
+        // 录制 2s 用了 800ms CPU
+        meter.pause(3000, 850);
+        assertTrue(meter.isPaused());
+        meter.onEncodedSample();
+        // 暂停 4s 用了 40ms CPU
+        meter.resume(7000, 890);
+        assertFalse(meter.isPaused());
+        // 再录制 2s 用了 800ms CPU
+        meter.stop(9000, 1690);
+
+        assertEquals(40.0, meter.getRecordingCpuPercent(), 1e-9);
+        assertEquals(1.0, meter.getPausedCpuPercent(), 1e-9);
+        assertEquals(4000, meter.getPausedMs());
+        assertEquals(2, meter.getRecordingSamples());
+        assertEquals(1, meter.getPausedSamples());
+        assertEquals(1, meter.getPauseCount());
+    }
+
+    @Test
+    public void repeatedOrUnstartedTransitions_areIgnored() {
+        PauseCpuMeter meter = new PauseCpuMeter();
+        meter.pause(0, 0);
+        assertFalse(meter.isPaused());
+        assertEquals(0, meter.getPauseCount());
+
+        meter.start(0, 0);
+        meter.pause(1000, 100);
+        meter.pause(2000, 200);
+        meter.resume(3000, 300);
+        meter.resume(4000, 400);
+        meter.stop(5000, 500);
+        assertEquals(1, meter.getPauseCount());
+        assertEquals(2000, meter.getPausedMs());
+        assertEquals(10.0, meter.getPausedCpuPercent(), 1e-9);
+        assertEquals(10.0, meter.getRecordingCpuPercent(), 1e-9);
+        assertEquals(0.0, new PauseCpuMeter().getPausedCpuPercent(), 0);
+    }
+}
@@ -0,0 +1,140 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 混音帧处理耗时对比：旧的多遍扫描实现 vs PcmFrameAnalyzer 单遍实现
+ * 属于手动运行的微基准（去掉 @Ignore 后执行），结果打印到标准输出，不做断言
+ */
+@Ignore("manual micro benchmark")
+public class PcmFrameAnalyzerBenchmark {
+
+    private static final int[] FRAME_SIZES = {1024, 2048, 4096};
+    private static final int WARMUP_FRAMES = 50_000;
+    private static final int MEASURE_FRAMES = 200_000;
+
+    @Test
+    public void compareLegacyAndFused() {
+        for (int size : FRAME_SIZES) {
+            short[] internal = new short[size];
+            short[] mic = new short[size];
+            short[] internalSrc = new short[size];
+            short[] micSrc = new short[size];
+            Random random = new Random(size);
+            for (int i = 0; i < size; i++) {
+                // 中等音量，避免大量削波影响分支预测
+                internalSrc[i] = (short) (random.nextInt(20000) - 10000);
+                micSrc[i] = (short) (random.nextInt(20000) - 10000);
+            }
+            ByteBuffer codecInput = ByteBuffer.allocateDirect(size * 2);
+            PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(50);
+            LegacyPath legacy = new LegacyPath();
+
+            long sink = 0;
+            for (int f = 0; f < WARMUP_FRAMES; f++) {
+                sink += runLegacy(legacy, internalSrc, micSrc, internal, mic, codecInput);
+                sink += runFused(analyzer, internalSrc, micSrc, internal, mic, codecInput);
+            }
+
+            long t0 = System.nanoTime();
+            for (int f = 0; f < MEASURE_FRAMES; f++) {
+                sink += runLegacy(legacy, internalSrc, micSrc, internal, mic, codecInput);
+            }
+            long t1 = System.nanoTime();
+            for (int f = 0; f < MEASURE_FRAMES; f++) {
+                sink += runFused(analyzer, internalSrc, micSrc, internal, mic, codecInput);
+            }
+            long t2 = System.nanoTime();
+
+            double legacyNs = (t1 - t0) / (double) MEASURE_FRAMES;
+            double fusedNs = (t2 - t1) / (double) MEASURE_FRAMES;
+            System.out.println(String.format(Locale.US,
+                    "frame=%d samples: legacy=%.0f ns/frame, fused=%.0f ns/frame, speedup=%.2fx (sink=%d)",
+                    size, legacyNs, fusedNs, legacyNs / fusedNs, sink));
+        }
+    }
+
+    private static long runLegacy(LegacyPath legacy, short[] internalSrc, short[] micSrc,
+                                  short[] internal, short[] mic, ByteBuffer codecInput) {
+        System.arraycopy(internalSrc, 0, internal, 0, internal.length);
+        System.arraycopy(micSrc, 0, mic, 0, mic.length);
+        byte[] bytes = legacy.process(internal, mic, internal.length);
+        codecInput.clear();
+        codecInput.put(bytes, 0, internal.length * 2);
+        return bytes[0];
+    }
+
+    private static long runFused(PcmFrameAnalyzer analyzer, short[] internalSrc, short[] micSrc,
+                                 short[] internal, short[] mic, ByteBuffer codecInput) {
+        System.arraycopy(internalSrc, 0, internal, 0, internal.length);
+        System.arraycopy(micSrc, 0, mic, 0, mic.length);
+        int peak = analyzer.mix(internal, mic, internal.length, 1.4f);
+        codecInput.clear();
+        PcmUtils.writeSamples(internal, 0, internal.length, codecInput);
+        return peak;
+    }
+
+    /**
+     * 旧实现的混音路径：诊断扫描 ×2、静音检测 ×2、增益、混音并转换为 byte[]
+     */
+    private static final class LegacyPath {
+        private byte[] buffer;
+        int consecutiveSilent;
+
+        byte[] process(short[] internal, short[] mic, int len) {
+            int internalMax = 0;
+            int micMax = 0;
+            boolean internalAllZeros = true;
+            boolean micAllZeros = true;
+            for (int i = 0; i < len; i++) {
+                if (internal[i] != 0) internalAllZeros = false;
+                internalMax = Math.max(internalMax, Math.abs(internal[i]));
+            }
+            for (int i = 0; i < len; i++) {
+                if (mic[i] != 0) micAllZeros = false;
+                micMax = Math.max(micMax, Math.abs(mic[i]));
+            }
+            boolean silent = isSilent(internal, len) & isSilent(mic, len);
+            if (internalAllZeros && micAllZeros && silent && internalMax + micMax < 0) {
+                return buffer;
+            }
+            for (int i = 0; i < len; i++) {
+                int v = (int) (mic[i] * 1.4f);
+                if (v > Short.MAX_VALUE) {
+                    v = Short.MAX_VALUE;
+                } else if (v < Short.MIN_VALUE) {
+                    v = Short.MIN_VALUE;
+                }
+                mic[i] = (short) v;
+            }
+            if (buffer == null || buffer.length < len * 2) {
+                buffer = new byte[len * 2];
+            }
+            for (int i = 0; i < len; i++) {
+                int sum = internal[i] + mic[i];
+                if (sum > Short.MAX_VALUE) sum = Short.MAX_VALUE;
+                if (sum < Short.MIN_VALUE) sum = Short.MIN_VALUE;
+                buffer[i * 2] = (byte) (sum & 0xff);
+                buffer[i * 2 + 1] = (byte) ((sum >> 8) & 0xff);
+            }
+            return buffer;
+        }
+
+        private boolean isSilent(short[] buf, int len) {
+            boolean allZeros = true;
+            int max = 0;
+            for (int i = 0; i < len; i++) {
+                if (buf[i] != 0) allZeros = false;
+                max = Math.max(max, Math.abs(buf[i]));
+            }
+            boolean silent = allZeros || max < 50;
+            consecutiveSilent = silent ? consecutiveSilent + 1 : 0;
+            return silent;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PcmFrameAnalyzer 单元测试：单遍统计结果与逐项计算一致，混音结果与旧实现一致
+ */
+public class PcmFrameAnalyzerTest {
+
+    private static final int THRESHOLD = 50;
+
+    @Test
+    public void analyze_unityGain_reportsAllStats() {
+        PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(THRESHOLD);
+        short[] buf = {0, 3, -4, 0, Short.MAX_VALUE, 9};
+        int peak = analyzer.analyze(buf, 5, 1f);
+
+        assertEquals(Short.MAX_VALUE, peak);
+        assertEquals(2, analyzer.first.zeroCount);
+        assertEquals(1, analyzer.first.clipCount);
+        assertEquals(5, analyzer.first.length);
+        assertEquals(9L + 16 + (long) Short.MAX_VALUE * Short.MAX_VALUE, analyzer.first.sumSquares);
+        assertFalse(analyzer.output.silent);
+        // 未改写数据
+        assertEquals(9, buf[5]);
+        assertEquals(-4, buf[2]);
+    }
+
+    @Test
+    public void analyze_silenceDecisionUsesThreshold() {
+        PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(THRESHOLD);
+        short[] buf = {10, -49, 0, 20};
+        analyzer.analyze(buf, buf.length, 1f);
+        assertTrue(analyzer.output.silent);
+
+        buf[1] = -50;
+        analyzer.analyze(buf, buf.length, 1f);
+        assertFalse(analyzer.output.silent);
+    }
+
+    @Test
+    public void analyze_allZeros() {
+        PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(THRESHOLD);
+        short[] buf = new short[16];
+        analyzer.analyze(buf, buf.length, 1.4f);
+        assertTrue(analyzer.output.allZeros());
+        assertEquals(0.0, analyzer.output.rms(), 0.0);
+        assertTrue(analyzer.output.silent);
+    }
+
+    @Test
+    public void analyze_withGain_appliesInPlaceAndClamps() {
+        PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(THRESHOLD);
+        short[] buf = {1000, -1000, 30000, -30000, 40};
+        int peak = analyzer.analyze(buf, buf.length, 1.4f);
+
+        assertArrayEquals(new short[]{1400, -1400, Short.MAX_VALUE, Short.MIN_VALUE, 56}, buf);
+        assertEquals(-(int) Short.MIN_VALUE, peak);
+        assertEquals(30000, analyzer.first.peak);
+        assertFalse(analyzer.first.silent);
+        assertEquals(2, analyzer.output.clipCount);
+        // 原始 40 静音，增益后 56 不再静音
+        short[] quiet = {40, -40};
+        analyzer.analyze(quiet, 2, 1.4f);
+        assertTrue(analyzer.first.silent);
+        assertFalse(analyzer.output.silent);
+    }
+
+    @Test
+    public void mix_matchesLegacyScaleThenAddPath() {
+        Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            int len = 1 + random.nextInt(2048);
+            short[] a = randomFrame(random, len);
+            short[] b = randomFrame(random, len);
+
+            short[] expected = legacyMix(a.clone(), b.clone(), len, 1.4f);
+            short[] micBefore = b.clone();
+
+            PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(THRESHOLD);
+            short[] out = a.clone();
+            int peak = analyzer.mix(out, b, len, 1.4f);
+
+            assertArrayEquals(expected, out);
+            assertArrayEquals("mic buffer must not be modified", micBefore, b);
+            assertEquals(peakOf(expected, len), peak);
+            assertEquals(peakOf(a, len), analyzer.first.peak);
+            assertEquals(peakOf(micBefore, len), analyzer.second.peak);
+        }
+    }
+
+    @Test
+    public void mix_statsMatchReferenceComputation() {
+        Random random = new Random(11);
+        int len = 1024;
+        short[] a = randomFrame(random, len);
+        short[] b = randomFrame(random, len);
+        for (int i = 0; i < len; i += 7) {
+            a[i] = 0;
+        }
+
+        PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(THRESHOLD);
+        short[] out = a.clone();
+        analyzer.mix(out, b, len, 1f);
+
+        long squares = 0;
+        int zeros = 0;
+        for (int i = 0; i < len; i++) {
+            squares += a[i] * a[i];
+            if (a[i] == 0) zeros++;
+        }
+        assertEquals(squares, analyzer.first.sumSquares);
+        assertEquals(zeros, analyzer.first.zeroCount);
+        assertEquals(Math.sqrt((double) squares / len), analyzer.first.rms(), 1e-9);
+    }
+
+    @Test
+    public void mix_bothSilentSources() {
+        PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(THRESHOLD);
+        short[] a = {1, -2, 3};
+        short[] b = {0, 0, 1};
+        analyzer.mix(a, b, 3, 1.4f);
+        assertTrue(analyzer.first.silent && analyzer.second.silent);
+    }
+
+    private static short[] randomFrame(Random random, int len) {
+        short[] frame = new short[len];
+        for (int i = 0; i < len; i++) {
+            frame[i] = (short) random.nextInt();
+        }
+        return frame;
+    }
+
+    private static int peakOf(short[] buf, int len) {
+        int peak = 0;
+        for (int i = 0; i < len; i++) {
+            peak = Math.max(peak, Math.abs(buf[i]));
+        }
+        return peak;
+    }
+
+    /**
+     * 旧实现：scaleValues 后 addAndConvertBuffers
+     */
+    static short[] legacyMix(short[] internal, short[] mic, int len, float scale) {
+        for (int i = 0; i < len; i++) {
+            int v = (int) (mic[i] * scale);
+            if (v > Short.MAX_VALUE) {
+                v = Short.MAX_VALUE;
+            } else if (v < Short.MIN_VALUE) {
+                v = Short.MIN_VALUE;
+            }
+            mic[i] = (short) v;
+        }
+        short[] out = new short[len];
+        for (int i = 0; i < len; i++) {
+            int sum = internal[i] + mic[i];
+            if (sum > Short.MAX_VALUE) sum = Short.MAX_VALUE;
+            if (sum < Short.MIN_VALUE) sum = Short.MIN_VALUE;
+            out[i] = (short) sum;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,242 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PcmRingBuffer 单元测试：读写正确性、回绕、溢出统计、背压信号，以及生产者/消费者分线程压力测试
+ */
+public class PcmRingBufferTest {
+
+    @Test
+    public void forDuration_sizesCapacityInMilliseconds() {
+        PcmRingBuffer ring = PcmRingBuffer.forDuration(48000, 2, 500);
+        assertEquals(48000 * 2 * 2 / 2, ring.capacity());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void writeThenReadShorts_roundTrips() {
+        PcmRingBuffer ring = new PcmRingBuffer(64);
+        short[] src = {1, -1, Short.MAX_VALUE, Short.MIN_VALUE, 0x1234};
+        assertEquals(5, ring.write(src, 0, src.length));
+        assertEquals(10, ring.available());
+
+        short[] dst = new short[8];
+        assertEquals(5, ring.read(dst, 1, 7));
+        for (int i = 0; i < src.length; i++) {
+            assertEquals(src[i], dst[i + 1]);
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void readIntoByteBuffer_usesNativeOrderAndWrapsAround() {
+        PcmRingBuffer ring = new PcmRingBuffer(12);
+        short[] samples = new short[4];
+        short next = 100;
+        short expected = 100;
+        // 多次写读，让读写位置跨过缓冲区末尾
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < samples.length; i++) samples[i] = next++;
+            assertEquals(4, ring.write(samples, 0, 4));
+
+            ByteBuffer dst = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+            assertEquals(8, ring.read(dst));
+            dst.flip();
+            for (int i = 0; i < 4; i++) {
+                assertEquals(expected++, dst.getShort());
+            }
+        }
+    }
+
+    @Test
+    public void partialRead_leavesRemainderForNextCodecBuffer() {
+        PcmRingBuffer ring = new PcmRingBuffer(64);
+        short[] src = {1, 2, 3, 4, 5, 6};
+        ring.write(src, 0, src.length);
+
+        // 编码器 buffer 只能放下 5 个字节：只读取偶数字节，不拆分采样
+        ByteBuffer small = ByteBuffer.allocate(5);
+        assertEquals(4, ring.read(small));
+        assertEquals(8, ring.available());
+
+        short[] rest = new short[6];
+        assertEquals(4, ring.read(rest, 0, 6));
+        assertEquals(3, rest[0]);
+        assertEquals(6, rest[3]);
+    }
+
+    @Test
+    public void overflow_writesWhatFitsAndCountsTheRest() {
+        PcmRingBuffer ring = new PcmRingBuffer(10);
+        short[] src = {1, 2, 3, 4, 5, 6, 7};
+        assertEquals(5, ring.write(src, 0, src.length));
+        assertEquals(4, ring.getOverflowBytes());
+        assertEquals(1, ring.getOverflowEvents());
+        assertEquals(0, ring.free());
+
+        assertEquals(0, ring.write(src, 0, 1));
+        assertEquals(6, ring.getOverflowBytes());
+        assertEquals(2, ring.getOverflowEvents());
+
+        short[] dst = new short[7];
+        assertEquals(5, ring.read(dst, 0, 7));
+        assertEquals(5, dst[4]);
+    }
+
+    @Test
+    public void highWatermark_signalsBackPressure() {
+        PcmRingBuffer ring = new PcmRingBuffer(80);
+        short[] src = new short[40];
+        ring.write(src, 0, 20);
+        assertFalse(ring.isAboveHighWatermark());
+        ring.write(src, 0, 10);
+        assertTrue(ring.isAboveHighWatermark());
+        assertEquals(1, ring.getHighWatermarkHits());
+        assertEquals(60, ring.getMaxFill());
+
+        ring.clear();
+        assertTrue(ring.isEmpty());
+        assertFalse(ring.isAboveHighWatermark());
+        assertEquals(60, ring.getMaxFill());
+    }
+
+    /**
+     * 生产者/消费者分别在两个线程上运行：生产者写入连续递增序列，消费者以不同大小的块读取，
+     * 校验数据无错序、无撕裂，且 写入量 = 读取量 + 溢出量
+     */
+    @Test(timeout = 30_000)
+    public void concurrentProducerConsumer_preservesSequence() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(4096);
+        final int total = 2_000_000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                short[] chunk = new short[333];
+                int produced = 0;
+                short value = 0;
+                while (produced < total) {
+                    int n = Math.min(chunk.length, total - produced);
+                    for (int i = 0; i < n; i++) chunk[i] = value++;
+                    int off = 0;
+                    // 不允许溢出：满了就等待消费者，从而验证顺序的完整性
+                    while (off < n) {
+                        int w = ring.write(chunk, off, Math.min(n - off, ring.free() >> 1));
+                        off += w;
+                        if (w == 0) Thread.yield();
+                    }
+                    produced += n;
+                }
+            }
+        }, "producer");
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                short expected = 0;
+                int consumed = 0;
+                ByteBuffer codecBuffer = ByteBuffer.allocate(1000).order(ByteOrder.nativeOrder());
+                short[] shorts = new short[257];
+                boolean useByteBuffer = false;
+                try {
+                    while (consumed < total) {
+                        useByteBuffer = !useByteBuffer;
+                        if (useByteBuffer) {
+                            codecBuffer.clear();
+                            int bytes = ring.read(codecBuffer);
+                            codecBuffer.flip();
+                            for (int i = 0; i < bytes / 2; i++) {
+                                short s = codecBuffer.getShort();
+                                if (s != expected) throw new AssertionError("expected " + expected + " got " + s);
+                                expected++;
+                            }
+                            consumed += bytes / 2;
+                            if (bytes == 0) Thread.yield();
+                        } else {
+                            int n = ring.read(shorts, 0, shorts.length);
+                            for (int i = 0; i < n; i++) {
+                                if (shorts[i] != expected) {
+                                    throw new AssertionError("expected " + expected + " got " + shorts[i]);
+                                }
+                                expected++;
+                            }
+                            consumed += n;
+                            if (n == 0) Thread.yield();
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        }, "consumer");
+
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.getOverflowBytes());
+        assertEquals((long) total * 2, ring.getTotalWritten());
+    }
+
+    /**
+     * 消费者比生产者慢时：溢出只计数不阻塞，写入量 = 读取量 + 溢出量
+     */
+    @Test(timeout = 30_000)
+    public void concurrentOverflow_accountsForEveryByte() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(2048);
+        final int chunks = 20_000;
+        final long[] consumedBytes = new long[1];
+        final boolean[] done = new boolean[1];
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer codecBuffer = ByteBuffer.allocate(300);
+                while (true) {
+                    boolean finished;
+                    synchronized (done) {
+                        finished = done[0];
+                    }
+                    codecBuffer.clear();
+                    int n = ring.read(codecBuffer);
+                    consumedBytes[0] += n;
+                    if (n == 0) {
+                        if (finished) break;
+                        Thread.yield();
+                    }
+                }
+            }
+        }, "slow-consumer");
+        consumer.start();
+
+        short[] chunk = new short[512];
+        long attempted = 0;
+        long written = 0;
+        for (int i = 0; i < chunks; i++) {
+            written += ring.write(chunk, 0, chunk.length) * 2L;
+            attempted += chunk.length * 2L;
+        }
+        synchronized (done) {
+            done[0] = true;
+        }
+        consumer.join();
+
+        assertEquals(attempted, written + ring.getOverflowBytes());
+        assertEquals(written, consumedBytes[0]);
+        assertTrue(ring.getMaxFill() <= ring.capacity());
+    }
+}
@@ -0,0 +1,131 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PcmUtils 单元测试：结果正确性 + 喂数据路径零分配
+ */
+public class PcmUtilsTest {
+
+    @Test
+    public void writeSamples_matchesLittleEndianByteConversion() {
+        short[] src = {0x0102, -2, Short.MAX_VALUE, Short.MIN_VALUE};
+        ByteBuffer dst = ByteBuffer.allocateDirect(src.length * 2);
+        int n = PcmUtils.writeSamples(src, 0, src.length, dst);
+        assertEquals(src.length, n);
+
+        // 旧实现的逐字节转换结果（本机字节序为小端时应完全一致）
+        Assume.assumeTrue(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < src.length; i++) {
+            assertEquals((byte) (src[i] & 0xff), dst.get(i * 2));
+            assertEquals((byte) ((src[i] >> 8) & 0xff), dst.get(i * 2 + 1));
+        }
+    }
+
+    @Test
+    public void writeSamples_stopsAtRemainingCapacity() {
+        short[] src = new short[10];
+        ByteBuffer dst = ByteBuffer.allocate(7);
+        assertEquals(3, PcmUtils.writeSamples(src, 2, 8, dst));
+        assertEquals(6, dst.position());
+    }
+
+    @Test
+    public void convertChannels_stereoToMonoAverages() {
+        short[] src = {100, 300, -200, -400, Short.MAX_VALUE, Short.MAX_VALUE};
+        short[] dst = new short[3];
+        PcmUtils.convertChannels(src, 3, 2, dst, 1);
+        assertArrayEquals(new short[]{200, -300, Short.MAX_VALUE}, dst);
+    }
+
+    @Test
+    public void convertChannels_monoToStereoDuplicates() {
+        short[] src = {1, -2, 3};
+        short[] dst = new short[6];
+        PcmUtils.convertChannels(src, 3, 1, dst, 2);
+        assertArrayEquals(new short[]{1, 1, -2, -2, 3, 3}, dst);
+    }
+
+    @Test
+    public void convertChannels_sameCountCopies() {
+        short[] src = {5, 6, 7, 8};
+        short[] dst = new short[4];
+        PcmUtils.convertChannels(src, 2, 2, dst, 2);
+        assertArrayEquals(src, dst);
+    }
+
+    @Test
+    public void fillNoise_staysWithinAmplitude() {
+        short[] buf = new short[4096];
+        PcmUtils.fillNoise(buf, buf.length, 3, new Random(1));
+        for (short s : buf) {
+            assertTrue(s >= -3 && s <= 3);
+        }
+    }
+
+    @Test
+    public void fillAlternating_writesPlusMinusOne() {
+        short[] buf = new short[5];
+        PcmUtils.fillAlternating(buf, 4);
+        assertEquals(1, buf[0]);
+        assertEquals(-1, buf[1]);
+        assertEquals(1, buf[2]);
+        assertEquals(-1, buf[3]);
+        assertEquals(0, buf[4]);
+    }
+
+    /**
+     * 模拟一小时录制量级的喂数据循环（分析混音 + 写入编码器缓冲区），
+     * 预热后按线程统计分配字节数，平均每帧应远小于 1 字节
+     */
+    @Test
+    public void feedPath_doesNotAllocatePerFrame() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        final int frameShorts = 1024;
+        short[] internal = new short[frameShorts];
+        short[] mic = new short[frameShorts];
+        ByteBuffer codecInput = ByteBuffer.allocateDirect(frameShorts * 2);
+        Random random = new Random(7);
+        for (int i = 0; i < frameShorts; i++) {
+            internal[i] = (short) random.nextInt();
+            mic[i] = (short) random.nextInt();
+        }
+
+        runFrames(20_000, internal, mic, codecInput);
+
+        final int frames = 100_000;
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        long sink = runFrames(frames, internal, mic, codecInput);
+        long allocated = mx.getThreadAllocatedBytes(tid) - before;
+
+        assertTrue("sink=" + sink, sink != Long.MIN_VALUE);
+        assertTrue("allocated " + allocated + " bytes for " + frames + " frames", allocated < frames);
+    }
+
+    private static long runFrames(int frames, short[] internal, short[] mic, ByteBuffer codecInput) {
+        PcmFrameAnalyzer analyzer = new PcmFrameAnalyzer(50);
+        long sink = 0;
+        for (int f = 0; f < frames; f++) {
+            sink += analyzer.mix(internal, mic, internal.length, 1.4f);
+            codecInput.clear();
+            sink += PcmUtils.writeSamples(internal, 0, internal.length, codecInput);
+        }
+        return sink;
+    }
+}
@@ -0,0 +1,88 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PendingSampleQueue 单元测试：按轨道先进先出、字段拷贝、共用槽位池扩容、清空后复用
+ */
+public class PendingSampleQueueTest {
+    private static final int VIDEO = 0;
+    private static final int AUDIO = 1;
+
+    @Test
+    public void tracks_areFifoAndIndependent() {
+        PendingSampleQueue queue = new PendingSampleQueue(2, 4);
+        queue.add(VIDEO, 3, 0, 100, 1000, 1);
+        queue.add(AUDIO, 7, 8, 20, 900, 0);
+        queue.add(VIDEO, 5, 0, 50, 2000, 0);
+        assertEquals(2, queue.count(VIDEO));
+        assertEquals(1, queue.count(AUDIO));
+
+        int slot = queue.poll(VIDEO);
+        assertEquals(3, queue.index(slot));
+        assertEquals(100, queue.size(slot));
+        assertEquals(1000, queue.presentationTimeUs(slot));
+        assertEquals(1, queue.flags(slot));
+        slot = queue.poll(AUDIO);
+        assertEquals(7, queue.index(slot));
+        assertEquals(8, queue.offset(slot));
+        assertEquals(-1, queue.poll(AUDIO));
+        assertEquals(5, queue.index(queue.poll(VIDEO)));
+        assertEquals(-1, queue.poll(VIDEO));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void startupBurst_growsSharedPoolKeepingOrder() {
+        PendingSampleQueue queue = new PendingSampleQueue(2, 2);
+        // 先出入一次让环形队列的起点不在 0
+        queue.add(AUDIO, -1, 0, 0, 0, 0);
+        queue.poll(AUDIO);
+        for (int i = 0; i < 10; i++) {
+            queue.add(i % 2 == 0 ? VIDEO : AUDIO, i, 0, i, i * 10L, 0);
+        }
+        assertEquals(16, queue.capacity());
+        assertEquals(3, queue.getGrowCount());
+        for (int i = 0; i < 10; i += 2) {
+            int slot = queue.poll(VIDEO);
+            assertEquals(i, queue.index(slot));
+            assertEquals(i * 10L, queue.presentationTimeUs(slot));
+        }
+        for (int i = 1; i < 10; i += 2) {
+            assertEquals(i, queue.index(queue.poll(AUDIO)));
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void steadyState_reusesSlotsWithoutGrowing() {
+        PendingSampleQueue queue = new PendingSampleQueue(2, 4);
+        for (int round = 0; round < 100; round++) {
+            queue.add(VIDEO, round, 0, 1, round, 0);
+            queue.add(AUDIO, round, 0, 1, round, 0);
+            assertEquals(round, queue.index(queue.poll(VIDEO)));
+            assertEquals(round, queue.index(queue.poll(AUDIO)));
+        }
+        assertEquals(4, queue.capacity());
+        assertEquals(0, queue.getGrowCount());
+    }
+
+    @Test
+    public void clear_dropsEverything() {
+        PendingSampleQueue queue = new PendingSampleQueue(2, 2);
+        queue.add(VIDEO, 1, 0, 1, 1, 0);
+        queue.add(AUDIO, 2, 0, 1, 1, 0);
+        queue.add(AUDIO, 3, 0, 1, 1, 0);
+        assertFalse(queue.isEmpty());
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.count(AUDIO));
+        assertEquals(-1, queue.poll(VIDEO));
+        queue.add(AUDIO, 4, 0, 1, 1, 0);
+        assertEquals(4, queue.index(queue.poll(AUDIO)));
+    }
+}
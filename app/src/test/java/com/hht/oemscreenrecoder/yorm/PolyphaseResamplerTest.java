@@ -0,0 +1,121 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PolyphaseResampler 单元测试：输出帧数/速率、频率保持、直流增益、分块无关性
+ */
+public class PolyphaseResamplerTest {
+
+    @Test
+    public void sameRate_passesThrough() {
+        PolyphaseResampler r = new PolyphaseResampler(48000, 48000, 2);
+        short[] in = {1, 2, 3, 4, 5, 6};
+        short[] out = new short[r.maxOutputFrames(3) * 2];
+        assertEquals(3, r.process(in, 3, out));
+        assertArrayEquals(in, Arrays.copyOf(out, 6));
+    }
+
+    @Test
+    public void upsample_producesExpectedFrameCount() {
+        PolyphaseResampler r = new PolyphaseResampler(44100, 48000, 1);
+        int total = 0;
+        short[] in = new short[441];
+        short[] out = new short[r.maxOutputFrames(in.length)];
+        for (int i = 0; i < 100; i++) {
+            int n = r.process(in, in.length, out);
+            assertTrue(n <= r.maxOutputFrames(in.length));
+            total += n;
+        }
+        // 1 秒 44.1kHz 输入对应 48000 帧输出（流式处理只差滤波器延迟内的一两帧）
+        assertEquals(48000, total, 2);
+    }
+
+    @Test
+    public void downsample_producesExpectedFrameCount() {
+        PolyphaseResampler r = new PolyphaseResampler(48000, 16000, 2);
+        short[] in = new short[960 * 2];
+        short[] out = new short[r.maxOutputFrames(960) * 2];
+        int total = 0;
+        for (int i = 0; i < 50; i++) {
+            total += r.process(in, 960, out);
+        }
+        assertEquals(16000, total, 2);
+    }
+
+    @Test
+    public void dcInput_keepsUnityGain() {
+        PolyphaseResampler r = new PolyphaseResampler(44100, 48000, 1);
+        short[] in = new short[4410];
+        Arrays.fill(in, (short) 10000);
+        short[] out = new short[r.maxOutputFrames(in.length)];
+        int n = r.process(in, in.length, out);
+        // 跳过滤波器启动阶段
+        for (int i = PolyphaseResampler.TAPS_PER_PHASE * 2; i < n; i++) {
+            assertEquals(10000, out[i], 2);
+        }
+    }
+
+    @Test
+    public void sine_keepsFrequencyAndAmplitude() {
+        final int inRate = 44100;
+        final int outRate = 48000;
+        final double freq = 1000;
+        PolyphaseResampler r = new PolyphaseResampler(inRate, outRate, 1);
+        short[] in = sine(inRate, freq, inRate, 0);
+        short[] out = new short[r.maxOutputFrames(in.length)];
+        int n = r.process(in, in.length, out);
+
+        // 与理想的 48kHz 正弦比较（扣除滤波器群延迟后，用相关系数判断频率与相位）
+        double delayIn = (PolyphaseResampler.TAPS_PER_PHASE - 1) / 2.0;
+        double sumXY = 0, sumXX = 0, sumYY = 0;
+        for (int i = 1000; i < n - 1000; i++) {
+            double t = (double) i / outRate - delayIn / inRate;
+            double expected = Math.sin(2 * Math.PI * freq * t) * 16000;
+            sumXY += out[i] * expected;
+            sumXX += (double) out[i] * out[i];
+            sumYY += expected * expected;
+        }
+        double correlation = sumXY / Math.sqrt(sumXX * sumYY);
+        assertTrue("correlation=" + correlation, correlation > 0.99);
+        assertEquals(1.0, Math.sqrt(sumXX / sumYY), 0.02);
+    }
+
+    @Test
+    public void output_isIndependentOfChunking() {
+        short[] in = sine(44100, 440, 10000, 0);
+
+        PolyphaseResampler whole = new PolyphaseResampler(44100, 48000, 1);
+        short[] expected = new short[whole.maxOutputFrames(in.length)];
+        int expectedFrames = whole.process(in, in.length, expected);
+
+        PolyphaseResampler chunked = new PolyphaseResampler(44100, 48000, 1);
+        short[] actual = new short[expected.length + 64];
+        short[] chunk = new short[777];
+        short[] out = new short[chunked.maxOutputFrames(chunk.length)];
+        int produced = 0;
+        for (int pos = 0; pos < in.length; pos += chunk.length) {
+            int len = Math.min(chunk.length, in.length - pos);
+            System.arraycopy(in, pos, chunk, 0, len);
+            int n = chunked.process(chunk, len, out);
+            System.arraycopy(out, 0, actual, produced, n);
+            produced += n;
+        }
+        assertEquals(expectedFrames, produced);
+        assertArrayEquals(expected, Arrays.copyOf(actual, expected.length));
+    }
+
+    private static short[] sine(int rate, double freq, int frames, double phase) {
+        short[] buf = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            buf[i] = (short) Math.round(Math.sin(2 * Math.PI * freq * i / rate + phase) * 16000);
+        }
+        return buf;
+    }
+}
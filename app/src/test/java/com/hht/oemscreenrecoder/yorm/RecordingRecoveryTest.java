@@ -0,0 +1,322 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import com.hht.oemscreenrecoder.yorm.Mp4TestSupport.Box;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.audioFrame;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.audioPts;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.audioSpec;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.parse;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.u32;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.u64;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.videoFrame;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.videoPts;
+import static com.hht.oemscreenrecoder.yorm.Mp4TestSupport.videoSpec;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JournaledMp4Writer / RecordingRecovery 单元测试：正常结束与模拟断电后恢复出的样本表、
+ * 数据偏移与 edit list，残缺日志记录和中途中断的恢复，以及跳过正在录制的文件
+ */
+public class RecordingRecoveryTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("recovery").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    // ===== 参考解析器 =====
+
+    /** 展开 stts 为每个样本的时长 */
+    private static List<Integer> sampleDurations(byte[] d, Box stbl) {
+        Box stts = stbl.child("stts");
+        List<Integer> durations = new ArrayList<>();
+        int entries = u32(d, stts.offset + 12);
+        for (int i = 0; i < entries; i++) {
+            int count = u32(d, stts.offset + 16 + i * 8);
+            int duration = u32(d, stts.offset + 20 + i * 8);
+            for (int n = 0; n < count; n++) durations.add(duration);
+        }
+        return durations;
+    }
+
+    private static int[] sampleSizes(byte[] d, Box stbl) {
+        Box stsz = stbl.child("stsz");
+        assertEquals(0, u32(d, stsz.offset + 12));
+        int[] sizes = new int[u32(d, stsz.offset + 16)];
+        for (int i = 0; i < sizes.length; i++) sizes[i] = u32(d, stsz.offset + 20 + i * 4);
+        return sizes;
+    }
+
+    private static long[] chunkOffsets(byte[] d, Box stbl) {
+        Box co64 = stbl.child("co64");
+        long[] offsets = new long[u32(d, co64.offset + 12)];
+        for (int i = 0; i < offsets.length; i++) offsets[i] = u64(d, co64.offset + 16 + i * 8);
+        return offsets;
+    }
+
+    /**
+     * 检查文件结构（ftyp + 回填了长度的 mdat + moov）与每个轨道的样本表，返回 moov
+     */
+    private static Box checkPlayable(byte[] d) {
+        List<Box> top = parse(d, 0, d.length);
+        assertEquals(3, top.size());
+        assertEquals("ftyp", top.get(0).type);
+        assertEquals("mdat", top.get(1).type);
+        assertEquals(16, top.get(1).header);
+        Box moov = top.get(2);
+        assertEquals("moov", moov.type);
+        Box mdat = top.get(1);
+        for (Box trak : moov.all("trak")) {
+            Box stbl = trak.child("mdia/minf/stbl");
+            int[] sizes = sampleSizes(d, stbl);
+            long[] offsets = chunkOffsets(d, stbl);
+            List<Integer> durations = sampleDurations(d, stbl);
+            assertEquals(sizes.length, offsets.length);
+            assertEquals(sizes.length, durations.size());
+            long total = 0;
+            for (int duration : durations) total += duration;
+            assertEquals(total, u32(d, trak.child("mdia/mdhd").offset + 24) & 0xffffffffL);
+            for (int i = 0; i < sizes.length; i++) {
+                assertTrue(offsets[i] >= mdat.offset + 16);
+                assertTrue(offsets[i] + sizes[i] <= mdat.offset + mdat.size);
+            }
+            // 每个样本一个 chunk
+            Box stsc = stbl.child("stsc");
+            assertEquals(1, u32(d, stsc.offset + 12));
+            assertEquals(1, u32(d, stsc.offset + 20));
+        }
+        return moov;
+    }
+
+    // ===== 输入 =====
+
+    /** 按 PTS 交错写入 [0, seconds) 的 30fps 视频（每秒一个关键帧）和 AAC 音频，音频从 audioStartUs 开始 */
+    private static int[] writeAv(Mp4Writer writer, double seconds, long audioStartUs) throws IOException {
+        int v = 0;
+        int a = 0;
+        long end = (long) (seconds * 1_000_000);
+        while (videoPts(v) < end || audioStartUs + audioPts(a) < end) {
+            long apts = audioStartUs + audioPts(a);
+            if (apts < end && (apts <= videoPts(v) || videoPts(v) >= end)) {
+                writer.writeSample(1, audioFrame(a), apts, 0);
+                a++;
+            } else {
+                boolean key = v % 30 == 0;
+                writer.writeSample(0, videoFrame(v, key), videoPts(v), key ? Mp4Writer.FLAG_KEY_FRAME : 0);
+                v++;
+            }
+        }
+        return new int[]{v, a};
+    }
+
+    private JournaledMp4Writer newWriter(File file, long syncIntervalUs) throws IOException {
+        JournaledMp4Writer writer = new JournaledMp4Writer(file, syncIntervalUs);
+        assertEquals(0, writer.addTrack(videoSpec()));
+        assertEquals(1, writer.addTrack(audioSpec()));
+        writer.start();
+        return writer;
+    }
+
+    /** 模拟断电：复制录制中的 mp4 与日志（日志只含已落盘的记录，mp4 含未落盘的数据） */
+    private File snapshot(File mp4, String name) throws IOException {
+        File copy = new File(mDir, name);
+        Files.copy(mp4.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(SampleJournal.journalFileOf(mp4).toPath(), SampleJournal.journalFileOf(copy).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    // ===== 测试 =====
+
+    @Test
+    public void finish_writesSampleTablesAndRemovesJournal() throws IOException {
+        File file = new File(mDir, "rec.mp4");
+        JournaledMp4Writer writer = newWriter(file, 1_000_000);
+        assertTrue(SampleJournal.journalFileOf(file).exists());
+        int[] counts = writeAv(writer, 3.0, 0);
+        writer.close();
+        assertFalse(SampleJournal.journalFileOf(file).exists());
+
+        byte[] d = Files.readAllBytes(file.toPath());
+        Box moov = checkPlayable(d);
+        List<Box> traks = moov.all("trak");
+        assertEquals(2, traks.size());
+        assertNull(traks.get(0).child("edts"));
+        assertNull(traks.get(1).child("edts"));
+
+        Box vstbl = traks.get(0).child("mdia/minf/stbl");
+        assertNotNull(vstbl.child("stsd/avc1"));
+        int[] sizes = sampleSizes(d, vstbl);
+        long[] offsets = chunkOffsets(d, vstbl);
+        assertEquals(counts[0], sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            // 长度前缀 + NAL（头 + 帧序号 + 停止位）
+            assertEquals(8, sizes[i]);
+            int pos = (int) offsets[i];
+            assertEquals(4, u32(d, pos));
+            assertEquals(i % 30 == 0 ? 0x65 : 0x41, d[pos + 4] & 0xff);
+            assertEquals(i & 0xff, d[pos + 5] & 0xff);
+        }
+        // 30fps 在 90kHz 下每帧 3000（PTS 截断到微秒，允许差 1）
+        for (int duration : sampleDurations(d, vstbl)) {
+            assertTrue("duration " + duration, Math.abs(duration - 3000) <= 1);
+        }
+        Box stss = vstbl.child("stss");
+        assertEquals(3, u32(d, stss.offset + 12));
+        assertEquals(1, u32(d, stss.offset + 16));
+        assertEquals(31, u32(d, stss.offset + 20));
+        assertEquals(61, u32(d, stss.offset + 24));
+
+        Box astbl = traks.get(1).child("mdia/minf/stbl");
+        assertNotNull(astbl.child("stsd/mp4a"));
+        assertNull(astbl.child("stss"));
+        assertEquals(counts[1], sampleSizes(d, astbl).length);
+        long[] aoffsets = chunkOffsets(d, astbl);
+        assertEquals(0x21, d[(int) aoffsets[5]]);
+        assertEquals(5, d[(int) aoffsets[5] + 1]);
+    }
+
+    @Test
+    public void laterTrack_startsWithEmptyEdit() throws IOException {
+        File file = new File(mDir, "rec.mp4");
+        JournaledMp4Writer writer = newWriter(file, 1_000_000);
+        writeAv(writer, 2.0, 500_000);
+        writer.finish();
+
+        byte[] d = Files.readAllBytes(file.toPath());
+        Box moov = checkPlayable(d);
+        Box vtrak = moov.all("trak").get(0);
+        Box atrak = moov.all("trak").get(1);
+        assertNull(vtrak.child("edts"));
+        Box elst = atrak.child("edts/elst");
+        assertNotNull(elst);
+        assertEquals(2, u32(d, elst.offset + 12));
+        assertEquals(500, u32(d, elst.offset + 16));
+        assertEquals(-1, u32(d, elst.offset + 20));
+        assertEquals(0, u32(d, elst.offset + 32));
+        // 音频轨道时长包含前面的空 edit
+        Box tkhd = atrak.child("tkhd");
+        assertTrue(u32(d, tkhd.offset + 28) >= 1990);
+    }
+
+    @Test
+    public void powerLoss_recoversSyncedSamplesAndDropsTail() throws IOException {
+        File file = new File(mDir, "rec.mp4");
+        JournaledMp4Writer writer = newWriter(file, 1_000_000);
+        int[] counts = writeAv(writer, 3.5, 0);
+        File crashed = snapshot(file, "crashed.mp4");
+        writer.close();
+
+        // 写了一半的日志记录被丢弃
+        try (FileOutputStream out = new FileOutputStream(SampleJournal.journalFileOf(crashed), true)) {
+            out.write(new byte[SampleJournal.RECORD_SIZE / 2]);
+        }
+        long before = crashed.length();
+        assertTrue(RecordingRecovery.recover(crashed));
+        assertFalse(SampleJournal.journalFileOf(crashed).exists());
+
+        byte[] d = Files.readAllBytes(crashed.toPath());
+        Box moov = checkPlayable(d);
+        Box vstbl = moov.all("trak").get(0).child("mdia/minf/stbl");
+        int[] sizes = sampleSizes(d, vstbl);
+        long[] offsets = chunkOffsets(d, vstbl);
+        // 最后一次落盘在 3 秒处
+        assertTrue(sizes.length >= 90 && sizes.length < counts[0]);
+        for (int i = 0; i < sizes.length; i++) {
+            assertEquals(i & 0xff, d[(int) offsets[i] + 5] & 0xff);
+        }
+        // 未落盘的尾部数据被截掉后追加 moov
+        Box mdat = parse(d, 0, d.length).get(1);
+        assertTrue(mdat.offset + mdat.size < before);
+
+        // 恢复幂等：已完成时不再有日志，直接返回
+        assertTrue(RecordingRecovery.recover(crashed));
+        assertArrayEquals(d, Files.readAllBytes(crashed.toPath()));
+    }
+
+    @Test
+    public void interruptedRecovery_isRedone() throws IOException {
+        File file = new File(mDir, "rec.mp4");
+        JournaledMp4Writer writer = newWriter(file, 1_000_000);
+        writeAv(writer, 2.5, 0);
+        File first = snapshot(file, "first.mp4");
+        File second = snapshot(file, "second.mp4");
+        writer.close();
+
+        assertTrue(RecordingRecovery.recover(first));
+        byte[] expected = Files.readAllBytes(first.toPath());
+
+        // 模拟上次恢复写了一半 moov 后断电：mdat 长度还没回填
+        byte[] partial = Arrays.copyOf(expected, expected.length - 100);
+        List<Box> top = parse(expected, 0, expected.length);
+        Box mdat = top.get(1);
+        Arrays.fill(partial, mdat.offset + 8, mdat.offset + 16, (byte) 0);
+        Files.write(second.toPath(), partial);
+
+        assertTrue(RecordingRecovery.recover(second));
+        assertArrayEquals(expected, Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    public void recoverAll_skipsActiveRecordingAndRemovesEmptyOnes() throws IOException {
+        File active = new File(mDir, "active.mp4");
+        JournaledMp4Writer writer = newWriter(active, 1_000_000);
+        writeAv(writer, 1.5, 0);
+
+        // 日志头部都没写完的录制
+        File empty = new File(mDir, "empty.mp4");
+        Files.write(empty.toPath(), new byte[]{0, 0, 0, 8});
+        Files.write(SampleJournal.journalFileOf(empty).toPath(), new byte[]{0x53, 0x52});
+        // 有头部但没有样本的录制
+        File noSamples = snapshot(active, "nosamples.mp4");
+        try (RandomAccessFile journal = new RandomAccessFile(SampleJournal.journalFileOf(noSamples), "rw")) {
+            journal.setLength(SampleJournal.encodeHeader(1, Arrays.asList(videoSpec(), audioSpec())).length);
+        }
+        File crashed = snapshot(active, "crashed.mp4");
+
+        List<File> recovered = RecordingRecovery.recoverAll(mDir);
+        assertEquals(Arrays.asList(crashed), recovered);
+        assertTrue(SampleJournal.journalFileOf(active).exists());
+        assertFalse(empty.exists());
+        assertFalse(SampleJournal.journalFileOf(empty).exists());
+        assertFalse(noSamples.exists());
+        assertFalse(SampleJournal.journalFileOf(noSamples).exists());
+        checkPlayable(Files.readAllBytes(crashed.toPath()));
+
+        writer.finish();
+        assertFalse(SampleJournal.journalFileOf(active).exists());
+        checkPlayable(Files.readAllBytes(active.toPath()));
+    }
+}
@@ -0,0 +1,46 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RecordingStartTrace 单元测试：阶段耗时、重复记录、汇总格式
+ */
+public class RecordingStartTraceTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void phases_areMeasuredFromOrigin() {
+        RecordingStartTrace trace = new RecordingStartTrace(1000 * MS);
+        assertTrue(trace.mark("record", 1012 * MS));
+        assertTrue(trace.mark("surface", 1040 * MS));
+        assertTrue(trace.mark("first_video", 1105 * MS));
+
+        assertEquals(12, trace.elapsedMs("record"));
+        assertEquals(40, trace.elapsedMs("surface"));
+        assertEquals(105, trace.elapsedMs("first_video"));
+        assertEquals(-1, trace.elapsedMs("first_audio"));
+        assertEquals("record=12ms(+12), surface=40ms(+28), first_video=105ms(+65)", trace.toString());
+    }
+
+    @Test
+    public void repeatedMark_keepsFirstTime() {
+        RecordingStartTrace trace = new RecordingStartTrace(0);
+        assertTrue(trace.mark("first_video", 30 * MS));
+        assertFalse(trace.mark("first_video", 60 * MS));
+        assertTrue(trace.isMarked("first_video"));
+        assertEquals(30, trace.elapsedMs("first_video"));
+    }
+
+    @Test
+    public void markBeforeOrigin_isClampedToOrigin() {
+        // 预热时已经完成的阶段早于点击时刻
+        RecordingStartTrace trace = new RecordingStartTrace(500 * MS);
+        trace.mark("video_encoder", 100 * MS);
+        assertEquals(0, trace.elapsedMs("video_encoder"));
+        assertEquals("", new RecordingStartTrace(0).toString());
+    }
+}
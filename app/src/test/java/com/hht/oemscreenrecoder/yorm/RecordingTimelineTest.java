@@ -0,0 +1,133 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RecordingTimeline 单元测试：两个时钟的起点锚定、时钟漂移、暂停区间、恢复后的间隔补偿与各轨道单调性
+ */
+public class RecordingTimelineTest {
+
+    /** 手动推进的时钟，两个时基可以分别推进以模拟深睡眠 */
+    private static final class FakeClock implements RecordingTimeline.Clock {
+        long elapsedNanos = 5_000_000_000L;
+        long monotonicNanos = 3_000_000_000L;
+
+        void advanceMs(long ms) {
+            elapsedNanos += ms * 1_000_000;
+            monotonicNanos += ms * 1_000_000;
+        }
+
+        @Override
+        public long elapsedRealtimeNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public long monotonicNanos() {
+            return monotonicNanos;
+        }
+    }
+
+    @Test
+    public void start_anchorsBothClocksAtTheSameInstant() {
+        FakeClock clock = new FakeClock();
+        RecordingTimeline timeline = new RecordingTimeline(clock);
+        assertFalse(timeline.isStarted());
+        assertEquals(0, timeline.elapsedUs());
+
+        timeline.start();
+        assertEquals(5_000_000_000L, timeline.getStartNanos());
+        clock.advanceMs(100);
+        assertEquals(100_000, timeline.elapsedUs());
+        // VirtualDisplay 的采集时间（CLOCK_MONOTONIC）换算到同一个起点
+        assertEquals(50_000, timeline.fromMonotonicUs(3_050_000));
+        assertEquals(0, timeline.fromMonotonicUs(2_900_000));
+        assertEquals(0, timeline.getClockDriftUs());
+    }
+
+    @Test
+    public void deepSleep_driftsOnlyTheMainClock() {
+        FakeClock clock = new FakeClock();
+        RecordingTimeline timeline = new RecordingTimeline(clock);
+        timeline.start();
+        clock.advanceMs(1000);
+        // 深睡眠 2s：elapsedRealtime 继续走，CLOCK_MONOTONIC 停止
+        clock.elapsedNanos += 2_000_000_000L;
+        clock.advanceMs(500);
+
+        assertEquals(3_500_000, timeline.elapsedUs());
+        assertEquals(1_500_000, timeline.fromMonotonicUs(clock.monotonicNanos / 1000));
+        assertEquals(2_000_000, timeline.getClockDriftUs());
+    }
+
+    @Test
+    public void pauseResume_recordsIntervalsAndCompensatesGap() {
+        FakeClock clock = new FakeClock();
+        RecordingTimeline timeline = new RecordingTimeline(clock);
+        timeline.start();
+        for (int i = 0; i <= 50; i++) {
+            long ptsUs = i * 20_000L;
+            assertEquals(ptsUs, timeline.admit(RecordingTimeline.AUDIO, ptsUs, false));
+        }
+        assertEquals(0, timeline.admit(RecordingTimeline.VIDEO, 0, true));
+        assertEquals(990_000, timeline.admit(RecordingTimeline.VIDEO, 990_000, false));
+
+        clock.advanceMs(1000);
+        timeline.pause();
+        assertTrue(timeline.isPaused());
+        assertEquals(RecordingTimeline.DROP, timeline.admit(RecordingTimeline.AUDIO, 1_020_000, false));
+        clock.advanceMs(3000);
+        assertEquals(3_000_000, timeline.getPausedUs());
+        timeline.resume(true);
+        assertFalse(timeline.isPaused());
+        assertEquals(1, timeline.getPauseCount());
+        assertEquals(3_000_000, timeline.getPausedUs());
+
+        // 恢复后第一个样本测量暂停间隔，视频等到关键帧
+        assertEquals(1_020_000, timeline.admit(RecordingTimeline.AUDIO, 4_020_000, false));
+        assertEquals(3_000_000, timeline.getOffsetUs());
+        assertTrue(timeline.isAwaitingKeyFrame());
+        assertEquals(RecordingTimeline.DROP, timeline.admit(RecordingTimeline.VIDEO, 4_000_000, false));
+        assertEquals(1_033_000, timeline.admit(RecordingTimeline.VIDEO, 4_033_000, true));
+        assertEquals(1_023_000, timeline.shift(4_023_000));
+
+        // 第二次暂停，正在进行的暂停计入时长
+        timeline.pause();
+        clock.advanceMs(500);
+        assertEquals(3_500_000, timeline.getPausedUs());
+        assertEquals(2, timeline.getPauseCount());
+    }
+
+    @Test
+    public void admit_keepsEachTrackStrictlyMonotonic() {
+        RecordingTimeline timeline = new RecordingTimeline(new FakeClock());
+        timeline.start();
+        assertEquals(100_000, timeline.admit(RecordingTimeline.AUDIO, 100_000, false));
+        assertEquals(RecordingTimeline.DROP, timeline.admit(RecordingTimeline.AUDIO, 90_000, false));
+        assertEquals(RecordingTimeline.DROP, timeline.admit(RecordingTimeline.AUDIO, 100_000, false));
+        // 另一个轨道不受影响
+        assertEquals(90_000, timeline.admit(RecordingTimeline.VIDEO, 90_000, true));
+        assertEquals(120_000, timeline.admit(RecordingTimeline.AUDIO, 120_000, false));
+    }
+
+    @Test
+    public void restart_clearsPauseIntervals() {
+        FakeClock clock = new FakeClock();
+        RecordingTimeline timeline = new RecordingTimeline(clock);
+        timeline.start();
+        timeline.pause();
+        clock.advanceMs(200);
+        timeline.resume(false);
+        assertEquals(200_000, timeline.getPausedUs());
+
+        clock.advanceMs(1000);
+        timeline.start();
+        assertEquals(0, timeline.getPausedUs());
+        assertEquals(0, timeline.getPauseCount());
+        assertEquals(6_200_000_000L, timeline.getStartNanos());
+    }
+}
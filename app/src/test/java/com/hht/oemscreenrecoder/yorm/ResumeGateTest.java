@@ -0,0 +1,106 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ResumeGate 单元测试：暂停丢弃、恢复后关键帧门控、按实际样本测量的暂停间隔补偿
+ */
+public class ResumeGateTest {
+
+    @Test
+    public void notPaused_passesThrough() {
+        ResumeGate gate = new ResumeGate();
+        assertEquals(0, gate.admit(true, 0, true));
+        assertEquals(33_333, gate.admit(true, 33_333, false));
+        assertEquals(21_333, gate.admit(false, 21_333, false));
+        assertEquals(0, gate.getOffsetUs());
+    }
+
+    @Test
+    public void resume_gatesVideoUntilKeyFrameAndCompensatesGap() {
+        ResumeGate gate = new ResumeGate();
+        for (int i = 0; i <= 30; i++) {
+            assertEquals(i * 33_333L, gate.admit(true, i * 33_333L, i == 0));
+        }
+        gate.pause();
+        assertTrue(gate.isPaused());
+        assertEquals(ResumeGate.DROP, gate.admit(true, 1_100_000, false));
+
+        gate.resume(true);
+        assertTrue(gate.isAwaitingKeyFrame());
+        // 恢复后的 P 帧引用了没有写入的帧
+        assertEquals(ResumeGate.DROP, gate.admit(true, 5_000_000, false));
+        assertEquals(ResumeGate.DROP, gate.admit(true, 5_033_333, false));
+        // 关键帧紧接暂停前最后一帧
+        assertEquals(1_033_323, gate.admit(true, 5_066_666, true));
+        assertFalse(gate.isAwaitingKeyFrame());
+        assertEquals(1_066_656, gate.admit(true, 5_099_999, false));
+        assertEquals(5_066_666 - 1_033_323, gate.getOffsetUs());
+        assertEquals(1, gate.getPausedDrops());
+        assertEquals(2, gate.getKeyFrameDrops());
+    }
+
+    @Test
+    public void audioFirstAfterResume_measuresGapForBothTracks() {
+        ResumeGate gate = new ResumeGate();
+        gate.admit(true, 0, true);
+        gate.admit(false, 0, false);
+        gate.admit(false, 20_000, false);
+        gate.admit(true, 33_000, false);
+        gate.admit(false, 40_000, false);
+        gate.pause();
+        gate.resume(true);
+
+        // 最后一个样本是音频 40000，帧时长 20000，预期下一帧 60000
+        assertEquals(60_000, gate.admit(false, 3_060_000, false));
+        assertEquals(3_000_000, gate.getLastGapUs());
+        // 视频关键帧与音频使用相同偏移，同步不变
+        assertEquals(ResumeGate.DROP, gate.admit(true, 3_070_000, false));
+        assertEquals(75_000, gate.admit(true, 3_075_000, true));
+        assertEquals(80_000, gate.admit(false, 3_080_000, false));
+    }
+
+    @Test
+    public void nonMonotonicSample_isDroppedInsteadOfNudged() {
+        ResumeGate gate = new ResumeGate();
+        gate.admit(false, 0, false);
+        gate.admit(false, 20_000, false);
+        gate.admit(true, 30_000, true);
+        gate.pause();
+        gate.resume(true);
+        // 视频先放行，偏移按视频测得
+        assertEquals(50_000, gate.admit(true, 2_050_000, true));
+        // 编码延迟导致早于该点采集的音频补偿后仍在上一个音频样本之后，正常写入
+        assertEquals(25_000, gate.admit(false, 2_025_000, false));
+        // 补偿后回退的音频直接丢弃
+        assertEquals(ResumeGate.DROP, gate.admit(false, 2_010_000, false));
+        assertEquals(1, gate.getNonMonotonicDrops());
+    }
+
+    @Test
+    public void audioOnly_doesNotWaitForKeyFrame() {
+        ResumeGate gate = new ResumeGate();
+        gate.admit(false, 0, false);
+        gate.pause();
+        gate.resume(false);
+        assertFalse(gate.isAwaitingKeyFrame());
+        // 帧时长未知时使用默认值
+        assertEquals(ResumeGate.DEFAULT_FRAME_DURATION_US, gate.admit(false, 1_000_000, false));
+        assertEquals(1_000_000 - ResumeGate.DEFAULT_FRAME_DURATION_US, gate.getOffsetUs());
+        assertEquals(ResumeGate.DEFAULT_FRAME_DURATION_US, gate.shift(1_000_000));
+    }
+
+    @Test
+    public void resumeWithoutPause_isIgnored() {
+        ResumeGate gate = new ResumeGate();
+        gate.admit(true, 0, true);
+        gate.resume(true);
+        assertFalse(gate.isAwaitingKeyFrame());
+        assertEquals(33_333, gate.admit(true, 33_333, false));
+        assertEquals(0, gate.getResumeCount());
+    }
+}
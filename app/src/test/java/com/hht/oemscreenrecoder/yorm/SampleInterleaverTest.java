@@ -0,0 +1,222 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SampleInterleaver 单元测试：突发到达时的跨轨道交织、停顿轨道的最大领先、窗口内重排、时间戳回退、轨道结束、随机乱序到达
+ */
+public class SampleInterleaverTest {
+
+    private static final int VIDEO = 0;
+    private static final int AUDIO = 1;
+
+    /** 取出当前可以输出的样本，格式为 "名称@时间戳" */
+    private static List<String> drain(SampleInterleaver<String> interleaver) {
+        List<String> out = new ArrayList<>();
+        String sample;
+        while ((sample = interleaver.poll()) != null) {
+            out.add(sample + "@" + interleaver.getPolledTimeUs());
+        }
+        return out;
+    }
+
+    private static List<String> drainForced(SampleInterleaver<String> interleaver) {
+        List<String> out = new ArrayList<>();
+        String sample;
+        while ((sample = interleaver.pollForced()) != null) {
+            out.add(sample + "@" + interleaver.getPolledTimeUs());
+        }
+        return out;
+    }
+
+    @Test
+    public void burstyTracks_areInterleavedByTimestamp() {
+        SampleInterleaver<String> interleaver = new SampleInterleaver<>(2, 500_000, 0);
+        interleaver.setReorder(AUDIO, true);
+        // 视频先突发 4 帧，音频还没有到达，全部扣留
+        for (int i = 0; i < 4; i++) {
+            assertTrue(interleaver.offer(VIDEO, i * 33_000L, "v" + i));
+        }
+        assertTrue(drain(interleaver).isEmpty());
+        assertEquals(4, interleaver.size());
+
+        for (int i = 0; i < 5; i++) {
+            interleaver.offer(AUDIO, i * 21_000L, "a" + i);
+        }
+        // 音频追上后按时间戳交织，最后一帧视频等待之后的音频
+        assertEquals("[v0@0, a0@0, a1@21000, v1@33000, a2@42000, a3@63000, v2@66000, a4@84000]",
+                drain(interleaver).toString());
+        assertEquals(1, interleaver.size());
+    }
+
+    @Test
+    public void stalledTrack_isNoLongerAwaitedAfterMaxSkew() {
+        SampleInterleaver<String> interleaver = new SampleInterleaver<>(2, 100_000, 0);
+        interleaver.offer(AUDIO, 0, "a0");
+        interleaver.offer(VIDEO, 0, "v0");
+        assertEquals("[v0@0, a0@0]", drain(interleaver).toString());
+
+        // 音频停顿，视频最多领先 100ms
+        interleaver.offer(VIDEO, 33_000, "v1");
+        interleaver.offer(VIDEO, 66_000, "v2");
+        interleaver.offer(VIDEO, 99_000, "v3");
+        interleaver.offer(VIDEO, 132_000, "v4");
+        assertTrue(drain(interleaver).isEmpty());
+        interleaver.offer(VIDEO, 165_000, "v5");
+        assertEquals("[v1@33000]", drain(interleaver).toString());
+        assertEquals(1, interleaver.getForcedCount());
+        assertEquals(132_000, interleaver.getMaxSkewSeenUs());
+
+        // 音频恢复后重新按时间戳交织
+        interleaver.offer(AUDIO, 120_000, "a1");
+        assertEquals("[v2@66000, v3@99000, a1@120000]", drain(interleaver).toString());
+        assertEquals(1, interleaver.getForcedCount());
+    }
+
+    @Test
+    public void reorderTrack_isSortedWithinWindowAndLateSamplesDropped() {
+        SampleInterleaver<String> interleaver = new SampleInterleaver<>(2, 1_000_000, 50_000);
+        interleaver.setReorder(AUDIO, true);
+        interleaver.offerEnd(VIDEO, "veos");
+        assertEquals("[veos@" + Long.MIN_VALUE + "]", drain(interleaver).toString());
+
+        interleaver.offer(AUDIO, 0, "a0");
+        interleaver.offer(AUDIO, 40_000, "a2");
+        // 窗口内还没到齐，继续等待更早的样本
+        assertTrue(drain(interleaver).isEmpty());
+        interleaver.offer(AUDIO, 20_000, "a1");
+        interleaver.offer(AUDIO, 70_000, "a3");
+        assertEquals("[a0@0, a1@20000]", drain(interleaver).toString());
+        assertEquals(1, interleaver.getReorderedCount());
+
+        // 早于已输出时间戳的样本到达过晚，丢弃
+        assertFalse(interleaver.offer(AUDIO, 10_000, "late"));
+        assertEquals(1, interleaver.getLateDropCount());
+        interleaver.offer(AUDIO, 30_000, "a1b");
+        interleaver.offerEnd(AUDIO, "aeos");
+        assertEquals("[a1b@30000, a2@40000, a3@70000, aeos@70000]", drain(interleaver).toString());
+        assertEquals(2, interleaver.getReorderedCount());
+        assertTrue(interleaver.isEmpty());
+        assertFalse(interleaver.offer(AUDIO, 80_000, "afterEnd"));
+    }
+
+    @Test
+    public void videoRegression_keepsArrivalOrderAndIsNudgedMinimally() {
+        SampleInterleaver<String> interleaver = new SampleInterleaver<>(1, 0, 0);
+        interleaver.offer(VIDEO, 0, "v0");
+        interleaver.offer(VIDEO, 33_000, "v1");
+        interleaver.offer(VIDEO, 20_000, "v2");
+        interleaver.offer(VIDEO, 66_000, "v3");
+        assertEquals("[v0@0, v1@33000, v2@33001, v3@66000]", drain(interleaver).toString());
+        assertEquals(1, interleaver.getAdjustedCount());
+        assertEquals(0, interleaver.getReorderedCount());
+    }
+
+    @Test
+    public void endedTrack_stopsBlockingAndEndSampleComesLast() {
+        SampleInterleaver<String> interleaver = new SampleInterleaver<>(2, 1_000_000, 0);
+        interleaver.offer(AUDIO, 0, "a0");
+        interleaver.offer(AUDIO, 21_000, "a1");
+        interleaver.offerEnd(AUDIO, "aeos");
+        interleaver.offer(VIDEO, 10_000, "v0");
+        interleaver.offer(VIDEO, 43_000, "v1");
+        assertEquals("[a0@0, v0@10000, a1@21000, aeos@21000, v1@43000]", drain(interleaver).toString());
+        assertEquals(0, interleaver.getForcedCount());
+
+        interleaver.offer(VIDEO, 76_000, "v2");
+        assertEquals("[v2@76000]", drain(interleaver).toString());
+    }
+
+    @Test
+    public void pollForced_drainsInTimestampOrder() {
+        SampleInterleaver<String> interleaver = new SampleInterleaver<>(2, 1_000_000, 0);
+        interleaver.offer(VIDEO, 33_000, "v1");
+        interleaver.offer(VIDEO, 66_000, "v2");
+        interleaver.offer(AUDIO, 40_000, "a1");
+        assertEquals("[v1@33000, a1@40000]", drain(interleaver).toString());
+        assertEquals("v2", interleaver.peek());
+        assertEquals("[v2@66000]", drainForced(interleaver).toString());
+        assertNull(interleaver.peek());
+    }
+
+    @Test
+    public void randomArrivalOrder_outputIsMonotonicPerTrackAndInterleaved() {
+        final Random random = new Random(20240611);
+        long reordered = 0;
+        for (int round = 0; round < 50; round++) {
+            SampleInterleaver<String> interleaver = new SampleInterleaver<>(2, 10_000_000, 100_000);
+            interleaver.setReorder(AUDIO, true);
+            // 音频帧在 40ms 内乱序到达，两个轨道的到达顺序随机交错
+            List<long[]> arrivals = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                arrivals.add(new long[]{VIDEO, i * 33_333L, i * 33_333L});
+            }
+            for (int i = 0; i < 90; i++) {
+                long pts = i * 21_333L;
+                arrivals.add(new long[]{AUDIO, pts, pts + random.nextInt(40_000)});
+            }
+            arrivals.sort((x, y) -> Long.compare(x[2], y[2]));
+            for (int i = 0; i < arrivals.size(); i++) {
+                int j = i + random.nextInt(Math.min(3, arrivals.size() - i));
+                if (arrivals.get(i)[0] != arrivals.get(j)[0]) {
+                    // 不同轨道之间的到达顺序任意，同一视频轨道内保持解码顺序
+                    long[] tmp = arrivals.get(i);
+                    arrivals.set(i, arrivals.get(j));
+                    arrivals.set(j, tmp);
+                }
+            }
+
+            List<String> out = new ArrayList<>();
+            List<Integer> tracks = new ArrayList<>();
+            List<Long> times = new ArrayList<>();
+            int videoSeen = 0;
+            for (long[] arrival : arrivals) {
+                int track = (int) arrival[0];
+                if (track == VIDEO) {
+                    arrival[1] = videoSeen++ * 33_333L;
+                }
+                assertTrue(interleaver.offer(track, arrival[1], "s"));
+                String sample;
+                while ((sample = interleaver.poll()) != null) {
+                    out.add(sample);
+                    tracks.add(interleaver.getPolledTrack());
+                    times.add(interleaver.getPolledTimeUs());
+                }
+            }
+            interleaver.offerEnd(VIDEO, "e");
+            interleaver.offerEnd(AUDIO, "e");
+            String sample;
+            while ((sample = interleaver.poll()) != null) {
+                out.add(sample);
+                tracks.add(interleaver.getPolledTrack());
+                times.add(interleaver.getPolledTimeUs());
+            }
+
+            assertEquals(152, out.size());
+            assertEquals(0, interleaver.getForcedCount());
+            assertEquals(0, interleaver.getLateDropCount());
+            assertEquals(0, interleaver.getAdjustedCount());
+            reordered += interleaver.getReorderedCount();
+            long[] last = {-1, -1};
+            long lastAny = -1;
+            for (int i = 0; i < out.size(); i++) {
+                int track = tracks.get(i);
+                long time = times.get(i);
+                assertTrue("round " + round + " track " + track + " at " + i, time >= last[track]);
+                assertTrue("round " + round + " interleave at " + i, time >= lastAny);
+                last[track] = time;
+                lastAny = time;
+            }
+        }
+        assertTrue(reordered > 0);
+    }
+}
@@ -0,0 +1,83 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * SegmentPlaylist 单元测试：分段命名、M3U 内容更新、列出一次录制的所有文件
+ */
+public class SegmentPlaylistTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("playlist").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void paths_deriveFromRecordingPath() {
+        assertEquals("/a/rec.m3u", SegmentPlaylist.playlistPath("/a/rec.mp4"));
+        assertEquals("/a/rec_001.mp4", SegmentPlaylist.segmentPath("/a/rec.mp4", 1));
+        assertEquals("/a/rec_012.mp4", SegmentPlaylist.segmentPath("/a/rec.mp4", 12));
+    }
+
+    @Test
+    public void entries_areUpdatedAsSegmentsFinish() throws IOException {
+        File file = new File(mDir, "rec.m3u");
+        SegmentPlaylist playlist = new SegmentPlaylist(file);
+        playlist.begin("rec_001.mp4");
+        assertEquals("#EXTM3U\n#EXTINF:-1,rec_001.mp4\nrec_001.mp4\n", read(file));
+        playlist.finish(600);
+        playlist.begin("rec_002.mp4");
+        assertEquals("#EXTM3U\n#EXTINF:600.000,rec_001.mp4\nrec_001.mp4\n"
+                + "#EXTINF:-1,rec_002.mp4\nrec_002.mp4\n", read(file));
+        playlist.finish(12.5);
+        assertEquals(2, playlist.size());
+        assertEquals("#EXTM3U\n#EXTINF:600.000,rec_001.mp4\nrec_001.mp4\n"
+                + "#EXTINF:12.500,rec_002.mp4\nrec_002.mp4\n", read(file));
+        assertFalse(new File(mDir, "rec.m3u.tmp").exists());
+    }
+
+    @Test
+    public void filesOf_listsExistingSegmentsAndPlaylist() throws IOException {
+        File file = new File(mDir, "rec.m3u");
+        SegmentPlaylist playlist = new SegmentPlaylist(file);
+        File first = new File(mDir, "rec_001.mp4");
+        File second = new File(mDir, "rec_002.mp4");
+        Files.write(first.toPath(), new byte[1]);
+        playlist.begin(first.getName());
+        playlist.finish(1);
+        // 第二个分段已被删除
+        playlist.begin(second.getName());
+
+        assertEquals(Arrays.asList(first, file), SegmentPlaylist.filesOf(file));
+        assertEquals(Collections.singletonList(first), SegmentPlaylist.filesOf(first));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,63 @@
+package com.hht.oemscreenrecoder.yorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SegmentPolicy 单元测试：按时长/大小在同步样本处切分，时间戳平移
+ */
+public class SegmentPolicyTest {
+
+    @Test
+    public void duration_rotatesAtFirstSyncSampleAfterLimit() {
+        SegmentPolicy policy = new SegmentPolicy(10_000_000, 0);
+        policy.startSegment(-1);
+        assertFalse(policy.shouldRotate(0, true));
+        policy.onSampleWritten(0, 100);
+        policy.onSampleWritten(9_900_000, 100);
+        assertFalse(policy.shouldRotate(9_900_000, true));
+        // 到达时长上限但不是关键帧，继续写当前分段
+        assertFalse(policy.shouldRotate(10_000_000, false));
+        policy.onSampleWritten(10_000_000, 100);
+        assertTrue(policy.shouldRotate(10_500_000, true));
+        assertEquals(10_000_000, policy.getSegmentDurationUs());
+
+        policy.startSegment(10_500_000);
+        assertEquals(0, policy.getSegmentBytes());
+        assertFalse(policy.shouldRotate(10_500_000, true));
+        policy.onSampleWritten(10_500_000, 100);
+        assertFalse(policy.shouldRotate(20_400_000, true));
+        assertTrue(policy.shouldRotate(20_500_000, true));
+    }
+
+    @Test
+    public void size_rotatesAtFirstSyncSampleAfterLimit() {
+        SegmentPolicy policy = new SegmentPolicy(0, 1000);
+        policy.startSegment(-1);
+        policy.onSampleWritten(0, 600);
+        assertFalse(policy.shouldRotate(1, true));
+        policy.onSampleWritten(1, 400);
+        assertFalse(policy.shouldRotate(2, false));
+        assertTrue(policy.shouldRotate(2, true));
+    }
+
+    @Test
+    public void timestamps_areRebasedAfterFirstSegment() {
+        SegmentPolicy policy = new SegmentPolicy(1_000_000, 0);
+        policy.startSegment(-1);
+        assertEquals(123, policy.rebase(123));
+        policy.startSegment(5_000_000);
+        assertEquals(0, policy.rebase(5_000_000));
+        assertEquals(20_000, policy.rebase(5_020_000));
+        // 切分后才到达的较早音频样本按零点写入
+        assertEquals(0, policy.rebase(4_990_000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noLimit_isRejected() {
+        new SegmentPolicy(0, 0);
+    }
+}